@@ -137,6 +137,34 @@ public abstract class DomainStore<T extends DomainObject, Q extends EntityPathBa
         return list;
     }
 
+    /**
+     * Returns a page of instances ordered by id, which follows the instance with the given id.
+     *
+     * <p>
+     * Unlike {@link #findAll(long, long)} the cost of the query does not grow with the position of the page, therefore
+     * it should be used to iterate over all instances.
+     * </p>
+     *
+     * @param lastId id of the last instance of the previous page or null for the first page
+     * @param limit  maximal number of returned instances
+     * @return {@link List} of instances
+     */
+    public List<T> findAllAfter(String lastId, int limit) {
+        StringPath idPath = propertyPath("id");
+        JPAQuery<T> query = query().select(qObject());
+        applyWhereExpression(query);
+        if (lastId != null) {
+            query.where(idPath.gt(lastId));
+        }
+        query.orderBy(idPath.asc()).limit(limit);
+
+        List<T> list = query.fetch();
+
+        detachAll();
+
+        return list;
+    }
+
     /**
      * Count entities in db.
      *
@@ -0,0 +1,166 @@
+package cz.cas.lib.arclib.formatlibrary.service;
+
+import cz.cas.lib.arclib.formatlibrary.domain.FormatDefinition;
+import cz.cas.lib.arclib.formatlibrary.store.FormatDefinitionStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-mostly cache of the preferred format definitions keyed by PUID, used by the ingest workflow which looks up
+ * the format definition of every file of the SIP.
+ * <p>
+ * All preferred definitions are loaded by a single query at start-up and whenever the cache is used after it has been
+ * invalidated or after it has expired. Every load creates a new snapshot of the preferred definitions which is never
+ * modified afterwards, readers therefore never see a partially loaded cache. PUIDs which are not in the snapshot are looked up in DB once and the
+ * result (including the absence of the definition) is remembered until the next load.
+ * </p>
+ * <p>
+ * Cache is invalidated after commit of every change of the format library made at this node, changes made at other
+ * nodes of the cluster are picked up once the snapshot expires.
+ * Definitions are detached entities shared by all callers and must not be modified.
+ * </p>
+ */
+@Slf4j
+@Service
+public class FormatDefinitionCache {
+    private FormatDefinitionStore store;
+    private Duration maxAge = Duration.ofMinutes(10);
+
+    private volatile Snapshot snapshot;
+    /**
+     * incremented by every invalidation, snapshot loaded while the cache was invalidated is not published
+     */
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param puid PUID of the format
+     * @return preferred format definition of the format, null if there is no such definition
+     */
+    public FormatDefinition findPreferredByPuid(String puid) {
+        Snapshot current = snapshot;
+        if (current == null || current.isOlderThan(maxAge))
+            current = reload(current);
+        FormatDefinition definition = current.preferred.get(puid);
+        if (definition != null) {
+            hits.incrementAndGet();
+            return definition;
+        }
+        Optional<FormatDefinition> loaded = current.loaded.get(puid);
+        if (loaded != null) {
+            hits.incrementAndGet();
+            return loaded.orElse(null);
+        }
+        misses.incrementAndGet();
+        loaded = Optional.ofNullable(store.findPreferredByFormatPuid(puid));
+        current.loaded.putIfAbsent(puid, loaded);
+        return loaded.orElse(null);
+    }
+
+    /**
+     * Drops the snapshot, definitions are loaded again when requested.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    /**
+     * Drops the snapshot once the current transaction commits, so that the definitions are not loaded again before
+     * the changes are visible to other transactions. Drops the snapshot immediately if there is no transaction.
+     */
+    public void invalidateAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate();
+            }
+        });
+    }
+
+    /**
+     * @return ratio of the lookups answered without querying DB, counted since the start of the application
+     */
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void prewarm() {
+        try {
+            reload(null);
+        } catch (RuntimeException e) {
+            log.warn("Could not pre-warm format definition cache, definitions will be loaded on first use.", e);
+        }
+    }
+
+    private synchronized Snapshot reload(Snapshot stale) {
+        Snapshot current = snapshot;
+        if (current != null && current != stale && !current.isOlderThan(maxAge))
+            return current;
+        long start = System.currentTimeMillis();
+        long loadedGeneration = generation.get();
+        Map<String, FormatDefinition> preferred = new HashMap<>();
+        for (FormatDefinition definition : store.findAllPreferred()) {
+            if (definition.getFormat() != null && definition.getFormat().getPuid() != null)
+                preferred.putIfAbsent(definition.getFormat().getPuid(), definition);
+        }
+        current = new Snapshot(Collections.unmodifiableMap(preferred));
+        if (generation.get() == loadedGeneration)
+            snapshot = current;
+        log.info("Format definition cache loaded {} preferred definitions in {} ms, hit rate so far: {}% ({} hits, {} misses).",
+                preferred.size(), System.currentTimeMillis() - start, String.format("%.2f", getHitRate() * 100), hits.get(), misses.get());
+        return current;
+    }
+
+    private static final class Snapshot {
+        private final Map<String, FormatDefinition> preferred;
+        private final Map<String, Optional<FormatDefinition>> loaded = new ConcurrentHashMap<>();
+        private final Instant created = Instant.now();
+
+        private Snapshot(Map<String, FormatDefinition> preferred) {
+            this.preferred = preferred;
+        }
+
+        private boolean isOlderThan(Duration maxAge) {
+            return created.plus(maxAge).isBefore(Instant.now());
+        }
+    }
+
+    @Autowired
+    public void setStore(FormatDefinitionStore store) {
+        this.store = store;
+    }
+
+    @Autowired
+    public void setMaxAge(@Value("${formatLibrary.definitionCache.maxAge:PT10M}") Duration maxAge) {
+        this.maxAge = maxAge;
+    }
+}
@@ -17,6 +17,7 @@ import java.util.List;
 @Service
 public class FormatDefinitionService {
     private FormatDefinitionStore store;
+    private FormatDefinitionCache cache;
 
     public FormatDefinition find(String id) {
         return store.find(id);
@@ -49,10 +50,10 @@ public class FormatDefinitionService {
      *
      * @param puid PUID of the format to search
      * @return format with the given <code>PUID</code> and attribute <code>preferred</code> equal to <code>true</code>,
-     * null if there is no such format found
+     * null if there is no such format found, the returned definition is shared by all callers and must not be modified
      */
     public FormatDefinition findPreferredDefinitionsByPuid(String puid) {
-        return store.findPreferredByFormatPuid(puid);
+        return cache.findPreferredByPuid(puid);
     }
 
     public Collection<FormatDefinition> findAll() {
@@ -60,11 +61,15 @@ public class FormatDefinitionService {
     }
 
     public FormatDefinition create(FormatDefinition d) {
-        return store.create(d);
+        FormatDefinition created = store.create(d);
+        cache.invalidateAfterCommit();
+        return created;
     }
 
     public FormatDefinition update(FormatDefinition d) {
-        return store.update(d);
+        FormatDefinition updated = store.update(d);
+        cache.invalidateAfterCommit();
+        return updated;
     }
 
 
@@ -152,6 +157,7 @@ public class FormatDefinitionService {
             formatDefinition = store.create(formatDefinition);
         else
             formatDefinition = store.update(formatDefinition);
+        cache.invalidateAfterCommit();
         log.debug("Format with format id " + formatId + ": " + message);
         return Pair.of(formatDefinition, message);
     }
@@ -160,4 +166,9 @@ public class FormatDefinitionService {
     public void setStore(FormatDefinitionStore store) {
         this.store = store;
     }
+
+    @Autowired
+    public void setCache(FormatDefinitionCache cache) {
+        this.cache = cache;
+    }
 }
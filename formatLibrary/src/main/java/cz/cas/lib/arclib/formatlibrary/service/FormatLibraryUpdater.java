@@ -51,6 +51,7 @@ public class FormatLibraryUpdater {
     private ObjectMapper objectMapper;
     private FormatService formatService;
     private FormatDefinitionService formatDefinitionService;
+    private FormatDefinitionCache formatDefinitionCache;
     private FormatDeveloperService formatDeveloperService;
     private FormatIdentifierService formatIdentifierService;
     private Optional<FormatLibraryNotifier> formatLibraryNotifier;
@@ -388,6 +389,7 @@ public class FormatLibraryUpdater {
             report.append("Format with format id " + formatId + ": " + message + ".\n");
         }
 
+        formatDefinitionCache.invalidateAfterCommit();
         log.debug("Successfully updated all formats from external.");
         formatLibraryNotifier.ifPresent(formatLibraryNotifier1 -> formatLibraryNotifier1.sendFormatLibraryUpdateNotification(username, report.toString(), Instant.now()));
     }
@@ -604,6 +606,11 @@ public class FormatLibraryUpdater {
         this.formatDefinitionService = formatDefinitionService;
     }
 
+    @Autowired
+    public void setFormatDefinitionCache(FormatDefinitionCache formatDefinitionCache) {
+        this.formatDefinitionCache = formatDefinitionCache;
+    }
+
     @Autowired
     public void setFormatListUrl(@Value("${formatLibrary.formatListUrl}") String formatListUrl) {
         this.formatListUrl = formatListUrl;
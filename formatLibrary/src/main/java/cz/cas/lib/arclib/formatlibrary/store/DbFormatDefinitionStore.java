@@ -43,6 +43,13 @@ public class DbFormatDefinitionStore
         return fetch;
     }
 
+    public List<FormatDefinition> findAllPreferred() {
+        List<FormatDefinition> fetch = query().select(qObject())
+                .where(qObject().preferred.eq(true)).fetch();
+        detachAll();
+        return fetch;
+    }
+
     @Override
     public FormatDefinition create(FormatDefinition entity) {
         return save(entity);
@@ -12,6 +12,8 @@ public interface FormatDefinitionStore {
 
     FormatDefinition findPreferredByFormatId(Integer formatId);
 
+    List<FormatDefinition> findAllPreferred();
+
     Collection<FormatDefinition> findAll();
 
     FormatDefinition find(String id);
@@ -6,16 +6,21 @@ import cz.cas.lib.arclib.exception.ReingestStateException;
 import cz.cas.lib.arclib.index.solr.ReindexService;
 import cz.cas.lib.arclib.security.authorization.permission.Permissions;
 import cz.cas.lib.arclib.service.ReingestService;
+import cz.cas.lib.core.index.global.GlobalReindexer;
+import cz.cas.lib.core.index.solr.ReindexProgress;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.io.IOException;
+import java.util.Collection;
 
 @RestController
 @Tag(name = "administration", description = "Api for administration purposes")
@@ -29,6 +34,9 @@ public class AdministrationApi {
     @Autowired
     private ReingestService reingestService;
 
+    @Autowired
+    private GlobalReindexer globalReindexer;
+
     @Operation(summary = "deletes all old index records and creates index for all entities in db [Perm.REINDEX_ELIGIBILITY]",
             description = "arclibxml and format entities are omitted as there are too many records")
     @PreAuthorize("hasAuthority('" + Permissions.REINDEX_ELIGIBILITY + "')")
@@ -37,11 +45,12 @@ public class AdministrationApi {
         solrReindexService.dropReindexAll();
     }
 
-    @Operation(summary = "creates index for all arclibxmls [Perm.REINDEX_ELIGIBILITY]")
+    @Operation(summary = "creates index for all arclibxmls [Perm.REINDEX_ELIGIBILITY]",
+            description = "if resume is true, the interrupted recovery is resumed after its checkpoint, otherwise the checkpoint is deleted and all arclibxmls are indexed")
     @PreAuthorize("hasAuthority('" + Permissions.REINDEX_ELIGIBILITY + "')")
     @RequestMapping(value = "/reindex/arclib_xml", method = RequestMethod.POST)
-    public void reindexArclibXml() {
-        solrReindexService.reindexArclibXml();
+    public void reindexArclibXml(@Parameter(description = "resume interrupted recovery") @RequestParam(value = "resume", defaultValue = "false") boolean resume) {
+        solrReindexService.reindexArclibXml(resume);
     }
 
     @Operation(summary = "deletes all old Format index records and creates index for all Format entities in db [Perm.REINDEX_ELIGIBILITY]")
@@ -51,6 +60,13 @@ public class AdministrationApi {
         solrReindexService.dropReindexFormat();
     }
 
+    @Operation(summary = "gets progress of the last reindex of every store reindexed since the start of the application [Perm.REINDEX_ELIGIBILITY]")
+    @PreAuthorize("hasAuthority('" + Permissions.REINDEX_ELIGIBILITY + "')")
+    @RequestMapping(value = "/reindex/progress", method = RequestMethod.GET)
+    public Collection<ReindexProgress> getReindexProgress() {
+        return globalReindexer.getProgress();
+    }
+
     @Operation(summary = "gets current reingest (if there is any) [Perm.REINGEST_ELIGIBILITY]")
     @PreAuthorize("hasAuthority('" + Permissions.REINGEST_ELIGIBILITY + "')")
     @RequestMapping(value = "/reingest", method = RequestMethod.GET)
@@ -9,10 +9,12 @@ import cz.cas.lib.arclib.domainbase.exception.ForbiddenObject;
 import cz.cas.lib.arclib.domainbase.exception.MissingObject;
 import cz.cas.lib.arclib.dto.AipQueryDetailDto;
 import cz.cas.lib.arclib.dto.AipQueryDto;
+import cz.cas.lib.arclib.index.solr.arclibxml.IndexedArclibXmlDocument;
 import cz.cas.lib.arclib.security.authorization.permission.Permissions;
 import cz.cas.lib.arclib.security.user.UserDetails;
 import cz.cas.lib.arclib.service.AipQueryService;
 import cz.cas.lib.arclib.service.ExportRoutineService;
+import cz.cas.lib.core.index.dto.Result;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
@@ -56,6 +58,22 @@ public class AipQueryApi {
         return aipQueryService.find(id);
     }
 
+    @Operation(summary = "Gets page of the saved query result [Perm.AIP_QUERY_RECORDS_READ]",
+            description = "Documents are loaded from the index by the ids saved with the query.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful response"),
+            @ApiResponse(responseCode = "404", description = "Instance does not exist")})
+    @PreAuthorize("hasAuthority('" + Permissions.AIP_QUERY_RECORDS_READ + "')")
+    @RequestMapping(value = "/{id}/result", method = RequestMethod.GET)
+    public Result<IndexedArclibXmlDocument> getSavedQueryResult(@Parameter(description = "Id of the instance", required = true)
+                                                                @PathVariable("id") String id,
+                                                                @Parameter(description = "Number of the page, starting from 0")
+                                                                @RequestParam(value = "page", defaultValue = "0") int page,
+                                                                @Parameter(description = "Size of the page")
+                                                                @RequestParam(value = "pageSize", defaultValue = "10") int pageSize) {
+        return aipQueryService.findResultPage(id, page, pageSize);
+    }
+
     @Operation(summary = "Gets DTOs of all saved queries of the user [Perm.AIP_QUERY_RECORDS_READ]",
             responses = {@ApiResponse(content = @Content(array = @ArraySchema(schema = @Schema(implementation = AipQueryDto.class))))})
     @ApiResponses(value = {
@@ -5,6 +5,7 @@ import cz.cas.lib.arclib.domainbase.exception.BadArgument;
 import cz.cas.lib.arclib.domainbase.exception.MissingObject;
 import cz.cas.lib.arclib.dto.ToolUpdateDto;
 import cz.cas.lib.arclib.security.authorization.permission.Permissions;
+import cz.cas.lib.arclib.service.ToolVersionCache;
 import cz.cas.lib.arclib.service.preservationPlanning.ToolService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -28,6 +29,7 @@ import static cz.cas.lib.core.util.Utils.notNull;
 @RequestMapping("/api/tool")
 public class ToolApi {
     private ToolService service;
+    private ToolVersionCache toolVersionCache;
 
 
     @Operation(summary = "Gets all instances [Perm.TOOL_RECORDS_READ]")
@@ -83,6 +85,22 @@ public class ToolApi {
 //        service.delete(tool);
 //    }
 
+    @Operation(summary = "Gets versions of external tools cached to avoid running the tools for every ingest workflow [Perm.TOOL_RECORDS_READ]")
+    @ApiResponses({@ApiResponse(responseCode = "200", description = "Successful response", content = @Content(schema = @Schema(implementation = Collection.class)))})
+    @PreAuthorize("hasAuthority('" + Permissions.TOOL_RECORDS_READ + "')")
+    @RequestMapping(value = "/version_cache", method = RequestMethod.GET)
+    public Collection<ToolVersionCache.CachedVersion> listCachedVersions() {
+        return toolVersionCache.findAll();
+    }
+
+    @Operation(summary = "Clears cached versions of external tools, versions are retrieved again when needed [Perm.TOOL_RECORDS_WRITE]")
+    @ApiResponses({@ApiResponse(responseCode = "200", description = "Successful response")})
+    @PreAuthorize("hasAuthority('" + Permissions.TOOL_RECORDS_WRITE + "')")
+    @RequestMapping(value = "/version_cache", method = RequestMethod.DELETE)
+    public void clearCachedVersions() {
+        toolVersionCache.clear();
+    }
+
     @Operation(summary = "Updates instance [Perm.TOOL_RECORDS_WRITE]")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successful response", content = @Content(schema = @Schema(implementation = Tool.class))),
@@ -102,4 +120,9 @@ public class ToolApi {
     public void setService(ToolService service) {
         this.service = service;
     }
+
+    @Autowired
+    public void setToolVersionCache(ToolVersionCache toolVersionCache) {
+        this.toolVersionCache = toolVersionCache;
+    }
 }
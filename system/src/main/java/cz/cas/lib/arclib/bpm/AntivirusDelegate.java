@@ -10,9 +10,13 @@ import cz.cas.lib.arclib.exception.bpm.ConfigParserException;
 import cz.cas.lib.arclib.exception.bpm.IncidentException;
 import cz.cas.lib.arclib.formatlibrary.service.FormatDefinitionService;
 import cz.cas.lib.arclib.service.ExternalProcessRunner;
+import cz.cas.lib.arclib.service.ToolVersionCache;
 import cz.cas.lib.arclib.service.antivirus.Antivirus;
 import cz.cas.lib.arclib.service.antivirus.AntivirusType;
 import cz.cas.lib.arclib.service.antivirus.ClamAntivirus;
+import cz.cas.lib.arclib.service.antivirus.ClamdAntivirus;
+import cz.cas.lib.arclib.service.antivirus.ClamdClient;
+import cz.cas.lib.arclib.service.antivirus.ClamdScanMode;
 import cz.cas.lib.arclib.service.antivirus.InfectedSipAction;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -37,9 +41,12 @@ public class AntivirusDelegate extends ArclibDelegate {
     public static final String INFECTED_SIP_ACTION = "/infectedSipAction";
     public static final String ANTIVIRUS_TYPE = "/type";
     public static final String ANTIVIRUS_CMD = "/cmd";
+    public static final String CLAMD_SCAN_MODE = "/scanMode";
     private Path quarantinePath;
     private FormatDefinitionService formatDefinitionService;
     private ExternalProcessRunner externalProcessRunner;
+    private ToolVersionCache toolVersionCache;
+    private ClamdClient clamdClient;
     @Getter
     private String toolName = "ARCLib_" + IngestToolFunction.virus_check;
 
@@ -77,7 +84,11 @@ public class AntivirusDelegate extends ArclibDelegate {
                     throw new ConfigParserException(cmdExpr, cmdNode.toString(), "Antivirus executable, with full path if not in $PATH variable, with switches");
                 Map<String, String> list = objectMapper.convertValue(cmdNode, Map.class);
                 String[] cmd = list.values().toArray(new String[0]);
-                antivirusToBeUsed = new ClamAntivirus(externalProcessRunner, cmd);
+                antivirusToBeUsed = new ClamAntivirus(externalProcessRunner, cmd, toolVersionCache);
+                break;
+            case CLAMD:
+                ClamdScanMode scanMode = parseEnumFromConfig(root, ANTIVIRUS_TOOL_EXPR + "/" + antivirusToolCounter + CLAMD_SCAN_MODE, ClamdScanMode.class, false);
+                antivirusToBeUsed = new ClamdAntivirus(clamdClient, scanMode == null ? ClamdScanMode.INSTREAM : scanMode, toolVersionCache);
                 break;
             default:
                 throw new ConfigParserException(ANTIVIRUS_TOOL_EXPR + "/" + antivirusToolCounter + AntivirusDelegate.ANTIVIRUS_TYPE,
@@ -103,4 +114,14 @@ public class AntivirusDelegate extends ArclibDelegate {
     public void setExternalProcessRunner(ExternalProcessRunner externalProcessRunner) {
         this.externalProcessRunner = externalProcessRunner;
     }
+
+    @Autowired
+    public void setClamdClient(ClamdClient clamdClient) {
+        this.clamdClient = clamdClient;
+    }
+
+    @Autowired
+    public void setToolVersionCache(ToolVersionCache toolVersionCache) {
+        this.toolVersionCache = toolVersionCache;
+    }
 }
@@ -8,7 +8,9 @@ import cz.cas.lib.arclib.domain.preservationPlanning.Tool;
 import cz.cas.lib.arclib.domainbase.exception.GeneralException;
 import cz.cas.lib.arclib.exception.bpm.IncidentException;
 import cz.cas.lib.arclib.service.IngestIssueService;
+import cz.cas.lib.arclib.service.IngestWorkflowArtifactService;
 import cz.cas.lib.arclib.service.IngestWorkflowService;
+import cz.cas.lib.arclib.service.SipFileIndexService;
 import cz.cas.lib.arclib.service.preservationPlanning.ToolService;
 import cz.cas.lib.arclib.store.IngestEventStore;
 import cz.cas.lib.arclib.store.IngestIssueDefinitionStore;
@@ -46,6 +48,8 @@ public abstract class ArclibDelegate implements VariableMapper, IngestTool, Java
     protected IngestWorkflowService ingestWorkflowService;
     protected IngestIssueService ingestIssueService;
     protected IngestIssueDefinitionStore ingestIssueDefinitionStore;
+    protected SipFileIndexService sipFileIndexService;
+    protected IngestWorkflowArtifactService ingestWorkflowArtifactService;
     @Getter
     private String toolVersion = null;
 
@@ -142,14 +146,17 @@ public abstract class ArclibDelegate implements VariableMapper, IngestTool, Java
      * <code>null</code> otherwise
      */
     public TreeMap<String, Pair<String, String>> getFormatIdentificationResult(DelegateExecution execution) {
-        HashMap<String, TreeMap<String, Pair<String, String>>> mapOfEventIdsToMapsOfFilesToFormats =
-                (HashMap<String, TreeMap<String, Pair<String, String>>>)
-                        execution.getVariable(BpmConstants.FormatIdentification.mapOfEventIdsToMapsOfFilesToFormats);
-
         String preferredFormatIdentificationEventId = (String) execution.getVariable(BpmConstants.FormatIdentification.preferredFormatIdentificationEventId);
         notNull(preferredFormatIdentificationEventId, () -> new GeneralException("Failed to retrieve map of files to formats because format identification has not been performed."));
 
-        return mapOfEventIdsToMapsOfFilesToFormats.get(preferredFormatIdentificationEventId);
+        TreeMap<String, Pair<String, String>> formats = ingestWorkflowArtifactService.findFileFormats(getIngestWorkflowExternalId(execution), preferredFormatIdentificationEventId);
+        if (formats != null)
+            return formats;
+        //ingest workflow started before the formats were stored as artifacts
+        HashMap<String, TreeMap<String, Pair<String, String>>> mapOfEventIdsToMapsOfFilesToFormats =
+                (HashMap<String, TreeMap<String, Pair<String, String>>>)
+                        execution.getVariable(BpmConstants.FormatIdentification.mapOfEventIdsToMapsOfFilesToFormats);
+        return mapOfEventIdsToMapsOfFilesToFormats == null ? null : mapOfEventIdsToMapsOfFilesToFormats.get(preferredFormatIdentificationEventId);
     }
 
     /**
@@ -248,4 +255,14 @@ public abstract class ArclibDelegate implements VariableMapper, IngestTool, Java
     public void setIngestIssueDefinitionStore(IngestIssueDefinitionStore ingestIssueDefinitionStore) {
         this.ingestIssueDefinitionStore = ingestIssueDefinitionStore;
     }
+
+    @Autowired
+    public void setSipFileIndexService(SipFileIndexService sipFileIndexService) {
+        this.sipFileIndexService = sipFileIndexService;
+    }
+
+    @Autowired
+    public void setIngestWorkflowArtifactService(IngestWorkflowArtifactService ingestWorkflowArtifactService) {
+        this.ingestWorkflowArtifactService = ingestWorkflowArtifactService;
+    }
 }
@@ -24,7 +24,6 @@ import org.dom4j.Document;
 import org.dom4j.DocumentException;
 import org.dom4j.Namespace;
 import org.dom4j.Visitor;
-import org.dom4j.io.SAXReader;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -33,9 +32,7 @@ import org.xml.sax.SAXException;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.xpath.XPathExpressionException;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -84,11 +81,9 @@ public class ArclibXmlExtractorDelegate extends ArclibDelegate {
             }
         }
 
-        String uglyPrintedExtractedMetadata = arclibXmlXsltExtractor.extractMetadata(sipProfileExternalId, execution.getVariables());
+        Document doc = arclibXmlXsltExtractor.extractMetadataAsDocument(sipProfileExternalId, execution.getVariables());
 
         //change 'mets' namespace prefix to upper case 'METS'
-        SAXReader reader = new SAXReader();
-        Document doc = reader.read(new ByteArrayInputStream(uglyPrintedExtractedMetadata.getBytes(StandardCharsets.UTF_8)));
         Namespace oldNs = Namespace.get(uris.get(METS));
         Namespace newNs = Namespace.get("METS", uris.get(METS));
         Visitor visitor = new NamespaceChangingVisitor(oldNs, newNs);
@@ -62,7 +62,7 @@ public class ArclibXmlGeneratorDelegate extends ArclibDelegate {
         //fill size and folder structure
         Path sipZipWorkspacePath = getSipZipPath(execution);
         Path sipFolderPath = getSipFolderWorkspacePath(execution);
-        FolderStructure folderStructure = filePathsToFolderStructure(ArclibUtils.listFilePaths(sipFolderPath), sipFolderPath.getFileName().toString());
+        FolderStructure folderStructure = filePathsToFolderStructure(sipFileIndexService.get(sipFolderPath).listFilePaths(), sipFolderPath.getFileName().toString());
         String sipId = getStringVariable(execution, BpmConstants.ProcessVariables.sipId);
         Sip sip = sipStore.find(sipId);
         sip.setSizeInBytes(Files.size(sipZipWorkspacePath));
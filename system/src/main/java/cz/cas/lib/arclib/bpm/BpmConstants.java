@@ -46,6 +46,9 @@ public class BpmConstants {
 
     public static class FormatIdentification {
         public static final String preferredFormatIdentificationEventId = "preferredFormatIdentificationEventId";
+        /**
+         * used only by ingest workflows started before the formats were stored as {@link cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflowArtifact}
+         */
         public static final String mapOfEventIdsToMapsOfFilesToFormats = "mapOfEventIdsToMapsOfFilesToFormats";
     }
 
@@ -71,8 +74,14 @@ public class BpmConstants {
          * filled as:
          * Map<eventId, Map<pathToFile, Triple<sizeInBytes, metsChecksumType, checksum>>>
          * }</pre>
+         * used only by ingest workflows started before the fixity data were stored as {@link cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflowArtifact}
          */
         public static final String mapOfEventIdsToSipContentFixityData = "mapOfEventIdsToSipContentFixityData";
+        /**
+         * variable of type {@link cz.cas.lib.arclib.dto.SipIntakeDigestsDto} with digests computed when the SIP was copied to workspace,
+         * used only by ingest workflows started before the digests were stored as {@link cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflowArtifact}
+         */
+        public static final String sipIntakeDigests = "sipIntakeDigests";
     }
 
     public static class ArchivalStorage {
@@ -32,7 +32,6 @@ import java.util.stream.Collectors;
 
 import static cz.cas.lib.arclib.bpm.ArclibXmlExtractorDelegate.SIP_PROFILE_CONFIG_ENTRY;
 import static cz.cas.lib.arclib.bpm.BpmConstants.FixityCheck;
-import static cz.cas.lib.core.util.Utils.listFilesMatchingRegex;
 
 @Slf4j
 @Service
@@ -99,7 +98,7 @@ public class FixityCheckerDelegate extends ArclibDelegate {
                         }
                     }
                     String sipMetadataPathRegex = sipProfile.getSipMetadataPathRegex();
-                    List<File> matchingFiles = listFilesMatchingRegex(new File(sipFolderWorkspacePath.toAbsolutePath().toString()), sipMetadataPathRegex, true);
+                    List<File> matchingFiles = sipFileIndexService.get(sipFolderWorkspacePath).listFilesMatchingRegex(sipMetadataPathRegex, true);
 
                     if (matchingFiles.isEmpty())
                         throw new GeneralException(String.format("File with metadata for ingest workflow with external id %s does not exist at path given by regex: %s", ingestWorkflowExternalId, sipMetadataPathRegex));
@@ -4,9 +4,9 @@ import cz.cas.lib.arclib.domain.HashType;
 import cz.cas.lib.arclib.domain.IngestToolFunction;
 import cz.cas.lib.arclib.domain.ingestWorkflow.IngestEvent;
 import cz.cas.lib.arclib.domainbase.exception.GeneralException;
+import cz.cas.lib.arclib.dto.SipIntakeDigestsDto;
 import cz.cas.lib.arclib.service.fixity.FixityCounterFacade;
 import cz.cas.lib.arclib.service.fixity.MetsChecksumType;
-import cz.cas.lib.arclib.utils.ArclibUtils;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.tuple.Triple;
@@ -16,8 +16,7 @@ import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 import static cz.cas.lib.arclib.bpm.BpmConstants.FixityGeneration;
 import static cz.cas.lib.core.util.Utils.bytesToHexString;
@@ -31,17 +30,30 @@ public class FixityGeneratorDelegate extends ArclibDelegate {
     private String toolName = "ARCLib_" + IngestToolFunction.message_digest_calculation;
 
     /**
-     * Computes 3 types of fixity for whole SIP (CRC32,SHA512,MD5) and also fetches file sizes and computes SHA512 checksum of all SIP files
+     * Computes 3 types of fixity for whole SIP (CRC32,SHA512,MD5) in a single read of the SIP ZIP and also fetches file sizes and computes SHA512 checksum of all SIP files.
+     * Digests computed when the SIP was copied to workspace are reused for files which were not modified since then.
+     * Sizes and checksums of SIP files are stored as {@link cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflowArtifact}.
      */
     @Override
     public void executeArclibDelegate(DelegateExecution execution) {
         Path sipZipPath = getSipZipPath(execution);
         try {
-            String md5 = bytesToHexString(fixityCounterFacade.computeDigest(HashType.MD5, sipZipPath));
-            String sha512 = bytesToHexString(fixityCounterFacade.computeDigest(HashType.Sha512, sipZipPath));
-            String crc32 = bytesToHexString(fixityCounterFacade.computeDigest(HashType.Crc32, sipZipPath));
+            String iwExternalId = getIngestWorkflowExternalId(execution);
+            SipIntakeDigestsDto intakeDigests = ingestWorkflowArtifactService.findSipIntakeDigests(iwExternalId);
+            if (intakeDigests == null)
+                intakeDigests = (SipIntakeDigestsDto) execution.getVariable(FixityGeneration.sipIntakeDigests);
+            SipIntakeDigestsDto.FileDigests intakeSipZipDigests = intakeDigests == null ? null : intakeDigests.getSipZip();
+            String md5 = intakeSipZipDigests == null ? null : intakeSipZipDigests.getDigestIfUnchanged(sipZipPath, HashType.MD5);
+            String sha512 = intakeSipZipDigests == null ? null : intakeSipZipDigests.getDigestIfUnchanged(sipZipPath, HashType.Sha512);
+            String crc32 = intakeSipZipDigests == null ? null : intakeSipZipDigests.getDigestIfUnchanged(sipZipPath, HashType.Crc32);
+            if (md5 == null || sha512 == null || crc32 == null) {
+                Map<HashType, byte[]> sipDigests = fixityCounterFacade.computeDigests(EnumSet.of(HashType.MD5, HashType.Sha512, HashType.Crc32), sipZipPath);
+                md5 = bytesToHexString(sipDigests.get(HashType.MD5));
+                sha512 = bytesToHexString(sipDigests.get(HashType.Sha512));
+                crc32 = bytesToHexString(sipDigests.get(HashType.Crc32));
+            }
 
-            IngestEvent fixityGenerationEvent = new IngestEvent(ingestWorkflowService.findByExternalId(getIngestWorkflowExternalId(execution)),
+            IngestEvent fixityGenerationEvent = new IngestEvent(ingestWorkflowService.findByExternalId(iwExternalId),
                     toolService.getByNameAndVersion(getToolName(), getToolVersion()), true, null);
             ingestEventStore.save(fixityGenerationEvent);
 
@@ -60,16 +72,28 @@ public class FixityGeneratorDelegate extends ArclibDelegate {
             execution.setVariable(FixityGeneration.mapOfEventIdsToSipSha512, mapOfEventIdsToSha512Calculations);
 
             Path sipFolderWsPathStr = getSipFolderWorkspacePath(execution);
-            Map<String, Map<String, Triple<Long, String, String>>> mapOfEventIdsToSipContentFixityData = (Map<String, Map<String, Triple<Long, String, String>>>)
-                    execution.getVariable(FixityGeneration.mapOfEventIdsToSipContentFixityData);
             Map<String, Triple<Long, String, String>> sipContentFixityData = new HashMap<>();
-            for (String filePathStr : ArclibUtils.listFilePaths(sipFolderWsPathStr)) {
+            List<String> filePathStrs = sipFileIndexService.get(sipFolderWsPathStr).listFilePaths();
+            Map<Path, String> fileDigests = new HashMap<>();
+            List<Path> filesToCompute = new ArrayList<>();
+            for (String filePathStr : filePathStrs) {
+                Path wsFilePath = sipFolderWsPathStr.resolve(filePathStr);
+                SipIntakeDigestsDto.FileDigests intakeFileDigests = intakeDigests == null ? null
+                        : intakeDigests.getSipContent().get(sipFolderWsPathStr.relativize(wsFilePath).toString().replace("\\", "/"));
+                String intakeSha512 = intakeFileDigests == null ? null : intakeFileDigests.getDigestIfUnchanged(wsFilePath, HashType.Sha512);
+                if (intakeSha512 != null)
+                    fileDigests.put(wsFilePath, intakeSha512);
+                else
+                    filesToCompute.add(wsFilePath);
+            }
+            fixityCounterFacade.computeDigests(HashType.Sha512, filesToCompute)
+                    .forEach((wsFilePath, digest) -> fileDigests.put(wsFilePath, bytesToHexString(digest)));
+            for (String filePathStr : filePathStrs) {
                 Path wsFilePath = sipFolderWsPathStr.resolve(filePathStr);
-                Triple<Long, String, String> fileFixity = Triple.of(wsFilePath.toFile().length(), MetsChecksumType.SHA512.toString(), bytesToHexString(fixityCounterFacade.computeDigest(HashType.Sha512, wsFilePath)));
+                Triple<Long, String, String> fileFixity = Triple.of(wsFilePath.toFile().length(), MetsChecksumType.SHA512.toString(), fileDigests.get(wsFilePath));
                 sipContentFixityData.put(filePathStr, fileFixity);
             }
-            mapOfEventIdsToSipContentFixityData.put(fixityGenerationEvent.getId(), sipContentFixityData);
-            execution.setVariable(FixityGeneration.mapOfEventIdsToSipContentFixityData, mapOfEventIdsToSipContentFixityData);
+            ingestWorkflowArtifactService.saveFileFixity(iwExternalId, fixityGenerationEvent.getId(), sipContentFixityData);
 
             if (mapOfEventIdsToMd5Calculations.size() == 1) {
                 execution.setVariable(FixityGeneration.preferredFixityGenerationEventId, fixityGenerationEvent.getId());
@@ -4,7 +4,6 @@ import com.fasterxml.jackson.databind.JsonNode;
 import cz.cas.lib.arclib.domain.IngestToolFunction;
 import cz.cas.lib.arclib.domain.ingestWorkflow.IngestEvent;
 import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflow;
-import cz.cas.lib.arclib.domain.preservationPlanning.FormatOccurrence;
 import cz.cas.lib.arclib.domain.preservationPlanning.Tool;
 import cz.cas.lib.arclib.domain.profiles.ProducerProfile;
 import cz.cas.lib.arclib.exception.bpm.ConfigParserException;
@@ -13,6 +12,7 @@ import cz.cas.lib.arclib.formatlibrary.domain.FormatDefinition;
 import cz.cas.lib.arclib.formatlibrary.service.FormatDefinitionService;
 import cz.cas.lib.arclib.service.ExternalProcessRunner;
 import cz.cas.lib.arclib.service.ProducerProfileService;
+import cz.cas.lib.arclib.service.ToolVersionCache;
 import cz.cas.lib.arclib.service.formatIdentification.FormatIdentificationTool;
 import cz.cas.lib.arclib.service.formatIdentification.FormatIdentificationToolType;
 import cz.cas.lib.arclib.service.formatIdentification.droid.DroidFormatIdentificationTool;
@@ -22,9 +22,14 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.tuple.Pair;
 import org.camunda.bpm.engine.delegate.DelegateExecution;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -45,6 +50,9 @@ public class FormatIdentificationDelegate extends ArclibDelegate {
     private ProducerProfileService producerProfileService;
     private FormatDefinitionService formatDefinitionService;
     private ExternalProcessRunner externalProcessRunner;
+    private boolean droidNoProfileMode;
+    private Path droidContainerSignatures;
+    private ToolVersionCache toolVersionCache;
 
     /**
      * Performs the format analysis of files in SIP.
@@ -58,13 +66,15 @@ public class FormatIdentificationDelegate extends ArclibDelegate {
         IngestWorkflow iw = ingestWorkflowService.findByExternalId(getIngestWorkflowExternalId(execution));
         JsonNode configRoot = getConfigRoot(execution);
 
-        //map that captures format identification events and the respective format identification results
+        //map that captures format identification events and the respective format identification results,
+        //filled only by ingest workflows started before the results were stored as artifacts
         HashMap<String, TreeMap<String, Pair<String, String>>> mapOfEventIdsToMapsOfFilesToFormats =
                 (HashMap<String, TreeMap<String, Pair<String, String>>>)
                         execution.getVariable(BpmConstants.FormatIdentification.mapOfEventIdsToMapsOfFilesToFormats);
 
         //counter specifies the position of the format identification among other format identifications in the given BPM workflow
-        int formatIdentificationToolCounter = mapOfEventIdsToMapsOfFilesToFormats.size();
+        int formatIdentificationToolCounter = ingestWorkflowArtifactService.countFileFormats(iw.getExternalId())
+                + (mapOfEventIdsToMapsOfFilesToFormats == null ? 0 : mapOfEventIdsToMapsOfFilesToFormats.size());
 
         FormatIdentificationTool formatIdentificationTool = initialize(configRoot, iw, formatIdentificationToolCounter);
 
@@ -73,12 +83,12 @@ public class FormatIdentificationDelegate extends ArclibDelegate {
         TreeMap<String, Pair<String, String>> resultingFormats = formatIdentificationTool
                 .resolveAmbiguousIdentifications(identifiedFormats, configRoot, iw.getExternalId());
 
-        updateFormatOccurrences(resultingFormats, getProducerProfileExternalId(execution));
-
         IngestEvent event = ingestEventStore.save(new IngestEvent(new IngestWorkflow(iw.getId()), formatIdentificationTool.getToolEntity(), true, null));
-        mapOfEventIdsToMapsOfFilesToFormats.put(event.getId(), resultingFormats);
+        ingestWorkflowArtifactService.saveFileFormats(iw.getExternalId(), event.getId(), resultingFormats);
         if (formatIdentificationToolCounter == 0)
             execution.setVariable(BpmConstants.FormatIdentification.preferredFormatIdentificationEventId, event.getId());
+
+        updateFormatOccurrences(resultingFormats, getProducerProfileExternalId(execution));
     }
 
     /**
@@ -97,7 +107,7 @@ public class FormatIdentificationDelegate extends ArclibDelegate {
         switch (formatIdentificationToolType) {
             case DROID:
                 log.debug("Format identification tool initialized with DROID.");
-                tool = new DroidFormatIdentificationTool(externalProcessRunner);
+                tool = new DroidFormatIdentificationTool(externalProcessRunner, droidNoProfileMode, droidContainerSignatures, toolVersionCache);
                 break;
             default:
                 throw new ConfigParserException(FORMAT_IDENTIFICATON_TOOL_EXPR + "/" + formatIdentificationToolCounter + IDENTIFIER_TYPE_EXPR, "not supported", FormatIdentificationToolType.class);
@@ -107,21 +117,33 @@ public class FormatIdentificationDelegate extends ArclibDelegate {
         return tool;
     }
 
+    /**
+     * Adds occurrences of the identified formats to the counters of the producer profile. Counters are incremented
+     * right before the transaction commits, so that their rows, which are shared by all ingests of the producer
+     * profile, are locked only for the time of the commit, not for the rest of the delegate.
+     */
     private void updateFormatOccurrences(Map<String, Pair<String, String>> analyzedFormats, String producerProfileExId) {
-        Map<String, Integer> puidOccurrenceMap = analyzedFormats
+        Map<String, Long> puidOccurrenceMap = analyzedFormats
                 .values()
                 .stream()
-                .collect(Collectors.toMap(Pair::getLeft, pair -> 1, (fst, snd) -> fst + 1));
-        for (String puid : puidOccurrenceMap.keySet()) {
-            FormatDefinition formatDefinition = formatDefinitionService.findPreferredDefinitionsByPuid(puid);
-            ProducerProfile producerProfile = producerProfileService.findByExternalId(producerProfileExId);
-            FormatOccurrence formatOccurrence = formatOccurrenceStore.findByFormatDefinitionAndProducerProfile(
-                    formatDefinition.getId(), producerProfile.getId());
-            if (formatOccurrence == null)
-                formatOccurrence = new FormatOccurrence(formatDefinition, 0, producerProfile);
-            formatOccurrence.setOccurrences(formatOccurrence.getOccurrences() + puidOccurrenceMap.get(puid));
-            formatOccurrenceStore.save(formatOccurrence);
+                .collect(Collectors.groupingBy(Pair::getLeft, Collectors.counting()));
+        Map<String, Long> formatDefinitionOccurrenceMap = new HashMap<>();
+        for (Map.Entry<String, Long> puidOccurrences : puidOccurrenceMap.entrySet()) {
+            FormatDefinition formatDefinition = formatDefinitionService.findPreferredDefinitionsByPuid(puidOccurrences.getKey());
+            formatDefinitionOccurrenceMap.merge(formatDefinition.getId(), puidOccurrences.getValue(), Long::sum);
         }
+        ProducerProfile producerProfile = producerProfileService.findByExternalId(producerProfileExId);
+        Runnable update = () -> formatOccurrenceStore.addOccurrences(producerProfile.getId(), formatDefinitionOccurrenceMap);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                update.run();
+            }
+        });
     }
 
     @Autowired
@@ -143,4 +165,19 @@ public class FormatIdentificationDelegate extends ArclibDelegate {
     public void setExternalProcessRunner(ExternalProcessRunner externalProcessRunner) {
         this.externalProcessRunner = externalProcessRunner;
     }
+
+    @Autowired
+    public void setToolVersionCache(ToolVersionCache toolVersionCache) {
+        this.toolVersionCache = toolVersionCache;
+    }
+
+    @Autowired
+    public void setDroidNoProfileMode(@Value("${arclib.droid.noProfileMode:true}") boolean droidNoProfileMode) {
+        this.droidNoProfileMode = droidNoProfileMode;
+    }
+
+    @Autowired
+    public void setDroidContainerSignatures(@Value("${arclib.droid.containerSignatures:${user.home}/.droid6/container_sigs}") String droidContainerSignatures) {
+        this.droidContainerSignatures = Paths.get(droidContainerSignatures);
+    }
 }
@@ -21,23 +21,25 @@ import org.apache.commons.io.FileUtils;
 import org.camunda.bpm.engine.delegate.DelegateExecution;
 import org.dom4j.DocumentException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.FileSystemUtils;
 import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.Deflater;
 import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 import static cz.cas.lib.core.util.Utils.bytesToHexString;
 
@@ -54,6 +56,7 @@ public class SipMergerDelegate extends ArclibDelegate {
     private ArchivalStorageService archivalStorageService;
     private FixityCounterFacade fixityCounterFacade;
     private ArchivalStorageResponseExtractor archivalStorageResponseExtractor;
+    private int zipCompressionLevel = Deflater.DEFAULT_COMPRESSION;
 
     @Override
     public void executeArclibDelegate(DelegateExecution execution) throws TransformerException, IOException, ParserConfigurationException, SAXException, DocumentException, ArchivalStorageException, ConfigParserException {
@@ -158,8 +161,8 @@ public class SipMergerDelegate extends ArclibDelegate {
 
             Path sipZipInWorkspace = getSipZipPath(execution);
             Path mergedZipInWorkspace = previousVersionAipUnpackedInWorkspace.resolve(sipZipInWorkspace.getFileName());
-            try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(mergedZipInWorkspace.toFile()))) {
-                ZipUtils.zipFile(previousVersionAipDataDir.toFile(), previousVersionAipDataDir.getFileName().toString(), zos);
+            try (FileChannel zipChannel = FileChannel.open(mergedZipInWorkspace, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ZipUtils.zipDirectory(previousVersionAipDataDir, zipChannel, zipCompressionLevel, ZipUtils.COMPRESSED_MEDIA_EXTENSIONS);
             }
 
             for (Hash h : sip.getHashes()) {
@@ -169,6 +172,7 @@ public class SipMergerDelegate extends ArclibDelegate {
 
             FileUtils.deleteDirectory(sipUnpackedInWorkspace.toFile());
             Files.move(previousVersionAipDataDir, sipUnpackedInWorkspace);
+            sipFileIndexService.invalidate(sipUnpackedInWorkspace);
             Files.move(mergedZipInWorkspace, sipZipInWorkspace, StandardCopyOption.REPLACE_EXISTING);
             FileUtils.deleteDirectory(previousVersionAipUnpackedInWorkspace.toFile());
         } else {
@@ -223,4 +227,15 @@ public class SipMergerDelegate extends ArclibDelegate {
     public void setArchivalStorageResponseExtractor(ArchivalStorageResponseExtractor archivalStorageResponseExtractor) {
         this.archivalStorageResponseExtractor = archivalStorageResponseExtractor;
     }
+
+    /**
+     * @param zipCompressionLevel compression level of the merged SIP ZIP, from 0 (no compression) to 9, -1 is the default
+     *                            level of {@link Deflater}
+     */
+    @Autowired
+    public void setZipCompressionLevel(@Value("${arclib.sipMerger.zipCompressionLevel:-1}") int zipCompressionLevel) {
+        if (zipCompressionLevel != Deflater.DEFAULT_COMPRESSION && (zipCompressionLevel < Deflater.NO_COMPRESSION || zipCompressionLevel > Deflater.BEST_COMPRESSION))
+            throw new IllegalArgumentException("compression level of the merged SIP ZIP must be -1 or from 0 to 9, got: " + zipCompressionLevel);
+        this.zipCompressionLevel = zipCompressionLevel;
+    }
 }
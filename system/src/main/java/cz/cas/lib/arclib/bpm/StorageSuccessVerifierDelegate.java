@@ -24,7 +24,6 @@ import cz.cas.lib.arclib.store.UserStore;
 import cz.cas.lib.arclib.utils.ArclibUtils;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.camunda.bpm.engine.delegate.DelegateExecution;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -33,7 +32,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.FileSystemUtils;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Files;
 import java.time.Instant;
 import java.util.HashMap;
@@ -168,7 +166,7 @@ public class StorageSuccessVerifierDelegate extends ArclibDelegate {
             sipStore.save(sip);
             if (versioningLevel == SIP_PACKAGE_VERSIONING) {
                 for (IngestWorkflow iwOfPreviousSip : ingestWorkflowService.findBySipId(previousVersionSip.getId()).stream().filter(iw -> iw.getProcessingState() == IngestWorkflowState.PERSISTED).collect(Collectors.toList())) {
-                    relatedIndexUpdates.put(iwOfPreviousSip, new SetLatestFlagsDto(iwOfPreviousSip.getExternalId(), false, false, null));
+                    relatedIndexUpdates.put(iwOfPreviousSip, new SetLatestFlagsDto(iwOfPreviousSip.getExternalId(), false, false));
                 }
                 previousVersionSip.setLatestVersion(false);
                 sipStore.save(previousVersionSip);
@@ -179,11 +177,12 @@ public class StorageSuccessVerifierDelegate extends ArclibDelegate {
             relatedWorkflow.setLatestVersion(false);
             ingestWorkflowService.save(relatedWorkflow);
             if (!relatedIndexUpdates.containsKey(relatedWorkflow)) {
-                relatedIndexUpdates.put(relatedWorkflow, new SetLatestFlagsDto(relatedWorkflow.getExternalId(), false, versioningLevel == ARCLIB_XML_VERSIONING && sip.isLatestVersion(), null));
+                relatedIndexUpdates.put(relatedWorkflow, new SetLatestFlagsDto(relatedWorkflow.getExternalId(), false, versioningLevel == ARCLIB_XML_VERSIONING && sip.isLatestVersion()));
             }
         }
 
         ingestWorkflowService.save(ingestWorkflow);
+        ingestWorkflowArtifactService.deleteProcessingArtifacts(ingestWorkflowExternalId, true);
         log.info("Processing of ingest workflow with external id {} has finished. The ingest workflow state changed to {}.", ingestWorkflowExternalId, IngestWorkflowState.PERSISTED);
 
         AuthorialPackage authorialPackageInDb = sip.getAuthorialPackage();
@@ -209,19 +208,15 @@ public class StorageSuccessVerifierDelegate extends ArclibDelegate {
 
         aipService.deactivateLock(authorialPackageInDb.getId(), false);
 
-        markChangesInIndex(ingestWorkflowExternalId, newIndexRecordDto, relatedIndexUpdates, debuggingModeActive);
+        markChangesInIndex(ingestWorkflowExternalId, newIndexRecordDto, relatedIndexUpdates);
         finishAtWorkspace(ingestWorkflow);
     }
 
     private void markChangesInIndex(String ingestWorkflowExternalId, CreateIndexRecordDto newIndexRecord,
-                                    Map<IngestWorkflow, SetLatestFlagsDto> setLatestFlagsDtos,
-                                    boolean debuggingModeActive) throws ArchivalStorageException, IOException {
+                                    Map<IngestWorkflow, SetLatestFlagsDto> setLatestFlagsDtos) {
         indexArclibXmlStore.createIndex(newIndexRecord);
-        for (Map.Entry<IngestWorkflow, SetLatestFlagsDto> e : setLatestFlagsDtos.entrySet()) {
-            e.getValue().setAipXml(IOUtils.toByteArray(getXmlFromStorage(debuggingModeActive, e.getKey())));
-            indexArclibXmlStore.setLatestFlags(e.getValue());
-            //free RAM
-            e.getValue().setAipXml(null);
+        for (SetLatestFlagsDto setLatestFlagsDto : setLatestFlagsDtos.values()) {
+            indexArclibXmlStore.setLatestFlags(setLatestFlagsDto);
         }
         log.debug("ArclibXml of IngestWorkflow with external id {} has been indexed.", ingestWorkflowExternalId);
     }
@@ -250,12 +245,6 @@ public class StorageSuccessVerifierDelegate extends ArclibDelegate {
         }
     }
 
-    private InputStream getXmlFromStorage(boolean debuggingModeActive, IngestWorkflow iw) throws IOException, ArchivalStorageException {
-        return debuggingModeActive
-                ? archivalStorageServiceDebug.exportSingleXml(iw.getSip().getId(), iw.getXmlVersionNumber())
-                : archivalStorageService.exportSingleXml(iw.getSip().getId(), iw.getXmlVersionNumber());
-    }
-
     @Autowired
     public void setArchivalStorageService(ArchivalStorageService archivalStorageService) {
         this.archivalStorageService = archivalStorageService;
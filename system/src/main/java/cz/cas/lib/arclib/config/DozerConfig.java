@@ -74,8 +74,7 @@ public class DozerConfig {
             mapping(AipQueryDetailDto.class, AipQuery.class)
                     .fields("created", "created", FieldsMappingOptions.copyByReference())
                     .fields("updated", "updated", FieldsMappingOptions.copyByReference())
-                    .fields("query", "query", FieldsMappingOptions.copyByReference())
-                    .fields("result", "result", FieldsMappingOptions.copyByReference());
+                    .fields("query", "query", FieldsMappingOptions.copyByReference());
             mapping(AipQueryDetailExportRoutineDto.class, ExportRoutine.class)
                     .fields("created", "created", FieldsMappingOptions.copyByReference())
                     .fields("updated", "updated", FieldsMappingOptions.copyByReference())
@@ -0,0 +1,26 @@
+package cz.cas.lib.arclib.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class FixityConfig {
+
+    /**
+     * Pool used to compute checksums of SIP files in parallel. Its size limits the number of files read at once.
+     *
+     * @param threads number of threads, if not positive then number of available processors is used
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService fixityExecutor(@Value("${arclib.fixity.threads:0}") int threads) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("fixity-");
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(poolSize, threadFactory);
+    }
+}
@@ -0,0 +1,26 @@
+package cz.cas.lib.arclib.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class ZipConfig {
+
+    /**
+     * Pool used to extract files of SIP ZIPs to workspace, shared by all ingest workflows. Its size limits the number of
+     * files extracted at once.
+     *
+     * @param threads number of threads
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService unzipExecutor(@Value("${arclib.unzip.threads:4}") int threads) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("unzip-");
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(threads, threadFactory);
+    }
+}
@@ -1,9 +1,7 @@
 package cz.cas.lib.arclib.domain;
 
 import cz.cas.lib.arclib.domainbase.domain.NamedObject;
-import cz.cas.lib.arclib.index.solr.arclibxml.IndexedArclibXmlDocument;
 import cz.cas.lib.core.index.dto.Params;
-import cz.cas.lib.core.index.dto.Result;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -11,7 +9,7 @@ import lombok.Setter;
 import jakarta.persistence.*;
 
 /**
- * Vyhľadávací dotaz nad ARCLib XML spolu s výsledkami dotazu.
+ * Vyhľadávací dotaz nad ARCLib XML. ID nájdených výsledkov sú uložené v {@link AipQueryResult}.
  */
 @Getter
 @Setter
@@ -23,10 +21,10 @@ public class AipQuery extends NamedObject {
         setId(id);
     }
 
-    public AipQuery(User user, Result<IndexedArclibXmlDocument> result, Params query, String queryName) {
+    public AipQuery(User user, long resultCount, Params query, String queryName) {
         this.name = queryName;
         this.user = user;
-        this.result = result;
+        this.resultCount = resultCount;
         this.query = query;
     }
 
@@ -37,11 +35,9 @@ public class AipQuery extends NamedObject {
     private User user;
 
     /**
-     * Zoznam nájdených výsledkov
+     * Počet nájdených výsledkov
      */
-    @Column(length = 100 * 1024 * 1024)
-    @Convert(converter = AipQueryResultDbConverter.class)
-    private Result<IndexedArclibXmlDocument> result;
+    private Long resultCount;
 
     /**
      * Vyhľadávací dotaz
@@ -0,0 +1,34 @@
+package cz.cas.lib.arclib.domain;
+
+import cz.cas.lib.arclib.domainbase.domain.DomainObject;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import jakarta.persistence.*;
+import java.util.List;
+
+/**
+ * Výsledky uloženého vyhľadávacieho dotazu {@link AipQuery} ako zoradený zoznam ID nájdených AIP.
+ * <p>
+ * ID je zhodné s ID dotazu, výsledky sa tak načítajú iba ak sú potrebné (export, stiahnutie, stránkovanie).
+ * </p>
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "arclib_aip_query_result")
+@NoArgsConstructor
+public class AipQueryResult extends DomainObject {
+    public AipQueryResult(String aipQueryId, List<String> ids) {
+        setId(aipQueryId);
+        this.ids = ids;
+    }
+
+    /**
+     * Zoradený zoznam ID nájdených AIP, v DB uložený komprimovaný
+     */
+    @Column(length = 100 * 1024 * 1024)
+    @Convert(converter = AipQueryResultIdsDbConverter.class)
+    private List<String> ids;
+}
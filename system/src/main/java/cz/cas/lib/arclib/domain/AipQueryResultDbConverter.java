@@ -11,6 +11,9 @@ import jakarta.persistence.AttributeConverter;
 import jakarta.persistence.Converter;
 import java.io.IOException;
 
+/**
+ * Converter of the result of {@link AipQuery} saved in the legacy format, used only to convert it to {@link AipQueryResult}.
+ */
 @Converter
 public class AipQueryResultDbConverter implements AttributeConverter<Result<IndexedArclibXmlDocument>, String> {
 
@@ -0,0 +1,46 @@
+package cz.cas.lib.arclib.domain;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores the list of ids sorted, separated by new line and gzipped.
+ */
+@Converter
+public class AipQueryResultIdsDbConverter implements AttributeConverter<List<String>, byte[]> {
+
+    @Override
+    public byte[] convertToDatabaseColumn(List<String> value) {
+        if (value == null)
+            return null;
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bos)) {
+            gzip.write(String.join("\n", value.stream().sorted().toList()).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not compress list of ids", e);
+        }
+        return bos.toByteArray();
+    }
+
+    @Override
+    public List<String> convertToEntityAttribute(byte[] value) {
+        if (value == null)
+            return null;
+        String joined;
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(value))) {
+            joined = new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not decompress list of ids", e);
+        }
+        return joined.isEmpty() ? new ArrayList<>() : new ArrayList<>(List.of(joined.split("\n")));
+    }
+}
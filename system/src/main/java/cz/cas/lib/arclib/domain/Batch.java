@@ -1,6 +1,7 @@
 package cz.cas.lib.arclib.domain;
 
 import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflow;
+import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflowState;
 import cz.cas.lib.arclib.domain.ingestWorkflow.WorkflowDefinition;
 import cz.cas.lib.arclib.domain.profiles.ProducerProfile;
 import cz.cas.lib.arclib.domain.profiles.SipProfile;
@@ -11,6 +12,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.Fetch;
 import org.hibernate.annotations.FetchMode;
 
@@ -107,4 +109,52 @@ public class Batch extends DatedObject {
     @JoinColumn(name = "routine_id")
     @ManyToOne
     private IngestRoutine ingestRoutine;
+
+    /**
+     * Počty ingest workflow dávky v jednotlivých stavoch
+     * <p>
+     * Counters are maintained by {@link cz.cas.lib.arclib.store.BatchStore#addIngestWorkflowCounts} whenever the state
+     * of the ingest workflow changes, they are never written when the batch is saved.
+     * </p>
+     */
+    @ColumnDefault("0")
+    @Column(insertable = false, updatable = false)
+    private long newIngestWorkflowCount;
+
+    @ColumnDefault("0")
+    @Column(insertable = false, updatable = false)
+    private long processingIngestWorkflowCount;
+
+    @ColumnDefault("0")
+    @Column(insertable = false, updatable = false)
+    private long processedIngestWorkflowCount;
+
+    @ColumnDefault("0")
+    @Column(insertable = false, updatable = false)
+    private long failedIngestWorkflowCount;
+
+    @ColumnDefault("0")
+    @Column(insertable = false, updatable = false)
+    private long persistedIngestWorkflowCount;
+
+    /**
+     * @return number of ingest workflows of the batch in the given state
+     */
+    public long getIngestWorkflowCount(IngestWorkflowState state) {
+        return switch (state) {
+            case NEW -> newIngestWorkflowCount;
+            case PROCESSING -> processingIngestWorkflowCount;
+            case PROCESSED -> processedIngestWorkflowCount;
+            case FAILED -> failedIngestWorkflowCount;
+            case PERSISTED -> persistedIngestWorkflowCount;
+        };
+    }
+
+    /**
+     * @return number of all ingest workflows of the batch
+     */
+    public long getIngestWorkflowCount() {
+        return newIngestWorkflowCount + processingIngestWorkflowCount + processedIngestWorkflowCount
+                + failedIngestWorkflowCount + persistedIngestWorkflowCount;
+    }
 }
@@ -0,0 +1,48 @@
+package cz.cas.lib.arclib.domain.ingestWorkflow;
+
+import cz.cas.lib.arclib.domainbase.domain.DatedObject;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Per-file data produced during the processing of the ingest workflow (formats, checksums..) which are too big to be
+ * passed as BPM process variables.
+ * <p>
+ * Rows are stored gzipped in the tab separated format, see {@link cz.cas.lib.arclib.service.IngestWorkflowArtifactService}
+ * which provides the typed access to the artifacts.
+ * </p>
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "arclib_ingest_workflow_artifact")
+public class IngestWorkflowArtifact extends DatedObject {
+    /**
+     * external id of the related ingest workflow
+     */
+    private String ingestWorkflowExternalId;
+
+    @Enumerated(EnumType.STRING)
+    private IngestWorkflowArtifactType type;
+
+    /**
+     * id of the {@link IngestEvent} which has produced the data, null if the data were not produced by any event
+     */
+    private String eventId;
+
+    /**
+     * gzipped rows of the artifact
+     */
+    @Column(length = 100 * 1024 * 1024)
+    private byte[] data;
+
+    public IngestWorkflowArtifact(String ingestWorkflowExternalId, IngestWorkflowArtifactType type, String eventId, byte[] data) {
+        this.ingestWorkflowExternalId = ingestWorkflowExternalId;
+        this.type = type;
+        this.eventId = eventId;
+        this.data = data;
+    }
+}
@@ -0,0 +1,19 @@
+package cz.cas.lib.arclib.domain.ingestWorkflow;
+
+/**
+ * Type of the per-file data produced during the processing of the ingest workflow, see {@link IngestWorkflowArtifact}
+ */
+public enum IngestWorkflowArtifactType {
+    /**
+     * digests of the SIP files computed when the SIP was copied to workspace, single artifact per ingest workflow
+     */
+    SIP_INTAKE_DIGESTS,
+    /**
+     * formats of the SIP files identified by the format identification event
+     */
+    FILE_FORMATS,
+    /**
+     * sizes and checksums of the SIP files computed by the fixity generation event
+     */
+    FILE_FIXITY
+}
@@ -44,5 +44,6 @@ public class FormatOccurrence extends DatedObject {
      * Dodavatelský profil
      */
     @ManyToOne
+    @JoinColumn(name = "producer_profile_id")
     private ProducerProfile producerProfile;
 }
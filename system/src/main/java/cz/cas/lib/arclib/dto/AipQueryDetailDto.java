@@ -20,6 +20,10 @@ public class AipQueryDetailDto {
     private Instant created;
     private Instant updated;
     private Params query;
+    private Long resultCount;
+    /**
+     * first page of the result, other pages are available at <i>/api/saved_query/{id}/result</i>
+     */
     private Result<IndexedArclibXmlDocument> result;
     private AipQueryDetailExportRoutineDto exportRoutine;
 }
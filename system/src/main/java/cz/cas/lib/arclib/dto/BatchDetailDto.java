@@ -28,5 +28,10 @@ public class BatchDetailDto {
     private BatchState state;
     private String workflowConfig;
     private String computedWorkflowConfig;
+    private long newIngestWorkflowCount;
+    private long processingIngestWorkflowCount;
+    private long processedIngestWorkflowCount;
+    private long failedIngestWorkflowCount;
+    private long persistedIngestWorkflowCount;
     private List<BatchDetailIngestWorkflowDto> ingestWorkflows;
 }
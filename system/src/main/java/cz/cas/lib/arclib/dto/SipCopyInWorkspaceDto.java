@@ -14,4 +14,5 @@ import java.util.Map;
 public class SipCopyInWorkspaceDto {
     private String rootFolderName;
     private Map<String, String> exportInfo;
+    private SipIntakeDigestsDto intakeDigests;
 }
@@ -0,0 +1,63 @@
+package cz.cas.lib.arclib.dto;
+
+import cz.cas.lib.arclib.domain.HashType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.File;
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import static cz.cas.lib.core.util.Utils.bytesToHexString;
+
+/**
+ * Digests computed while the SIP was copied to the workspace and extracted there. Passed to the BPM process so that
+ * fixity generation does not have to read the data again.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class SipIntakeDigestsDto implements Serializable {
+    /**
+     * digests of the SIP ZIP in workspace
+     */
+    private FileDigests sipZip;
+    /**
+     * digests of the extracted SIP files, keyed by path relative to the SIP root folder (with '/' as separator)
+     */
+    private Map<String, FileDigests> sipContent = new HashMap<>();
+
+    /**
+     * Digests of a file together with the size and the last modification time the file had when the digests were computed.
+     */
+    @Getter
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class FileDigests implements Serializable {
+        private long size;
+        private long lastModified;
+        private Map<HashType, String> digests;
+
+        public static FileDigests of(Path file, Map<HashType, byte[]> digests) {
+            Map<HashType, String> hexDigests = new EnumMap<>(HashType.class);
+            digests.forEach((hashType, digest) -> hexDigests.put(hashType, bytesToHexString(digest)));
+            File f = file.toFile();
+            return new FileDigests(f.length(), f.lastModified(), hexDigests);
+        }
+
+        /**
+         * @return digest of the file in hex or null if the digest of that type was not computed or the file has changed since
+         */
+        public String getDigestIfUnchanged(Path file, HashType hashType) {
+            File f = file.toFile();
+            if (!f.isFile() || f.length() != size || f.lastModified() != lastModified)
+                return null;
+            return digests.get(hashType);
+        }
+    }
+}
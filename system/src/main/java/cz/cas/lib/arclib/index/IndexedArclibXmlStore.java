@@ -19,16 +19,33 @@ import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 public interface IndexedArclibXmlStore {
 
     /**
-     * Creates index. {@link AipXmlNodeValueType#TIME} are stored as count of milliseconds.
+     * Creates index. {@link AipXmlNodeValueType#TIME} are stored as count of milliseconds. No commit is issued, the
+     * document becomes searchable within <i>solr.writer.commitWithinMs</i>.
      *
      * @throws BadArgument if the value of {@link AipXmlNodeValueType#TIME}, {@link AipXmlNodeValueType#DATE} or {@link AipXmlNodeValueType#DATETIME} field can't be parsed.
      */
     void createIndex(CreateIndexRecordDto createIndexRecordDto);
 
+    /**
+     * Creates index of many documents at once, replacing documents with the same ids. Documents are sent in a single
+     * request and are not committed, they become searchable within the configured commit interval or after
+     * {@link #commitIndex()}.
+     *
+     * @param createIndexRecordDtos records to index
+     * @return records which were not indexed because the index document could not be created from the XML
+     */
+    List<CreateIndexRecordDto> createIndexes(List<CreateIndexRecordDto> createIndexRecordDtos);
+
+    /**
+     * Commits the index so that all written documents are searchable.
+     */
+    void commitIndex();
+
     /**
      * Finds documents.
      *
@@ -47,6 +64,33 @@ public interface IndexedArclibXmlStore {
      */
     Result<IndexedArclibXmlDocument> findAllIgnorePagination(Params params);
 
+    /**
+     * Streams all documents matching the params, pagination is ignored. Documents are retrieved lazily by pages of
+     * <i>solr.maxRows</i> using Solr cursor, so that the whole result is never held in memory.
+     *
+     * @param params params for filtering and sorting
+     * @return stream of documents
+     * @throws BadArgument if query contains field undefined in Solr schema.
+     */
+    Stream<IndexedArclibXmlDocument> streamAll(Params params);
+
+    /**
+     * Same as {@link #streamAll(Params)} but retrieves only ids of the documents.
+     *
+     * @param params params for filtering and sorting
+     * @return stream of ids of documents
+     * @throws BadArgument if query contains field undefined in Solr schema.
+     */
+    Stream<String> streamIds(Params params);
+
+    /**
+     * Finds main documents (without children) with the given ids. Ids which are not found are skipped.
+     *
+     * @param ids ids of the documents
+     * @return found documents in the order of the passed ids
+     */
+    List<IndexedArclibXmlDocument> findByIds(List<String> ids);
+
     /**
      * Finds single ArclibXml index document by the external id, or throws exception if zero or more documents were found
      *
@@ -58,12 +102,13 @@ public interface IndexedArclibXmlStore {
     IndexedArclibXmlDocument findArclibXmlIndexDocument(String externalId);
 
     /**
-     * changes the aip state of the record
+     * changes the aip state of the record, the record is rebuilt from the index without the need of the ARCLib XML
      */
-    void changeAipState(String arclibXmlDocumentId, IndexedAipState newState, byte[] aipXml);
+    void changeAipState(String arclibXmlDocumentId, IndexedAipState newState);
 
     /**
-     * updates the <i>latest</i> and <i>latestData</i> flags of the ARCLib XML record
+     * updates the <i>latest</i> and <i>latestData</i> flags of the ARCLib XML record, the record is rebuilt from the
+     * index without the need of the ARCLib XML
      */
     void setLatestFlags(SetLatestFlagsDto setLatestFlagsDto);
 
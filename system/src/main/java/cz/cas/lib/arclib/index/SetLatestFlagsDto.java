@@ -9,12 +9,10 @@ public class SetLatestFlagsDto {
     private String arclibXmlDocumentId;
     private boolean latest;
     private boolean latestData;
-    private byte[] aipXml;
 
-    public SetLatestFlagsDto(String arclibXmlDocumentId, boolean latest, boolean latestData, byte[] aipXml) {
+    public SetLatestFlagsDto(String arclibXmlDocumentId, boolean latest, boolean latestData) {
         this.arclibXmlDocumentId = arclibXmlDocumentId;
         this.latest = latest;
         this.latestData = latestData;
-        this.aipXml = aipXml;
     }
 }
@@ -3,6 +3,7 @@ package cz.cas.lib.arclib.index.solr;
 import cz.cas.lib.arclib.bpm.BpmConstants;
 import cz.cas.lib.arclib.domain.Producer;
 import cz.cas.lib.arclib.domain.User;
+import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflow;
 import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflowState;
 import cz.cas.lib.arclib.domainbase.exception.GeneralException;
 import cz.cas.lib.arclib.index.CreateIndexRecordDto;
@@ -15,17 +16,32 @@ import cz.cas.lib.arclib.service.archivalStorage.ArchivalStorageService;
 import cz.cas.lib.arclib.service.archivalStorage.ArchivalStorageServiceDebug;
 import cz.cas.lib.arclib.service.archivalStorage.ObjectState;
 import cz.cas.lib.arclib.store.*;
+import cz.cas.lib.core.index.global.GlobalReindexer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 import static cz.cas.lib.core.util.Utils.notNull;
 
@@ -43,22 +59,28 @@ public class ReindexService {
     private SolrArclibXmlStore indexedArclibXmlStore;
     private ArchivalStorageService archivalStorageService;
     private ArchivalStorageServiceDebug archivalStorageServiceDebug;
+    private GlobalReindexer globalReindexer;
+    private String workspace;
+    private int arclibXmlPageSize;
+    private int arclibXmlFetchThreads;
+
+    /**
+     * name of the file in workspace which holds id of the last ingest workflow whose ARCLib XML was reindexed
+     */
+    public static final String ARCLIB_XML_REINDEX_CHECKPOINT = "arclibXmlReindex.checkpoint";
 
     /**
      * formats are omitted as there are too many records
      */
     @Async
     public void dropReindexAll() {
-        batchStore.dropReindex();
-        producerProfileStore.dropReindex();
-        userStore.dropReindex();
-        ingestIssueStore.dropReindex();
-        reportStore.dropReindex();
+        globalReindexer.reindexSubset(true, List.of(BatchStore.class, ProducerProfileStore.class, UserStore.class,
+                IngestIssueStore.class, ReportStore.class));
     }
 
     @Async
     public void dropReindexFormat() {
-        formatStore.dropReindex();
+        globalReindexer.reindexSubset(true, List.of(IndexedFormatStore.class));
     }
 
     public void dropReindexManagedSync() {
@@ -66,49 +88,161 @@ public class ReindexService {
         dropReindexFormat();
     }
 
+    /**
+     * Recovers ARCLib XML index from XMLs stored in Archival Storage.
+     * <p>
+     * Persisted ingest workflows are read in pages ordered by id. XMLs of a page are fetched by
+     * <i>solr.reindex.arclibXml.fetchThreads</i> concurrent requests to Archival Storage while the previous page is
+     * indexed in a single request. The index is committed once at the end.
+     * </p>
+     * <p>
+     * Id of the last indexed workflow is stored to a checkpoint file in the workspace after every page. If the recovery
+     * is interrupted, it may be resumed after the checkpoint. The checkpoint is deleted once the recovery is complete.
+     * </p>
+     *
+     * @param resume true to resume the interrupted recovery after the checkpoint, false to recover the whole index
+     *               (the checkpoint of the interrupted recovery is deleted)
+     */
     @Async
-    public void reindexArclibXml() {
-        log.info("recovering ARCLib XML index from DB, retrieving XMLs from Archival Storage");
+    public void reindexArclibXml(boolean resume) {
+        Path checkpoint = Paths.get(workspace).resolve(ARCLIB_XML_REINDEX_CHECKPOINT);
+        String lastId = null;
+        if (resume) {
+            lastId = readCheckpoint(checkpoint);
+            if (lastId == null)
+                log.info("there is no checkpoint of interrupted recovery of ARCLib XML index, recovering the whole index");
+        } else {
+            try {
+                if (Files.deleteIfExists(checkpoint))
+                    log.info("checkpoint of interrupted recovery of ARCLib XML index ignored, recovering the whole index");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        if (lastId == null)
+            log.info("recovering ARCLib XML index from DB, retrieving XMLs from Archival Storage");
+        else
+            log.info("resuming recovery of ARCLib XML index after ingest workflow {}", lastId);
         AtomicLong successCount = new AtomicLong(0);
-        List<String> failures = new ArrayList<>();
-        ingestWorkflowService.findAll().stream()
-                .filter(iw -> iw.getProcessingState() == IngestWorkflowState.PERSISTED)
-                .forEach(iw -> {
-                    try {
-                        Producer p = iw.getProducerProfile().getProducer();
-                        String xml;
-                        String username;
-                        Object userInCamunda = ingestWorkflowService.getVariable(iw.getExternalId(), BpmConstants.ProcessVariables.responsiblePerson);
-                        notNull(userInCamunda, () -> new IllegalStateException("no responsible person found for IW: " + iw.getExternalId() + " in camunda db"));
-                        User user = userStore.findEvenDeleted((String) userInCamunda);
-                        notNull(user, () -> new IllegalStateException("no user responsible for IW: " + iw.getExternalId() + " found in ARCLib db"));
-                        username = user.getUsername();
-                        IndexedAipState stateAtArchivalStorage;
-                        if (iw.wasIngestedInDebugMode()) {
-                            xml = IOUtils.toString(archivalStorageServiceDebug.exportSingleXml(iw.getSip().getId(), iw.getXmlVersionNumber()), Charset.defaultCharset());
-                            stateAtArchivalStorage = IndexedAipState.ARCHIVED;
-                        } else {
-                            InputStream arcstorageResponse;
-                            try {
-                                arcstorageResponse = archivalStorageService.exportSingleXml(iw.getSip().getId(), iw.getXmlVersionNumber());
-                            } catch (ArchivalStorageException e) {
-                                log.error("could not retrieve XML " + iw.getExternalId() + " of AIP " + iw.getSip().getId());
-                                throw e;
-                            }
-                            xml = IOUtils.toString(arcstorageResponse, Charset.defaultCharset());
-                            ObjectState aipState = archivalStorageService.getAipState(iw.getSip().getId());
-                            stateAtArchivalStorage = objectStateToIndexedAipState(aipState);
-                        }
-                        indexedArclibXmlStore.createIndex(new CreateIndexRecordDto(xml.getBytes(), p.getId(), p.getName(), username, stateAtArchivalStorage, iw.wasIngestedInDebugMode(), iw.isLatestVersion(), iw.getSip().isLatestVersion()));
-                        successCount.incrementAndGet();
-                    } catch (Exception e) {
-                        log.error("error while reindexing " + iw.getId(), e);
-                        failures.add(iw.getId());
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        Map<String, User> users = new HashMap<>();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("arclib-xml-reindex-");
+        threadFactory.setDaemon(true);
+        ExecutorService fetchPool = Executors.newFixedThreadPool(arclibXmlFetchThreads, threadFactory);
+        try {
+            PendingPage pending = null;
+            boolean hasNextPage = true;
+            while (hasNextPage || pending != null) {
+                PendingPage next = null;
+                if (hasNextPage) {
+                    List<IngestWorkflow> page = ingestWorkflowService.findByStateAfter(IngestWorkflowState.PERSISTED, lastId, arclibXmlPageSize);
+                    hasNextPage = page.size() == arclibXmlPageSize;
+                    if (!page.isEmpty()) {
+                        lastId = page.get(page.size() - 1).getId();
+                        next = fetchPage(page, lastId, users, fetchPool);
                     }
-                });
+                }
+                //previous page is indexed while XMLs of the next page are being fetched
+                if (pending != null)
+                    indexPage(pending, checkpoint, successCount, failures);
+                pending = next;
+            }
+            indexedArclibXmlStore.commitIndex();
+            Files.deleteIfExists(checkpoint);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("recovery of ARCLib XML index has been interrupted, it may be resumed from checkpoint " + checkpoint.toAbsolutePath());
+            return;
+        } catch (Exception e) {
+            log.error("recovery of ARCLib XML index has failed, it may be resumed from checkpoint " + checkpoint.toAbsolutePath(), e);
+            return;
+        } finally {
+            fetchPool.shutdownNow();
+        }
         log.info("recovered ARCLib XML index, {} succeeded, {} failures: {}", successCount, failures.size(), failures);
     }
 
+    /**
+     * Resolves responsible persons of the page and submits retrieval of XMLs of the page to the fetch pool.
+     */
+    private PendingPage fetchPage(List<IngestWorkflow> page, String lastId, Map<String, User> users, ExecutorService fetchPool) {
+        Map<String, Object> responsiblePersons = ingestWorkflowService.getVariableOfEach(
+                page.stream().map(IngestWorkflow::getExternalId).collect(Collectors.toList()),
+                BpmConstants.ProcessVariables.responsiblePerson);
+        List<String> missingUserIds = responsiblePersons.values().stream()
+                .map(o -> (String) o)
+                .filter(id -> !users.containsKey(id))
+                .distinct()
+                .collect(Collectors.toList());
+        userStore.findAllInListEvenDeleted(missingUserIds).forEach(u -> users.put(u.getId(), u));
+
+        List<Pair<IngestWorkflow, Future<CreateIndexRecordDto>>> records = new ArrayList<>(page.size());
+        for (IngestWorkflow iw : page) {
+            Object userInCamunda = responsiblePersons.get(iw.getExternalId());
+            User user = userInCamunda == null ? null : users.get((String) userInCamunda);
+            records.add(Pair.of(iw, fetchPool.submit(() -> fetchRecord(iw, userInCamunda, user))));
+        }
+        return new PendingPage(lastId, records);
+    }
+
+    private CreateIndexRecordDto fetchRecord(IngestWorkflow iw, Object userInCamunda, User user) throws IOException, ArchivalStorageException {
+        notNull(userInCamunda, () -> new IllegalStateException("no responsible person found for IW: " + iw.getExternalId() + " in camunda db"));
+        notNull(user, () -> new IllegalStateException("no user responsible for IW: " + iw.getExternalId() + " found in ARCLib db"));
+        Producer p = iw.getProducerProfile().getProducer();
+        String xml;
+        IndexedAipState stateAtArchivalStorage;
+        if (iw.wasIngestedInDebugMode()) {
+            xml = IOUtils.toString(archivalStorageServiceDebug.exportSingleXml(iw.getSip().getId(), iw.getXmlVersionNumber()), Charset.defaultCharset());
+            stateAtArchivalStorage = IndexedAipState.ARCHIVED;
+        } else {
+            InputStream arcstorageResponse;
+            try {
+                arcstorageResponse = archivalStorageService.exportSingleXml(iw.getSip().getId(), iw.getXmlVersionNumber());
+            } catch (ArchivalStorageException e) {
+                log.error("could not retrieve XML " + iw.getExternalId() + " of AIP " + iw.getSip().getId());
+                throw e;
+            }
+            xml = IOUtils.toString(arcstorageResponse, Charset.defaultCharset());
+            ObjectState aipState = archivalStorageService.getAipState(iw.getSip().getId());
+            stateAtArchivalStorage = objectStateToIndexedAipState(aipState);
+        }
+        return new CreateIndexRecordDto(xml.getBytes(), p.getId(), p.getName(), user.getUsername(), stateAtArchivalStorage, iw.wasIngestedInDebugMode(), iw.isLatestVersion(), iw.getSip().isLatestVersion());
+    }
+
+    /**
+     * Waits for XMLs of the page, indexes them in a single request and moves the checkpoint after the page.
+     */
+    private void indexPage(PendingPage page, Path checkpoint, AtomicLong successCount, List<String> failures) throws InterruptedException, IOException {
+        Map<CreateIndexRecordDto, IngestWorkflow> records = new IdentityHashMap<>();
+        for (Pair<IngestWorkflow, Future<CreateIndexRecordDto>> record : page.getRecords()) {
+            IngestWorkflow iw = record.getKey();
+            try {
+                records.put(record.getValue().get(), iw);
+            } catch (ExecutionException e) {
+                log.error("error while reindexing " + iw.getId(), e.getCause());
+                failures.add(iw.getId());
+            }
+        }
+        List<CreateIndexRecordDto> notIndexed = indexedArclibXmlStore.createIndexes(new ArrayList<>(records.keySet()));
+        for (CreateIndexRecordDto record : notIndexed) {
+            failures.add(records.get(record).getId());
+        }
+        successCount.addAndGet(records.size() - notIndexed.size());
+        Files.writeString(checkpoint, page.getLastId());
+        log.debug("recovered ARCLib XML index up to ingest workflow {}, {} succeeded so far", page.getLastId(), successCount);
+    }
+
+    private String readCheckpoint(Path checkpoint) {
+        try {
+            if (!Files.exists(checkpoint))
+                return null;
+            String lastId = Files.readString(checkpoint).trim();
+            return lastId.isEmpty() ? null : lastId;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     private IndexedAipState objectStateToIndexedAipState(ObjectState aipState) {
         IndexedAipState stateAtArchivalStorage;
         switch (aipState) {
@@ -190,4 +324,40 @@ public class ReindexService {
     public void setReportStore(ReportStore reportStore) {
         this.reportStore = reportStore;
     }
+
+    @Autowired
+    public void setGlobalReindexer(GlobalReindexer globalReindexer) {
+        this.globalReindexer = globalReindexer;
+    }
+
+    @Autowired
+    public void setWorkspace(@Value("${arclib.path.workspace}") String workspace) {
+        this.workspace = workspace;
+    }
+
+    /**
+     * @param arclibXmlPageSize number of ingest workflows whose XMLs are fetched and indexed at once
+     */
+    @Autowired
+    public void setArclibXmlPageSize(@Value("${solr.reindex.arclibXml.pageSize:100}") int arclibXmlPageSize) {
+        this.arclibXmlPageSize = arclibXmlPageSize;
+    }
+
+    /**
+     * @param arclibXmlFetchThreads maximal number of concurrent requests to Archival Storage
+     */
+    @Autowired
+    public void setArclibXmlFetchThreads(@Value("${solr.reindex.arclibXml.fetchThreads:8}") int arclibXmlFetchThreads) {
+        this.arclibXmlFetchThreads = arclibXmlFetchThreads;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static final class PendingPage {
+        /**
+         * id of the last ingest workflow of the page
+         */
+        private String lastId;
+        private List<Pair<IngestWorkflow, Future<CreateIndexRecordDto>>> records;
+    }
 }
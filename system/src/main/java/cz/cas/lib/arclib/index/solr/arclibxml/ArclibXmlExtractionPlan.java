@@ -0,0 +1,84 @@
+package cz.cas.lib.arclib.index.solr.arclibxml;
+
+import cz.cas.lib.arclib.index.ArclibXmlField;
+import cz.cas.lib.arclib.index.ArclibXmlIndexTypeConfig;
+import lombok.Getter;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * XPath expressions of {@link SolrArclibXmlStore#getArclibXmlIndexConfig()} compiled once and evaluated for every
+ * indexed ARCLib XML.
+ * <p>
+ * Compiled expressions are not guaranteed to be thread safe, every thread therefore uses its own plan.
+ * </p>
+ */
+@Getter
+final class ArclibXmlExtractionPlan {
+    /**
+     * fields of the main document which are extracted from the ARCLib XML
+     */
+    private final List<CompiledField> mainDocFields = new ArrayList<>();
+    /**
+     * nested index types, each with xpath of its root nodes and fields relative to the root node
+     */
+    private final List<CompiledIndexType> childIndexTypes = new ArrayList<>();
+
+    ArclibXmlExtractionPlan(Map<String, ArclibXmlIndexTypeConfig> indexConfig, String mainIndexType, XPath xPath) throws XPathExpressionException {
+        for (ArclibXmlIndexTypeConfig typeConfig : indexConfig.values()) {
+            if (typeConfig.getIndexType().equals(mainIndexType)) {
+                for (ArclibXmlField field : typeConfig.getIndexedFieldConfig()) {
+                    if (field.isInAipXml())
+                        mainDocFields.add(new CompiledField(field, xPath.compile(field.getXpath())));
+                }
+                continue;
+            }
+            List<CompiledField> fields = new ArrayList<>();
+            for (ArclibXmlField field : typeConfig.getIndexedFieldConfig()) {
+                fields.add(new CompiledField(field, xPath.compile(field.getXpath())));
+            }
+            childIndexTypes.add(new CompiledIndexType(typeConfig.getIndexType(), xPath.compile(typeConfig.getRootXpath()), Collections.unmodifiableList(fields)));
+        }
+    }
+
+    @Getter
+    static final class CompiledField {
+        private final ArclibXmlField config;
+        private final XPathExpression expression;
+
+        private CompiledField(ArclibXmlField config, XPathExpression expression) {
+            this.config = config;
+            this.expression = expression;
+        }
+
+        NodeList evaluate(Node context) throws XPathExpressionException {
+            return (NodeList) expression.evaluate(context, XPathConstants.NODESET);
+        }
+    }
+
+    @Getter
+    static final class CompiledIndexType {
+        private final String indexType;
+        private final XPathExpression rootExpression;
+        private final List<CompiledField> fields;
+
+        private CompiledIndexType(String indexType, XPathExpression rootExpression, List<CompiledField> fields) {
+            this.indexType = indexType;
+            this.rootExpression = rootExpression;
+            this.fields = fields;
+        }
+
+        NodeList evaluateRoots(Node context) throws XPathExpressionException {
+            return (NodeList) rootExpression.evaluate(context, XPathConstants.NODESET);
+        }
+    }
+}
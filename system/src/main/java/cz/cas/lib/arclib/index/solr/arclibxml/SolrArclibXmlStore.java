@@ -13,6 +13,7 @@ import cz.cas.lib.core.index.dto.Result;
 import cz.cas.lib.core.index.solr.IndexField;
 import cz.cas.lib.core.index.solr.IndexFieldType;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.SneakyThrows;
@@ -22,15 +23,16 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
-import org.apache.solr.client.solrj.request.QueryRequest;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CursorMarkParams;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.w3c.dom.*;
 
@@ -46,9 +48,15 @@ import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static cz.cas.lib.arclib.index.solr.IndexQueryUtils.*;
 import static cz.cas.lib.arclib.utils.ArclibUtils.*;
@@ -65,9 +73,17 @@ public class SolrArclibXmlStore implements IndexedArclibXmlStore {
      * Map contains collection names (main and nested) as keys and their Xpath configurations as values.
      */
     private Map<String, ArclibXmlIndexTypeConfig> arclibXmlXpathIndexConfig = new HashMap<>();
+    /**
+     * XPaths of {@link #arclibXmlXpathIndexConfig} compiled once per thread
+     */
+    private final ThreadLocal<ArclibXmlExtractionPlan> extractionPlan = ThreadLocal.withInitial(this::compileExtractionPlan);
 
     private SolrClient solrClient;
     private String coreName;
+    private int commitWithinMs;
+    private int childrenFetchChunkSize = 100;
+    private int childrenFetchThreads = 4;
+    private ExecutorService childrenFetchExecutor;
     private Map<String, String> uris = new HashMap<>();
     @Getter
     private Resource arclibXmlIndexConfig;
@@ -75,16 +91,67 @@ public class SolrArclibXmlStore implements IndexedArclibXmlStore {
     @SneakyThrows
     @Override
     public void createIndex(CreateIndexRecordDto r) {
-        Pair<Document, XPath> domAndXpath = createDomAndXpath(new ByteArrayInputStream(r.getArclibXml()), uris);
-        Document arclibXmlDom = domAndXpath.getKey();
-        XPath xpath = domAndXpath.getValue();
+        long start = System.nanoTime();
+        SolrInputDocument mainDoc = toSolrDocument(r);
+        String mainDocIdString = (String) mainDoc.getFieldValue(IndexedArclibXmlDocument.ID);
+        long extractedMs = (System.nanoTime() - start) / 1_000_000;
+        //update requests of a client are applied in order, the old block is removed before the new one is added
+        solrClient.deleteById(coreName, mainDocIdString, commitWithinMs);
+        solrClient.add(coreName, mainDoc, commitWithinMs);
+        List<SolrInputDocument> children = mainDoc.getChildDocuments();
+        log.debug("indexed ARCLib XML {} ({} B, {} child documents), extraction took {} ms, indexing took {} ms", mainDocIdString,
+                r.getArclibXml().length, children == null ? 0 : children.size(), extractedMs, (System.nanoTime() - start) / 1_000_000 - extractedMs);
+    }
 
-        HashMap<String, ArclibXmlIndexTypeConfig> collectionsConfig = new HashMap<>(arclibXmlXpathIndexConfig);
+    @Override
+    public List<CreateIndexRecordDto> createIndexes(List<CreateIndexRecordDto> records) {
+        List<CreateIndexRecordDto> failed = new ArrayList<>();
+        List<SolrInputDocument> docs = new ArrayList<>(records.size());
+        List<String> ids = new ArrayList<>(records.size());
+        for (CreateIndexRecordDto r : records) {
+            SolrInputDocument doc;
+            try {
+                doc = toSolrDocument(r);
+            } catch (Exception e) {
+                log.error("could not create index document from ARCLib XML", e);
+                failed.add(r);
+                continue;
+            }
+            docs.add(doc);
+            ids.add((String) doc.getFieldValue(IndexedArclibXmlDocument.ID));
+        }
+        if (docs.isEmpty())
+            return failed;
+        try {
+            //update requests of a client are applied in order, the old blocks are removed before the new ones are added
+            solrClient.deleteById(coreName, ids, commitWithinMs);
+            solrClient.add(coreName, docs, commitWithinMs);
+        } catch (SolrServerException | IOException e) {
+            throw new GeneralException("could not index " + docs.size() + " ARCLib XMLs", e);
+        }
+        return failed;
+    }
+
+    @Override
+    public void commitIndex() {
+        try {
+            solrClient.commit(coreName);
+        } catch (SolrServerException | IOException e) {
+            throw new GeneralException("commit of Solr collection " + coreName + " has failed", e);
+        }
+    }
+
+    /**
+     * Extracts the main document with all its child documents from the ARCLib XML.
+     */
+    @SneakyThrows
+    private SolrInputDocument toSolrDocument(CreateIndexRecordDto r) {
+        ArclibXmlExtractionPlan plan = extractionPlan.get();
+        Document arclibXmlDom = createDomAndXpath(new ByteArrayInputStream(r.getArclibXml()), uris).getKey();
 
         //add main doc
-        ArclibXmlIndexTypeConfig mainDocConfig = collectionsConfig.get(getMainDocumentIndexType());
         SolrInputDocument mainDoc = new SolrInputDocument();
-        mainDoc.addField(IndexQueryUtils.TYPE_FIELD, mainDocConfig.getIndexType());
+        mainDoc.addField(IndexQueryUtils.TYPE_FIELD, getMainDocumentIndexType());
         mainDoc.addField(IndexedArclibXmlDocument.PRODUCER_NAME, r.getProducerName());
         mainDoc.addField(IndexedArclibXmlDocument.PRODUCER_ID, r.getProducerId());
         mainDoc.addField(IndexedArclibXmlDocument.LATEST, r.isLatestVersion());
@@ -93,35 +160,28 @@ public class SolrArclibXmlStore implements IndexedArclibXmlStore {
             mainDoc.addField(IndexedArclibXmlDocument.AIP_STATE, r.getAipState().toString());
         mainDoc.addField(IndexedArclibXmlDocument.USER_NAME, r.getUserName());
         mainDoc.addField(IndexedArclibXmlDocument.DEBUG_MODE, r.isDebuggingModeActive());
-        for (ArclibXmlField conf : mainDocConfig.getIndexedFieldConfig()) {
-            if (!conf.isInAipXml()) {
-                continue;
-            }
-            NodeList nodes = (NodeList) xpath.evaluate(conf.getXpath(), arclibXmlDom, XPathConstants.NODESET);
-            addFieldToDocument(mainDoc, conf, nodes);
+        for (ArclibXmlExtractionPlan.CompiledField field : plan.getMainDocFields()) {
+            addFieldToDocument(mainDoc, field.getConfig(), field.evaluate(arclibXmlDom));
         }
         Object mainDocId = mainDoc.getFieldValue(IndexedArclibXmlDocument.ID);
         if (!(mainDocId instanceof String) || ((String) mainDocId).isEmpty())
             throw new IllegalStateException("ID of document to be indexed was not found in the document");
         String mainDocIdString = (String) mainDocId;
-        collectionsConfig.remove(getMainDocumentIndexType());
 
         //add child docs
-        for (String indexType : collectionsConfig.keySet()) {
-            ArclibXmlIndexTypeConfig collectionConfig = collectionsConfig.get(indexType);
-            NodeList rootNodes = (NodeList) xpath.evaluate(collectionConfig.getRootXpath(), arclibXmlDom, XPathConstants.NODESET);
+        for (ArclibXmlExtractionPlan.CompiledIndexType childIndexType : plan.getChildIndexTypes()) {
+            NodeList rootNodes = childIndexType.evaluateRoots(arclibXmlDom);
             if (rootNodes == null || rootNodes.getLength() == 0)
                 continue;
             for (int i = 0; i < rootNodes.getLength(); i++) {
                 Node rootNode = rootNodes.item(i);
 
                 SolrInputDocument doc = new SolrInputDocument();
-                doc.addField(IndexQueryUtils.TYPE_FIELD, collectionConfig.getIndexType());
-                for (ArclibXmlField conf : collectionConfig.getIndexedFieldConfig()) {
-                    NodeList nodes = (NodeList) xpath.evaluate(conf.getXpath(), rootNode, XPathConstants.NODESET);
-                    addFieldToDocument(doc, conf, nodes);
+                doc.addField(IndexQueryUtils.TYPE_FIELD, childIndexType.getIndexType());
+                for (ArclibXmlExtractionPlan.CompiledField field : childIndexType.getFields()) {
+                    addFieldToDocument(doc, field.getConfig(), field.evaluate(rootNode));
                 }
-                doc.addField(IndexedArclibXmlDocument.ID, mainDocIdString + "_" + indexType + "_" + i);
+                doc.addField(IndexedArclibXmlDocument.ID, mainDocIdString + "_" + childIndexType.getIndexType() + "_" + i);
                 mainDoc.addChildDocument(doc);
             }
         }
@@ -143,24 +203,82 @@ public class SolrArclibXmlStore implements IndexedArclibXmlStore {
             mainDoc.addChildDocument(doc);
         }
 
-        removeIndex(mainDocIdString);
-        solrClient.add(coreName, mainDoc);
-        solrClient.commit(coreName);
+        return mainDoc;
     }
 
     @Override
     public Result<IndexedArclibXmlDocument> findAll(Params params) {
+        SolrQuery solrQuery = createFindAllQuery(params);
+
+        log.info("Searching for documents");
+        QueryResponse queryResponse = query(solrQuery);
+        Result<IndexedArclibXmlDocument> result = new Result<>();
+        result.setItems(queryResponse.getBeans(IndexedArclibXmlDocument.class));
+        result.setCount(queryResponse.getResults().getNumFound());
+        log.info("Found documents: " + Arrays.toString(result.getItems().stream().map(IndexedArclibXmlDocument::getId).toArray()));
+        return result;
+    }
+
+    @Override
+    public Result<IndexedArclibXmlDocument> findAllIgnorePagination(Params params) {
+        List<IndexedArclibXmlDocument> items;
+        try (Stream<IndexedArclibXmlDocument> stream = streamAll(params)) {
+            items = stream.collect(Collectors.toList());
+        }
+        return new Result<>(items, (long) items.size());
+    }
+
+    @Override
+    public Stream<IndexedArclibXmlDocument> streamAll(Params params) {
+        log.debug("Streaming documents");
+        return stream(createStreamQuery(params));
+    }
+
+    @Override
+    public Stream<String> streamIds(Params params) {
+        SolrQuery solrQuery = createStreamQuery(params);
+        solrQuery.setFields(IndexedArclibXmlDocument.ID);
+        log.debug("Streaming ids of documents");
+        return stream(solrQuery).map(IndexedArclibXmlDocument::getId);
+    }
+
+    @Override
+    public List<IndexedArclibXmlDocument> findByIds(List<String> ids) {
+        if (ids.isEmpty())
+            return new ArrayList<>();
+        SolrQuery q = new SolrQuery("*:*");
+        q.addFilterQuery(IndexQueryUtils.TYPE_FIELD + ":" + getMainDocumentIndexType());
+        return findChunk(q, new ArrayList<>(new LinkedHashSet<>(ids)));
+    }
+
+    private SolrQuery createStreamQuery(Params passedParams) {
+        Params params = passedParams.copy();
+        params.setPage(0);
+        params.setPageSize(solrMaxRows);
+        SolrQuery solrQuery = createFindAllQuery(params);
+        //cursor requires the unique key to be the last sort clause
+        if (solrQuery.getSorts().stream().noneMatch(c -> c.getItem().equals(IndexedArclibXmlDocument.ID)))
+            solrQuery.addSort(SolrQuery.SortClause.asc(IndexedArclibXmlDocument.ID));
+        return solrQuery;
+    }
+
+    private Stream<IndexedArclibXmlDocument> stream(SolrQuery solrQuery) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new CursorIterator(solrQuery), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private SolrQuery createFindAllQuery(Params params) {
         SolrQuery solrQuery = new SolrQuery("*:*");
         Map<String, IndexField> indexedFields = INDEXED_FIELDS_MAP.get(getMainDocumentIndexType());
         initializeQuery(solrQuery, params, indexedFields);
 
         solrQuery.addFilterQuery(IndexQueryUtils.TYPE_FIELD + ":" + getMainDocumentIndexType());
         solrQuery.addFilterQuery(buildFilters(params, getMainDocumentIndexType(), indexedFields));
+        return solrQuery;
+    }
 
-        log.info("Searching for documents");
-        QueryResponse queryResponse;
+    private QueryResponse query(SolrQuery solrQuery) {
         try {
-            queryResponse = solrClient.query(coreName, solrQuery);
+            return solrClient.query(coreName, solrQuery);
         } catch (SolrServerException ex) {
             if (ex.getMessage() != null) {
                 Matcher matcher = Pattern.compile(".+ undefined field (.+)").matcher(ex.getMessage());
@@ -175,70 +293,124 @@ public class SolrArclibXmlStore implements IndexedArclibXmlStore {
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        Result<IndexedArclibXmlDocument> result = new Result<>();
-        result.setItems(queryResponse.getBeans(IndexedArclibXmlDocument.class));
-        result.setCount(queryResponse.getResults().getNumFound());
-        log.info("Found documents: " + Arrays.toString(result.getItems().stream().map(IndexedArclibXmlDocument::getId).toArray()));
-        return result;
     }
 
-    @Override
-    public Result<IndexedArclibXmlDocument> findAllIgnorePagination(Params passedParams) {
-        int page = 0;
-        Params params = passedParams.copy();
-        params.setPageSize(solrMaxRows);
-        Result<IndexedArclibXmlDocument> allDocsResult = new Result<>(new LinkedList<>(), 0L);
-        Result<IndexedArclibXmlDocument> allDocsSubResult;
-        do {
-            params.setPage(page);
-            allDocsSubResult = findAll(params);
-            allDocsResult.setCount(allDocsResult.getCount() + allDocsSubResult.getItems().size());
-            allDocsResult.getItems().addAll(allDocsSubResult.getItems());
-            page++;
-        } while (allDocsSubResult.getItems().size() == solrMaxRows);
-        return allDocsResult;
-    }
+    /**
+     * Iterates over all documents matching the query by pages of the query size using Solr cursor. Unlike offset
+     * paging, the cost of retrieving a page does not grow with its position and only one page is held in memory.
+     */
+    private class CursorIterator implements Iterator<IndexedArclibXmlDocument> {
+        private final SolrQuery query;
+        private String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+        private Iterator<IndexedArclibXmlDocument> page = Collections.emptyIterator();
+        private boolean lastPage;
+
+        private CursorIterator(SolrQuery query) {
+            this.query = query;
+        }
 
+        @Override
+        public boolean hasNext() {
+            while (!page.hasNext() && !lastPage) {
+                query.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+                QueryResponse response = query(query);
+                page = response.getBeans(IndexedArclibXmlDocument.class).iterator();
+                String nextCursorMark = response.getNextCursorMark();
+                lastPage = cursorMark.equals(nextCursorMark);
+                cursorMark = nextCursorMark;
+            }
+            return page.hasNext();
+        }
+
+        @Override
+        public IndexedArclibXmlDocument next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return page.next();
+        }
+    }
 
     /**
-     * changes state of the document. this can't be done via partial update as it breaks parent-children relationship
-     *
-     * @param arclibXmlDocumentId
-     * @param newAipState
+     * changes state of the document. this can't be done via Solr partial update as it breaks parent-children
+     * relationship, the whole block is therefore rebuilt from the stored fields, see {@link #updateMainDocument(String, Map)}
      */
     @Override
-    public void changeAipState(String arclibXmlDocumentId, IndexedAipState newAipState, byte[] aipXml) {
-        IndexedArclibXmlDocument doc = findArclibXmlIndexDocument(arclibXmlDocumentId);
-        createIndex(new CreateIndexRecordDto(
-                aipXml,
-                doc.getProducerId(),
-                doc.getProducerName(),
-                doc.getUserName(),
-                newAipState,
-                doc.getDebugMode(),
-                doc.getLatest(),
-                doc.getLatestData())
-        );
+    public void changeAipState(String arclibXmlDocumentId, IndexedAipState newAipState) {
+        Map<String, Object> changes = new HashMap<>();
+        changes.put(IndexedArclibXmlDocument.AIP_STATE, newAipState == null ? null : newAipState.toString());
+        updateMainDocument(arclibXmlDocumentId, changes);
     }
 
     /**
-     * changes {@link IndexedArclibXmlDocument#LATEST} and {@link IndexedArclibXmlDocument#LATEST_DATA} flags of the document. this can't be done via partial update as it breaks parent-children relationship
+     * changes {@link IndexedArclibXmlDocument#LATEST} and {@link IndexedArclibXmlDocument#LATEST_DATA} flags of the
+     * document, see {@link #changeAipState(String, IndexedAipState)}
      */
     @Override
     public void setLatestFlags(SetLatestFlagsDto dto) {
-        IndexedArclibXmlDocument doc = findArclibXmlIndexDocument(dto.getArclibXmlDocumentId());
-        createIndex(new CreateIndexRecordDto(
-                dto.getAipXml(),
-                doc.getProducerId(),
-                doc.getProducerName(),
-                doc.getUserName(),
-                doc.getAipState(),
-                doc.getDebugMode(),
-                dto.isLatest(),
-                dto.isLatestData())
-        );
+        Map<String, Object> changes = new HashMap<>();
+        changes.put(IndexedArclibXmlDocument.LATEST, dto.isLatest());
+        changes.put(IndexedArclibXmlDocument.LATEST_DATA, dto.isLatestData());
+        updateMainDocument(dto.getArclibXmlDocumentId(), changes);
+    }
+
+    /**
+     * Changes fields of the main document. The main document is retrieved together with all its children, the
+     * changes are applied and the whole block is indexed again. Unlike {@link #createIndex(CreateIndexRecordDto)}
+     * this does not need the ARCLib XML, which would have to be retrieved from Archival Storage and parsed again.
+     *
+     * @param arclibXmlDocumentId id of the main document
+     * @param changes             map of field name to the new value, null value removes the field
+     */
+    private void updateMainDocument(String arclibXmlDocumentId, Map<String, Object> changes) {
+        SolrQuery query = new SolrQuery("*:*");
+        query.addFilterQuery(IndexedArclibXmlDocument.ID + ":" + arclibXmlDocumentId);
+        query.addFilterQuery(TYPE_FIELD + ":" + IndexedArclibXmlDocument.MAIN_INDEX_TYPE_VALUE);
+        query.setParam("fl", "*", String.format("[child parentFilter=%s:%s limit=-1]", TYPE_FIELD, IndexedArclibXmlDocument.MAIN_INDEX_TYPE_VALUE));
+        SolrDocumentList response;
+        try {
+            response = solrClient.query(coreName, query).getResults();
+        } catch (SolrServerException | IOException e) {
+            throw new GeneralException("could not retrieve document " + arclibXmlDocumentId + " from Solr", e);
+        }
+        ne(response.size(), 0, () -> new MissingObject(IndexedArclibXmlDocument.class, arclibXmlDocumentId));
+        eq(response.size(), 1, () -> new ConflictException("found multiple IndexedArclibXmlDocuments with id: " + arclibXmlDocumentId));
+        SolrDocument stored = response.get(0);
+
+        SolrInputDocument mainDoc = toSolrInputDocument(stored);
+        changes.forEach((field, value) -> {
+            mainDoc.removeField(field);
+            if (value != null)
+                mainDoc.addField(field, value);
+        });
+        if (stored.getChildDocuments() != null) {
+            for (SolrDocument child : stored.getChildDocuments()) {
+                mainDoc.addChildDocument(toSolrInputDocument(child));
+            }
+        }
+        try {
+            solrClient.deleteById(coreName, arclibXmlDocumentId);
+            solrClient.add(coreName, mainDoc);
+            solrClient.commit(coreName);
+        } catch (SolrServerException | IOException e) {
+            throw new GeneralException("could not update document " + arclibXmlDocumentId + " in Solr", e);
+        }
     }
 
+    /**
+     * Converts stored document to input document. Internal fields (_root_, _version_) and copyField destinations are
+     * skipped as they are filled by Solr.
+     */
+    private SolrInputDocument toSolrInputDocument(SolrDocument stored) {
+        SolrInputDocument doc = new SolrInputDocument();
+        for (String fieldName : stored.getFieldNames()) {
+            if (fieldName.startsWith("_") || fieldName.endsWith(IndexField.STRING_SUFFIX) || fieldName.endsWith(IndexField.SORT_SUFFIX))
+                continue;
+            for (Object value : stored.getFieldValues(fieldName)) {
+                doc.addField(fieldName, value);
+            }
+        }
+        return doc;
+    }
 
     @Override
     public void removeIndex(String id) {
@@ -272,41 +444,64 @@ public class SolrArclibXmlStore implements IndexedArclibXmlStore {
         return responseObjects.get(0);
     }
 
+    /**
+     * Documents are fetched in chunks of <i>solr.childrenFetch.chunkSize</i> ids, each chunk with a single request
+     * using terms query parser. Up to <i>solr.childrenFetch.threads</i> chunks are fetched at once.
+     */
     @Override
     public List<IndexedArclibXmlDocument> findWithChildren(Collection<String> docIds, List<SimpleIndexFilter> additionalFilters) {
         SolrQuery q = new SolrQuery("*:*");
-        q.setParam("collection", coreName);
         if (additionalFilters != null) {
             q.addFilterQuery(additionalFilters.stream().map(this::parseSimpleFilter).toArray(String[]::new));
         }
+        String childTransformerString = String.format("[child parentFilter=%s:%s childFilter=-%s:%s limit=%d]", TYPE_FIELD, IndexedArclibXmlDocument.MAIN_INDEX_TYPE_VALUE, TYPE_FIELD, IndexedArclibXmlDocument.ELEMENT_INDEX_TYPE_VALUE, solrMaxRows);
+        q.setParam("fl", "*", childTransformerString);
+
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(docIds));
+        List<CompletableFuture<List<IndexedArclibXmlDocument>>> chunks = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += childrenFetchChunkSize) {
+            List<String> chunk = ids.subList(i, Math.min(i + childrenFetchChunkSize, ids.size()));
+            chunks.add(CompletableFuture.supplyAsync(() -> findChunk(q, chunk), childrenFetchExecutor));
+        }
         List<IndexedArclibXmlDocument> result = new ArrayList<>();
-        for (String docId : docIds) {
-            SolrQuery singleDocQuery = q.getCopy();
-            singleDocQuery.addFilterQuery("id:" + docId);
-            String childTransformerString = String.format("[child parentFilter=%s:%s childFilter=-%s:%s limit=%d]", TYPE_FIELD, IndexedArclibXmlDocument.MAIN_INDEX_TYPE_VALUE, TYPE_FIELD, IndexedArclibXmlDocument.ELEMENT_INDEX_TYPE_VALUE, solrMaxRows);
-            singleDocQuery.setParam("fl", "*", childTransformerString);
-            SolrDocumentList response = null;
-            try {
-                response = (SolrDocumentList) solrClient.request(new QueryRequest(singleDocQuery)).get("response");
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-            switch (response.size()) {
-                case 0:
-                    break;
-                case 1:
-                    if (response.get(0).getChildDocumentCount() == solrMaxRows) {
-                        throw new RuntimeException("found " + solrMaxRows + " children of document " + docId + " which was the limit, there might be more children which were not found");
-                    }
-                    result.add(toIndexedArclibXmlDocument(response.get(0)));
-                    break;
-                default:
-                    throw new IllegalStateException("found more documents with id " + docId);
+        try {
+            for (CompletableFuture<List<IndexedArclibXmlDocument>> chunk : chunks) {
+                result.addAll(chunk.join());
             }
+        } catch (CompletionException e) {
+            chunks.forEach(c -> c.cancel(false));
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
         }
         return result;
     }
 
+    /**
+     * @return found documents in the order of the passed ids
+     */
+    private List<IndexedArclibXmlDocument> findChunk(SolrQuery q, List<String> ids) {
+        SolrQuery chunkQuery = q.getCopy();
+        chunkQuery.addFilterQuery("{!terms f=" + IndexedArclibXmlDocument.ID + "}" + String.join(",", ids));
+        chunkQuery.setRows(ids.size());
+        SolrDocumentList response;
+        try {
+            response = solrClient.query(coreName, chunkQuery).getResults();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        Map<String, IndexedArclibXmlDocument> found = new HashMap<>();
+        for (SolrDocument doc : response) {
+            String docId = (String) doc.getFieldValue(IndexedArclibXmlDocument.ID);
+            if (doc.getChildDocumentCount() == solrMaxRows) {
+                throw new RuntimeException("found " + solrMaxRows + " children of document " + docId + " which was the limit, there might be more children which were not found");
+            }
+            if (found.put(docId, toIndexedArclibXmlDocument(doc)) != null)
+                throw new IllegalStateException("found more documents with id " + docId);
+        }
+        return ids.stream().map(found::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
 //this would return only children
 //        SimpleQuery query = new SimpleQuery();
 //        query.addCriteria(Criteria.where(IndexedArclibXmlDocument.ID).in(asSet(externalId)));
@@ -316,7 +511,7 @@ public class SolrArclibXmlStore implements IndexedArclibXmlStore {
 //        QueryResponse response = solrTemplate.getSolrClient().query(solrQuery);
 
     /**
-     * Fills {@link #arclibXmlXpathIndexConfig} (used during indexing) with field definitions from CSV config and
+     * Fills {@link #arclibXmlXpathIndexConfig} (compiled to {@link ArclibXmlExtractionPlan} used during indexing) with field definitions from CSV config and
      * {@link IndexQueryUtils#INDEXED_FIELDS_MAP} (used during every ARCLib XML query) with field definitions from
      * CSV config, annotations from {@link IndexedArclibXmlDocument} and with few other special fields.
      * <p>
@@ -370,6 +565,28 @@ public class SolrArclibXmlStore implements IndexedArclibXmlStore {
                 new ArclibXmlField(IndexedArclibXmlDocument.ELEMENT_ATTRIBUTE_VALUES, AipXmlNodeValueType.OTHER, null, true)
         ));
         addTypeConfigToIndexedFieldsMap(schemaXmlDom, xPath, supportedFieldTypes, elementCollectionConfig);
+
+        //compile plan of the initializing thread to fail fast on invalid XPaths
+        extractionPlan.remove();
+        extractionPlan.get();
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("solr-children-fetch-");
+        threadFactory.setDaemon(true);
+        childrenFetchExecutor = Executors.newFixedThreadPool(childrenFetchThreads, threadFactory);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (childrenFetchExecutor != null)
+            childrenFetchExecutor.shutdownNow();
+    }
+
+    private ArclibXmlExtractionPlan compileExtractionPlan() {
+        try {
+            return new ArclibXmlExtractionPlan(arclibXmlXpathIndexConfig, getMainDocumentIndexType(), XmlUtils.createXpath(uris));
+        } catch (XPathExpressionException e) {
+            throw new GeneralException("invalid XPath in ARCLib XML index config: " + arclibXmlIndexConfig, e);
+        }
     }
 
     private void addFieldToDocument(SolrInputDocument doc, ArclibXmlField conf, NodeList nodes) {
@@ -511,6 +728,30 @@ public class SolrArclibXmlStore implements IndexedArclibXmlStore {
         this.coreName = coreName;
     }
 
+    /**
+     * @param commitWithinMs time in ms in which Solr makes the documents written by {@link #createIndexes(List)} searchable
+     */
+    @Autowired
+    public void setCommitWithinMs(@Value("${solr.writer.commitWithinMs:1000}") int commitWithinMs) {
+        this.commitWithinMs = commitWithinMs;
+    }
+
+    /**
+     * @param childrenFetchChunkSize number of documents fetched with their children in a single request
+     */
+    @Autowired
+    public void setChildrenFetchChunkSize(@Value("${solr.childrenFetch.chunkSize:100}") int childrenFetchChunkSize) {
+        this.childrenFetchChunkSize = childrenFetchChunkSize;
+    }
+
+    /**
+     * @param childrenFetchThreads maximal number of concurrent requests fetching documents with their children
+     */
+    @Autowired
+    public void setChildrenFetchThreads(@Value("${solr.childrenFetch.threads:4}") int childrenFetchThreads) {
+        this.childrenFetchThreads = childrenFetchThreads;
+    }
+
     @Autowired
     public void setArclibXmlIndexConfig(@Value("${arclib.arclibXmlIndexConfig}")
                                         Resource arclibXmlIndexConfig) {
@@ -37,6 +37,21 @@ public class IndexedBatch extends IndexedDatedObject {
     @Indexed(type = IndexFieldType.BOOLEAN)
     private Boolean pendingIncidents;
 
+    /**
+     * counts of ingest workflows at the time the batch was indexed, i.e. at the last change of the batch state
+     */
+    @Field
+    @Indexed(type = IndexFieldType.LONG)
+    private Long ingestWorkflowCount;
+
+    @Field
+    @Indexed(type = IndexFieldType.LONG)
+    private Long failedIngestWorkflowCount;
+
+    @Field
+    @Indexed(type = IndexFieldType.LONG)
+    private Long persistedIngestWorkflowCount;
+
     @Field
     @Indexed(type = IndexFieldType.FOLDING)
     private String producerProfile;
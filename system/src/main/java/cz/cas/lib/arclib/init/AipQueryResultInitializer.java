@@ -0,0 +1,33 @@
+package cz.cas.lib.arclib.init;
+
+import cz.cas.lib.arclib.service.AipQueryService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Converts results of AIP queries saved in the legacy format to the lists of ids, so that the reads of saved queries
+ * never write to DB. Queries are converted only once, the legacy result is cleared after the conversion.
+ */
+@Component
+@Slf4j
+@Order(3)
+public class AipQueryResultInitializer implements ApplicationListener<ApplicationReadyEvent> {
+    @Autowired
+    private AipQueryService aipQueryService;
+    @Value("${env:production}")
+    private String env;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (env.equals("test"))
+            return;
+        log.info("aip query result initializer started");
+        int converted = aipQueryService.convertLegacyResults();
+        log.info("aip query result initializer finished, converted results of {} queries", converted);
+    }
+}
@@ -21,12 +21,18 @@ import cz.cas.lib.arclib.service.archivalStorage.ArchivalStorageResponseExtracto
 import cz.cas.lib.arclib.service.archivalStorage.ArchivalStorageService;
 import cz.cas.lib.arclib.service.export.DcExportMetadataKey;
 import cz.cas.lib.arclib.service.export.DcExportService;
+import cz.cas.lib.arclib.service.export.ExportJournal;
+import cz.cas.lib.arclib.service.fixity.FixityCounter;
+import cz.cas.lib.arclib.service.fixity.Sha512Counter;
 import cz.cas.lib.arclib.store.SipStore;
 import cz.cas.lib.arclib.utils.ArclibUtils;
+import cz.cas.lib.arclib.utils.ZipUtils;
 import cz.cas.lib.core.index.dto.Filter;
 import cz.cas.lib.core.index.dto.FilterOperation;
 import cz.cas.lib.core.index.dto.Params;
 import cz.cas.lib.core.util.SetUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
@@ -35,6 +41,9 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.EnumUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
 import java.io.*;
@@ -44,8 +53,9 @@ import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -63,6 +73,21 @@ public class AipExportService {
     private ExportInfoFileService exportInfoFileService;
     private SipStore sipStore;
     private DcExportService dcExportService;
+    private Sha512Counter sha512Counter;
+    private int exportThreads = 4;
+    private int concurrentExports = 2;
+    /**
+     * runs up to <i>arclib.export.concurrentExports</i> asynchronous exports, each of them submits its items to
+     * {@link #exportItemExecutor}, other asynchronous exports wait in the queue
+     */
+    private ExecutorService exportExecutor;
+    private ExecutorService exportItemExecutor;
+    /**
+     * folders of the exports which are running, these are never resumed
+     */
+    private final Set<Path> runningExports = ConcurrentHashMap.newKeySet();
+
+    private static final String EXPORT_KEY_FILE_NAME = "export.key";
 
     /**
      * @param ids          ARClib XML IDs ({@link IndexedArclibXmlDocument#ID} i.e. {@link IngestWorkflow#externalId})
@@ -149,125 +174,179 @@ public class AipExportService {
     }
 
     public Path initiateExport(Collection<String> ids, ExportConfig exportConfig, boolean async, User user) throws IOException {
-        Path exportFolder = Path.of(exportConfig.getExportFolder()).resolve(DateTimeFormatter.ofPattern("yyyyMMddHHmmss").format(LocalDateTime.now()));
-        synchronized (this) {
-            if (exportFolder.toFile().exists()) {
-                exportFolder = exportFolder.resolveSibling("_" + UUID.randomUUID());
-            }
-            Files.createDirectories(exportFolder);
-        }
+        return initiateExport(ids, exportConfig, async, user, null);
+    }
+
+    /**
+     * Exports AIPs to a new subfolder of {@link ExportConfig#getExportFolder()}. AIPs (or their XMLs) are fetched
+     * from the archival storage and extracted by up to <i>arclib.export.threads</i> threads.
+     * <p>
+     * If the export key is set and there is an unfinished (failed or interrupted) export with the same key, the
+     * export is resumed in its folder instead: items completed by the previous run are skipped, items which failed
+     * or were not exported at all are exported again.
+     * </p>
+     * <p>
+     * The export ends with <i>export.done</i> only if all its items were exported, otherwise <i>export.failed</i> is
+     * written and the export remains unfinished.
+     * </p>
+     *
+     * @param exportKey key identifying repeated runs of the same export (e.g. of the same export routine), null if
+     *                  the export should never be resumed
+     * @return export folder
+     */
+    public Path initiateExport(Collection<String> ids, ExportConfig exportConfig, boolean async, User user, @Nullable String exportKey) throws IOException {
+        Path exportFolder = createOrResumeExportFolder(Path.of(exportConfig.getExportFolder()), exportKey);
         exportFolder.resolve("export.inprogress").toFile().createNewFile();
-        Path finalExportFolder = exportFolder;
         if (async) {
-            CompletableFuture.runAsync(() -> export(ids, exportConfig, finalExportFolder, user)).exceptionally(e -> {
-                log.error("error during export to: " + finalExportFolder, e);
+            CompletableFuture.runAsync(() -> export(ids, exportConfig, exportFolder, user), exportExecutor).exceptionally(e -> {
+                log.error("error during export to: " + exportFolder, e);
                 return null;
             });
         } else {
-            export(ids, exportConfig, finalExportFolder, user);
+            export(ids, exportConfig, exportFolder, user);
+        }
+        return exportFolder;
+    }
+
+    private synchronized Path createOrResumeExportFolder(Path parentFolder, @Nullable String exportKey) throws IOException {
+        if (exportKey != null && Files.isDirectory(parentFolder)) {
+            Path unfinished;
+            try (Stream<Path> folders = Files.list(parentFolder)) {
+                unfinished = folders
+                        .filter(f -> !runningExports.contains(f))
+                        .filter(f -> Files.isRegularFile(f.resolve(EXPORT_KEY_FILE_NAME)) && !Files.exists(f.resolve("export.done")))
+                        .filter(f -> {
+                            try {
+                                return Files.readString(f.resolve(EXPORT_KEY_FILE_NAME)).equals(exportKey);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        })
+                        .max(Comparator.comparing(f -> f.getFileName().toString()))
+                        .orElse(null);
+            }
+            if (unfinished != null) {
+                Files.deleteIfExists(unfinished.resolve("export.failed"));
+                runningExports.add(unfinished);
+                return unfinished;
+            }
+        }
+        Path exportFolder = parentFolder.resolve(DateTimeFormatter.ofPattern("yyyyMMddHHmmss").format(LocalDateTime.now()));
+        if (exportFolder.toFile().exists()) {
+            exportFolder = exportFolder.resolveSibling("_" + UUID.randomUUID());
+        }
+        Files.createDirectories(exportFolder);
+        if (exportKey != null) {
+            Files.writeString(exportFolder.resolve(EXPORT_KEY_FILE_NAME), exportKey);
         }
-        return finalExportFolder;
+        runningExports.add(exportFolder);
+        return exportFolder;
     }
 
     private void export(Collection<String> ids, ExportConfig exportConfig, Path exportFolder, User user) {
         Set<ExportScope> exportScopes = new HashSet<>(exportConfig.getScope());
 
         try {
-            List<IndexedArclibXmlDocument> docsFromIndex = List.of();
-            boolean plainIdExport = exportConfig.getScope().size() == 1 && exportConfig.getScope().get(0) == ExportScope.IDS && exportConfig.getIdExportType() == IdentifierExportType.XML_ID;
-            if (!plainIdExport) {
-                docsFromIndex = findDocsForExport(exportScopes, ids, new UserDetailsImpl(user));
-                Set<String> metadataNotFoundIds = SetUtils.difference(new HashSet<>(ids), docsFromIndex.stream().map(IndexedArclibXmlDocument::getId).collect(Collectors.toSet()));
-                if (!metadataNotFoundIds.isEmpty()) {
-                    Files.writeString(exportFolder.resolve("metadataNotFoundIds.csv"), String.join(",", metadataNotFoundIds));
-                }
-                Set<String> deletedDocsIds = docsFromIndex.stream().filter(d -> d.getAipState() == IndexedAipState.DELETED).map(IndexedArclibXmlDocument::getId).collect(Collectors.toSet());
-                if (!deletedDocsIds.isEmpty()) {
-                    Files.writeString(exportFolder.resolve("deletedDocsIds.csv"), String.join(",", deletedDocsIds));
+            long failedItems;
+            try (ExportJournal journal = new ExportJournal(exportFolder)) {
+                List<IndexedArclibXmlDocument> docsFromIndex = List.of();
+                boolean plainIdExport = exportConfig.getScope().size() == 1 && exportConfig.getScope().get(0) == ExportScope.IDS && exportConfig.getIdExportType() == IdentifierExportType.XML_ID;
+                if (!plainIdExport) {
+                    docsFromIndex = findDocsForExport(exportScopes, ids, new UserDetailsImpl(user));
+                    Set<String> metadataNotFoundIds = SetUtils.difference(new HashSet<>(ids), docsFromIndex.stream().map(IndexedArclibXmlDocument::getId).collect(Collectors.toSet()));
+                    if (!metadataNotFoundIds.isEmpty()) {
+                        Files.writeString(exportFolder.resolve("metadataNotFoundIds.csv"), String.join(",", metadataNotFoundIds));
+                    }
+                    Set<String> deletedDocsIds = docsFromIndex.stream().filter(d -> d.getAipState() == IndexedAipState.DELETED).map(IndexedArclibXmlDocument::getId).collect(Collectors.toSet());
+                    if (!deletedDocsIds.isEmpty()) {
+                        Files.writeString(exportFolder.resolve("deletedDocsIds.csv"), String.join(",", deletedDocsIds));
+                    }
                 }
-            }
-            for (ExportScope exportScope : exportScopes) {
-                Path scopeFolder = exportFolder.resolve(exportScope.getFsName());
-                switch (exportScope) {
-                    case IDS:
-                        Set<String> idsForExport;
-                        switch (exportConfig.getIdExportType()) {
-                            case XML_ID -> idsForExport = new HashSet<>(ids);
-                            case SIP_ID ->
-                                    idsForExport = docsFromIndex.stream().map(IndexedArclibXmlDocument::getSipId).collect(Collectors.toSet());
-                            case AUTHORIAL_ID ->
-                                    idsForExport = docsFromIndex.stream().map(IndexedArclibXmlDocument::getAuthorialId).collect(Collectors.toSet());
-                            default ->
-                                    throw new IllegalArgumentException("unknown ID export type: " + exportConfig.getIdExportType());
-                        }
-                        Files.writeString(exportFolder.resolve(exportScope.getFsName()), String.join(",", idsForExport));
-                        break;
-                    case METADATA:
-                        List<String> selectedMetadata = exportConfig.getMetadataSelectionNullSafe();
-                        if (selectedMetadata.isEmpty()) {
+                for (ExportScope exportScope : exportScopes) {
+                    Path scopeFolder = exportFolder.resolve(exportScope.getFsName());
+                    switch (exportScope) {
+                        case IDS:
+                            Set<String> idsForExport;
+                            switch (exportConfig.getIdExportType()) {
+                                case XML_ID -> idsForExport = new HashSet<>(ids);
+                                case SIP_ID ->
+                                        idsForExport = docsFromIndex.stream().map(IndexedArclibXmlDocument::getSipId).collect(Collectors.toSet());
+                                case AUTHORIAL_ID ->
+                                        idsForExport = docsFromIndex.stream().map(IndexedArclibXmlDocument::getAuthorialId).collect(Collectors.toSet());
+                                default ->
+                                        throw new IllegalArgumentException("unknown ID export type: " + exportConfig.getIdExportType());
+                            }
+                            Files.writeString(exportFolder.resolve(exportScope.getFsName()), String.join(",", idsForExport));
                             break;
-                        }
-                        try (CSVPrinter csvPrinter = new CSVPrinter(new FileWriter(exportFolder.resolve(exportScope.getFsName()).toFile()), CSVFormat.DEFAULT)) {
-                            exportMetadata(csvPrinter, exportConfig, docsFromIndex);
-                        }
-                        break;
-                    case AIP_XML:
-                        Files.createDirectories(scopeFolder);
-                        HashMap<String, List<Integer>> aipIdsAndVersions = new HashMap<>();
-                        for (IndexedArclibXmlDocument item : docsFromIndex) {
-                            String sipId = item.getSipId();
-                            Integer xmlVersionNumber = item.getXmlVersionNumber();
-
-                            List<Integer> versions = aipIdsAndVersions.get(sipId);
-                            if (versions == null) versions = new ArrayList<>();
-
-                            versions.add(xmlVersionNumber);
-                            aipIdsAndVersions.put(sipId, versions);
-                        }
-                        for (Map.Entry<String, List<Integer>> aipAndVersionId : aipIdsAndVersions.entrySet()) {
-                            String aipId = aipAndVersionId.getKey();
-                            List<Integer> versions = aipAndVersionId.getValue();
-                            for (Integer version : versions) {
-                                try {
-                                    InputStream response = archivalStorageService.exportSingleXml(aipId, version);
-                                    FileUtils.copyInputStreamToFile(response, scopeFolder.resolve(ArclibUtils.getXmlExportName(aipId, version)).toFile());
-                                    log.info("XML of AIP with ID " + aipId + " has been exported from archival storage.");
-                                } catch (ArchivalStorageException e) {
-                                    log.error("error during export of XML of AIP with ID" + aipId, e);
-                                }
+                        case METADATA:
+                            List<String> selectedMetadata = exportConfig.getMetadataSelectionNullSafe();
+                            if (selectedMetadata.isEmpty()) {
+                                break;
                             }
-                        }
-                        break;
-                    case DATA_AND_LAST_XML:
-                    case DATA_AND_ALL_XMLS:
-                        Files.createDirectories(scopeFolder);
-                        Map<String, Sip> sipsByTheirIds = sipStore.findAllInList(docsFromIndex.stream().map(IndexedArclibXmlDocument::getSipId).distinct().collect(Collectors.toList()))
-                                .stream().collect(Collectors.toMap(DomainObject::getId, s -> s));
-                        for (IndexedArclibXmlDocument doc : docsFromIndex) {
-                            String aipId = doc.getSipId();
-                            if (doc.getAipState() == IndexedAipState.DELETED) {
-                                log.debug("skipping export of AIP: {} since it is deleted", aipId);
-                                continue;
+                            try (CSVPrinter csvPrinter = new CSVPrinter(new FileWriter(exportFolder.resolve(exportScope.getFsName()).toFile()), CSVFormat.DEFAULT)) {
+                                exportMetadata(csvPrinter, exportConfig, docsFromIndex);
                             }
-                            try {
-                                InputStream response = archivalStorageService.exportSingleAip(aipId, exportScope == ExportScope.DATA_AND_ALL_XMLS, exportConfig.getDataReduction());
-                                Path aipDataDir;
-                                try (ZipInputStream zis = new ZipInputStream(response)) {
-                                    aipDataDir = archivalStorageResponseExtractor.extractAipAsFolderWithXmlsBySide(zis, aipId, scopeFolder, sipsByTheirIds.get(doc.getSipId()).getFolderStructure().getCaption());
-                                }
-                                if (exportConfig.isGenerateInfoFile()) {
-                                    Sip sipEntity = sipStore.find(aipId);
-                                    exportInfoFileService.write(aipDataDir.resolve(ExportInfoFileService.EXPORT_INFO_FILE_NAME), Map.of(ExportInfoFileService.KEY_AUTHORIAL_PACKAGE_UUID, sipEntity.getAuthorialPackage().getId()));
+                            break;
+                        case AIP_XML:
+                            Files.createDirectories(scopeFolder);
+                            Map<String, ExportItem> xmlItems = new LinkedHashMap<>();
+                            for (IndexedArclibXmlDocument item : docsFromIndex) {
+                                String aipId = item.getSipId();
+                                Integer version = item.getXmlVersionNumber();
+                                xmlItems.put(exportScope.getFsName() + "/" + aipId + "/" + version, () -> {
+                                    Path xmlPath = scopeFolder.resolve(ArclibUtils.getXmlExportName(aipId, version));
+                                    FixityCounter.DigestState digest = sha512Counter.newDigestState();
+                                    try (InputStream response = archivalStorageService.exportSingleXml(aipId, version)) {
+                                        ZipUtils.extractFile(response, xmlPath, digest);
+                                    }
+                                    log.info("XML of AIP with ID " + aipId + " has been exported from archival storage.");
+                                    return Map.of(xmlPath, digest.digest());
+                                });
+                            }
+                            exportItems(journal, xmlItems);
+                            break;
+                        case DATA_AND_LAST_XML:
+                        case DATA_AND_ALL_XMLS:
+                            Files.createDirectories(scopeFolder);
+                            Map<String, Sip> sipsByTheirIds = sipStore.findAllInList(docsFromIndex.stream().map(IndexedArclibXmlDocument::getSipId).distinct().collect(Collectors.toList()))
+                                    .stream().collect(Collectors.toMap(DomainObject::getId, s -> s));
+                            Map<String, ExportItem> aipItems = new LinkedHashMap<>();
+                            for (IndexedArclibXmlDocument doc : docsFromIndex) {
+                                String aipId = doc.getSipId();
+                                if (doc.getAipState() == IndexedAipState.DELETED) {
+                                    log.debug("skipping export of AIP: {} since it is deleted", aipId);
+                                    continue;
                                 }
-                                log.info("AIP " + aipId + " has been exported from archival storage.");
-                            } catch (ArchivalStorageException e) {
-                                log.error("error during export of AIP: " + aipId, e);
+                                aipItems.put(exportScope.getFsName() + "/" + aipId, () -> {
+                                    //remove what was left by an interrupted run
+                                    FileUtils.deleteDirectory(scopeFolder.resolve(aipId).toFile());
+                                    Sip sip = sipsByTheirIds.get(aipId);
+                                    Map<Path, byte[]> digests = new HashMap<>();
+                                    InputStream response = archivalStorageService.exportSingleAip(aipId, exportScope == ExportScope.DATA_AND_ALL_XMLS, exportConfig.getDataReduction());
+                                    Path aipDataDir;
+                                    try (ZipInputStream zis = new ZipInputStream(response)) {
+                                        aipDataDir = archivalStorageResponseExtractor.extractAipAsFolderWithXmlsBySide(zis, aipId, scopeFolder,
+                                                sip.getFolderStructure().getCaption(), sha512Counter::newDigestState, digests);
+                                    }
+                                    if (exportConfig.isGenerateInfoFile()) {
+                                        exportInfoFileService.write(aipDataDir.resolve(ExportInfoFileService.EXPORT_INFO_FILE_NAME), Map.of(ExportInfoFileService.KEY_AUTHORIAL_PACKAGE_UUID, sip.getAuthorialPackage().getId()));
+                                    }
+                                    log.info("AIP " + aipId + " has been exported from archival storage.");
+                                    return digests;
+                                });
                             }
-                        }
-                        break;
+                            exportItems(journal, aipItems);
+                            break;
+                    }
                 }
+                failedItems = journal.getFailedCount();
+            }
+            if (failedItems > 0) {
+                log.error("export to {} has ended with {} failed items, these will be exported again when the export is resumed", exportFolder, failedItems);
+                Files.writeString(exportFolder.resolve("export.failed"), failedItems + " items failed, see " + ExportJournal.PROGRESS_FILE_NAME);
+            } else {
+                exportFolder.resolve("export.done").toFile().createNewFile();
             }
-            exportFolder.resolve("export.done").toFile().createNewFile();
             Files.deleteIfExists(exportFolder.resolve("export.inprogress"));
         } catch (Exception e) {
             try {
@@ -277,6 +356,49 @@ public class AipExportService {
                 throw new UncheckedIOException(ee);
             }
             throw new RuntimeException(e);
+        } finally {
+            runningExports.remove(exportFolder);
+        }
+    }
+
+    /**
+     * Exports the items which were not completed by the previous run of the export, up to <i>arclib.export.threads</i>
+     * items at once. Item which could not be retrieved from the archival storage is logged and recorded as failed in
+     * the journal, other errors fail the export once all the running items end.
+     *
+     * @param items items keyed by their unique key
+     */
+    private void exportItems(ExportJournal journal, Map<String, ExportItem> items) throws IOException {
+        journal.addTotal(items.size());
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (Map.Entry<String, ExportItem> item : items.entrySet()) {
+            if (journal.isCompleted(item.getKey()))
+                continue;
+            futures.add(CompletableFuture.runAsync(() -> exportItem(journal, item.getKey(), item.getValue()), exportItemExecutor));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException)
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private void exportItem(ExportJournal journal, String itemKey, ExportItem item) {
+        long start = System.currentTimeMillis();
+        try {
+            try {
+                Map<Path, byte[]> digests = item.export();
+                journal.itemDone(itemKey, digests, System.currentTimeMillis() - start);
+            } catch (ArchivalStorageException e) {
+                log.error("error during export of " + itemKey, e);
+                journal.itemFailed(itemKey, System.currentTimeMillis() - start);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
@@ -360,6 +482,56 @@ public class AipExportService {
         return docsFromIndex;
     }
 
+    @PostConstruct
+    public void init() {
+        CustomizableThreadFactory exportThreadFactory = new CustomizableThreadFactory("export-");
+        exportThreadFactory.setDaemon(true);
+        exportExecutor = Executors.newFixedThreadPool(concurrentExports, exportThreadFactory);
+        CustomizableThreadFactory itemThreadFactory = new CustomizableThreadFactory("export-item-");
+        itemThreadFactory.setDaemon(true);
+        exportItemExecutor = Executors.newFixedThreadPool(exportThreads, itemThreadFactory);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (exportExecutor != null)
+            exportExecutor.shutdownNow();
+        if (exportItemExecutor != null)
+            exportItemExecutor.shutdownNow();
+    }
+
+    /**
+     * Export of a single item (AIP or AIP XML) to the export folder.
+     */
+    @FunctionalInterface
+    private interface ExportItem {
+        /**
+         * @return SHA-512 digests of the exported files
+         */
+        Map<Path, byte[]> export() throws IOException, ArchivalStorageException;
+    }
+
+    /**
+     * @param exportThreads number of AIPs (or AIP XMLs) fetched from the archival storage and extracted at once
+     */
+    @Autowired
+    public void setExportThreads(@Value("${arclib.export.threads:4}") int exportThreads) {
+        this.exportThreads = Math.max(exportThreads, 1);
+    }
+
+    /**
+     * @param concurrentExports number of asynchronous exports running at once
+     */
+    @Autowired
+    public void setConcurrentExports(@Value("${arclib.export.concurrentExports:2}") int concurrentExports) {
+        this.concurrentExports = Math.max(concurrentExports, 1);
+    }
+
+    @Autowired
+    public void setSha512Counter(Sha512Counter sha512Counter) {
+        this.sha512Counter = sha512Counter;
+    }
+
     @Autowired
     public void setArchivalStorageService(ArchivalStorageService archivalStorageService) {
         this.archivalStorageService = archivalStorageService;
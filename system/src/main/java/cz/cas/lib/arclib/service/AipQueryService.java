@@ -1,6 +1,8 @@
 package cz.cas.lib.arclib.service;
 
 import cz.cas.lib.arclib.domain.AipQuery;
+import cz.cas.lib.arclib.domain.AipQueryResult;
+import cz.cas.lib.arclib.domain.AipQueryResultDbConverter;
 import cz.cas.lib.arclib.domain.User;
 import cz.cas.lib.arclib.domain.export.ExportConfig;
 import cz.cas.lib.arclib.domain.export.ExportRoutine;
@@ -13,6 +15,7 @@ import cz.cas.lib.arclib.dto.BucketExportRequestDto;
 import cz.cas.lib.arclib.index.IndexedArclibXmlStore;
 import cz.cas.lib.arclib.index.solr.arclibxml.IndexedArclibXmlDocument;
 import cz.cas.lib.arclib.security.user.UserDetails;
+import cz.cas.lib.arclib.store.AipQueryResultStore;
 import cz.cas.lib.arclib.store.AipQueryStore;
 import cz.cas.lib.arclib.store.ExportRoutineStore;
 import cz.cas.lib.core.index.dto.Params;
@@ -20,25 +23,32 @@ import cz.cas.lib.core.index.dto.Result;
 import cz.cas.lib.core.store.Transactional;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.ZipOutputStream;
 
 import static cz.cas.lib.core.util.Utils.notNull;
 
+@Slf4j
 @Service
 public class AipQueryService {
 
     private static final String BUCKET_QUERY_API_ID = "bucket";
+    private static final int DEFAULT_PAGE_SIZE = 10;
 
     private AipQueryStore store;
     private FavoritesBucketService favoritesBucketService;
@@ -46,6 +56,8 @@ public class AipQueryService {
     private IndexedArclibXmlStore indexArclibXmlStore;
     private BeanMappingService beanMappingService;
     private AipExportService aipExportService;
+    private AipQueryResultStore resultStore;
+    private TransactionTemplate transactionTemplate;
 
     private UserDetails userDetails;
 
@@ -68,8 +80,83 @@ public class AipQueryService {
         return beanMappingService.mapTo(all, AipQueryDto.class);
     }
 
+    /**
+     * Finds page of the saved query result. Ids of the documents are taken from the saved result, documents
+     * themselves are loaded from the index.
+     *
+     * @param id       id of the saved query
+     * @param page     number of the page, starting from 0
+     * @param pageSize size of the page
+     * @return page of the result, count is the count of all saved ids
+     */
+    public Result<IndexedArclibXmlDocument> findResultPage(String id, int page, int pageSize) {
+        AipQuery aipQuery = store.find(id);
+        notNull(aipQuery, () -> new MissingObject(AipQuery.class, id));
+        return findResultPage(aipQuery, page, pageSize);
+    }
+
+    private Result<IndexedArclibXmlDocument> findResultPage(AipQuery aipQuery, int page, int pageSize) {
+        List<String> ids = getResultIds(aipQuery);
+        int from = Math.min(Math.max(page, 0) * pageSize, ids.size());
+        List<IndexedArclibXmlDocument> items = indexArclibXmlStore.findByIds(ids.subList(from, Math.min(from + pageSize, ids.size())));
+        return new Result<>(items, (long) ids.size());
+    }
+
+    /**
+     * Returns sorted ids of the saved query result.
+     */
+    private List<String> getResultIds(AipQuery aipQuery) {
+        AipQueryResult result = resultStore.find(aipQuery.getId());
+        if (result != null)
+            return result.getIds();
+        log.warn("result of aip query {} not found, if it was saved in the legacy format it has not been converted", aipQuery.getId());
+        return new ArrayList<>();
+    }
+
+    /**
+     * Converts results of queries saved in the legacy format (whole documents serialized to JSON) to the lists of ids.
+     * Every query is converted in its own transaction, query which fails to convert is logged and skipped.
+     *
+     * @return number of converted queries
+     */
+    public int convertLegacyResults() {
+        List<String> queryIds = store.findIdsWithLegacyResult();
+        int converted = 0;
+        for (String queryId : queryIds) {
+            try {
+                transactionTemplate.executeWithoutResult(t -> convertLegacyResult(queryId));
+                converted++;
+            } catch (RuntimeException e) {
+                log.error("failed to convert result of aip query " + queryId + " saved in the legacy format", e);
+            }
+        }
+        return converted;
+    }
+
+    private void convertLegacyResult(String queryId) {
+        String legacyResult = store.findLegacyResult(queryId);
+        if (legacyResult == null)
+            return;
+        List<String> ids = new AipQueryResultDbConverter().convertToEntityAttribute(legacyResult).getItems().stream()
+                .map(IndexedArclibXmlDocument::getId)
+                .sorted()
+                .collect(Collectors.toList());
+        log.info("converting result of aip query {} to the list of {} ids", queryId, ids.size());
+        if (resultStore.find(queryId) == null)
+            resultStore.save(new AipQueryResult(queryId, ids));
+        AipQuery aipQuery = store.find(queryId);
+        if (aipQuery != null) {
+            aipQuery.setResultCount((long) ids.size());
+            store.save(aipQuery);
+        }
+        store.clearLegacyResult(queryId);
+    }
+
     private AipQueryDetailDto createDetailDto(@NonNull AipQuery query, @Nullable ExportRoutine routine) {
         AipQueryDetailDto aipQueryDto = beanMappingService.mapTo(query, AipQueryDetailDto.class);
+        int pageSize = query.getQuery() == null || query.getQuery().getPageSize() == null ? DEFAULT_PAGE_SIZE : query.getQuery().getPageSize();
+        aipQueryDto.setResult(findResultPage(query, 0, pageSize));
+        aipQueryDto.setResultCount(aipQueryDto.getResult().getCount());
         if (routine != null) {
             aipQueryDto.setExportRoutine(beanMappingService.mapTo(routine, AipQueryDetailExportRoutineDto.class));
         }
@@ -78,9 +165,13 @@ public class AipQueryService {
 
     @Transactional
     public void saveAipQuery(String userId, Params params, String queryName) {
-        Result<IndexedArclibXmlDocument> allResults = indexArclibXmlStore.findAllIgnorePagination(params);
+        List<String> ids;
+        try (Stream<String> docIds = indexArclibXmlStore.streamIds(params)) {
+            ids = docIds.sorted().collect(Collectors.toList());
+        }
         params.setPage(0);
-        store.save(new AipQuery(new User(userId), allResults, params, queryName));
+        AipQuery aipQuery = store.save(new AipQuery(new User(userId), ids.size(), params, queryName));
+        resultStore.save(new AipQueryResult(aipQuery.getId(), ids));
     }
 
     public void downloadQueryResult(@NonNull String queryId, @NonNull ExportConfig exportConfig, HttpServletResponse response) throws IOException {
@@ -90,7 +181,7 @@ public class AipQueryService {
         } else {
             AipQuery aipQuery = findWithUserInitialized(queryId);
             notNull(aipQuery, () -> new MissingObject(AipQuery.class, queryId));
-            ids = aipQuery.getResult().getItems().stream().map(IndexedArclibXmlDocument::getId).collect(Collectors.toSet());
+            ids = new HashSet<>(getResultIds(aipQuery));
         }
         downloadResult(queryId, exportConfig, ids, response);
     }
@@ -103,11 +194,19 @@ public class AipQueryService {
     }
 
     public Path exportQueryResult(String queryId, ExportConfig exportConfig, boolean async) throws IOException {
+        return exportQueryResult(queryId, exportConfig, async, false);
+    }
+
+    /**
+     * @param resume if true, unfinished export of the same query to the same folder is resumed rather than started
+     *               from the scratch, see {@link AipExportService#initiateExport(java.util.Collection, ExportConfig, boolean, User, String)}
+     */
+    public Path exportQueryResult(String queryId, ExportConfig exportConfig, boolean async, boolean resume) throws IOException {
         AipQuery aipQuery = findWithUserInitialized(queryId);
         notNull(aipQuery, () -> new MissingObject(AipQuery.class, queryId));
-        Set<String> ids = aipQuery.getResult().getItems().stream().map(IndexedArclibXmlDocument::getId).collect(Collectors.toSet());
+        Set<String> ids = new HashSet<>(getResultIds(aipQuery));
         User user = aipQuery.getUser();
-        return aipExportService.initiateExport(ids, exportConfig, async, user);
+        return aipExportService.initiateExport(ids, exportConfig, async, user, resume ? "aipQuery/" + queryId : null);
     }
 
     public Path exportBucketResult(BucketExportRequestDto reqDto) throws IOException {
@@ -131,11 +230,13 @@ public class AipQueryService {
 
     @Transactional
     public void delete(AipQuery entity) {
+        resultStore.delete(new AipQueryResult(entity.getId(), null));
         store.delete(entity);
     }
 
     @Transactional
     public void hardDelete(AipQuery entity) {
+        resultStore.delete(new AipQueryResult(entity.getId(), null));
         store.hardDelete(entity);
     }
 
@@ -169,6 +270,16 @@ public class AipQueryService {
         this.favoritesBucketService = favoritesBucketService;
     }
 
+    @Autowired
+    public void setResultStore(AipQueryResultStore resultStore) {
+        this.resultStore = resultStore;
+    }
+
+    @Autowired
+    public void setTransactionTemplate(TransactionTemplate transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+    }
+
     @Autowired
     public void setAipExportService(AipExportService aipExportService) {
         this.aipExportService = aipExportService;
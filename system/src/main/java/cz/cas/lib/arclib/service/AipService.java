@@ -35,25 +35,18 @@ import cz.cas.lib.core.scheduling.job.JobService;
 import cz.cas.lib.core.script.ScriptType;
 import cz.cas.lib.core.store.Transactional;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.IOUtils;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.support.TransactionTemplate;
-import org.springframework.util.FileSystemUtils;
 import org.springframework.util.StreamUtils;
 
 
 import java.io.ByteArrayInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -70,7 +63,6 @@ public class AipService {
     private AuthorialPackageStore authorialPackageStore;
     private IndexedArclibXmlStore indexedArclibXmlStore;
     private IngestWorkflowService ingestWorkflowService;
-    private Path workspace;
 
     private JobService jobService;
     private ArclibXmlGenerator arclibXmlGenerator;
@@ -157,23 +149,6 @@ public class AipService {
         if (!unfinishedIws.isEmpty()) {
             throw new AipStateChangeException(logPrefix + "some ingest workflows not in final state: " + Arrays.toString(unfinishedIws.toArray()));
         }
-        Path requestWsFolder = workspace.resolve(aipId + "_state_change_" + Instant.now().toEpochMilli());
-        Files.createDirectory(requestWsFolder);
-        Map<IngestWorkflow, Path> iwToTmpXmlFile = new HashMap<>();
-        for (IngestWorkflow successfulIw : successfulIws) {
-            InputStream aipXmlFromStorage;
-            try {
-                aipXmlFromStorage = archivalStorageService.exportSingleXml(aipId, successfulIw.getXmlVersionNumber());
-            } catch (ArchivalStorageException e) {
-                FileSystemUtils.deleteRecursively(requestWsFolder);
-                throw new AipStateChangeException(logPrefix + "unable to retrieve AIP XML from Archival Storage", e);
-            }
-            Path xmlTmpFile = requestWsFolder.resolve(successfulIw.getExternalId() + ".xml");
-            try (FileOutputStream fileOutputStream = new FileOutputStream(xmlTmpFile.toFile())) {
-                IOUtils.copy(aipXmlFromStorage, fileOutputStream);
-            }
-            iwToTmpXmlFile.put(successfulIw, xmlTmpFile);
-        }
         try {
             switch (newState) {
                 case DELETED:
@@ -187,15 +162,12 @@ public class AipService {
                     break;
             }
         } catch (ArchivalStorageException e) {
-            FileSystemUtils.deleteRecursively(requestWsFolder);
             throw new AipStateChangeException(logPrefix + "unexpected Archival Storage response to state change request", e);
         }
-        for (IngestWorkflow iw : iwToTmpXmlFile.keySet()) {
-            final Path tmpXmlFile = iwToTmpXmlFile.get(iw);
-            indexedArclibXmlStore.changeAipState(iw.getExternalId(), newState, Files.readAllBytes(tmpXmlFile));
+        for (IngestWorkflow iw : successfulIws) {
+            indexedArclibXmlStore.changeAipState(iw.getExternalId(), newState);
             log.debug("State of XML of AIP " + aipId + " version " + iw.getXmlVersionNumber() + " has changed to: " + newState);
         }
-        FileSystemUtils.deleteRecursively(requestWsFolder);
         log.info(logPrefix + "successfully ENDED");
     }
 
@@ -250,8 +222,6 @@ public class AipService {
 
         final Map<String, Object> bpmVariables = ingestWorkflowService.getVariables(xmlId);
 
-        InputStream previousAipXmlStream = archivalStorageService.exportSingleXml(aipId, null);
-        byte[] previousAipXml = IOUtils.toByteArray(previousAipXmlStream);
         transactionTemplate.execute(t -> {
             jobService.delete(lock.getTimeoutCheckJob());
             return null;
@@ -312,7 +282,7 @@ public class AipService {
                         false,
                         true,
                         newIngestWorkflow.getSip().isLatestVersion()));
-                indexedArclibXmlStore.setLatestFlags(new SetLatestFlagsDto(xmlId, false, originalIngestWorkflow.getSip().isLatestVersion(), previousAipXml));
+                indexedArclibXmlStore.setLatestFlags(new SetLatestFlagsDto(xmlId, false, originalIngestWorkflow.getSip().isLatestVersion()));
                 log.info(opLogId + "successfully finished");
             } catch (Exception e) {
                 t.setRollbackOnly();
@@ -564,11 +534,6 @@ public class AipService {
         this.keepAliveNetworkDelay = keepAliveNetworkDelay;
     }
 
-    @Autowired
-    public void setWorkspace(@Value("${arclib.path.workspace}") String workspace) {
-        this.workspace = Paths.get(workspace);
-    }
-
     @Autowired
     public void setTransactionTemplate(TransactionTemplate transactionTemplate) {
         this.transactionTemplate = transactionTemplate;
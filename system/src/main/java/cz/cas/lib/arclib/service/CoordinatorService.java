@@ -237,17 +237,17 @@ public class CoordinatorService {
         User user = userService.find(dto.getUserId());
         notNull(user, () -> new MissingObject(User.class, dto.getUserId()));
 
-        Batch batch = batchService.get(batchId);
+        Batch batch = batchService.find(batchId);
         notNull(batch, () -> new MissingObject(Batch.class, batchId));
 
-        boolean allIngestWorkflowsInFinalState = batch.getIngestWorkflows().stream()
-                .allMatch(s -> s.getProcessingState() == IngestWorkflowState.PERSISTED || s.getProcessingState() == IngestWorkflowState.FAILED);
+        boolean allIngestWorkflowsInFinalState = batch.getIngestWorkflowCount() == batch.getIngestWorkflowCount(IngestWorkflowState.PERSISTED)
+                + batch.getIngestWorkflowCount(IngestWorkflowState.FAILED);
 
         if (allIngestWorkflowsInFinalState && batch.getState() == BatchState.PROCESSING) {
             batch.setPendingIncidents(false);
             batch.setIngestRoutine(null);
 
-            if (batch.getIngestWorkflows().stream().anyMatch(iw -> iw.getProcessingState() == IngestWorkflowState.FAILED))
+            if (batch.getIngestWorkflowCount(IngestWorkflowState.FAILED) > 0)
                 batch.setState(BatchState.PROCESSED_WITH_FAILURES);
             else
                 batch.setState(BatchState.PROCESSED);
@@ -475,7 +475,7 @@ public class CoordinatorService {
         Batch batch = new Batch(ingestWorkflows, BatchState.PROCESSING, producerProfile, batchWorkflowConfig,
                 computedWorkflowConfig, transferAreaPath.toString(), producerProfile.isDebuggingModeActive(),
                 true, false, validationProfile,
-                sipProfile, producerProfile.getWorkflowDefinition(), ingestRoutine);
+                sipProfile, producerProfile.getWorkflowDefinition(), ingestRoutine, 0, 0, 0, 0, 0);
 
         try {
             String bpmnString = ArclibUtils.prepareBpmnDefinitionForDeployment(bpmnDefinition, batch.getId());
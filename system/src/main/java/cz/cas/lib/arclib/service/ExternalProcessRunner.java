@@ -6,12 +6,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Component
 public class ExternalProcessRunner {
@@ -74,6 +79,63 @@ public class ExternalProcessRunner {
         }
     }
 
+    /**
+     * Executes the process and passes its standard output to the handler while the process is still running, so that
+     * the output does not have to be buffered in a file. Standard error output is collected separately.
+     * The process is killed if it does not finish before the timeout, even if the handler is still reading.
+     *
+     * @param outputHandler handler consuming the standard output of the process
+     * @param cmd           cmd to execute
+     * @throws IllegalStateException if the process returns non-zero exit code
+     */
+    public void executeProcessStreamedResultHandle(OutputHandler outputHandler, String... cmd) {
+        String processLogString = Arrays.toString(cmd);
+        File errFile = null;
+        Process process = null;
+        AtomicBoolean killed = new AtomicBoolean();
+        CompletableFuture<Void> sigtermWatchdog = null;
+        CompletableFuture<Void> sigkillWatchdog = null;
+        try {
+            errFile = File.createTempFile("err.out", null);
+            final ProcessBuilder processBuilder = new ProcessBuilder(cmd);
+            processBuilder.redirectError(errFile);
+            final Process startedProcess = processBuilder.start();
+            process = startedProcess;
+            sigtermWatchdog = CompletableFuture.runAsync(() -> {
+                killed.set(true);
+                startedProcess.destroy();
+            }, CompletableFuture.delayedExecutor(timeoutSigterm, TimeUnit.SECONDS));
+            sigkillWatchdog = sigtermWatchdog.thenRunAsync(() -> {
+                if (startedProcess.isAlive())
+                    startedProcess.destroyForcibly();
+            }, CompletableFuture.delayedExecutor(timeoutSigkill, TimeUnit.SECONDS));
+            try (BufferedReader stdout = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                outputHandler.handle(stdout);
+            }
+            final int exitCode = process.waitFor();
+            if (killed.get())
+                throw new GeneralException("process killed as it reached timeout: " + processLogString);
+            if (exitCode != 0)
+                throw new IllegalStateException("Process: " + processLogString + " has failed " + Files.readAllLines(errFile.toPath()));
+        } catch (IOException ex) {
+            if (killed.get())
+                throw new GeneralException("process killed as it reached timeout: " + processLogString, ex);
+            throw new GeneralException("unexpected error while executing process: " + processLogString, ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new GeneralException("unexpected error while executing process: " + processLogString, ex);
+        } finally {
+            if (sigtermWatchdog != null) {
+                sigtermWatchdog.cancel(false);
+                sigkillWatchdog.cancel(false);
+            }
+            if (process != null && process.isAlive())
+                process.destroyForcibly();
+            if (errFile != null)
+                errFile.delete();
+        }
+    }
+
     private int runProcessWithTimeout(Process process, String processLogString) {
         try {
             boolean processFinished = process.waitFor(timeoutSigterm, TimeUnit.SECONDS);
@@ -93,6 +155,14 @@ public class ExternalProcessRunner {
         }
     }
 
+    /**
+     * Consumer of the standard output of a running process.
+     */
+    @FunctionalInterface
+    public interface OutputHandler {
+        void handle(BufferedReader stdout) throws IOException;
+    }
+
     @Autowired
     public void setTimeoutSigterm(@Value("${arclib.externalProcess.timeout.sigterm}") int timeoutSigterm) {
         this.timeoutSigterm = timeoutSigterm;
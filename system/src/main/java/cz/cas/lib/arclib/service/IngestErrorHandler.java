@@ -38,6 +38,7 @@ public class IngestErrorHandler {
     private TransactionTemplate transactionTemplate;
     private String workspace;
     private ArchivalStorageService archivalStorageService;
+    private IngestWorkflowArtifactService ingestWorkflowArtifactService;
 
     /**
      * Assigns failure info to ingest workflow, deactivates AIP update lock, kills camunda process and notifies Coordinator
@@ -60,6 +61,7 @@ public class IngestErrorHandler {
             log.info("State of ingest workflow with external id " + ingestWorkflow.getExternalId() + " changed to " + IngestWorkflowState.FAILED + ".");
             FileSystemUtils.deleteRecursively(getIngestWorkflowWorkspacePath(ingestWorkflow.getExternalId(), workspace).toAbsolutePath().toFile());
             log.debug("AIP data of ingest workflow with external id " + ingestWorkflow.getExternalId() + " has been deleted from workspace.");
+            ingestWorkflowArtifactService.deleteProcessingArtifacts(ingestWorkflow.getExternalId(), false);
 
             if (ingestWorkflow.getXmlVersionNumber() != null) {
                 try {
@@ -160,4 +162,9 @@ public class IngestErrorHandler {
     public void setTransactionTemplate(TransactionTemplate transactionTemplate) {
         this.transactionTemplate = transactionTemplate;
     }
+
+    @Autowired
+    public void setIngestWorkflowArtifactService(IngestWorkflowArtifactService ingestWorkflowArtifactService) {
+        this.ingestWorkflowArtifactService = ingestWorkflowArtifactService;
+    }
 }
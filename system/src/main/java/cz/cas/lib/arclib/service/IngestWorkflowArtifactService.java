@@ -0,0 +1,251 @@
+package cz.cas.lib.arclib.service;
+
+import cz.cas.lib.arclib.domain.HashType;
+import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflowArtifact;
+import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflowArtifactType;
+import cz.cas.lib.arclib.dto.SipIntakeDigestsDto;
+import cz.cas.lib.arclib.store.IngestWorkflowArtifactStore;
+import cz.cas.lib.core.store.Transactional;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Typed access to the per-file data of the ingest workflow stored as {@link IngestWorkflowArtifact}s, instead of BPM
+ * process variables which are serialized to and deserialized from the Camunda DB at every step of the process.
+ * <p>
+ * An artifact is addressed by the external id of the ingest workflow, its type and the id of the event which has
+ * produced it, i.e. by the values which are already available as the process variables.
+ * Rows of the artifact are written and read as a stream of tab separated values, gzipped in the DB. Null value is
+ * written as <i>\N</i>, tabs, line breaks and backslashes are escaped by backslash.
+ * </p>
+ */
+@Service
+public class IngestWorkflowArtifactService {
+    private static final String NULL = "\\N";
+
+    private IngestWorkflowArtifactStore store;
+
+    /**
+     * Stores digests computed when the SIP was copied to workspace, replacing the digests stored before.
+     */
+    @Transactional
+    public void saveSipIntakeDigests(String iwExternalId, SipIntakeDigestsDto intakeDigests) {
+        Stream<String[]> sipZipRow = intakeDigests.getSipZip() == null ? Stream.empty() : Stream.<String[]>of(intakeDigestsRow(null, intakeDigests.getSipZip()));
+        Stream<String[]> sipContentRows = intakeDigests.getSipContent().entrySet().stream().map(e -> intakeDigestsRow(e.getKey(), e.getValue()));
+        save(iwExternalId, IngestWorkflowArtifactType.SIP_INTAKE_DIGESTS, null, Stream.concat(sipZipRow, sipContentRows));
+    }
+
+    /**
+     * @return digests computed when the SIP was copied to workspace or null if no digests were stored
+     */
+    public SipIntakeDigestsDto findSipIntakeDigests(String iwExternalId) {
+        SipIntakeDigestsDto intakeDigests = new SipIntakeDigestsDto();
+        boolean found = forEachRow(iwExternalId, IngestWorkflowArtifactType.SIP_INTAKE_DIGESTS, null, row -> {
+            Map<HashType, String> digests = new EnumMap<>(HashType.class);
+            for (int i = 3; i + 1 < row.length; i += 2) {
+                digests.put(HashType.valueOf(row[i]), row[i + 1]);
+            }
+            SipIntakeDigestsDto.FileDigests fileDigests = new SipIntakeDigestsDto.FileDigests(Long.parseLong(row[1]), Long.parseLong(row[2]), digests);
+            if (row[0] == null)
+                intakeDigests.setSipZip(fileDigests);
+            else
+                intakeDigests.getSipContent().put(row[0], fileDigests);
+        });
+        return found ? intakeDigests : null;
+    }
+
+    /**
+     * Stores formats of SIP files identified by the format identification event.
+     *
+     * @param formats map of file paths to pairs of format (PUID) and the identification method
+     */
+    @Transactional
+    public void saveFileFormats(String iwExternalId, String eventId, Map<String, Pair<String, String>> formats) {
+        save(iwExternalId, IngestWorkflowArtifactType.FILE_FORMATS, eventId, formats.entrySet().stream()
+                .map(e -> new String[]{e.getKey(), e.getValue().getLeft(), e.getValue().getRight()}));
+    }
+
+    /**
+     * @return map of file paths to pairs of format (PUID) and the identification method, null if the event has not
+     * stored any formats
+     */
+    public TreeMap<String, Pair<String, String>> findFileFormats(String iwExternalId, String eventId) {
+        TreeMap<String, Pair<String, String>> formats = new TreeMap<>();
+        boolean found = forEachRow(iwExternalId, IngestWorkflowArtifactType.FILE_FORMATS, eventId,
+                row -> formats.put(row[0], Pair.of(row[1], row[2])));
+        return found ? formats : null;
+    }
+
+    /**
+     * @return number of format identification events which have stored formats of SIP files
+     */
+    public int countFileFormats(String iwExternalId) {
+        return store.findEventIds(iwExternalId, IngestWorkflowArtifactType.FILE_FORMATS).size();
+    }
+
+    /**
+     * Stores sizes and checksums of SIP files computed by the fixity generation event.
+     *
+     * @param fixityData map of file paths to triples of file size, checksum type and checksum value
+     */
+    @Transactional
+    public void saveFileFixity(String iwExternalId, String eventId, Map<String, Triple<Long, String, String>> fixityData) {
+        save(iwExternalId, IngestWorkflowArtifactType.FILE_FIXITY, eventId, fixityData.entrySet().stream()
+                .map(e -> new String[]{e.getKey(), e.getValue().getLeft() == null ? null : e.getValue().getLeft().toString(),
+                        e.getValue().getMiddle(), e.getValue().getRight()}));
+    }
+
+    /**
+     * @return map of file paths to triples of file size, checksum type and checksum value, null if the event has not
+     * stored any fixity data
+     */
+    public Map<String, Triple<Long, String, String>> findFileFixity(String iwExternalId, String eventId) {
+        Map<String, Triple<Long, String, String>> fixityData = new HashMap<>();
+        boolean found = forEachRow(iwExternalId, IngestWorkflowArtifactType.FILE_FIXITY, eventId,
+                row -> fixityData.put(row[0], Triple.of(row[1] == null ? null : Long.valueOf(row[1]), row[2], row[3])));
+        return found ? fixityData : null;
+    }
+
+    /**
+     * @return sum of sizes of SIP files computed by the first fixity generation event, null if no fixity data were stored
+     */
+    public Long sumFileSizes(String iwExternalId) {
+        List<String> eventIds = store.findEventIds(iwExternalId, IngestWorkflowArtifactType.FILE_FIXITY);
+        if (eventIds.isEmpty())
+            return null;
+        long[] sum = new long[1];
+        forEachRow(iwExternalId, IngestWorkflowArtifactType.FILE_FIXITY, eventIds.get(0), row -> {
+            if (row[1] != null)
+                sum[0] += Long.parseLong(row[1]);
+        });
+        return sum[0];
+    }
+
+    /**
+     * Deletes artifacts which are no longer needed once the processing of the ingest workflow has ended.
+     * <p>
+     * Fixity data of the persisted ingest workflow are kept because the size of the unpacked SIP is computed from them
+     * when the AIP is reingested, see {@link #sumFileSizes(String)}. All artifacts of the failed ingest workflow are
+     * deleted.
+     * </p>
+     *
+     * @param persisted true if the ingest workflow has been persisted, false if it has failed
+     */
+    @Transactional
+    public void deleteProcessingArtifacts(String iwExternalId, boolean persisted) {
+        Set<IngestWorkflowArtifactType> types = EnumSet.allOf(IngestWorkflowArtifactType.class);
+        if (persisted)
+            types.remove(IngestWorkflowArtifactType.FILE_FIXITY);
+        store.deleteByTypes(iwExternalId, types);
+    }
+
+    private void save(String iwExternalId, IngestWorkflowArtifactType type, String eventId, Stream<String[]> rows) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(bos), StandardCharsets.UTF_8))) {
+            Iterator<String[]> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                String[] row = iterator.next();
+                for (int i = 0; i < row.length; i++) {
+                    if (i > 0)
+                        writer.write('\t');
+                    writer.write(escape(row[i]));
+                }
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not compress " + type + " of ingest workflow " + iwExternalId, e);
+        }
+        IngestWorkflowArtifact existing = store.find(iwExternalId, type, eventId);
+        if (existing != null)
+            store.hardDelete(existing);
+        store.save(new IngestWorkflowArtifact(iwExternalId, type, eventId, bos.toByteArray()));
+    }
+
+    /**
+     * @return false if there is no such artifact
+     */
+    private boolean forEachRow(String iwExternalId, IngestWorkflowArtifactType type, String eventId, Consumer<String[]> consumer) {
+        IngestWorkflowArtifact artifact = store.find(iwExternalId, type, eventId);
+        if (artifact == null)
+            return false;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(artifact.getData())), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] row = line.split("\t", -1);
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = unescape(row[i]);
+                }
+                consumer.accept(row);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not decompress " + type + " of ingest workflow " + iwExternalId, e);
+        }
+        return true;
+    }
+
+    private static String[] intakeDigestsRow(String path, SipIntakeDigestsDto.FileDigests fileDigests) {
+        List<String> row = new ArrayList<>();
+        row.add(path);
+        row.add(String.valueOf(fileDigests.getSize()));
+        row.add(String.valueOf(fileDigests.getLastModified()));
+        fileDigests.getDigests().forEach((hashType, digest) -> {
+            row.add(hashType.name());
+            row.add(digest);
+        });
+        return row.toArray(new String[0]);
+    }
+
+    private static String escape(String value) {
+        if (value == null)
+            return NULL;
+        StringBuilder sb = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '\\' -> sb.append("\\\\");
+                case '\t' -> sb.append("\\t");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                default -> sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String unescape(String value) {
+        if (value.equals(NULL))
+            return null;
+        if (value.indexOf('\\') == -1)
+            return value;
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char escaped = value.charAt(++i);
+                switch (escaped) {
+                    case 't' -> sb.append('\t');
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    default -> sb.append(escaped);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    @Autowired
+    public void setStore(IngestWorkflowArtifactStore store) {
+        this.store = store;
+    }
+}
@@ -4,21 +4,26 @@ import cz.cas.lib.arclib.bpm.BpmConstants;
 import cz.cas.lib.arclib.domain.Batch;
 import cz.cas.lib.arclib.domain.ingestWorkflow.IngestEvent;
 import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflow;
+import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflowState;
 import cz.cas.lib.arclib.domainbase.exception.GeneralException;
 import cz.cas.lib.arclib.domainbase.exception.MissingObject;
 import cz.cas.lib.arclib.dto.IngestWorkflowDto;
 import cz.cas.lib.arclib.service.tableexport.TableDataType;
 import cz.cas.lib.arclib.service.tableexport.TableExportType;
 import cz.cas.lib.arclib.service.tableexport.TableExporter;
+import cz.cas.lib.arclib.store.BatchStore;
 import cz.cas.lib.arclib.store.IngestEventStore;
 import cz.cas.lib.arclib.store.IngestWorkflowStore;
 import cz.cas.lib.core.store.Transactional;
 import jakarta.servlet.http.HttpServletResponse;
+import org.apache.commons.lang3.tuple.Pair;
 import org.camunda.bpm.engine.HistoryService;
 import org.camunda.bpm.engine.history.HistoricProcessInstance;
 import org.camunda.bpm.engine.history.HistoricVariableInstance;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -32,6 +37,7 @@ import static cz.cas.lib.core.util.Utils.notNull;
 public class IngestWorkflowService {
 
     private IngestWorkflowStore store;
+    private BatchStore batchStore;
     private HistoryService historyService;
     private IngestEventStore ingestEventStore;
     private TableExporter tableExporter;
@@ -40,21 +46,38 @@ public class IngestWorkflowService {
         return store.findAll();
     }
 
+    public List<IngestWorkflow> findByStateAfter(IngestWorkflowState state, String lastId, int limit) {
+        return store.findByStateAfter(state, lastId, limit);
+    }
+
     public IngestWorkflow find(String id) {
         return store.find(id);
     }
 
+    @Transactional
     public void delete(IngestWorkflow iw) {
+        Pair<String, IngestWorkflowState> previous = findBatchIdAndState(iw);
         store.delete(iw);
+        updateBatchCounts(previous, null);
     }
 
+    @Transactional
     public void hardDelete(IngestWorkflow iw) {
+        Pair<String, IngestWorkflowState> previous = findBatchIdAndState(iw);
         store.hardDelete(iw);
+        updateBatchCounts(previous, null);
     }
 
+    /**
+     * Saves the ingest workflow and updates the counters of ingest workflows of the batch if the batch or the state of
+     * the ingest workflow has changed.
+     */
     @Transactional
     public IngestWorkflow save(IngestWorkflow entity) {
-        return store.save(entity);
+        Pair<String, IngestWorkflowState> previous = findBatchIdAndState(entity);
+        IngestWorkflow saved = store.save(entity);
+        updateBatchCounts(previous, Pair.of(saved.getBatch() == null ? null : saved.getBatch().getId(), saved.getProcessingState()));
+        return saved;
     }
 
     /**
@@ -142,6 +165,50 @@ public class IngestWorkflowService {
         return vars.isEmpty() ? null : vars.get(0).getValue();
     }
 
+    /**
+     * Gets variable of many ingest workflows using two queries to Camunda history instead of two queries per workflow.
+     * <p>
+     * Process instances are matched by business key, which is the external id of the ingest workflow. Workflows of process
+     * instances started without the business key are resolved one by one by {@link #getVariable(String, String)}.
+     * </p>
+     *
+     * @param externalIds  external ids of the ingest workflows
+     * @param variableName name of the variable
+     * @return map of external id to variable value, workflows without the variable are not present in the map
+     */
+    public Map<String, Object> getVariableOfEach(Collection<String> externalIds, String variableName) {
+        Map<String, Object> result = new HashMap<>();
+        if (externalIds.isEmpty())
+            return result;
+        Map<String, String> processInstanceToExternalId = new HashMap<>();
+        for (HistoricProcessInstance processInstance : historyService.createHistoricProcessInstanceQuery()
+                .processInstanceBusinessKeyIn(externalIds.toArray(new String[0]))
+                .list()) {
+            String previous = processInstanceToExternalId.put(processInstance.getId(), processInstance.getBusinessKey());
+            if (previous != null)
+                throw new GeneralException("Expecting one process instance but found more for ingestWorkflow with ingestWorkflowExternalId  " + previous);
+        }
+        if (!processInstanceToExternalId.isEmpty()) {
+            for (HistoricVariableInstance var : historyService.createHistoricVariableInstanceQuery()
+                    .processInstanceIdIn(processInstanceToExternalId.keySet().toArray(new String[0]))
+                    .variableName(variableName)
+                    .list()) {
+                String externalId = processInstanceToExternalId.get(var.getProcessInstanceId());
+                if (result.put(externalId, var.getValue()) != null)
+                    throw new IllegalStateException("found more then one variable: " + variableName + " for IW: " + externalId);
+            }
+        }
+        Set<String> resolvedExternalIds = new HashSet<>(processInstanceToExternalId.values());
+        for (String externalId : externalIds) {
+            if (resolvedExternalIds.contains(externalId))
+                continue;
+            Object value = getVariable(externalId, variableName);
+            if (value != null)
+                result.put(externalId, value);
+        }
+        return result;
+    }
+
     public void exportEvents(String externalId, String name, List<String> columns, List<String> header, TableExportType format, HttpServletResponse response) {
         List<IngestEvent> events = ingestEventStore.findAllOfIngestWorkflow(externalId);
         List<List<Object>> table = events.stream().map(e -> e.getExportTableValues(columns)).collect(Collectors.toList());
@@ -184,6 +251,43 @@ public class IngestWorkflowService {
         }
     }
 
+    private Pair<String, IngestWorkflowState> findBatchIdAndState(IngestWorkflow iw) {
+        return iw.getId() == null ? null : store.findBatchIdAndStateForUpdate(iw.getId());
+    }
+
+    /**
+     * Moves the ingest workflow between the counters of {@link Batch}. Counters are updated right before the transaction
+     * commits, so that the row of the batch, which is shared by all ingest workflows of the batch, is locked only for
+     * the time of the commit, not for the whole (possibly long) transaction changing the state.
+     *
+     * @param previous pair of batch id and state before the change, null if the ingest workflow did not exist
+     * @param current  pair of batch id and state after the change, null if the ingest workflow has been deleted
+     */
+    private void updateBatchCounts(Pair<String, IngestWorkflowState> previous, Pair<String, IngestWorkflowState> current) {
+        if (Objects.equals(previous, current))
+            return;
+        Map<String, Map<IngestWorkflowState, Long>> deltas = new TreeMap<>();
+        if (previous != null && previous.getLeft() != null && previous.getRight() != null)
+            deltas.computeIfAbsent(previous.getLeft(), k -> new EnumMap<>(IngestWorkflowState.class)).merge(previous.getRight(), -1L, Long::sum);
+        if (current != null && current.getLeft() != null && current.getRight() != null)
+            deltas.computeIfAbsent(current.getLeft(), k -> new EnumMap<>(IngestWorkflowState.class)).merge(current.getRight(), 1L, Long::sum);
+        deltas.values().forEach(batchDeltas -> batchDeltas.values().removeIf(delta -> delta == 0));
+        deltas.values().removeIf(Map::isEmpty);
+        if (deltas.isEmpty())
+            return;
+        Runnable update = () -> deltas.forEach(batchStore::addIngestWorkflowCounts);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                update.run();
+            }
+        });
+    }
+
     @Autowired
     public void setIngestEventStore(IngestEventStore ingestEventStore) {
         this.ingestEventStore = ingestEventStore;
@@ -194,6 +298,11 @@ public class IngestWorkflowService {
         this.store = store;
     }
 
+    @Autowired
+    public void setBatchStore(BatchStore batchStore) {
+        this.batchStore = batchStore;
+    }
+
     @Autowired
     public void setHistoryService(HistoryService historyService) {
         this.historyService = historyService;
@@ -80,6 +80,7 @@ public class ReingestService {
     private Resource reingestExportScript;
     private JobService jobService;
     private IngestWorkflowService ingestWorkflowService;
+    private IngestWorkflowArtifactService ingestWorkflowArtifactService;
     private CoordinatorService coordinatorService;
     private AipBulkDeletionStore aipBulkDeletionStore;
     private SolrArclibXmlStore arclibXmlIndexStore;
@@ -133,7 +134,10 @@ public class ReingestService {
             p.getFilter().add(new Filter(IndexedArclibXmlDocument.LATEST, FilterOperation.EQ, "true", List.of()));
             p.getFilter().add(new Filter(IndexedArclibXmlDocument.DEBUG_MODE, FilterOperation.EQ, "false", List.of()));
             p.addSorting(new SortSpecification(IndexedArclibXmlDocument.CREATED, Order.ASC));
-            List<String> ids = arclibXmlIndexStore.findAllIgnorePagination(p).getItems().stream().map(IndexedArclibXmlDocument::getId).toList();
+            List<String> ids;
+            try (Stream<String> docIds = arclibXmlIndexStore.streamIds(p)) {
+                ids = docIds.toList();
+            }
             List<IngestWorkflow> iws = ingestWorkflowStore.findAllInListByExternalIds(ids);
 
             String timestamp = LocalDateTime.now().toString();
@@ -450,8 +454,13 @@ public class ReingestService {
     }
 
     private long getSizeOfUnpackedSip(IngestWorkflow iw) {
+        String ingestedWorkflowExternalId = getIngestedWorkflow(iw).getExternalId();
+        Long size = ingestWorkflowArtifactService.sumFileSizes(ingestedWorkflowExternalId);
+        if (size != null)
+            return size;
+        //ingested before the fixity data were stored as artifacts
         Map<String, Map<String, Triple<Long, String, String>>> fixityData = (Map<String, Map<String, Triple<Long, String, String>>>)
-                ingestWorkflowService.getVariable(getIngestedWorkflow(iw).getExternalId(), BpmConstants.FixityGeneration.mapOfEventIdsToSipContentFixityData);
+                ingestWorkflowService.getVariable(ingestedWorkflowExternalId, BpmConstants.FixityGeneration.mapOfEventIdsToSipContentFixityData);
         Map<String, Triple<Long, String, String>> anyFixityOutput = fixityData.values().iterator().next();
         return anyFixityOutput.values().stream().mapToLong(Triple::getLeft).sum();
     }
@@ -603,4 +612,9 @@ public class ReingestService {
     public void setObjectMapper(ObjectMapper objectMapper) {
         this.objectMapper = objectMapper;
     }
+
+    @Autowired
+    public void setIngestWorkflowArtifactService(IngestWorkflowArtifactService ingestWorkflowArtifactService) {
+        this.ingestWorkflowArtifactService = ingestWorkflowArtifactService;
+    }
 }
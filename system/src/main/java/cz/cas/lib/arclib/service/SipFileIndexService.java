@@ -0,0 +1,78 @@
+package cz.cas.lib.arclib.service;
+
+import cz.cas.lib.arclib.utils.SipFileIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps {@link SipFileIndex} of the SIP folders recently processed by the ingest workflow, so that the validation,
+ * metadata extraction, fixity and ARCLib XML generation steps do not walk the same SIP folder again and again.
+ * <p>
+ * Index is rebuilt if any folder of the SIP has been modified since the index was built (which also covers
+ * modifications made at another node of the cluster). Services which modify the SIP folder should still
+ * {@link #invalidate(Path)} the index so that the stale index is released immediately.
+ * </p>
+ */
+@Slf4j
+@Service
+public class SipFileIndexService {
+
+    private Map<Path, SipFileIndex> cache = createCache(8);
+
+    /**
+     * Returns the index of the SIP folder, the folder is walked only if there is no up-to-date index cached.
+     *
+     * @param sipFolder SIP folder
+     * @return index of the SIP folder
+     */
+    public SipFileIndex get(Path sipFolder) {
+        Path key = sipFolder.toAbsolutePath().normalize();
+        SipFileIndex index;
+        synchronized (cache) {
+            index = cache.get(key);
+        }
+        if (index != null && index.isUpToDate())
+            return index;
+        long start = System.currentTimeMillis();
+        try {
+            index = SipFileIndex.build(sipFolder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.debug("SIP folder {} indexed in {} ms", sipFolder, System.currentTimeMillis() - start);
+        synchronized (cache) {
+            cache.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * @param sipFolder SIP folder which content has been modified or which has been deleted
+     */
+    public void invalidate(Path sipFolder) {
+        synchronized (cache) {
+            cache.remove(sipFolder.toAbsolutePath().normalize());
+        }
+    }
+
+    private static Map<Path, SipFileIndex> createCache(int maxEntries) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, SipFileIndex> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Value("${arclib.sipFileIndex.cacheSize:8}")
+    public void setCacheSize(int cacheSize) {
+        this.cache = createCache(cacheSize);
+    }
+}
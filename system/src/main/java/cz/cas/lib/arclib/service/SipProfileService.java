@@ -7,6 +7,7 @@ import cz.cas.lib.arclib.dto.SipProfileDto;
 import cz.cas.lib.arclib.exception.BadRequestException;
 import cz.cas.lib.arclib.security.authorization.permission.Permissions;
 import cz.cas.lib.arclib.security.user.UserDetails;
+import cz.cas.lib.arclib.service.arclibxml.SipProfileXslCache;
 import cz.cas.lib.arclib.store.SipProfileStore;
 import cz.cas.lib.core.store.Transactional;
 import org.dom4j.DocumentException;
@@ -28,6 +29,7 @@ public class SipProfileService {
     private SipProfileStore store;
     private BeanMappingService beanMappingService;
     private UserDetails userDetails;
+    private SipProfileXslCache sipProfileXslCache;
 
     /**
      * Validates field {@link SipProfile#xsl} against XSD and in case of success saves sip profile
@@ -61,7 +63,9 @@ public class SipProfileService {
         }
 
         sipProfile.setEditable(true);
-        return store.save(sipProfile);
+        SipProfile saved = store.save(sipProfile);
+        sipProfileXslCache.evict(saved.getId());
+        return saved;
     }
 
     public Collection<SipProfileDto> listSipProfileDtos() {
@@ -80,6 +84,7 @@ public class SipProfileService {
     @Transactional
     public void delete(SipProfile entity) {
         store.delete(entity);
+        sipProfileXslCache.evict(entity.getId());
     }
 
     public SipProfile find(String id) {
@@ -104,6 +109,11 @@ public class SipProfileService {
         this.beanMappingService = beanMappingService;
     }
 
+    @Autowired
+    public void setSipProfileXslCache(SipProfileXslCache sipProfileXslCache) {
+        this.sipProfileXslCache = sipProfileXslCache;
+    }
+
     @Autowired
     public void setStore(SipProfileStore store) {
         this.store = store;
@@ -0,0 +1,198 @@
+package cz.cas.lib.arclib.service;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Cache of versions of external tools (ClamAV, DROID..) which are otherwise retrieved by starting a process every time
+ * the version is needed.
+ * <p>
+ * Versions are keyed by the tool, the command used to retrieve the version and the last modification time of the
+ * signature files of the tool, so that an update of signatures is recognized by the very next request.
+ * Cached versions are periodically reloaded in the background, which covers updates of the tool binaries.
+ * </p>
+ */
+@Slf4j
+@Service
+public class ToolVersionCache {
+
+    private final Map<Key, CachedVersion> cache = new ConcurrentHashMap<>();
+    private List<Path> clamavSignatures = List.of();
+    private List<Path> droidSignatures = List.of();
+
+    /**
+     * Returns the cached version of the tool or loads it if there is no version cached for the tool, command and
+     * current modification time of signature files.
+     *
+     * @param toolName       name of the tool
+     * @param cmd            command used to retrieve the version
+     * @param signaturePaths signature files or directories with signature files of the tool
+     * @param loader         retrieves the version by running the command
+     * @return version of the tool
+     */
+    public String get(String toolName, List<String> cmd, List<Path> signaturePaths, Supplier<String> loader) {
+        Key key = new Key(toolName, List.copyOf(cmd), lastModified(signaturePaths));
+        CachedVersion cached = cache.get(key);
+        if (cached == null) {
+            //signature files has changed (or nothing was cached yet), older versions of the tool run with the same command are obsolete
+            cache.keySet().removeIf(k -> k.getToolName().equals(toolName) && k.getCmd().equals(key.getCmd()) && !k.equals(key));
+            cached = cache.computeIfAbsent(key, k -> new CachedVersion(k, loader));
+        }
+        return cached.get();
+    }
+
+    public List<Path> getClamavSignatures() {
+        return clamavSignatures;
+    }
+
+    public List<Path> getDroidSignatures() {
+        return droidSignatures;
+    }
+
+    /**
+     * @return all cached versions
+     */
+    public Collection<CachedVersion> findAll() {
+        return new ArrayList<>(cache.values());
+    }
+
+    /**
+     * Drops all cached versions, they are loaded again when requested.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Reloads all cached versions. If the reload of a version fails, the previous version stays in the cache.
+     */
+    @Scheduled(fixedDelayString = "${arclib.toolVersionCache.refreshInterval:PT10M}", initialDelayString = "${arclib.toolVersionCache.refreshInterval:PT10M}")
+    public void refresh() {
+        for (CachedVersion cachedVersion : cache.values()) {
+            try {
+                cachedVersion.reload();
+            } catch (Exception e) {
+                log.warn("refresh of version of tool " + cachedVersion.getToolName() + " has failed, keeping the version: " + cachedVersion.getVersion(), e);
+            }
+        }
+    }
+
+    /**
+     * @return the latest modification time of the given files and of files in the given directories, 0 if there are none
+     */
+    private static long lastModified(List<Path> signaturePaths) {
+        long lastModified = 0;
+        for (Path path : signaturePaths) {
+            try {
+                if (Files.isDirectory(path)) {
+                    try (Stream<Path> files = Files.list(path)) {
+                        for (Path file : (Iterable<Path>) files::iterator) {
+                            lastModified = Math.max(lastModified, Files.getLastModifiedTime(file).toMillis());
+                        }
+                    }
+                } else if (Files.exists(path)) {
+                    lastModified = Math.max(lastModified, Files.getLastModifiedTime(path).toMillis());
+                }
+            } catch (IOException e) {
+                log.warn("could not read modification time of tool signatures at: " + path, e);
+            }
+        }
+        return lastModified;
+    }
+
+    @Autowired
+    public void setClamavSignatures(@Value("${arclib.toolVersionCache.clamavSignatures:/var/lib/clamav}") String[] clamavSignatures) {
+        this.clamavSignatures = Arrays.stream(clamavSignatures).map(Paths::get).toList();
+    }
+
+    @Autowired
+    public void setDroidSignatures(@Value("${arclib.toolVersionCache.droidSignatures:${user.home}/.droid6/signature_files}") String[] droidSignatures) {
+        this.droidSignatures = Arrays.stream(droidSignatures).map(Paths::get).toList();
+    }
+
+    @Getter
+    private static class Key {
+        private final String toolName;
+        private final List<String> cmd;
+        private final long signaturesLastModified;
+
+        private Key(String toolName, List<String> cmd, long signaturesLastModified) {
+            this.toolName = toolName;
+            this.cmd = cmd;
+            this.signaturesLastModified = signaturesLastModified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return signaturesLastModified == key.signaturesLastModified && toolName.equals(key.toolName) && cmd.equals(key.cmd);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(toolName, cmd, signaturesLastModified);
+        }
+    }
+
+    /**
+     * Version of a tool, loaded lazily by the first request.
+     */
+    public static class CachedVersion {
+        private final Key key;
+        private final Supplier<String> loader;
+        @Getter
+        private volatile String version;
+        @Getter
+        private volatile Instant loaded;
+
+        private CachedVersion(Key key, Supplier<String> loader) {
+            this.key = key;
+            this.loader = loader;
+        }
+
+        public String getToolName() {
+            return key.getToolName();
+        }
+
+        public List<String> getCmd() {
+            return key.getCmd();
+        }
+
+        public Instant getSignaturesLastModified() {
+            return Instant.ofEpochMilli(key.getSignaturesLastModified());
+        }
+
+        private String get() {
+            String v = version;
+            if (v != null)
+                return v;
+            synchronized (this) {
+                if (version == null)
+                    reload();
+                return version;
+            }
+        }
+
+        private synchronized void reload() {
+            String v = loader.get();
+            loaded = Instant.now();
+            version = v;
+        }
+    }
+}
@@ -19,9 +19,11 @@ import cz.cas.lib.arclib.domainbase.exception.MissingObject;
 import cz.cas.lib.arclib.dto.IncidentInfoDto;
 import cz.cas.lib.arclib.dto.JmsDto;
 import cz.cas.lib.arclib.dto.SipCopyInWorkspaceDto;
+import cz.cas.lib.arclib.dto.SipIntakeDigestsDto;
 import cz.cas.lib.arclib.exception.AuthorialPackageLockedException;
 import cz.cas.lib.arclib.exception.InvalidChecksumException;
 import cz.cas.lib.arclib.exception.ReingestInProgressException;
+import cz.cas.lib.arclib.service.fixity.FixityCounter;
 import cz.cas.lib.arclib.service.fixity.FixityCounterFacade;
 import cz.cas.lib.arclib.store.AuthorialPackageStore;
 import cz.cas.lib.arclib.store.ReingestStore;
@@ -32,12 +34,11 @@ import cz.cas.lib.arclib.utils.XmlUtils;
 import cz.cas.lib.arclib.utils.ZipUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.exception.ExceptionUtils;
-import org.apache.commons.lang3.tuple.Pair;
-import org.apache.commons.lang3.tuple.Triple;
 import org.camunda.bpm.engine.ManagementService;
 import org.camunda.bpm.engine.RuntimeService;
 import org.camunda.bpm.engine.runtime.Incident;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jms.annotation.JmsListener;
 import org.springframework.jms.core.JmsTemplate;
@@ -55,6 +56,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 import static cz.cas.lib.arclib.bpm.ArclibXmlExtractorDelegate.SIP_PROFILE_CONFIG_ENTRY;
 import static cz.cas.lib.arclib.bpm.BpmConstants.*;
@@ -82,11 +84,15 @@ public class WorkerService {
     private ReingestStore reingestStore;
     private SipProfileStore sipProfileStore;
     private ObjectMapper objectMapper;
+    private SipFileIndexService sipFileIndexService;
+    private IngestWorkflowArtifactService ingestWorkflowArtifactService;
 
     private int aipSavedCheckAttempts;
     private String aipSavedCheckAttemptsInterval;
     private int aipStoreAttempts;
     private String aipStoreAttemptsInterval;
+    private int unzipThreads;
+    private ExecutorService unzipExecutor;
 
     /**
      * Receives JMS message from Coordinator and starts processing of the ingest workflow.
@@ -109,8 +115,9 @@ public class WorkerService {
 
             log.debug("Message received at Worker. Batch id: " + batchId + ", ingest workflow external id: " + externalId);
 
-            //workaround to initialize batch because of the lazy initialization of batch entity
-            batch = batchService.get(batchId);
+            //workaround to initialize batch because of the lazy initialization of batch entity, ingest workflows of the
+            //batch are not loaded as the counters of ingest workflows kept at batch are sufficient
+            batch = batchService.find(batchId);
             notNull(batch, () -> new MissingObject(Batch.class, batchId));
 
             if (batch.getState() != BatchState.PROCESSING) {
@@ -186,10 +193,11 @@ public class WorkerService {
 
     /**
      * Processes the ingest workflow:
-     * 1. verifies hash of the incoming SIP package
-     * 2. copies SIP package content to workspace
+     * 1. copies SIP package content to workspace, verifying hash of the incoming SIP package during the copy
+     * 2. extracts the SIP package in workspace
      * 3. creates or assigns existing authorial package and SIP package according to the determined level of versioning
-     * 4. initializes ingest workflow and the Camunda process variables
+     * 4. initializes ingest workflow and the Camunda process variables, digests computed during the copy and extraction
+     * are stored as {@link cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflowArtifact}
      *
      * @param ingestWorkflow ingest workflow to process
      * @param userId         id of the user that triggered the ingest workflow processing
@@ -211,10 +219,6 @@ public class WorkerService {
         }
         notNull(sipProfile, () -> new IllegalArgumentException("null sip profile of producer profile with external id " + producerProfile.getExternalId()));
 
-        Path pathToSip = ingestWorkflow.getBatch().getIngestRoutine() != null && ingestWorkflow.getBatch().getIngestRoutine().isAuto()
-                ? getSipZipTransferAreaPathPrefixed(ingestWorkflow, AutoIngestFilePrefix.PROCESSING).toAbsolutePath()
-                : getSipZipTransferAreaPath(ingestWorkflow).toAbsolutePath();
-        verifyHash(pathToSip, ingestWorkflow);
         SipCopyInWorkspaceDto copiedSipMetadata = copySipToWorkspace(ingestWorkflow);
 
         Path sipFolderWorkspacePath = getIngestWorkflowWorkspacePath(ingestWorkflow.getExternalId(), workspace)
@@ -267,11 +271,10 @@ public class WorkerService {
         initVars.put(ArchivalStorage.aipStoreAttemptsInterval, aipStoreAttemptsInterval);
         initVars.put(Antivirus.antivirusToolCounter, 0);
         initVars.put(FixityCheck.fixityCheckToolCounter, 0);
-        initVars.put(FormatIdentification.mapOfEventIdsToMapsOfFilesToFormats, new HashMap<String, TreeMap<String, Pair<String, String>>>());
         initVars.put(FixityGeneration.mapOfEventIdsToSipSha512, new HashMap<>());
         initVars.put(FixityGeneration.mapOfEventIdsToSipMd5, new HashMap<>());
         initVars.put(FixityGeneration.mapOfEventIdsToSipCrc32, new HashMap<>());
-        initVars.put(FixityGeneration.mapOfEventIdsToSipContentFixityData, new HashMap<String, Map<String, Triple<Long, String, String>>>());
+        ingestWorkflowArtifactService.saveSipIntakeDigests(ingestWorkflow.getExternalId(), copiedSipMetadata.getIntakeDigests());
 
         runtimeService.startProcessInstanceByKey(toBatchDeploymentName(batch.getId()), ingestWorkflow.getExternalId(), initVars);
     }
@@ -396,45 +399,22 @@ public class WorkerService {
     }
 
     /**
-     * Counts the number of ingest workflows with the state FAILED for the given batch. If the count is bigger than 1/2
-     * of all the ingest workflows of the batch, sets the batch state to CANCELED and returns true, otherwise returns false.
+     * Checks the counters of ingest workflows of the batch. Returns true if more than 1/2 of all the ingest workflows
+     * of the batch are in the state FAILED, otherwise returns false.
      */
     private boolean tooManyFailedIngestWorkflows(Batch batch) {
-        List<IngestWorkflow> ingestWorkflows = batch.getIngestWorkflows();
-        int allIngestWorkflowsCount = ingestWorkflows.size();
-
-        long failedIngestWorkflowsCount = ingestWorkflows.stream()
-                .filter(sip -> sip.getProcessingState() == IngestWorkflowState.FAILED)
-                .count();
-
-        return failedIngestWorkflowsCount > (allIngestWorkflowsCount / 2);
+        return batch.getIngestWorkflowCount(IngestWorkflowState.FAILED) > (batch.getIngestWorkflowCount() / 2);
     }
 
     /**
      * Verifies the hash of the SIP of the ingest workflow to the computed value and throws and exception if the hash does not match
      *
-     * @param pathToSip      path to sip of which the hash should be verified
-     * @param ingestWorkflow ingest workflow
-     * @throws IOException SIP of the ingest workflow at the given path does not exist
+     * @param computedDigests digests computed from the SIP of the ingest workflow
+     * @param ingestWorkflow  ingest workflow
      */
-    private void verifyHash(Path pathToSip, IngestWorkflow ingestWorkflow) throws IOException {
+    private void verifyHash(Map<HashType, byte[]> computedDigests, IngestWorkflow ingestWorkflow) {
         Hash expectedHash = ingestWorkflow.getHash();
-        notNull(expectedHash, () -> {
-            throw new IllegalArgumentException("null hash of ingest workflow with external id " + ingestWorkflow.getExternalId());
-        });
-        String computedHash;
-        try (FileInputStream sipContent = new FileInputStream(pathToSip.toString())) {
-            switch (expectedHash.getHashType()) {
-                case MD5:
-                case Crc32:
-                case Sha512:
-                    computedHash = bytesToHexString(fixityCounterFacade.computeDigest(expectedHash.getHashType(), sipContent));
-                    break;
-                default:
-                    throw new GeneralException("unexpected type of expectedHash");
-            }
-        }
-
+        String computedHash = bytesToHexString(computedDigests.get(expectedHash.getHashType()));
         if (!expectedHash.getHashValue().equalsIgnoreCase(computedHash)) {
             String message = "Invalid hash for SIP of ingest workflow with external id " + ingestWorkflow.getExternalId() + ".";
             log.error(message);
@@ -444,11 +424,21 @@ public class WorkerService {
     }
 
     /**
-     * Unzips and copies the content of the SIP belonging the ingest workflow to workspace.
+     * Copies the SIP belonging the ingest workflow to workspace, verifies its hash during the copy and unzips it.
+     * Digests needed by the fixity generation are computed during the copy and the extraction and returned as a part of the result.
      *
      * @param ingestWorkflow ingest workflow
+     * @throws InvalidChecksumException if the hash of the SIP does not match the expected hash
      */
     private SipCopyInWorkspaceDto copySipToWorkspace(IngestWorkflow ingestWorkflow) throws IOException {
+        Hash expectedHash = ingestWorkflow.getHash();
+        notNull(expectedHash, () -> {
+            throw new IllegalArgumentException("null hash of ingest workflow with external id " + ingestWorkflow.getExternalId());
+        });
+        Set<HashType> hashTypes = EnumSet.of(HashType.MD5, HashType.Sha512, HashType.Crc32);
+        if (!hashTypes.contains(expectedHash.getHashType()))
+            throw new GeneralException("unexpected type of expectedHash");
+
         Path sourceSipFilePath = ingestWorkflow.getBatch().getIngestRoutine() != null && ingestWorkflow.getBatch().getIngestRoutine().isAuto()
                 ? getSipZipTransferAreaPathPrefixed(ingestWorkflow, AutoIngestFilePrefix.PROCESSING)
                 : getSipZipTransferAreaPath(ingestWorkflow);
@@ -464,17 +454,32 @@ public class WorkerService {
         }
 
         //copy the zip content to workspace
-        try (FileInputStream sipContent = new FileInputStream(sourceSipFilePath.toAbsolutePath().toString())) {
-            Files.copy(sipContent, destinationSipZipPath);
-            verifyHash(getSipZipWorkspacePath(ingestWorkflow.getExternalId(), workspace,
-                    ingestWorkflow.getFileName()), ingestWorkflow);
+        SipIntakeDigestsDto intakeDigests = new SipIntakeDigestsDto();
+        try {
+            Map<HashType, byte[]> sipZipDigests = fixityCounterFacade.copyAndComputeDigests(hashTypes, sourceSipFilePath.toAbsolutePath(), destinationSipZipPath);
+            try {
+                verifyHash(sipZipDigests, ingestWorkflow);
+            } catch (InvalidChecksumException e) {
+                //the hash is known only after the copy, the invalid copy must not stay in workspace
+                Files.deleteIfExists(destinationSipZipPath);
+                throw e;
+            }
+            intakeDigests.setSipZip(SipIntakeDigestsDto.FileDigests.of(destinationSipZipPath, sipZipDigests));
             log.debug("Zip archive with SIP content for ingest workflow external id " + ingestWorkflow.getExternalId() + " has been copied to workspace at path " + destinationSipZipPath + ".");
         } catch (IOException e) {
             throw new GeneralException("Unable to find SIP at path: " + sourceSipFilePath.toAbsolutePath() + " or access the destination path: " + destinationSipZipPath.toAbsolutePath(), e);
         }
 
         //unzip the zip content in workspace
-        String rootFolderName = ZipUtils.unzipSip(destinationSipZipPath, destinationIngestWorkflowPath, ingestWorkflow.getExternalId());
+        Map<Path, byte[]> sipContentDigests = new HashMap<>();
+        FixityCounter sha512Counter = fixityCounterFacade.getFixityCounters().get(HashType.Sha512);
+        String rootFolderName = ZipUtils.unzipSip(destinationSipZipPath, destinationIngestWorkflowPath, ingestWorkflow.getExternalId(),
+                sha512Counter::newDigestState, sipContentDigests, unzipExecutor, unzipThreads);
+        Path sipFolderWorkspacePath = destinationIngestWorkflowPath.resolve(rootFolderName);
+        sipFileIndexService.invalidate(sipFolderWorkspacePath);
+        sipContentDigests.forEach((filePath, digest) -> intakeDigests.getSipContent().put(
+                sipFolderWorkspacePath.relativize(filePath).toString().replace("\\", "/"),
+                SipIntakeDigestsDto.FileDigests.of(filePath, Map.of(HashType.Sha512, digest))));
 
         SipCopyInWorkspaceDto sipTransferResultDto = new SipCopyInWorkspaceDto();
         sipTransferResultDto.setRootFolderName(rootFolderName);
@@ -494,6 +499,7 @@ public class WorkerService {
         }
 
         sipTransferResultDto.setExportInfo(parsedInfoFile);
+        sipTransferResultDto.setIntakeDigests(intakeDigests);
 
         return sipTransferResultDto;
     }
@@ -527,7 +533,7 @@ public class WorkerService {
         }
         notNull(xPathToId, () -> new IllegalArgumentException("null path to id in path to authorial id"));
 
-        List<File> matchingFiles = listFilesMatchingRegex(new File(sipFolderWorkspacePath.toAbsolutePath().toString()), pathToXmlRegex, true);
+        List<File> matchingFiles = sipFileIndexService.get(sipFolderWorkspacePath).listFilesMatchingRegex(pathToXmlRegex, true);
         if (matchingFiles.size() == 0 && !resultRequired) {
             return null;
         }
@@ -605,6 +611,16 @@ public class WorkerService {
         this.aipSavedCheckAttempts = aipSavedCheckAttempts;
     }
 
+    @Autowired
+    public void setUnzipThreads(@Value("${arclib.unzip.threads:4}") int unzipThreads) {
+        this.unzipThreads = unzipThreads;
+    }
+
+    @Autowired
+    public void setUnzipExecutor(@Qualifier("unzipExecutor") ExecutorService unzipExecutor) {
+        this.unzipExecutor = unzipExecutor;
+    }
+
     @Autowired
     public void setaipStoreAttempts(@Value("${arclib.aipStoreAttempts}") int aipStoreAttempts) {
         this.aipStoreAttempts = aipStoreAttempts;
@@ -654,4 +670,14 @@ public class WorkerService {
     public void setObjectMapper(ObjectMapper objectMapper) {
         this.objectMapper = objectMapper;
     }
+
+    @Autowired
+    public void setSipFileIndexService(SipFileIndexService sipFileIndexService) {
+        this.sipFileIndexService = sipFileIndexService;
+    }
+
+    @Autowired
+    public void setIngestWorkflowArtifactService(IngestWorkflowArtifactService ingestWorkflowArtifactService) {
+        this.ingestWorkflowArtifactService = ingestWorkflowArtifactService;
+    }
 }
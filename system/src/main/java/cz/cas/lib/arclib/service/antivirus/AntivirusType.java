@@ -1,5 +1,6 @@
 package cz.cas.lib.arclib.service.antivirus;
 
 public enum AntivirusType {
-    CLAMAV
+    CLAMAV,
+    CLAMD
 }
@@ -4,6 +4,7 @@ import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflow;
 import cz.cas.lib.arclib.exception.bpm.CommandLineProcessException;
 import cz.cas.lib.arclib.exception.bpm.IncidentException;
 import cz.cas.lib.arclib.service.ExternalProcessRunner;
+import cz.cas.lib.arclib.service.ToolVersionCache;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.tuple.Pair;
@@ -32,10 +33,19 @@ public class ClamAntivirus extends Antivirus {
     @Getter
     private String[] cmd;
     private ExternalProcessRunner externalProcessRunner;
+    private ToolVersionCache toolVersionCache;
 
     public ClamAntivirus(ExternalProcessRunner externalProcessRunner, String[] cmd) {
+        this(externalProcessRunner, cmd, null);
+    }
+
+    /**
+     * @param toolVersionCache cache of tool versions, if null the version is retrieved by running ClamAV every time
+     */
+    public ClamAntivirus(ExternalProcessRunner externalProcessRunner, String[] cmd, ToolVersionCache toolVersionCache) {
         this.externalProcessRunner = externalProcessRunner;
         this.cmd = cmd;
+        this.toolVersionCache = toolVersionCache;
     }
 
     /**
@@ -91,6 +101,12 @@ public class ClamAntivirus extends Antivirus {
     //e.g. 'CLAMAV version: [ClamAV 0.100.2/25043/Tue Oct 16 23:06:18 2018]'
     @Override
     public String getToolVersion() {
+        if (toolVersionCache == null)
+            return loadToolVersion();
+        return toolVersionCache.get(ANTIVIRUS_NAME, List.of(cmd[0], "-V"), toolVersionCache.getClamavSignatures(), this::loadToolVersion);
+    }
+
+    private String loadToolVersion() {
         Pair<Integer, List<String>> result = externalProcessRunner.executeProcessCustomResultHandle(false, cmd[0], "-V");
         if (result.getLeft() != 0)
             throw new IllegalStateException("CLAMAV version CMD has failed: " + result.getRight());
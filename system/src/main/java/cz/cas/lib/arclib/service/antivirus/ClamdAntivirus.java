@@ -0,0 +1,127 @@
+package cz.cas.lib.arclib.service.antivirus;
+
+import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflow;
+import cz.cas.lib.arclib.domainbase.exception.GeneralException;
+import cz.cas.lib.arclib.exception.bpm.CommandLineProcessException;
+import cz.cas.lib.arclib.exception.bpm.IncidentException;
+import cz.cas.lib.arclib.service.ToolVersionCache;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static cz.cas.lib.core.util.Utils.notNull;
+
+/**
+ * Antivirus using the clamd daemon, so that the virus database is not loaded for every SIP.
+ */
+@Slf4j
+public class ClamdAntivirus extends Antivirus {
+
+    private static final Pattern PATH_TO_INFECTED_FILE_REGEX = Pattern.compile("(.+): .+ FOUND");
+    public static final String ANTIVIRUS_NAME = AntivirusType.CLAMD.toString();
+    private static final Pattern SHORT_TOOL_VERSION_PATTERN = Pattern.compile(".*(ClamAV [\\d,\\.]+).*");
+
+    private ClamdClient clamdClient;
+    private ClamdScanMode scanMode;
+    private ToolVersionCache toolVersionCache;
+
+    /**
+     * @param toolVersionCache cache of tool versions, if null the version is retrieved from clamd every time
+     */
+    public ClamdAntivirus(ClamdClient clamdClient, ClamdScanMode scanMode, ToolVersionCache toolVersionCache) {
+        this.clamdClient = clamdClient;
+        this.scanMode = scanMode;
+        this.toolVersionCache = toolVersionCache;
+    }
+
+    /**
+     * Scans SIP package for viruses.
+     *
+     * @param pathToSIP absoulte path to SIP
+     * @param iw        external ingest workflow
+     * @throws FileNotFoundException       if the SIP is not found
+     * @throws CommandLineProcessException if clamd has failed to scan some file
+     */
+    @Override
+    public void scan(Path pathToSIP, IngestWorkflow iw) throws FileNotFoundException, IncidentException {
+        log.info("scanning file at path: " + pathToSIP + " using clamd " + scanMode);
+        notNull(pathToSIP, () -> {
+            throw new IllegalArgumentException("null path to SIP package");
+        });
+        if (!pathToSIP.toFile().exists())
+            throw new FileNotFoundException("no file/folder found at: " + pathToSIP);
+
+        List<Path> infectedFiles = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        switch (scanMode) {
+            case INSTREAM:
+                for (Map.Entry<Path, String> reply : clamdClient.instream(listFiles(pathToSIP)).entrySet()) {
+                    if (reply.getValue().endsWith(" FOUND")) {
+                        log.info(reply.getKey() + " is infected");
+                        infectedFiles.add(reply.getKey());
+                    } else if (!reply.getValue().endsWith(" OK"))
+                        errors.add(reply.getKey() + ": " + reply.getValue());
+                }
+                break;
+            case MULTISCAN:
+                for (String reply : clamdClient.multiscan(pathToSIP.toAbsolutePath())) {
+                    Matcher matcher = PATH_TO_INFECTED_FILE_REGEX.matcher(reply);
+                    if (matcher.matches()) {
+                        log.info(Paths.get(matcher.group(1)) + " is infected");
+                        infectedFiles.add(Paths.get(matcher.group(1)));
+                    } else if (!reply.endsWith(" OK"))
+                        errors.add(reply);
+                }
+                break;
+        }
+        if (!errors.isEmpty())
+            throw new CommandLineProcessException("clamd scan error: " + String.join(System.lineSeparator(), errors));
+        if (infectedFiles.isEmpty()) {
+            log.info("no infected file found");
+            return;
+        }
+        log.info(infectedFiles.size() + " infected file/s found");
+        invokeInfectedFilesIssue(infectedFiles, iw, pathToSIP);
+    }
+
+    private static List<Path> listFiles(Path pathToSIP) {
+        try (Stream<Path> walk = Files.walk(pathToSIP)) {
+            return walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new GeneralException("could not list files of SIP at: " + pathToSIP, e);
+        }
+    }
+
+    @Override
+    public String getToolName() {
+        return ANTIVIRUS_NAME;
+    }
+
+    //e.g. 'CLAMD version: [ClamAV 0.103.8/26845/Tue Mar 28 07:52:26 2023]'
+    @Override
+    public String getToolVersion() {
+        if (toolVersionCache == null)
+            return "[" + clamdClient.version() + "]";
+        return toolVersionCache.get(ANTIVIRUS_NAME, List.of("VERSION"), toolVersionCache.getClamavSignatures(), () -> "[" + clamdClient.version() + "]");
+    }
+
+    //e.g. 'CLAMD version: ClamAV 0.103.8'
+    @Override
+    public String getShortToolVersion() {
+        String longToolVersion = getToolVersion();
+        Matcher matcher = SHORT_TOOL_VERSION_PATTERN.matcher(longToolVersion);
+        boolean matches = matcher.matches();
+        return matches ? matcher.group(1) : longToolVersion;
+    }
+}
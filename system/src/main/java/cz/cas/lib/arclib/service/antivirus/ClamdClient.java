@@ -0,0 +1,363 @@
+package cz.cas.lib.arclib.service.antivirus;
+
+import cz.cas.lib.arclib.domainbase.exception.GeneralException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.regex.Pattern;
+
+/**
+ * Client of the clamd daemon, which keeps the virus database loaded between scans.
+ * <p>
+ * Files are sent to clamd with the INSTREAM command over pooled connections. Every pooled connection holds a clamd
+ * session (IDSESSION), so that it can be reused for more commands. Connections idle for longer than
+ * <i>arclib.clamd.idleTimeout</i> are closed, which should be less than the <i>IdleTimeout</i> of clamd.
+ * </p>
+ */
+@Slf4j
+@Component
+public class ClamdClient {
+
+    private static final Pattern SESSION_REPLY_PREFIX = Pattern.compile("^\\d+: ");
+
+    private String address;
+    private int poolSize;
+    private int timeout;
+    private int idleTimeout;
+    private int chunkSize;
+
+    private SocketAddress socketAddress;
+    private Semaphore permits;
+    private ExecutorService scanExecutor;
+    private final BlockingDeque<Session> idleSessions = new LinkedBlockingDeque<>();
+
+    @PostConstruct
+    public void init() {
+        if (address.startsWith("unix:")) {
+            socketAddress = UnixDomainSocketAddress.of(address.substring("unix:".length()));
+        } else {
+            int portSeparator = address.lastIndexOf(':');
+            socketAddress = new InetSocketAddress(address.substring(0, portSeparator), Integer.parseInt(address.substring(portSeparator + 1)));
+        }
+        permits = new Semaphore(poolSize);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("clamd-");
+        threadFactory.setDaemon(true);
+        scanExecutor = Executors.newFixedThreadPool(poolSize, threadFactory);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scanExecutor.shutdownNow();
+        Session session;
+        while ((session = idleSessions.poll()) != null) {
+            session.close();
+        }
+    }
+
+    /**
+     * @return version of clamd together with the version of the virus database, e.g. <i>ClamAV 0.103.8/26845/Tue Mar 28 07:52:26 2023</i>
+     */
+    public String version() {
+        return execute(session -> session.command("zVERSION\0", null));
+    }
+
+    /**
+     * Sends the file to clamd with the INSTREAM command.
+     *
+     * @param file file to scan
+     * @return reply of clamd, e.g. <i>stream: OK</i> or <i>stream: Eicar-Signature FOUND</i>
+     */
+    public String instream(Path file) {
+        return execute(session -> session.command("zINSTREAM\0", file));
+    }
+
+    /**
+     * Sends the files to clamd with the INSTREAM command, at most <i>arclib.clamd.poolSize</i> files are scanned at once.
+     *
+     * @param files files to scan
+     * @return map of files to replies of clamd, see {@link #instream(Path)}, iteration order matches the order of <code>files</code>
+     */
+    public Map<Path, String> instream(List<Path> files) {
+        List<Future<String>> futures = new ArrayList<>(files.size());
+        for (Path file : files) {
+            futures.add(scanExecutor.submit(() -> instream(file)));
+        }
+        Map<Path, String> replies = new LinkedHashMap<>();
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                replies.put(files.get(i), futures.get(i).get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeneralException("interrupted during clamd scan", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new GeneralException(e.getCause());
+        } finally {
+            futures.forEach(f -> f.cancel(true));
+        }
+        return replies;
+    }
+
+    /**
+     * Lets clamd scan the file or directory with the MULTISCAN command. Clamd scans files of the directory in parallel,
+     * the path has to be accessible by clamd.
+     *
+     * @param path absolute path to file or directory to scan
+     * @return replies of clamd, e.g. <i>/path/to/file: Eicar-Signature FOUND</i>, a single reply <i>/path: OK</i> if nothing was found
+     */
+    public List<String> multiscan(Path path) {
+        //MULTISCAN is not allowed in clamd session, a new connection is used which clamd closes after the scan
+        try (Session session = new Session(SocketChannel.open(socketAddress))) {
+            return session.withTimeout(() -> {
+                session.write("zMULTISCAN " + path.toAbsolutePath() + "\0");
+                List<String> replies = new ArrayList<>();
+                String reply;
+                while ((reply = session.readReply()) != null) {
+                    replies.add(reply);
+                }
+                return replies;
+            });
+        } catch (IOException e) {
+            throw new GeneralException("clamd MULTISCAN of " + path + " at " + address + " has failed", e);
+        }
+    }
+
+    /**
+     * Executes the command over a pooled session. If a reused session fails (e.g. it was closed by clamd), the command
+     * is retried once over a new session.
+     */
+    private String execute(SessionCommand command) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeneralException("interrupted while waiting for clamd connection", e);
+        }
+        try {
+            Session session = borrowIdleSession();
+            if (session != null) {
+                try {
+                    String reply = command.execute(session);
+                    idleSessions.offerFirst(session);
+                    return reply;
+                } catch (IOException e) {
+                    log.debug("reused clamd session has failed, retrying with a new session", e);
+                    session.close();
+                }
+            }
+            session = openSession();
+            try {
+                String reply = command.execute(session);
+                idleSessions.offerFirst(session);
+                return reply;
+            } catch (IOException e) {
+                session.close();
+                throw new GeneralException("clamd command at " + address + " has failed", e);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Session borrowIdleSession() {
+        Session session;
+        while ((session = idleSessions.pollFirst()) != null) {
+            if (System.currentTimeMillis() - session.lastUsed < TimeUnit.SECONDS.toMillis(idleTimeout))
+                return session;
+            session.close();
+        }
+        return null;
+    }
+
+    private Session openSession() {
+        try {
+            Session session = new Session(SocketChannel.open(socketAddress));
+            session.write("zIDSESSION\0");
+            return session;
+        } catch (IOException e) {
+            throw new GeneralException("could not connect to clamd at " + address, e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SessionCommand {
+        String execute(Session session) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface TimedAction<T> {
+        T execute() throws IOException;
+    }
+
+    private class Session implements Closeable {
+        private final SocketChannel channel;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(8 * 1024).flip();
+        private long lastUsed = System.currentTimeMillis();
+
+        private Session(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * @param command       null terminated command
+         * @param streamedFile  file to send in chunks after the command, null if the command has no data
+         * @return reply to the command without the session prefix
+         */
+        private String command(String command, Path streamedFile) throws IOException {
+            String reply = withTimeout(() -> {
+                write(command);
+                if (streamedFile != null)
+                    stream(streamedFile);
+                return readReply();
+            });
+            if (reply == null)
+                throw new IOException("clamd has closed the connection");
+            lastUsed = System.currentTimeMillis();
+            return SESSION_REPLY_PREFIX.matcher(reply).replaceFirst("");
+        }
+
+        /**
+         * Runs the action, the connection is closed if the action does not finish in <i>arclib.clamd.timeout</i>.
+         */
+        private <T> T withTimeout(TimedAction<T> action) throws IOException {
+            CompletableFuture<Void> watchdog = CompletableFuture.runAsync(this::close, CompletableFuture.delayedExecutor(timeout, TimeUnit.SECONDS));
+            try {
+                return action.execute();
+            } catch (AsynchronousCloseException e) {
+                throw new GeneralException("clamd command at " + address + " reached timeout", e);
+            } finally {
+                watchdog.cancel(false);
+            }
+        }
+
+        private void write(String command) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(command.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        /**
+         * Sends the file as INSTREAM chunks, each prefixed with its length, terminated by a zero length chunk.
+         */
+        private void stream(Path file) throws IOException {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            ByteBuffer chunk = ByteBuffer.allocate(chunkSize);
+            try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+                while (fileChannel.read(chunk) != -1) {
+                    chunk.flip();
+                    if (!chunk.hasRemaining()) {
+                        chunk.clear();
+                        continue;
+                    }
+                    length.clear();
+                    length.putInt(chunk.remaining()).flip();
+                    ByteBuffer[] buffers = {length, chunk};
+                    while (chunk.hasRemaining()) {
+                        channel.write(buffers);
+                    }
+                    chunk.clear();
+                }
+            }
+            length.clear();
+            length.putInt(0).flip();
+            while (length.hasRemaining()) {
+                channel.write(length);
+            }
+        }
+
+        /**
+         * @return null terminated reply of clamd, null if the connection was closed before any reply data
+         */
+        private String readReply() throws IOException {
+            ByteArrayOutputStream reply = new ByteArrayOutputStream();
+            while (true) {
+                while (readBuffer.hasRemaining()) {
+                    byte b = readBuffer.get();
+                    if (b == 0)
+                        return reply.toString(StandardCharsets.UTF_8);
+                    reply.write(b);
+                }
+                readBuffer.clear();
+                int read = channel.read(readBuffer);
+                readBuffer.flip();
+                if (read == -1)
+                    return reply.size() == 0 ? null : reply.toString(StandardCharsets.UTF_8);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("could not close clamd connection", e);
+            }
+        }
+    }
+
+    /**
+     * @param address clamd socket, either <i>unix:/path/to/clamd.socket</i> or <i>host:port</i>
+     */
+    @Autowired
+    public void setAddress(@Value("${arclib.clamd.address:unix:/var/run/clamav/clamd.ctl}") String address) {
+        this.address = address;
+    }
+
+    /**
+     * @param poolSize maximal number of connections to clamd, i.e. number of files scanned at once
+     */
+    @Autowired
+    public void setPoolSize(@Value("${arclib.clamd.poolSize:4}") int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * @param timeout timeout of a single clamd command in seconds
+     */
+    @Autowired
+    public void setTimeout(@Value("${arclib.clamd.timeout:1800}") int timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * @param idleTimeout seconds after which an idle connection is not reused
+     */
+    @Autowired
+    public void setIdleTimeout(@Value("${arclib.clamd.idleTimeout:20}") int idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * @param chunkSize size of INSTREAM chunks in bytes
+     */
+    @Autowired
+    public void setChunkSize(@Value("${arclib.clamd.chunkSize:65536}") int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+}
@@ -0,0 +1,15 @@
+package cz.cas.lib.arclib.service.antivirus;
+
+/**
+ * Way in which {@link ClamdAntivirus} passes files to clamd.
+ */
+public enum ClamdScanMode {
+    /**
+     * content of every file is streamed to clamd, files are scanned in parallel over pooled connections
+     */
+    INSTREAM,
+    /**
+     * clamd reads and scans the files of the SIP itself in parallel, the workspace has to be accessible by clamd
+     */
+    MULTISCAN
+}
@@ -1,17 +1,21 @@
 package cz.cas.lib.arclib.service.archivalStorage;
 
 import cz.cas.lib.arclib.domain.export.DataReduction;
+import cz.cas.lib.arclib.service.fixity.FixityCounter;
 import cz.cas.lib.arclib.utils.ZipUtils;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -45,6 +49,18 @@ public class ArchivalStorageResponseExtractor {
      * @throws IOException
      */
     public Path extractAipAsFolderWithXmlsBySide(ZipInputStream outerZipStream, String aipId, Path targetFolder, String sipRootFolderName) throws IOException {
+        return extractAipAsFolderWithXmlsBySide(outerZipStream, aipId, targetFolder, sipRootFolderName, null, null);
+    }
+
+    /**
+     * Same as {@link #extractAipAsFolderWithXmlsBySide(ZipInputStream, String, Path, String)} but also computes digest
+     * of every extracted file during the extraction.
+     *
+     * @param entryDigest supplier of a new digest state for every extracted file, may be null
+     * @param digests     map to which the digests of the extracted files are put, may be null if entryDigest is null
+     */
+    public Path extractAipAsFolderWithXmlsBySide(ZipInputStream outerZipStream, String aipId, Path targetFolder, String sipRootFolderName,
+                                                 Supplier<FixityCounter.DigestState> entryDigest, Map<Path, byte[]> digests) throws IOException {
         Path aipExportFolder = targetFolder.resolve(aipId);
         ZipEntry outerZipEntry = outerZipStream.getNextEntry();
         while (outerZipEntry != null) {
@@ -57,7 +73,7 @@ public class ArchivalStorageResponseExtractor {
                         Files.createDirectories(filePath);
                     } else {
                         Files.createDirectories(filePath.getParent());
-                        ZipUtils.extractFile(innerZipStream, filePath);
+                        extractFile(innerZipStream, filePath, entryDigest, digests);
                     }
                     innerZipStream.closeEntry();
                     innerZipEntry = innerZipStream.getNextEntry();
@@ -68,7 +84,7 @@ public class ArchivalStorageResponseExtractor {
                     throw new IllegalStateException("expected only files (zip + xmls) packed in the archival storage response, but there was: " + someUzippedFile);
                 } else {
                     Files.createDirectories(someUzippedFile.getParent());
-                    ZipUtils.extractFile(outerZipStream, someUzippedFile);
+                    extractFile(outerZipStream, someUzippedFile, entryDigest, digests);
                 }
             }
             outerZipStream.closeEntry();
@@ -89,4 +105,14 @@ public class ArchivalStorageResponseExtractor {
         }
         return rootSipDirPath;
     }
+
+    private void extractFile(InputStream zipIn, Path filePath, Supplier<FixityCounter.DigestState> entryDigest, Map<Path, byte[]> digests) throws IOException {
+        if (entryDigest == null) {
+            ZipUtils.extractFile(zipIn, filePath);
+            return;
+        }
+        FixityCounter.DigestState digestState = entryDigest.get();
+        ZipUtils.extractFile(zipIn, filePath, digestState);
+        digests.put(filePath, digestState.digest());
+    }
 }
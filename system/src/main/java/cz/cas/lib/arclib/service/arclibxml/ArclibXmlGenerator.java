@@ -8,10 +8,11 @@ import cz.cas.lib.arclib.domain.packages.FolderStructure;
 import cz.cas.lib.arclib.domain.packages.Sip;
 import cz.cas.lib.arclib.domain.preservationPlanning.Tool;
 import cz.cas.lib.arclib.exception.validation.MissingNode;
+import cz.cas.lib.arclib.service.IngestWorkflowArtifactService;
+import cz.cas.lib.arclib.service.SipFileIndexService;
 import cz.cas.lib.arclib.service.fixity.MetsChecksumType;
 import cz.cas.lib.arclib.store.IngestEventStore;
 import cz.cas.lib.arclib.store.IngestWorkflowStore;
-import cz.cas.lib.arclib.utils.ArclibUtils;
 import cz.cas.lib.arclib.utils.NamespaceChangingVisitor;
 import cz.cas.lib.core.store.Transactional;
 import lombok.extern.slf4j.Slf4j;
@@ -55,6 +56,8 @@ public class ArclibXmlGenerator {
     private Map<String, String> uris;
     private String arclibVersion;
     private IngestEventStore ingestEventStore;
+    private SipFileIndexService sipFileIndexService;
+    private IngestWorkflowArtifactService ingestWorkflowArtifactService;
 
     /**
      * Supplements ArclibXml with generated metadata
@@ -73,7 +76,7 @@ public class ArclibXmlGenerator {
         IngestWorkflow ingestWorkflow = ingestWorkflowStore.findByExternalId(ingestWorkflowExternalId);
 
         //assign each file an object identifier
-        List<String> filePaths = ArclibUtils.listFilePaths(Paths.get((String) variables.get(ProcessVariables.sipFolderWorkspacePath)));
+        List<String> filePaths = sipFileIndexService.get(Paths.get((String) variables.get(ProcessVariables.sipFolderWorkspacePath))).listFilePaths();
         for (int i = 0; i < filePaths.size(); i++) {
             String objIdentifier = "obj-" + String.format(OBJ_NUMBER_FORMAT, i + 1);
             filePathsAndObjIdentifiers.add(Pair.of(filePaths.get(i), objIdentifier));
@@ -390,9 +393,13 @@ public class ArclibXmlGenerator {
             }
             return;
         }
-        Map<String, Triple<Long, String, String>> sipContentFixityData =
-                ((Map<String, Map<String, Triple<Long, String, String>>>)
-                        variables.get(FixityGeneration.mapOfEventIdsToSipContentFixityData)).get(preferredFixityGenerationEventId);
+        Map<String, Triple<Long, String, String>> sipContentFixityData = ingestWorkflowArtifactService.findFileFixity(
+                (String) variables.get(ProcessVariables.ingestWorkflowExternalId), preferredFixityGenerationEventId);
+        if (sipContentFixityData == null) {
+            //ingest workflow started before the fixity data were stored as artifacts
+            sipContentFixityData = ((Map<String, Map<String, Triple<Long, String, String>>>)
+                    variables.get(FixityGeneration.mapOfEventIdsToSipContentFixityData)).get(preferredFixityGenerationEventId);
+        }
         for (Pair<String, String> filePathsAndObjIdentifier : filePathsAndObjIdentifiers) {
             Element fileElement = fileGrpElement.addElement("METS:file");
             fileElement.addAttribute("ID", filePathsAndObjIdentifier.getRight());
@@ -502,11 +509,13 @@ public class ArclibXmlGenerator {
             return;
         IngestEvent preferredFormatIdentificationEvent = ingestEventStore.find(preferredFormatIdentificationEventId);
         if (preferredFormatIdentificationEvent != null && preferredFormatIdentificationEvent.isSuccess()) {
-            HashMap<String, TreeMap<String, Pair<String, String>>> mapOfEventIdsToMapsOfFilesToFormats =
-                    (HashMap<String, TreeMap<String, Pair<String, String>>>)
-                            variables.get(FormatIdentification.mapOfEventIdsToMapsOfFilesToFormats);
-
-            TreeMap<String, Pair<String, String>> identifiedFormats = mapOfEventIdsToMapsOfFilesToFormats.get(preferredFormatIdentificationEventId);
+            TreeMap<String, Pair<String, String>> identifiedFormats = ingestWorkflowArtifactService.findFileFormats(
+                    (String) variables.get(ProcessVariables.ingestWorkflowExternalId), preferredFormatIdentificationEventId);
+            if (identifiedFormats == null) {
+                //ingest workflow started before the formats were stored as artifacts
+                identifiedFormats = ((Map<String, TreeMap<String, Pair<String, String>>>)
+                        variables.get(FormatIdentification.mapOfEventIdsToMapsOfFilesToFormats)).get(preferredFormatIdentificationEventId);
+            }
 
             Map<Pair<String, String>, Long> aggregatedFormats =
                     computeAggregatedCount(identifiedFormats.values());
@@ -671,4 +680,14 @@ public class ArclibXmlGenerator {
     public void setArclibVersion(@Value("${arclib.version}") String arclibVersion) {
         this.arclibVersion = arclibVersion;
     }
+
+    @Autowired
+    public void setSipFileIndexService(SipFileIndexService sipFileIndexService) {
+        this.sipFileIndexService = sipFileIndexService;
+    }
+
+    @Autowired
+    public void setIngestWorkflowArtifactService(IngestWorkflowArtifactService ingestWorkflowArtifactService) {
+        this.ingestWorkflowArtifactService = ingestWorkflowArtifactService;
+    }
 }
@@ -0,0 +1,62 @@
+package cz.cas.lib.arclib.service.arclibxml;
+
+import cz.cas.lib.arclib.domain.profiles.SipProfile;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.saxon.jaxp.SaxonTransformerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.stream.StreamSource;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of XSLs of SIP profiles compiled to {@link Templates}, which are thread safe and may be used for any number
+ * of transformations.
+ * <p>
+ * Templates are keyed by the ID of the SIP profile and used only if the XSL of the profile has not changed since the
+ * compilation, so that a profile updated at another node of the cluster is never transformed with the stale XSL.
+ * The profile is evicted by {@link cz.cas.lib.arclib.service.SipProfileService} when it is saved or deleted.
+ * </p>
+ */
+@Slf4j
+@Service
+public class SipProfileXslCache {
+
+    private final Map<String, CompiledXsl> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the cached templates of the SIP profile or compiles its XSL if there are no templates cached for the
+     * current XSL of the profile.
+     *
+     * @param sipProfile SIP profile
+     * @return compiled XSL of the profile
+     * @throws TransformerConfigurationException XSL of the profile could not be compiled
+     */
+    public Templates getTemplates(SipProfile sipProfile) throws TransformerConfigurationException {
+        CompiledXsl compiled = cache.get(sipProfile.getId());
+        if (compiled != null && compiled.xsl.equals(sipProfile.getXsl()))
+            return compiled.templates;
+        long start = System.currentTimeMillis();
+        Templates templates = SaxonTransformerFactory.newInstance().newTemplates(new StreamSource(new StringReader(sipProfile.getXsl())));
+        log.debug("XSL of SIP profile {} compiled in {} ms", sipProfile.getExternalId(), System.currentTimeMillis() - start);
+        cache.put(sipProfile.getId(), new CompiledXsl(sipProfile.getXsl(), templates));
+        return templates;
+    }
+
+    /**
+     * @param sipProfileId ID of the SIP profile which XSL has changed or which has been deleted
+     */
+    public void evict(String sipProfileId) {
+        cache.remove(sipProfileId);
+    }
+
+    @AllArgsConstructor
+    private static final class CompiledXsl {
+        private final String xsl;
+        private final Templates templates;
+    }
+}
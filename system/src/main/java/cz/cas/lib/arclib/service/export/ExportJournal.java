@@ -0,0 +1,142 @@
+package cz.cas.lib.arclib.service.export;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static cz.cas.lib.core.util.Utils.bytesToHexString;
+
+/**
+ * Journal of a single export, kept in the export folder:
+ * <ul>
+ *     <li>{@link #PROGRESS_FILE_NAME} - line per exported item with the item key, state, number of exported bytes and duration in ms</li>
+ *     <li>{@link #MANIFEST_FILE_NAME} - SHA-512 checksums of the exported files in the BagIt manifest format</li>
+ *     <li>{@link #METRICS_FILE_NAME} - counts and throughput of the export, written when the journal is closed</li>
+ * </ul>
+ * Items completed by the previous run of the same export are loaded when the journal is opened, so that the export
+ * may be resumed. Methods recording the items are thread safe.
+ */
+@Slf4j
+public class ExportJournal implements Closeable {
+    public static final String PROGRESS_FILE_NAME = "export.progress";
+    public static final String MANIFEST_FILE_NAME = "manifest-sha512.txt";
+    public static final String METRICS_FILE_NAME = "export.metrics";
+    private static final String DONE = "DONE";
+    private static final String FAILED = "FAILED";
+    private static final int LOG_EVERY_ITEMS = 100;
+
+    private final Path exportFolder;
+    private final Set<String> completedItems = new HashSet<>();
+    private final BufferedWriter progressWriter;
+    private final BufferedWriter manifestWriter;
+    private final long started = System.nanoTime();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong done = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    public ExportJournal(Path exportFolder) throws IOException {
+        this.exportFolder = exportFolder;
+        Path progressFile = exportFolder.resolve(PROGRESS_FILE_NAME);
+        if (Files.exists(progressFile)) {
+            for (String line : Files.readAllLines(progressFile, StandardCharsets.UTF_8)) {
+                String[] columns = line.split("\t");
+                if (columns.length > 1 && columns[1].equals(DONE))
+                    completedItems.add(columns[0]);
+            }
+            log.info("resuming export to {}, {} items already exported", exportFolder, completedItems.size());
+        }
+        progressWriter = Files.newBufferedWriter(progressFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        manifestWriter = Files.newBufferedWriter(exportFolder.resolve(MANIFEST_FILE_NAME), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * @param items number of items to be added to the total count of items of the export
+     */
+    public void addTotal(long items) {
+        total.addAndGet(items);
+    }
+
+    /**
+     * @return true if the item was exported by the previous run of the export and should be skipped
+     */
+    public boolean isCompleted(String itemKey) {
+        if (!completedItems.contains(itemKey))
+            return false;
+        skipped.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Records exported item together with checksums of its files.
+     *
+     * @param itemKey     key of the item
+     * @param fileDigests SHA-512 digests of the files of the item
+     * @param durationMs  time spent exporting the item
+     */
+    public synchronized void itemDone(String itemKey, Map<Path, byte[]> fileDigests, long durationMs) throws IOException {
+        long itemBytes = 0;
+        List<Path> files = fileDigests.keySet().stream().sorted().toList();
+        for (Path file : files) {
+            manifestWriter.write(bytesToHexString(fileDigests.get(file)) + "  " + exportFolder.relativize(file).toString().replace("\\", "/"));
+            manifestWriter.newLine();
+            itemBytes += Files.size(file);
+        }
+        manifestWriter.flush();
+        writeProgress(itemKey, DONE, itemBytes, durationMs);
+        bytes.addAndGet(itemBytes);
+        long doneItems = done.incrementAndGet();
+        if (doneItems % LOG_EVERY_ITEMS == 0)
+            log.info("export to {}: {}", exportFolder, getMetrics());
+    }
+
+    public synchronized void itemFailed(String itemKey, long durationMs) throws IOException {
+        writeProgress(itemKey, FAILED, 0, durationMs);
+        failed.incrementAndGet();
+    }
+
+    /**
+     * @return number of items which have failed since the journal was opened, these are exported again when the export
+     * is resumed
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * @return counts of items and throughput of the export since the journal was opened
+     */
+    public String getMetrics() {
+        double seconds = Math.max((System.nanoTime() - started) / 1e9, 0.001);
+        return String.format("items=%d done=%d skipped=%d failed=%d bytes=%d seconds=%.0f MBps=%.2f itemsPerSecond=%.2f",
+                total.get(), done.get(), skipped.get(), failed.get(), bytes.get(), seconds,
+                bytes.get() / 1024d / 1024d / seconds, done.get() / seconds);
+    }
+
+    @Override
+    public void close() throws IOException {
+        String metrics = getMetrics();
+        log.info("export to {} has ended: {}", exportFolder, metrics);
+        try (progressWriter; manifestWriter) {
+            Files.writeString(exportFolder.resolve(METRICS_FILE_NAME), metrics.replace(' ', '\n') + "\n");
+        }
+    }
+
+    private void writeProgress(String itemKey, String state, long itemBytes, long durationMs) throws IOException {
+        progressWriter.write(String.join("\t", itemKey, state, String.valueOf(itemBytes), String.valueOf(durationMs)));
+        progressWriter.newLine();
+        progressWriter.flush();
+    }
+}
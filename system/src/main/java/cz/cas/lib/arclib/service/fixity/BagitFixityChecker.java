@@ -95,10 +95,10 @@ public class BagitFixityChecker extends FixityChecker {
 
             List<Path> missingFiles = new ArrayList<>(pathsToMissingFiles);
 
+            Map<Path, byte[]> computedChecksums = fixityCounterFacade.computeDigests(counter.getHashType(), pathsToExistingFiles);
             for (Pair<Path, String> checksumPair : validChecksumPairs) {
                 Path filePath = checksumPair.getLeft();
-                byte[] computedChecksum = counter.computeDigest(filePath);
-                if (!counter.checkIfDigestsMatches(checksumPair.getRight(), computedChecksum)) {
+                if (!counter.checkIfDigestsMatches(checksumPair.getRight(), computedChecksums.get(filePath))) {
                     invalidFixities.add(filePath);
                 }
             }
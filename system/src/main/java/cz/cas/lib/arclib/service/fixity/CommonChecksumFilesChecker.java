@@ -61,10 +61,11 @@ public class CommonChecksumFilesChecker extends FixityChecker {
                     continue;
             }
 
+            Map<Path, byte[]> computedChecksums = fixityCounterFacade.computeDigests(counter.getHashType(),
+                    checksumPairs.stream().map(Pair::getLeft).collect(Collectors.toList()));
             for (Pair<Path, String> checksumPair : checksumPairs) {
                 Path filePath = checksumPair.getLeft();
-                byte[] computedChecksum = counter.computeDigest(filePath);
-                if (!counter.checkIfDigestsMatches(checksumPair.getRight(), computedChecksum)) {
+                if (!counter.checkIfDigestsMatches(checksumPair.getRight(), computedChecksums.get(filePath))) {
                     invalidFixities.add(filePath);
                 }
             }
@@ -10,6 +10,7 @@ import org.springframework.stereotype.Service;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.zip.CRC32;
 import java.util.zip.Checksum;
 
@@ -32,10 +33,30 @@ public class Crc32Counter extends FixityCounter {
                     checksum.update(buffer, 0, numRead);
                 }
             } while (numRead != -1);
-            String s = Long.toHexString(checksum.getValue());
-            if (s.length() % 2 != 0)
-                s = "0" + s;
-            return Hex.decode(s);
+            return toDigest(checksum);
         }
     }
+
+    @Override
+    public DigestState newDigestState() {
+        CRC32 checksum = new CRC32();
+        return new DigestState() {
+            @Override
+            public void update(ByteBuffer data) {
+                checksum.update(data);
+            }
+
+            @Override
+            public byte[] digest() {
+                return toDigest(checksum);
+            }
+        };
+    }
+
+    private static byte[] toDigest(Checksum checksum) {
+        String s = Long.toHexString(checksum.getValue());
+        if (s.length() % 2 != 0)
+            s = "0" + s;
+        return Hex.decode(s);
+    }
 }
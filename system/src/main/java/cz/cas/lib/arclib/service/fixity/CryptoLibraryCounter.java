@@ -3,6 +3,7 @@ package cz.cas.lib.arclib.service.fixity;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -32,5 +33,25 @@ public abstract class CryptoLibraryCounter extends FixityCounter {
         }
     }
 
+    @Override
+    public DigestState newDigestState() {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance(getMessageDigestType());
+            return new DigestState() {
+                @Override
+                public void update(ByteBuffer data) {
+                    messageDigest.update(data);
+                }
+
+                @Override
+                public byte[] digest() {
+                    return messageDigest.digest();
+                }
+            };
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public abstract String getMessageDigestType();
 }
@@ -6,6 +6,7 @@ import lombok.extern.slf4j.Slf4j;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 
 import static cz.cas.lib.core.util.Utils.bytesToHexString;
@@ -27,6 +28,14 @@ public abstract class FixityCounter {
 
     public abstract HashType getHashType();
 
+    /**
+     * Creates new incremental digest state. Used when more digests are computed during a single read of the data, see
+     * {@link FixityCounterFacade#computeDigests(java.util.Set, Path)}.
+     *
+     * @return fresh digest state of the type of this counter
+     */
+    public abstract DigestState newDigestState();
+
     /**
      * Computes digest from a file. The type of digest depends on subclass implementation eg. MD5, SHA-512...
      *
@@ -97,4 +106,21 @@ public abstract class FixityCounter {
     public String getDigestInHex(InputStream stream) throws IOException {
         return bytesToHexString(computeDigest(stream));
     }
+
+    /**
+     * Incremental state of a digest computation. Instances are not thread safe and can not be reused once {@link #digest()} is called.
+     */
+    public interface DigestState {
+        /**
+         * Updates the digest with the remaining bytes of the buffer. Position of the buffer is moved to its limit.
+         */
+        void update(ByteBuffer data);
+
+        /**
+         * Finishes the computation.
+         *
+         * @return byte array with computed digest, in the same format as {@link #computeDigest(InputStream)} returns
+         */
+        byte[] digest();
+    }
 }
@@ -1,19 +1,33 @@
 package cz.cas.lib.arclib.service.fixity;
 
 import cz.cas.lib.arclib.domain.HashType;
+import cz.cas.lib.arclib.domainbase.exception.GeneralException;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
-import java.util.Map;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
+import static cz.cas.lib.core.util.Utils.notNull;
+
 @Slf4j
 @Service
 public class FixityCounterFacade {
@@ -21,6 +35,14 @@ public class FixityCounterFacade {
     @Getter
     private Map<HashType, FixityCounter> fixityCounters;
 
+    private int bufferSize = 1024 * 1024;
+    private ExecutorService fixityExecutor;
+
+    /**
+     * Direct read buffer reused by all digest computations of the thread.
+     */
+    private final ThreadLocal<ByteBuffer> readBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(bufferSize));
+
     public byte[] computeDigest(HashType hashType, InputStream fileStream) throws IOException {
         return fixityCounters.get(hashType).computeDigest(fileStream);
     }
@@ -33,8 +55,159 @@ public class FixityCounterFacade {
         return fixityCounters.get(hashType).verifyFixity(fileStream, expectedDigest);
     }
 
+    /**
+     * Computes digests of all requested types during a single read of the file.
+     *
+     * @param hashTypes  types of digests to compute
+     * @param pathToFile path to file which digests has to be computed
+     * @return map of hash types to byte arrays with computed digests
+     * @throws IOException
+     */
+    public Map<HashType, byte[]> computeDigests(Set<HashType> hashTypes, Path pathToFile) throws IOException {
+        notNull(pathToFile, () -> {
+            throw new IllegalArgumentException();
+        });
+        if (pathToFile.toFile().isDirectory()) {
+            throw new IllegalArgumentException("trying to compute digest on a folder");
+        }
+        try (FileChannel channel = FileChannel.open(pathToFile, StandardOpenOption.READ)) {
+            return computeDigests(hashTypes, channel);
+        }
+    }
+
+    /**
+     * Computes digests of all requested types during a single read of the stream. The stream is not closed.
+     *
+     * @param hashTypes  types of digests to compute
+     * @param fileStream stream of file which digests has to be computed
+     * @return map of hash types to byte arrays with computed digests
+     * @throws IOException
+     */
+    public Map<HashType, byte[]> computeDigests(Set<HashType> hashTypes, InputStream fileStream) throws IOException {
+        notNull(fileStream, () -> {
+            throw new IllegalArgumentException();
+        });
+        return computeDigests(hashTypes, Channels.newChannel(fileStream));
+    }
+
+    /**
+     * Copies the file to the target path and computes digests of all requested types from the copied data, so that
+     * the source file is read only once.
+     *
+     * @param hashTypes types of digests to compute
+     * @param source    path to file which is copied and which digests has to be computed
+     * @param target    path of the copy, must not exist, incomplete copy is deleted if the copying fails
+     * @return map of hash types to byte arrays with computed digests
+     * @throws IOException
+     */
+    public Map<HashType, byte[]> copyAndComputeDigests(Set<HashType> hashTypes, Path source, Path target) throws IOException {
+        notNull(source, () -> {
+            throw new IllegalArgumentException();
+        });
+        notNull(target, () -> {
+            throw new IllegalArgumentException();
+        });
+        try (FileChannel sourceChannel = FileChannel.open(source, StandardOpenOption.READ)) {
+            FileChannel targetChannel = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            try (targetChannel) {
+                return computeDigests(hashTypes, sourceChannel, targetChannel);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(target);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Computes digest of the given type for every file. Files are read concurrently by the fixity executor
+     * (at most <i>arclib.fixity.threads</i> at once), or sequentially if no executor is set.
+     *
+     * @param hashType type of digest to compute
+     * @param files    paths to files which digests has to be computed
+     * @return map of file paths to byte arrays with computed digests, iteration order matches the order of <code>files</code>
+     * @throws IOException if any of the files could not be read
+     */
+    public Map<Path, byte[]> computeDigests(HashType hashType, List<Path> files) throws IOException {
+        Set<HashType> hashTypes = EnumSet.of(hashType);
+        Map<Path, byte[]> digests = new LinkedHashMap<>();
+        if (fixityExecutor == null) {
+            for (Path file : files) {
+                digests.put(file, computeDigests(hashTypes, file).get(hashType));
+            }
+            return digests;
+        }
+        List<Future<byte[]>> futures = new ArrayList<>(files.size());
+        for (Path file : files) {
+            futures.add(fixityExecutor.submit(() -> computeDigests(hashTypes, file).get(hashType)));
+        }
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                digests.put(files.get(i), futures.get(i).get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeneralException("interrupted during computation of checksums", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new GeneralException(e.getCause());
+        } finally {
+            futures.forEach(f -> f.cancel(true));
+        }
+        return digests;
+    }
+
+    private Map<HashType, byte[]> computeDigests(Set<HashType> hashTypes, ReadableByteChannel channel) throws IOException {
+        return computeDigests(hashTypes, channel, null);
+    }
+
+    /**
+     * @param copyChannel if not null, all data read from <code>channel</code> are also written to this channel
+     */
+    private Map<HashType, byte[]> computeDigests(Set<HashType> hashTypes, ReadableByteChannel channel, WritableByteChannel copyChannel) throws IOException {
+        Map<HashType, FixityCounter.DigestState> states = new EnumMap<>(HashType.class);
+        for (HashType hashType : hashTypes) {
+            FixityCounter counter = fixityCounters.get(hashType);
+            notNull(counter, () -> {
+                throw new IllegalArgumentException("unsupported hash type: " + hashType);
+            });
+            states.put(hashType, counter.newDigestState());
+        }
+        ByteBuffer buffer = readBuffer.get();
+        buffer.clear();
+        while (channel.read(buffer) != -1) {
+            buffer.flip();
+            for (FixityCounter.DigestState state : states.values()) {
+                state.update(buffer);
+                buffer.rewind();
+            }
+            while (copyChannel != null && buffer.hasRemaining()) {
+                copyChannel.write(buffer);
+            }
+            buffer.clear();
+        }
+        Map<HashType, byte[]> digests = new EnumMap<>(HashType.class);
+        states.forEach((hashType, state) -> digests.put(hashType, state.digest()));
+        return digests;
+    }
+
     @Autowired
     public void setFixityCheckers(List<FixityCounter> fixityCounters) {
         this.fixityCounters = fixityCounters.stream().collect(Collectors.toMap(f -> f.getHashType(), f -> f));
     }
+
+    @Autowired
+    public void setFixityExecutor(@Qualifier("fixityExecutor") ExecutorService fixityExecutor) {
+        this.fixityExecutor = fixityExecutor;
+    }
+
+    /**
+     * @param bufferSize size in bytes of the direct buffer used by {@link #computeDigests(Set, Path)}
+     */
+    @Autowired
+    public void setBufferSize(@Value("${arclib.fixity.bufferSize:1048576}") int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
 }
@@ -7,6 +7,7 @@ import cz.cas.lib.arclib.domainbase.exception.GeneralException;
 import cz.cas.lib.arclib.exception.bpm.IncidentException;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -22,10 +23,8 @@ import javax.xml.xpath.XPathExpressionException;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.stream.Collectors;
 
 import static cz.cas.lib.arclib.utils.ArclibUtils.*;
 import static cz.cas.lib.arclib.utils.XmlUtils.createDomAndXpath;
@@ -80,6 +79,7 @@ public class MetsFixityChecker extends FixityChecker {
             throw new GeneralException(e);
         }
 
+        List<Triple<Path, HashType, String>> filesToVerify = new ArrayList<>();
         for (int i = 0; i < elems.getLength(); i++) {
             String checksumType = elems.item(i).getAttributes().getNamedItem("CHECKSUMTYPE").getNodeValue();
             String checksum = elems.item(i).getAttributes().getNamedItem("CHECKSUM").getNodeValue();
@@ -93,19 +93,19 @@ public class MetsFixityChecker extends FixityChecker {
                         ? sipWsPath.resolve(filePathStrFromMets).normalize().toAbsolutePath()
                         : pathToMets.getParent().resolve(filePathStrFromMets).normalize().toAbsolutePath();
 
-                FixityCounter counter;
+                HashType hashType;
                 switch (checksumType.toUpperCase()) {
                     case "MD5":
-                        counter = fixityCounterFacade.getFixityCounters().get(HashType.MD5);
+                        hashType = HashType.MD5;
                         break;
                     case "SHA-512":
-                        counter = fixityCounterFacade.getFixityCounters().get(HashType.Sha512);
+                        hashType = HashType.Sha512;
                         break;
                     case "SHA-256":
-                        counter = fixityCounterFacade.getFixityCounters().get(HashType.Sha256);
+                        hashType = HashType.Sha256;
                         break;
                     case "SHA-1":
-                        counter = fixityCounterFacade.getFixityCounters().get(HashType.Sha1);
+                        hashType = HashType.Sha1;
                         break;
                     default:
                         boolean present = unsupportedChecksumTypes.containsKey(checksumType);
@@ -122,10 +122,20 @@ public class MetsFixityChecker extends FixityChecker {
                     missingFiles.add(filePathInWs);
                     continue;
                 }
-                byte[] computedChecksum = counter.computeDigest(filePathInWs);
-                if (!counter.checkIfDigestsMatches(checksum, computedChecksum)) {
-                    invalidFixities.add(filePathInWs);
-                }
+                filesToVerify.add(Triple.of(filePathInWs, hashType, checksum));
+            }
+        }
+        Map<HashType, Map<Path, byte[]>> computedChecksums = new EnumMap<>(HashType.class);
+        Map<HashType, List<Path>> filesByHashType = filesToVerify.stream()
+                .collect(Collectors.groupingBy(Triple::getMiddle, () -> new EnumMap<>(HashType.class), Collectors.mapping(Triple::getLeft, Collectors.toList())));
+        for (HashType hashType : filesByHashType.keySet()) {
+            computedChecksums.put(hashType, fixityCounterFacade.computeDigests(hashType, filesByHashType.get(hashType)));
+        }
+        for (Triple<Path, HashType, String> fileToVerify : filesToVerify) {
+            FixityCounter counter = fixityCounterFacade.getFixityCounters().get(fileToVerify.getMiddle());
+            byte[] computedChecksum = computedChecksums.get(fileToVerify.getMiddle()).get(fileToVerify.getLeft());
+            if (!counter.checkIfDigestsMatches(fileToVerify.getRight(), computedChecksum)) {
+                invalidFixities.add(fileToVerify.getLeft());
             }
         }
         if (!unsupportedChecksumTypes.isEmpty())
@@ -2,6 +2,7 @@ package cz.cas.lib.arclib.service.formatIdentification.droid;
 
 import cz.cas.lib.arclib.domainbase.exception.GeneralException;
 import cz.cas.lib.arclib.service.ExternalProcessRunner;
+import cz.cas.lib.arclib.service.ToolVersionCache;
 import cz.cas.lib.arclib.service.formatIdentification.FormatIdentificationTool;
 import cz.cas.lib.arclib.service.formatIdentification.FormatIdentificationToolType;
 import lombok.extern.slf4j.Slf4j;
@@ -14,15 +15,14 @@ import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.StringReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static cz.cas.lib.core.util.Utils.asList;
 import static cz.cas.lib.core.util.Utils.notNull;
@@ -31,10 +31,25 @@ import static cz.cas.lib.core.util.Utils.notNull;
 public class DroidFormatIdentificationTool extends FormatIdentificationTool {
 
     private static final String FILTER = "type any FILE CONTAINER";
+    /**
+     * values of the <i>TYPE</i> column accepted by {@link #FILTER}
+     */
+    private static final Set<String> FILTERED_TYPES = Set.of("FILE", "CONTAINER");
+    private static final String CONTAINER_SIGNATURE_PREFIX = "container-signature-";
     private static final String CMD;
     public static final String FORMAT_IDENTIFIER_NAME = FormatIdentificationToolType.DROID.toString();
 
     private ExternalProcessRunner externalProcessRunner;
+    /**
+     * if true, DROID is run once per SIP in the no-profile mode and results are streamed from its standard output,
+     * otherwise a DROID profile is created and exported to a CSV file
+     */
+    private boolean noProfileMode;
+    /**
+     * folder with DROID container signature files, the latest one is used in the no-profile mode
+     */
+    private Path containerSignatures;
+    private ToolVersionCache toolVersionCache;
 
     static {
         if (SystemUtils.IS_OS_WINDOWS) {
@@ -45,7 +60,23 @@ public class DroidFormatIdentificationTool extends FormatIdentificationTool {
     }
 
     public DroidFormatIdentificationTool(ExternalProcessRunner externalProcessRunner) {
+        this(externalProcessRunner, false, null);
+    }
+
+    public DroidFormatIdentificationTool(ExternalProcessRunner externalProcessRunner, boolean noProfileMode, Path containerSignatures) {
+        this(externalProcessRunner, noProfileMode, containerSignatures, null);
+    }
+
+    /**
+     * @param containerSignatures folder with DROID container signature files, used only in the no-profile mode
+     * @param toolVersionCache    cache of tool versions, if null the version is retrieved by running DROID every time
+     */
+    public DroidFormatIdentificationTool(ExternalProcessRunner externalProcessRunner, boolean noProfileMode, Path containerSignatures,
+                                         ToolVersionCache toolVersionCache) {
         this.externalProcessRunner = externalProcessRunner;
+        this.noProfileMode = noProfileMode;
+        this.containerSignatures = containerSignatures;
+        this.toolVersionCache = toolVersionCache;
     }
 
     public Map<String, List<Pair<String, String>>> analyze(Path pathToSip) throws IOException {
@@ -58,6 +89,12 @@ public class DroidFormatIdentificationTool extends FormatIdentificationTool {
 
         log.debug("DROID format analysis for SIP at path " + pathToSip + " started.");
 
+        if (noProfileMode) {
+            Map<String, List<Pair<String, String>>> result = runNoProfile(pathToSip);
+            log.debug("DROID format analysis for SIP at path " + pathToSip + " finished.");
+            return result;
+        }
+
         Path profileResultsPath = Paths.get(pathToSip + ".droid");
         Path exportResultsPath = Paths.get(pathToSip + ".csv");
         try {
@@ -83,6 +120,57 @@ public class DroidFormatIdentificationTool extends FormatIdentificationTool {
         log.debug("File with DROID profile result created at " + pathToResult + ".");
     }
 
+    /**
+     * Runs DROID in the no-profile mode, which identifies the files of the SIP in a single run of DROID and writes
+     * the results to the standard output in the CSV format of the profile export. The results are parsed while DROID
+     * is still running, no <i>.DROID</i> or <i>CSV</i> file is created.
+     * <p>
+     * Unlike the profile, the no-profile mode does not use the container signatures unless they are passed explicitly,
+     * so the latest container signature file is passed to DROID. Rows are filtered in the same way as by {@link #FILTER}
+     * of the profile export.
+     * </p>
+     *
+     * @param pathToSip path to the SIP to analyze
+     * @return see {@link #parseResults(Path, Path)}
+     */
+    protected Map<String, List<Pair<String, String>>> runNoProfile(Path pathToSip) {
+        Map<String, List<Pair<String, String>>> filePathsToPuidValues = new HashMap<>();
+        externalProcessRunner.executeProcessStreamedResultHandle(stdout -> {
+                    //skip log lines (e.g. "Starting DROID") which precede the CSV header
+                    String headerLine;
+                    do {
+                        headerLine = stdout.readLine();
+                    } while (headerLine != null && !headerLine.replace("\"", "").startsWith("ID,"));
+                    if (headerLine == null)
+                        throw new GeneralException("DROID output for SIP at path " + pathToSip + " does not contain CSV header");
+                    String[] header = CSVFormat.EXCEL.parse(new StringReader(headerLine)).iterator().next().values();
+                    Iterable<CSVRecord> records = CSVFormat.EXCEL.withDelimiter(',').withHeader(header).parse(stdout);
+                    parseRecords(records, pathToSip, filePathsToPuidValues);
+                },
+                CMD, "-Nr", pathToSip.toAbsolutePath().toString(), "-Nc", findContainerSignatureFile().toAbsolutePath().toString(), "-R");
+        return filePathsToPuidValues;
+    }
+
+    /**
+     * Finds the latest container signature file, i.e. the one with the highest version in its name
+     * (e.g. <i>container-signature-20240715.xml</i>).
+     *
+     * @return path to the container signature file
+     * @throws GeneralException if there is no container signature file
+     */
+    protected Path findContainerSignatureFile() {
+        if (containerSignatures == null || !Files.isDirectory(containerSignatures))
+            throw new GeneralException("folder with DROID container signature files not found at: " + containerSignatures);
+        try (Stream<Path> files = Files.list(containerSignatures)) {
+            return files
+                    .filter(f -> f.getFileName().toString().startsWith(CONTAINER_SIGNATURE_PREFIX) && f.getFileName().toString().endsWith(".xml"))
+                    .max(Comparator.comparing(f -> f.getFileName().toString()))
+                    .orElseThrow(() -> new GeneralException("no DROID container signature file found in: " + containerSignatures));
+        } catch (IOException e) {
+            throw new GeneralException("failed to list DROID container signature files in: " + containerSignatures, e);
+        }
+    }
+
     /**
      * Runs DROID that exports the results of the specified profile to a CSV file with one row for each format for each file profiled
      * (if a file has multiple identifications, then a separate row will be written out for each file and separate identification made)
@@ -114,50 +202,55 @@ public class DroidFormatIdentificationTool extends FormatIdentificationTool {
 
         Map<String, List<Pair<String, String>>> filePathsToPuidValues = new HashMap<>();
 
-        BufferedReader br = null;
-        try {
-            br = new BufferedReader(new FileReader(pathToResultsCsv.toAbsolutePath().toString()));
-
+        try (BufferedReader br = new BufferedReader(new FileReader(pathToResultsCsv.toAbsolutePath().toString()))) {
             Iterable<CSVRecord> records = CSVFormat.EXCEL.withDelimiter(',').withHeader(
                     "ID", "PARENT_ID", "URI", "FILE_PATH", "NAME", "METHOD", "STATUS", "SIZE", "TYPE", "EXT",
                     "LAST_MODIFIED", "EXTENSION_MISMATCH", "HASH", "FORMAT_COUNT", "PUID", "MIME_TYPE", "FORMAT_NAME",
                     "FORMAT_VERSION"
             ).withSkipHeaderRecord(true).parse(br);
-
-            String pathToSipStr = pathToSip.toAbsolutePath().toString().replace("\\", "/");
-
-            for (CSVRecord record : records) {
-                String filePath = record.get("URI");
-                String puid = record.get("PUID");
-                String method = record.get("METHOD");
-
-                filePath = filePath.replaceAll("file:/?" + Pattern.quote(pathToSipStr) + "/", "");
-
-                if (puid == null || puid.isBlank()) {
-                    filePathsToPuidValues.put(filePath, null);
-                    log.warn("File at path \"" + filePath + "\" was not identified by droid.");
-                    continue;
-                }
-                List<Pair<String, String>> puids = filePathsToPuidValues.computeIfAbsent(filePath, s -> new ArrayList<>());
-                puids.add(Pair.of(puid, method));
-                filePathsToPuidValues.put(filePath, puids);
-
-                log.trace("File at path \"" + filePath + "\" has been identified with format: " + puid +
-                        ". Identification method: " + method + ".");
-            }
+            parseRecords(records, pathToSip, filePathsToPuidValues);
         } catch (IOException e) {
             throw new GeneralException("CSV file with the results of the DROID format identification" +
                     " is inaccessible at the path: " + pathToResultsCsv, e);
-        } finally {
-            if (br != null) {
-                br.close();
-            }
         }
 
         log.debug("Parsing of CSV file " + pathToResultsCsv + " finished.");
         return filePathsToPuidValues;
     }
 
+    /**
+     * Fills the map of file paths to identified PUIDs with the CSV records of DROID export
+     *
+     * @param records               CSV records with <i>URI</i>, <i>PUID</i> and <i>METHOD</i> columns
+     * @param pathToSip             path to the SIP package
+     * @param filePathsToPuidValues map to fill, see {@link #parseResults(Path, Path)}
+     */
+    private void parseRecords(Iterable<CSVRecord> records, Path pathToSip, Map<String, List<Pair<String, String>>> filePathsToPuidValues) {
+        String pathToSipStr = pathToSip.toAbsolutePath().toString().replace("\\", "/");
+
+        for (CSVRecord record : records) {
+            if (record.isMapped("TYPE") && !FILTERED_TYPES.contains(record.get("TYPE").toUpperCase()))
+                continue;
+            String filePath = record.get("URI");
+            String puid = record.get("PUID");
+            String method = record.get("METHOD");
+
+            filePath = filePath.replaceAll("file:/?" + Pattern.quote(pathToSipStr) + "/", "");
+
+            if (puid == null || puid.isBlank()) {
+                filePathsToPuidValues.put(filePath, null);
+                log.warn("File at path \"" + filePath + "\" was not identified by droid.");
+                continue;
+            }
+            List<Pair<String, String>> puids = filePathsToPuidValues.computeIfAbsent(filePath, s -> new ArrayList<>());
+            puids.add(Pair.of(puid, method));
+            filePathsToPuidValues.put(filePath, puids);
+
+            log.trace("File at path \"" + filePath + "\" has been identified with format: " + puid +
+                    ". Identification method: " + method + ".");
+        }
+    }
+
     public String getToolName() {
         return FORMAT_IDENTIFIER_NAME;
     }
@@ -168,10 +261,16 @@ public class DroidFormatIdentificationTool extends FormatIdentificationTool {
      * @return string with the format identifier version
      */
     public String getToolVersion() {
+        if (toolVersionCache == null)
+            return loadToolVersion();
+        return toolVersionCache.get(FORMAT_IDENTIFIER_NAME, List.of(CMD, "-v", "-x"), toolVersionCache.getDroidSignatures(), this::loadToolVersion);
+    }
+
+    private String loadToolVersion() {
         String toolVersion = "DROID: version: " + getDroidVersion().get(0) + ", Signature files: ";
         List<String> droidSignatureFilesVersions = getDroidSignatureFilesVersions();
         //sort alphabetically
-        java.util.Collections.sort(droidSignatureFilesVersions);
+        Collections.sort(droidSignatureFilesVersions);
 
         for (int i = 0; i < droidSignatureFilesVersions.size(); i++) {
             String sigFileVers = droidSignatureFilesVersions.get(i);
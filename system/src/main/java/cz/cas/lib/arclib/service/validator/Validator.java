@@ -6,7 +6,9 @@ import cz.cas.lib.arclib.exception.validation.InvalidSipNodeValue;
 import cz.cas.lib.arclib.exception.validation.MissingFile;
 import cz.cas.lib.arclib.exception.validation.SchemaValidationError;
 import cz.cas.lib.arclib.exception.validation.WrongNodeValue;
+import cz.cas.lib.arclib.service.SipFileIndexService;
 import cz.cas.lib.arclib.store.ValidationProfileStore;
+import cz.cas.lib.arclib.utils.SipFileIndex;
 import cz.cas.lib.arclib.utils.XmlUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.tuple.Pair;
@@ -25,12 +27,12 @@ import javax.xml.xpath.XPathExpressionException;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static cz.cas.lib.arclib.utils.XmlUtils.createDomAndXpath;
-import static cz.cas.lib.core.util.Utils.listFilesMatchingGlobPattern;
 import static cz.cas.lib.core.util.Utils.notNull;
 
 @Slf4j
@@ -38,6 +40,7 @@ import static cz.cas.lib.core.util.Utils.notNull;
 public class Validator {
 
     private ValidationProfileStore validationProfileStore;
+    private SipFileIndexService sipFileIndexService;
 
     /**
      * Validates SIP using the given validation profile. If the validation has failed, corresponding exception is thrown
@@ -66,9 +69,10 @@ public class Validator {
         XPath xpath = domAndXpath.getRight();
         validationProfileDom.getDocumentElement().normalize();
 
-        performFileExistenceChecks(sipPath, validationProfileDom, xpath, validationProfileExternalId, sipId);
-        performValidationSchemaChecks(sipPath, validationProfileDom, xpath, validationProfileExternalId, sipId);
-        performNodeValueChecks(sipPath, validationProfileDom, xpath, validationProfileExternalId, sipId);
+        SipFileIndex sipFileIndex = sipFileIndexService.get(Paths.get(sipPath));
+        performFileExistenceChecks(sipFileIndex, validationProfileDom, xpath, validationProfileExternalId, sipId);
+        performValidationSchemaChecks(sipFileIndex, validationProfileDom, xpath, validationProfileExternalId, sipId);
+        performNodeValueChecks(sipFileIndex, validationProfileDom, xpath, validationProfileExternalId, sipId);
 
         log.debug("Validation of SIP " + sipId + " with profile " + validationProfileExternalId + " succeeded.");
     }
@@ -77,13 +81,13 @@ public class Validator {
      * Performs all file existence checks contained in the validation profile. If the validation has failed
      * (some of the files specified in the validation profile do not exist), {@link MissingFile} exception is thrown.
      *
-     * @param sipPath                     path to the SIP
+     * @param sipFileIndex                index of the files of the SIP
      * @param validationProfileDom        document with the validation profile
      * @param validationProfileExternalId id of the validation profile
      * @param sipId                       id of the SIP
      * @throws XPathExpressionException if there is an error in the XPath expression
      */
-    private void performFileExistenceChecks(String sipPath, Document validationProfileDom, XPath xPath, String validationProfileExternalId,
+    private void performFileExistenceChecks(SipFileIndex sipFileIndex, Document validationProfileDom, XPath xPath, String validationProfileExternalId,
                                             String sipId) throws XPathExpressionException, IOException {
         NodeList nodes = (NodeList) xPath.compile("/profile/rule/fileExistenceCheck")
                 .evaluate(validationProfileDom, XPathConstants.NODESET);
@@ -92,7 +96,7 @@ public class Validator {
             Element element = (Element) nodes.item(i);
             String relativePath = element.getElementsByTagName("filePathGlobPattern").item(0).getTextContent();
 
-            List<File> matchingFiles = listFilesMatchingGlobPattern(new File(sipPath), relativePath);
+            List<File> matchingFiles = sipFileIndex.listFilesMatchingGlobPattern(relativePath);
             if (matchingFiles.size() == 0) {
                 log.debug("Validation of SIP " + sipId + " with profile " + validationProfileExternalId +
                         " failed. File at \"" + relativePath + "\" is missing.");
@@ -105,7 +109,7 @@ public class Validator {
      * Performs all validation schema checks contained in the validation profile. If the validation has failed (some of the XMLs
      * specified in the validation profile do not match their respective validation schemas) {@link SchemaValidationError} is thrown.
      *
-     * @param sipPath                     path to the SIP
+     * @param sipFileIndex                index of the files of the SIP
      * @param validationProfileDom        document with the validation profile
      * @param validationProfileExternalId id of the validation profile
      * @param sipId                       id of the SIP
@@ -113,7 +117,7 @@ public class Validator {
      * @throws SAXException             if the XSD schema is invalid
      * @throws IOException              if the validated file is inaccessible or the XSD schema is unreadable
      */
-    private void performValidationSchemaChecks(String sipPath, Document validationProfileDom, XPath xPath, String validationProfileExternalId,
+    private void performValidationSchemaChecks(SipFileIndex sipFileIndex, Document validationProfileDom, XPath xPath, String validationProfileExternalId,
                                                String sipId) throws XPathExpressionException, IOException {
         NodeList nodes = (NodeList) xPath.compile("/profile/rule/validationSchemaCheck")
                 .evaluate(validationProfileDom,
@@ -123,13 +127,13 @@ public class Validator {
             String filePathGlobPattern = element.getElementsByTagName("filePathGlobPattern").item(0).getTextContent();
             String schema = element.getElementsByTagName("schema").item(0).getTextContent().trim();
 
-            List<File> matchingFiles = listFilesMatchingGlobPattern(new File(sipPath), filePathGlobPattern);
+            List<File> matchingFiles = sipFileIndex.listFilesMatchingGlobPattern(filePathGlobPattern);
             if (matchingFiles.size() == 0) throw new MissingFile(sipId, validationProfileExternalId, filePathGlobPattern);
 
             for (File file: matchingFiles) {
-                try {
-                    XmlUtils.validateWithXMLSchema(Files.readString(file.toPath()), new InputStream[]{
-                            new ByteArrayInputStream(schema.getBytes(StandardCharsets.UTF_8.name()))}, "validationSchemaCheck rule");
+                try (InputStream xml = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+                    XmlUtils.validateWithXMLSchema(xml, new InputStream[]{
+                            new ByteArrayInputStream(schema.getBytes(StandardCharsets.UTF_8.name()))}, "validationSchemaCheck rule, file " + file);
                 } catch (SchemaValidationError e) {
                     log.error("Validation of SIP " + sipId + " with profile " + validationProfileExternalId + " failed. File at \"" +
                             filePathGlobPattern + "\" is not valid against its corresponding schema.");
@@ -144,7 +148,7 @@ public class Validator {
      * specified in the validation profile do not match their specified values or regex) {@link WrongNodeValue} or
      * {@link InvalidSipNodeValue} is thrown.
      *
-     * @param sipPath                     path to the SIP
+     * @param sipFileIndex                index of the files of the SIP
      * @param validationProfileDom        document with the validation profile
      * @param validationProfileExternalId id of the validation profile
      * @param sipId                       id of the SIP
@@ -152,7 +156,7 @@ public class Validator {
      * @throws SAXException             if the validationProfileDom cannot be parsed
      * @throws IOException              if some file addressed from the validation profile is inaccessible
      */
-    private void performNodeValueChecks(String sipPath, Document validationProfileDom, XPath xPath, String validationProfileExternalId,
+    private void performNodeValueChecks(SipFileIndex sipFileIndex, Document validationProfileDom, XPath xPath, String validationProfileExternalId,
                                         String sipId)
             throws ParserConfigurationException, XPathExpressionException, SAXException, IOException {
         NodeList nodes = (NodeList) xPath.compile("/profile/rule/nodeCheck")
@@ -161,7 +165,7 @@ public class Validator {
             Element element = (Element) nodes.item(i);
 
             String filePathGlobPattern = element.getElementsByTagName("filePathGlobPattern").item(0).getTextContent();
-            List<File> matchingFiles = listFilesMatchingGlobPattern(new File(sipPath), filePathGlobPattern);
+            List<File> matchingFiles = sipFileIndex.listFilesMatchingGlobPattern(filePathGlobPattern);
             if (matchingFiles.size() == 0)
                 throw new MissingFile(sipId, validationProfileExternalId, filePathGlobPattern);
 
@@ -205,4 +209,9 @@ public class Validator {
     public void setValidationProfileStore(ValidationProfileStore validationProfileStore) {
         this.validationProfileStore = validationProfileStore;
     }
+
+    @Autowired
+    public void setSipFileIndexService(SipFileIndexService sipFileIndexService) {
+        this.sipFileIndexService = sipFileIndexService;
+    }
 }
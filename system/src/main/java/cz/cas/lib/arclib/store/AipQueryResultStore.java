@@ -0,0 +1,13 @@
+package cz.cas.lib.arclib.store;
+
+import cz.cas.lib.arclib.domain.AipQueryResult;
+import cz.cas.lib.arclib.domain.QAipQueryResult;
+import cz.cas.lib.arclib.domainbase.store.DomainStore;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class AipQueryResultStore extends DomainStore<AipQueryResult, QAipQueryResult> {
+    public AipQueryResultStore() {
+        super(AipQueryResult.class, QAipQueryResult.class);
+    }
+}
@@ -5,6 +5,8 @@ import cz.cas.lib.arclib.domain.QAipQuery;
 import cz.cas.lib.arclib.domainbase.store.NamedStore;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Clob;
+import java.sql.SQLException;
 import java.util.List;
 
 @Repository
@@ -13,6 +15,43 @@ public class AipQueryStore extends NamedStore<AipQuery, QAipQuery> {
         super(AipQuery.class, QAipQuery.class);
     }
 
+    /**
+     * Queries saved before {@link cz.cas.lib.arclib.domain.AipQueryResult} was introduced have whole result serialized
+     * to JSON in the <i>result</i> column, which is no longer mapped.
+     *
+     * @return serialized result or null if there is none
+     */
+    public String findLegacyResult(String id) {
+        List<?> result = entityManager.createNativeQuery("SELECT result FROM arclib_aip_query WHERE id = :id")
+                .setParameter("id", id)
+                .getResultList();
+        if (result.isEmpty() || result.get(0) == null)
+            return null;
+        if (result.get(0) instanceof Clob clob) {
+            try {
+                return clob.getSubString(1, (int) clob.length());
+            } catch (SQLException e) {
+                throw new RuntimeException("could not read legacy result of aip query " + id, e);
+            }
+        }
+        return result.get(0).toString();
+    }
+
+    /**
+     * @return ids of the queries which result is saved in the legacy format, see {@link #findLegacyResult(String)}
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> findIdsWithLegacyResult() {
+        return entityManager.createNativeQuery("SELECT id FROM arclib_aip_query WHERE result IS NOT NULL")
+                .getResultList();
+    }
+
+    public void clearLegacyResult(String id) {
+        entityManager.createNativeQuery("UPDATE arclib_aip_query SET result = NULL WHERE id = :id")
+                .setParameter("id", id)
+                .executeUpdate();
+    }
+
     public List<AipQuery> findQueriesOfUser(String userId) {
         QAipQuery qAipQuery = qObject();
         return query().select(qAipQuery)
@@ -3,19 +3,19 @@ package cz.cas.lib.arclib.store;
 import cz.cas.lib.arclib.domain.Batch;
 import cz.cas.lib.arclib.domain.Producer;
 import cz.cas.lib.arclib.domain.QBatch;
+import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflowState;
 import cz.cas.lib.arclib.domain.ingestWorkflow.QIngestWorkflow;
 import cz.cas.lib.arclib.domain.profiles.ProducerProfile;
 import cz.cas.lib.arclib.index.solr.entity.IndexedBatch;
 import cz.cas.lib.core.index.solr.IndexedDatedStore;
+import jakarta.persistence.Query;
 import lombok.Getter;
-import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
-import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocumentList;
 import org.springframework.stereotype.Repository;
 
 import java.io.IOException;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -33,12 +33,7 @@ public class BatchStore extends IndexedDatedStore<Batch, QBatch, IndexedBatch> {
     public Batch create(Batch b, String userId) {
         IndexedBatch solrBatch = toIndexObject(b);
         solrBatch.setUserId(userId);
-        try {
-            getSolrClient().addBean(getIndexCollection(), solrBatch);
-            getSolrClient().commit(getIndexCollection());
-        } catch (IOException | SolrServerException e) {
-            throw new RuntimeException(e);
-        }
+        writeIndexObjects(List.of(solrBatch));
         save(b);
         return b;
     }
@@ -57,6 +52,39 @@ public class BatchStore extends IndexedDatedStore<Batch, QBatch, IndexedBatch> {
         return batch;
     }
 
+    /**
+     * Adds the deltas to the counters of ingest workflows of the batch by a single statement, i.e. without reading
+     * the counters first, so that concurrent changes of the states of the ingest workflows of the same batch are all
+     * counted.
+     *
+     * @param batchId id of the batch
+     * @param deltas  map of ingest workflow states to the numbers to be added to the respective counters
+     */
+    public void addIngestWorkflowCounts(String batchId, Map<IngestWorkflowState, Long> deltas) {
+        if (deltas.isEmpty())
+            return;
+        String assignments = deltas.keySet().stream()
+                .map(state -> {
+                    String column = ingestWorkflowCountColumn(state);
+                    return column + " = " + column + " + :" + state.name().toLowerCase();
+                })
+                .collect(Collectors.joining(", "));
+        Query query = entityManager.createNativeQuery("UPDATE arclib_batch SET " + assignments + " WHERE id = :id")
+                .setParameter("id", batchId);
+        deltas.forEach((state, delta) -> query.setParameter(state.name().toLowerCase(), delta));
+        query.executeUpdate();
+    }
+
+    private static String ingestWorkflowCountColumn(IngestWorkflowState state) {
+        return switch (state) {
+            case NEW -> "new_ingest_workflow_count";
+            case PROCESSING -> "processing_ingest_workflow_count";
+            case PROCESSED -> "processed_ingest_workflow_count";
+            case FAILED -> "failed_ingest_workflow_count";
+            case PERSISTED -> "persisted_ingest_workflow_count";
+        };
+    }
+
     public List<Batch> findAllDeployed() {
         List<Batch> fetch = query()
                 .select(qObject())
@@ -68,20 +96,7 @@ public class BatchStore extends IndexedDatedStore<Batch, QBatch, IndexedBatch> {
 
     @Override
     public Batch index(Batch obj) {
-        IndexedBatch newBatch = toIndexObject(obj);
-        try {
-            SolrQuery q = new SolrQuery("*:*");
-            q.addFilterQuery("id:" + obj.getId());
-            QueryResponse queryResponse = getSolrClient().query(getIndexCollection(), q);
-            List<IndexedBatch> old = queryResponse.getBeans(IndexedBatch.class);
-            if (!old.isEmpty()) {
-                newBatch.setUserId(old.get(0).getUserId());
-            }
-            getSolrClient().addBean(getIndexCollection(), newBatch);
-            getSolrClient().commit(getIndexCollection());
-        } catch (IOException | SolrServerException e) {
-            throw new RuntimeException(e);
-        }
+        index(List.of(obj));
         return obj;
     }
 
@@ -91,36 +106,47 @@ public class BatchStore extends IndexedDatedStore<Batch, QBatch, IndexedBatch> {
             return objects;
         }
         List<String> objIds = objects.stream().map(Batch::getId).collect(Collectors.toList());
+        Map<String, IndexedBatch> solrDocs = findIndexObjects(objIds);
+        List<IndexedBatch> indexObjects = objects.stream()
+                .map(b -> {
+                            IndexedBatch batch = toIndexObject(b);
+                            IndexedBatch old = solrDocs.get(batch.getId());
+                            if (old != null)
+                                batch.setUserId(old.getUserId());
+                            return batch;
+                        }
+                ).collect(Collectors.toList());
+        writeIndexObjects(indexObjects);
+        return objects;
+    }
 
+    /**
+     * Finds indexed batches by real-time get, which also returns documents which are not yet committed, e.g. the batch
+     * created by {@link #create(Batch, String)}.
+     */
+    private Map<String, IndexedBatch> findIndexObjects(List<String> ids) {
         try {
-            SolrQuery q = new SolrQuery("*:*");
-            q.addFilterQuery("id:(" + String.join(" ", objIds) + ")");
-            Map<String, IndexedBatch> solrDocs = new HashMap<>();
-            QueryResponse queryResponse = getSolrClient()
-                    .query(getIndexCollection(), q);
-            for (IndexedBatch solrBatch : queryResponse
-                    .getBeans(IndexedBatch.class)) {
-                solrDocs.put(solrBatch.getId(), solrBatch);
-            }
+            SolrDocumentList docs = getSolrClient().getById(getIndexCollection(), ids);
+            return getSolrClient().getBinder().getBeans(IndexedBatch.class, docs).stream()
+                    .collect(Collectors.toMap(IndexedBatch::getId, b -> b));
+        } catch (IOException | SolrServerException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-            List<IndexedBatch> indexObjects = objects.stream()
-                    .map(b -> {
-                                IndexedBatch batch = toIndexObject(b);
-                                IndexedBatch old = solrDocs.get(batch.getId());
-                                if (old != null)
-                                    batch.setUserId(old.getUserId());
-                                return batch;
-                            }
-                    ).collect(Collectors.toList());
+    private void writeIndexObjects(List<IndexedBatch> indexObjects) {
+        try {
+            if (getIndexWriter() != null) {
+                getSolrClient().addBeans(getIndexCollection(), indexObjects, getIndexWriter().getCommitWithinMs());
+                return;
+            }
             getSolrClient().addBeans(getIndexCollection(), indexObjects);
             getSolrClient().commit(getIndexCollection());
         } catch (IOException | SolrServerException e) {
             throw new RuntimeException(e);
         }
-        return objects;
     }
 
-
     @Override
     public IndexedBatch toIndexObject(Batch obj) {
         IndexedBatch indexObject = super.toIndexObject(obj);
@@ -140,6 +166,9 @@ public class BatchStore extends IndexedDatedStore<Batch, QBatch, IndexedBatch> {
             }
         }
         indexObject.setPendingIncidents(obj.isPendingIncidents());
+        indexObject.setIngestWorkflowCount(obj.getIngestWorkflowCount());
+        indexObject.setFailedIngestWorkflowCount(obj.getFailedIngestWorkflowCount());
+        indexObject.setPersistedIngestWorkflowCount(obj.getPersistedIngestWorkflowCount());
         if (obj.getInitialSipProfile() != null)
             indexObject.setInitialSipProfile(obj.getInitialSipProfile().getName());
         if (obj.getInitialValidationProfile() != null)
@@ -2,15 +2,33 @@ package cz.cas.lib.arclib.store;
 
 import cz.cas.lib.arclib.domain.preservationPlanning.FormatOccurrence;
 import cz.cas.lib.arclib.domain.preservationPlanning.QFormatOccurrence;
+import cz.cas.lib.arclib.domainbase.exception.GeneralException;
 import cz.cas.lib.arclib.domainbase.store.DomainStore;
 import cz.cas.lib.core.store.Transactional;
+import org.hibernate.Session;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
 
 @Repository
 public class FormatOccurrenceStore
         extends DomainStore<FormatOccurrence, QFormatOccurrence> {
+    private static final String INCREMENT_SQL = "UPDATE arclib_format_occurrence " +
+            "SET occurrences = occurrences + ?, updated = current_timestamp WHERE format_definition_id = ? AND producer_profile_id = ?";
+    private static final String INSERT_SQL = "INSERT INTO arclib_format_occurrence " +
+            "(id, format_definition_id, producer_profile_id, occurrences, created, updated) VALUES (?, ?, ?, ?, current_timestamp, current_timestamp)";
+    /**
+     * SQLSTATE of the unique constraint violation
+     */
+    private static final String UNIQUE_VIOLATION = "23505";
+
     public FormatOccurrenceStore() {
         super(FormatOccurrence.class, QFormatOccurrence.class);
     }
@@ -21,6 +39,69 @@ public class FormatOccurrenceStore
         return super.save(entity);
     }
 
+    /**
+     * Adds occurrences of formats found in SIP to the counters of the producer profile.
+     * <p>
+     * Counters are incremented in DB by an UPDATE, so that the parallel ingests of the same producer profile do not
+     * overwrite the counters with the values read before the other ingest has committed. Missing counters are
+     * inserted. If a parallel ingest has inserted the same counter in the meantime, the insert fails on the unique
+     * constraint, it is rolled back to a savepoint (so that the transaction can continue) and the counter is
+     * incremented again. Rows are written in the order of format definition ids, so that the concurrent transactions
+     * lock the rows in the same order. Only standard SQL is used.
+     * </p>
+     *
+     * @param producerProfileId              id of the producer profile
+     * @param occurrencesOfFormatDefinitions map of format definition ids to the number of files of the format
+     */
+    @Transactional
+    public void addOccurrences(String producerProfileId, Map<String, Long> occurrencesOfFormatDefinitions) {
+        if (occurrencesOfFormatDefinitions.isEmpty())
+            return;
+        entityManager.flush();
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement update = connection.prepareStatement(INCREMENT_SQL);
+                 PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+                for (Map.Entry<String, Long> row : new TreeMap<>(occurrencesOfFormatDefinitions).entrySet()) {
+                    if (increment(update, producerProfileId, row.getKey(), row.getValue()))
+                        continue;
+                    if (insert(connection, insert, producerProfileId, row.getKey(), row.getValue()))
+                        continue;
+                    if (!increment(update, producerProfileId, row.getKey(), row.getValue()))
+                        throw new GeneralException("format occurrence of format definition: " + row.getKey() +
+                                " and producer profile: " + producerProfileId + " can be neither inserted nor updated");
+                }
+            }
+        });
+    }
+
+    private boolean increment(PreparedStatement update, String producerProfileId, String formatDefinitionId, long count) throws SQLException {
+        update.setLong(1, count);
+        update.setString(2, formatDefinitionId);
+        update.setString(3, producerProfileId);
+        return update.executeUpdate() > 0;
+    }
+
+    /**
+     * @return false if the row was inserted by a parallel transaction in the meantime
+     */
+    private boolean insert(Connection connection, PreparedStatement insert, String producerProfileId, String formatDefinitionId, long count) throws SQLException {
+        insert.setString(1, UUID.randomUUID().toString());
+        insert.setString(2, formatDefinitionId);
+        insert.setString(3, producerProfileId);
+        insert.setLong(4, count);
+        Savepoint savepoint = connection.setSavepoint();
+        try {
+            insert.executeUpdate();
+        } catch (SQLException e) {
+            connection.rollback(savepoint);
+            if (!UNIQUE_VIOLATION.equals(e.getSQLState()))
+                throw e;
+            return false;
+        }
+        connection.releaseSavepoint(savepoint);
+        return true;
+    }
+
     public List<FormatOccurrence> findAllOfFormatDefinition(String formatDefinitionId) {
         List<FormatOccurrence> fetch = query()
                 .select(qObject())
@@ -0,0 +1,56 @@
+package cz.cas.lib.arclib.store;
+
+import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflowArtifact;
+import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflowArtifactType;
+import cz.cas.lib.arclib.domain.ingestWorkflow.QIngestWorkflowArtifact;
+import cz.cas.lib.arclib.domainbase.store.DatedStore;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public class IngestWorkflowArtifactStore extends DatedStore<IngestWorkflowArtifact, QIngestWorkflowArtifact> {
+    public IngestWorkflowArtifactStore() {
+        super(IngestWorkflowArtifact.class, QIngestWorkflowArtifact.class);
+    }
+
+    /**
+     * @param eventId id of the event which has produced the artifact, null for artifacts not produced by any event
+     * @return artifact or null if there is no such artifact
+     */
+    public IngestWorkflowArtifact find(String iwExternalId, IngestWorkflowArtifactType type, String eventId) {
+        QIngestWorkflowArtifact qArtifact = qObject();
+        IngestWorkflowArtifact artifact = query().select(qArtifact)
+                .where(qArtifact.ingestWorkflowExternalId.eq(iwExternalId))
+                .where(qArtifact.type.eq(type))
+                .where(eventId == null ? qArtifact.eventId.isNull() : qArtifact.eventId.eq(eventId))
+                .where(findWhereExpression())
+                .fetchFirst();
+        detachAll();
+        return artifact;
+    }
+
+    /**
+     * @return ids of events which have produced artifacts of the given type, ordered by the creation of the artifact
+     */
+    public List<String> findEventIds(String iwExternalId, IngestWorkflowArtifactType type) {
+        QIngestWorkflowArtifact qArtifact = qObject();
+        return query().select(qArtifact.eventId)
+                .where(qArtifact.ingestWorkflowExternalId.eq(iwExternalId))
+                .where(qArtifact.type.eq(type))
+                .where(findWhereExpression())
+                .orderBy(qArtifact.created.asc())
+                .fetch();
+    }
+
+    /**
+     * Hard deletes artifacts of the given types of the ingest workflow.
+     */
+    public void deleteByTypes(String iwExternalId, Collection<IngestWorkflowArtifactType> types) {
+        entityManager.createQuery("DELETE FROM IngestWorkflowArtifact a WHERE a.ingestWorkflowExternalId = :iwExternalId AND a.type IN :types")
+                .setParameter("iwExternalId", iwExternalId)
+                .setParameter("types", types)
+                .executeUpdate();
+    }
+}
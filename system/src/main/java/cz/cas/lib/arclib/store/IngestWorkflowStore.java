@@ -1,11 +1,15 @@
 package cz.cas.lib.arclib.store;
 
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQuery;
 import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflow;
 import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflowState;
 import cz.cas.lib.arclib.domain.ingestWorkflow.QIngestWorkflow;
 import cz.cas.lib.arclib.domainbase.store.DatedStore;
 import cz.cas.lib.core.sequence.Generator;
+import jakarta.persistence.LockModeType;
 import lombok.Getter;
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
@@ -39,6 +43,24 @@ public class IngestWorkflowStore extends DatedStore<IngestWorkflow, QIngestWorkf
         return super.save(entity);
     }
 
+    /**
+     * Finds the batch and the state of the ingest workflow as stored in DB and locks the ingest workflow until the end
+     * of the transaction, so that the state cannot be changed by a concurrent transaction before it is changed by this one.
+     *
+     * @param id id of the ingest workflow
+     * @return pair of the id of the batch (may be null) and the state, null if the ingest workflow is not stored
+     */
+    public Pair<String, IngestWorkflowState> findBatchIdAndStateForUpdate(String id) {
+        QIngestWorkflow ingestWorkflow = qObject();
+        Tuple tuple = query()
+                .select(ingestWorkflow.batch.id, ingestWorkflow.processingState)
+                .where(ingestWorkflow.id.eq(id))
+                .where(ingestWorkflow.deleted.isNull())
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .fetchFirst();
+        return tuple == null ? null : Pair.of(tuple.get(ingestWorkflow.batch.id), tuple.get(ingestWorkflow.processingState));
+    }
+
     public IngestWorkflow findByExternalId(String externalId) {
         QIngestWorkflow ingestWorkflow = qObject();
 
@@ -91,6 +113,28 @@ public class IngestWorkflowStore extends DatedStore<IngestWorkflow, QIngestWorkf
         return workflows;
     }
 
+    /**
+     * Returns a page of workflows in the given state ordered by id, which follows the workflow with the given id.
+     *
+     * @param state  processing state of the workflows
+     * @param lastId id of the last workflow of the previous page or null for the first page
+     * @param limit  maximal number of returned workflows
+     */
+    public List<IngestWorkflow> findByStateAfter(IngestWorkflowState state, String lastId, int limit) {
+        QIngestWorkflow ingestWorkflow = qObject();
+
+        JPAQuery<IngestWorkflow> query = query()
+                .select(ingestWorkflow)
+                .where(ingestWorkflow.deleted.isNull())
+                .where(ingestWorkflow.processingState.eq(state));
+        if (lastId != null)
+            query.where(ingestWorkflow.id.gt(lastId));
+        List<IngestWorkflow> workflows = query.orderBy(ingestWorkflow.id.asc()).limit(limit).fetch();
+
+        detachAll();
+        return workflows;
+    }
+
     public List<IngestWorkflow> findAllInListByExternalIds(List<String> ids) {
         QIngestWorkflow qObject = qObject();
         if (ids.isEmpty()) {
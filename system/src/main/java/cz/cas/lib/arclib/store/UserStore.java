@@ -12,6 +12,8 @@ import cz.cas.lib.core.index.solr.IndexedDatedStore;
 import lombok.Getter;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -76,6 +78,18 @@ public class UserStore extends IndexedDatedStore<User, QUser, IndexedUser> {
         return user;
     }
 
+    public List<User> findAllInListEvenDeleted(Collection<String> ids) {
+        if (ids.isEmpty())
+            return new ArrayList<>();
+        QUser qUser = qObject();
+        List<User> users = query()
+                .select(qUser)
+                .where(qUser.id.in(ids))
+                .fetch();
+        detachAll();
+        return users;
+    }
+
     /**
      * Finds user by ldap credentials (fullDn).
      *
@@ -0,0 +1,147 @@
+package cz.cas.lib.arclib.utils;
+
+import cz.cas.lib.core.util.Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Paths of all files and folders of the SIP folder collected by a single walk of the folder. Answers the same queries
+ * as {@link Utils#listFilesMatchingGlobPattern(File, String)}, {@link Utils#listFilesMatchingRegex(File, String, boolean)}
+ * and {@link ArclibUtils#listFilePaths(Path)} without walking the folder again.
+ * <p>
+ * Every pattern is compiled once and its result is remembered, as the same pattern is usually queried by more rules of
+ * the validation profile. The index is thread safe.
+ * </p>
+ */
+public class SipFileIndex {
+    private final Path root;
+    /**
+     * files (visited by {@link SimpleFileVisitor#visitFile}) in the order of the walk
+     */
+    private final List<Path> files = new ArrayList<>();
+    /**
+     * root, folders and files in the order of {@link Files#walk(Path, FileVisitOption...)}
+     */
+    private final List<Path> allPaths = new ArrayList<>();
+    /**
+     * last modification times of the folders, any file added, removed or renamed changes the time of its parent folder
+     */
+    private final Map<Path, FileTime> folderModificationTimes = new HashMap<>();
+    private final Map<String, List<File>> globResults = new ConcurrentHashMap<>();
+    private final Map<String, List<File>> regexResults = new ConcurrentHashMap<>();
+    private volatile List<String> filePaths;
+
+    private SipFileIndex(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Walks the SIP folder and creates the index.
+     *
+     * @param root SIP folder
+     * @return index of the folder
+     */
+    public static SipFileIndex build(Path root) throws IOException {
+        if (!Files.isDirectory(root)) {
+            throw new IllegalArgumentException(root + " is no directory.");
+        }
+        SipFileIndex index = new SipFileIndex(root);
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                index.allPaths.add(dir);
+                index.folderModificationTimes.put(dir, attrs.lastModifiedTime());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                index.allPaths.add(file);
+                index.files.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return index;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Checks whether the index still reflects the SIP folder, i.e. no folder of the SIP has been modified or removed
+     * since the index was built. Only folders are checked, which is much cheaper than walking the whole SIP again.
+     *
+     * @return true if no file or folder has been added, removed or renamed in the SIP folder
+     */
+    public boolean isUpToDate() {
+        for (Map.Entry<Path, FileTime> folder : folderModificationTimes.entrySet()) {
+            try {
+                if (!Files.getLastModifiedTime(folder.getKey()).equals(folder.getValue()))
+                    return false;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param globPattern glob pattern matched against path relative to the SIP folder
+     * @return files matching glob pattern, see {@link Utils#listFilesMatchingGlobPattern(File, String)}
+     */
+    public List<File> listFilesMatchingGlobPattern(String globPattern) {
+        return globResults.computeIfAbsent(globPattern, pattern -> {
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            return files.stream()
+                    .filter(file -> matcher.matches(root.relativize(file)))
+                    .map(file -> new File(file.toAbsolutePath().toString()))
+                    .collect(Collectors.toUnmodifiableList());
+        });
+    }
+
+    /**
+     * @param regex                     regex matched against path relative to the SIP folder, using / (slash) as dir separator
+     * @param startRegexWithRootDirName if true, then the regex must match the root dir name first
+     * @return files and folders matching regex, see {@link Utils#listFilesMatchingRegex(File, String, boolean)}
+     */
+    public List<File> listFilesMatchingRegex(String regex, boolean startRegexWithRootDirName) {
+        return regexResults.computeIfAbsent(startRegexWithRootDirName + ":" + regex, key -> {
+            Pattern pattern = Pattern.compile(regex);
+            String prefix = startRegexWithRootDirName ? "/" + root.getFileName() : "";
+            String absoluteRoot = root.toAbsolutePath().toString();
+            return allPaths.stream().filter(f -> {
+                String relativePathWithLinuxSeparators = prefix + f.toAbsolutePath().toString().replace(absoluteRoot, "").replace("\\", "/");
+                if (relativePathWithLinuxSeparators.length() < 1)
+                    return false;
+                return pattern.matcher(relativePathWithLinuxSeparators.substring(1)).matches();
+            }).map(Path::toFile).collect(Collectors.toUnmodifiableList());
+        });
+    }
+
+    /**
+     * @return relative paths of all regular files of the SIP folder, see {@link ArclibUtils#listFilePaths(Path)}
+     */
+    public List<String> listFilePaths() {
+        if (filePaths == null) {
+            String rootUri = root.toUri().toString();
+            filePaths = Collections.unmodifiableList(files.stream()
+                    .filter(f -> f.toFile().isFile())
+                    .map(file -> file.toUri().toString().replaceAll(rootUri, ""))
+                    .collect(Collectors.toList()));
+        }
+        return filePaths;
+    }
+}
@@ -35,13 +35,30 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+import static cz.cas.lib.core.util.Utils.bytesToHexString;
 import static cz.cas.lib.core.util.Utils.notNull;
 
 public class XmlUtils {
 
+    private static final int SCHEMA_CACHE_SIZE = 64;
+    /**
+     * compiled XSD schemas keyed by SHA-256 of the XSDs, least recently used schemas are evicted
+     */
+    private static final Map<String, Schema> SCHEMA_CACHE = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Schema> eldest) {
+            return size() > SCHEMA_CACHE_SIZE;
+        }
+    });
+
     /**
      * Searches XML element with XPath 3.1 and returns list of nodes found.
      *
@@ -146,22 +163,69 @@ public class XmlUtils {
      * @throws IOException  if the XML at the specified path is missing
      */
     public static void validateWithXMLSchema(String xml, InputStream[] schemas, String logSpec) {
-        SchemaFactory factory =
-                SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-        Source[] sources = new Source[schemas.length];
-        for (int i = 0; i < schemas.length; i++) {
-            sources[i] = new StreamSource(schemas[i]);
-        }
         try {
-            Schema schema = factory.newSchema(sources);
-            Validator validator = schema.newValidator();
-            validator.validate(new StreamSource(new ByteArrayInputStream(xml.getBytes())));
+            validate(new ByteArrayInputStream(xml.getBytes()), schemas);
         } catch (IOException | SAXException e) {
             LoggerFactory.getLogger(XmlUtils.class).error("Error during schema validation of XML: " + xml);
             throw new SchemaValidationError(logSpec + " - XML schema validation failed. Details: " + e.toString() + ". More details (whole XML) can be found in application log.", e);
         }
     }
 
+    /**
+     * Validates XML against XSD schema, the XML is streamed and never held in memory as a whole.
+     *
+     * @param xml     input stream with the XML, the stream is not closed
+     * @param schemas XSD schemas against which the XML is validated
+     * @param logSpec brief description of the XML and/or context of the validation.. used in log msg
+     */
+    public static void validateWithXMLSchema(InputStream xml, InputStream[] schemas, String logSpec) {
+        try {
+            validate(xml, schemas);
+        } catch (IOException | SAXException e) {
+            LoggerFactory.getLogger(XmlUtils.class).error("Error during schema validation of XML: " + logSpec);
+            throw new SchemaValidationError(logSpec + " - XML schema validation failed. Details: " + e.toString(), e);
+        }
+    }
+
+    private static void validate(InputStream xml, InputStream[] schemas) throws IOException, SAXException {
+        Validator validator = getSchema(schemas).newValidator();
+        validator.validate(new StreamSource(xml));
+    }
+
+    /**
+     * Returns schema compiled from the XSDs. Compiled schemas are thread safe and are cached, keyed by SHA-256 of the
+     * XSDs, so that the same XSDs (e.g. the XSD of a validation profile) are compiled only once.
+     *
+     * @param schemas XSD schemas, the streams are read whole but not closed
+     * @return compiled schema
+     * @throws SAXException if the XSD schema is invalid
+     */
+    public static Schema getSchema(InputStream[] schemas) throws IOException, SAXException {
+        byte[][] xsds = new byte[schemas.length][];
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (int i = 0; i < schemas.length; i++) {
+            xsds[i] = schemas[i].readAllBytes();
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(xsds[i].length).array());
+            digest.update(xsds[i]);
+        }
+        String key = bytesToHexString(digest.digest());
+        Schema schema = SCHEMA_CACHE.get(key);
+        if (schema != null)
+            return schema;
+        Source[] sources = new Source[xsds.length];
+        for (int i = 0; i < xsds.length; i++) {
+            sources[i] = new StreamSource(new ByteArrayInputStream(xsds[i]));
+        }
+        schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(sources);
+        SCHEMA_CACHE.put(key, schema);
+        return schema;
+    }
+
     /**
      * Returns XML parsed as DOM together with configured {@link XPath} 3.1 evaluator to be used with the DOM.
      * Saxon library is used for xPath evaluation.
@@ -179,6 +243,17 @@ public class XmlUtils {
         documentBuilderFactory.setNamespaceAware(namespacePrefixToNamespaceUri != null);
         Document dom = documentBuilderFactory.newDocumentBuilder().parse(xmlInput);
 
+        return Pair.of(dom, createXpath(namespacePrefixToNamespaceUri));
+    }
+
+    /**
+     * Creates XPath which can be used to precompile expressions evaluated over DOMs created by
+     * {@link #createDomAndXpath(InputStream, Map)} with the same namespace map.
+     *
+     * @param namespacePrefixToNamespaceUri map of prefix->URI if the xpath should be in namespace-aware context, null otherwise
+     * @return XPath
+     */
+    public static XPath createXpath(Map<String, String> namespacePrefixToNamespaceUri) {
         XPath xPath = new net.sf.saxon.xpath.XPathFactoryImpl().newXPath();
         if (namespacePrefixToNamespaceUri == null)
             ((XPathEvaluator) xPath).getStaticContext().setUnprefixedElementMatchingPolicy(UnprefixedElementMatchingPolicy.ANY_NAMESPACE);
@@ -200,6 +275,6 @@ public class XmlUtils {
                     return null;
                 }
             });
-        return Pair.of(dom, xPath);
+        return xPath;
     }
 }
@@ -1,15 +1,24 @@
 package cz.cas.lib.arclib.utils;
 
 import cz.cas.lib.arclib.domainbase.exception.GeneralException;
+import cz.cas.lib.arclib.service.fixity.FixityCounter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
-import java.util.Enumeration;
-import java.util.HashSet;
-import java.util.Set;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
@@ -19,7 +28,13 @@ public class ZipUtils {
     /**
      * Size of the buffer to read/write data
      */
-    private static final int BUFFER_SIZE = 4096;
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * Extensions of already compressed formats which are not worth compressing again
+     */
+    public static final Set<String> COMPRESSED_MEDIA_EXTENSIONS = Set.of("jpg", "jpeg", "jp2", "j2k", "jpx", "png", "gif", "webp",
+            "zip", "gz", "bz2", "xz", "7z", "rar", "mp3", "mp4", "m4a", "m4v", "mkv", "webm", "ogg", "oga", "ogv", "flac", "mov");
 
     /**
      * Extracts a SIP ZIP file specified by the zipFilePath to a directory specified by
@@ -32,27 +47,95 @@ public class ZipUtils {
      * @throws cz.cas.lib.arclib.domainbase.exception.GeneralException if there is not exactly one root folder inside the ZIP
      */
     public static String unzipSip(Path zipInput, Path destDirectory, String ingestWorkflowLogId) {
-        try (ZipFile zipFile = new ZipFile(zipInput.toFile())) {
-            Files.createDirectories(destDirectory);
-            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        return unzipSip(zipInput, destDirectory, ingestWorkflowLogId, null, null, null, 1);
+    }
+
+    /**
+     * Extracts a SIP ZIP file specified by the zipFilePath to a directory specified by
+     * destDirectory (will be created if does not exists) and computes digest of every extracted file during the extraction.
+     * <p>
+     * The root folder of the ZIP is validated using the central directory before any file is extracted. If the executor
+     * is provided, file entries are split to parts extracted by the executor and every part reads the ZIP through its own
+     * {@link ZipFile}. The executor is not shut down, so that it can be shared by more extractions.
+     * </p>
+     *
+     * @param zipInput
+     * @param destDirectory
+     * @param entryDigest   supplier of a new digest state for every extracted file, if null no digests are computed
+     * @param entryDigests  map which is filled with paths of the extracted files and their digests
+     * @param executor      executor extracting the parts, if null the files are extracted by the calling thread
+     * @param parts         maximal number of parts extracted in parallel
+     * @return name of the root folder
+     * @throws cz.cas.lib.arclib.domainbase.exception.GeneralException if there is not exactly one root folder inside the ZIP
+     */
+    public static String unzipSip(Path zipInput, Path destDirectory, String ingestWorkflowLogId,
+                                  Supplier<FixityCounter.DigestState> entryDigest, Map<Path, byte[]> entryDigests,
+                                  ExecutorService executor, int parts) {
+        try {
             Set<String> rootDirNames = new HashSet<>();
-            while (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
-                Path filePath = destDirectory.resolve(entry.getName());
-                int rootDirSeparatorIdx = entry.getName().indexOf('/');
-                if (rootDirSeparatorIdx != -1) {
-                    rootDirNames.add(entry.getName().substring(0, rootDirSeparatorIdx));
-                }
-                if (!entry.isDirectory()) {
-                    Files.createDirectories(filePath.getParent());
-                    extractFile(zipFile.getInputStream(entry), filePath);
-                } else {
-                    Files.createDirectories(filePath);
+            Set<Path> directories = new TreeSet<>();
+            List<ZipEntry> fileEntries = new ArrayList<>();
+            try (ZipFile zipFile = new ZipFile(zipInput.toFile())) {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    Path filePath = destDirectory.resolve(entry.getName());
+                    int rootDirSeparatorIdx = entry.getName().indexOf('/');
+                    if (rootDirSeparatorIdx != -1) {
+                        rootDirNames.add(entry.getName().substring(0, rootDirSeparatorIdx));
+                    }
+                    if (!entry.isDirectory()) {
+                        directories.add(filePath.getParent());
+                        fileEntries.add(entry);
+                    } else {
+                        directories.add(filePath);
+                    }
                 }
             }
             if (rootDirNames.size() != 1) {
                 throw new GeneralException("Invalid input ZIP format. ZIP has to include exactly one root folder. But " + rootDirNames.size() + " were found (" + Arrays.toString(rootDirNames.toArray()) + ")");
             }
+
+            Files.createDirectories(destDirectory);
+            for (Path directory : directories) {
+                Files.createDirectories(directory);
+            }
+
+            Map<Path, byte[]> computedDigests = new ConcurrentHashMap<>();
+            int threadCount = executor == null ? 1 : Math.max(1, Math.min(parts, fileEntries.size()));
+            if (threadCount == 1) {
+                extractEntries(zipInput, fileEntries, destDirectory, entryDigest, computedDigests);
+            } else {
+                //the biggest entries are distributed first so that the threads get similar amount of work
+                fileEntries.sort(Comparator.comparingLong(ZipEntry::getCompressedSize).reversed());
+                List<List<ZipEntry>> entriesPerThread = new ArrayList<>();
+                for (int i = 0; i < threadCount; i++) {
+                    entriesPerThread.add(new ArrayList<>());
+                }
+                for (int i = 0; i < fileEntries.size(); i++) {
+                    entriesPerThread.get(i % threadCount).add(fileEntries.get(i));
+                }
+                List<Future<Void>> futures = new ArrayList<>();
+                try {
+                    for (List<ZipEntry> threadEntries : entriesPerThread) {
+                        futures.add(executor.submit(() -> {
+                            extractEntries(zipInput, threadEntries, destDirectory, entryDigest, computedDigests);
+                            return null;
+                        }));
+                    }
+                    for (Future<Void> future : futures) {
+                        future.get();
+                    }
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                } finally {
+                    //the other parts are not needed if some part has failed
+                    futures.forEach(f -> f.cancel(true));
+                }
+            }
+            if (entryDigests != null) {
+                entryDigests.putAll(computedDigests);
+            }
             log.debug("SIP content for ingest workflow external id " + ingestWorkflowLogId + " in zip archive has been" +
                     " extracted to workspace.");
             return rootDirNames.iterator().next();
@@ -62,6 +145,27 @@ public class ZipUtils {
         }
     }
 
+    /**
+     * Extracts the file entries of the ZIP, parent directories of the entries must already exist
+     *
+     * @param digests map which is filled with paths of the extracted files and their digests, if <code>entryDigest</code> is not null
+     */
+    private static void extractEntries(Path zipInput, List<ZipEntry> entries, Path destDirectory,
+                                       Supplier<FixityCounter.DigestState> entryDigest, Map<Path, byte[]> digests) throws IOException {
+        try (ZipFile zipFile = new ZipFile(zipInput.toFile())) {
+            for (ZipEntry entry : entries) {
+                Path filePath = destDirectory.resolve(entry.getName());
+                FixityCounter.DigestState digestState = entryDigest == null ? null : entryDigest.get();
+                try (InputStream entryStream = zipFile.getInputStream(entry)) {
+                    extractFile(entryStream, filePath, digestState);
+                }
+                if (digestState != null) {
+                    digests.put(filePath, digestState.digest());
+                }
+            }
+        }
+    }
+
     /**
      * Extracts a zip entry (file entry)
      *
@@ -70,71 +174,96 @@ public class ZipUtils {
      * @throws IOException
      */
     public static void extractFile(InputStream zipIn, Path filePath) throws IOException {
-        BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(filePath.toFile()));
-        byte[] bytesIn = new byte[BUFFER_SIZE];
-        int read = 0;
-        while ((read = zipIn.read(bytesIn)) != -1) {
-            bos.write(bytesIn, 0, read);
-        }
-        bos.close();
+        extractFile(zipIn, filePath, null);
     }
 
     /**
-     * This method zips whole directory into bytearay, first entry is the source directory itself
-     * Note that all content is read into memory
+     * Extracts a zip entry (file entry) and updates the digest with the extracted data. The input stream is not closed.
      *
-     * @param sourceDirPath
-     * @return zipped folder as a byte array
+     * @param zipIn
+     * @param filePath
+     * @param digestState digest to update, may be null
+     * @throws IOException
      */
-    public static byte[] zipToByteArray(Path sourceDirPath) throws IOException {
-        byte[] packed;
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream(); ZipOutputStream zs = new ZipOutputStream(bos)) {
-            String rootPath = sourceDirPath.getFileName().toString() + "/";
-            zs.putNextEntry(new ZipEntry(rootPath));
-            Files.walk(sourceDirPath)
-                    .forEach(path -> {
-                        String entryName = rootPath + sourceDirPath.relativize(path);
-                        if (Files.isDirectory(path)) {
-                            entryName = entryName + "/";
-                        }
-                        ZipEntry zipEntry = new ZipEntry(entryName);
-                        try {
-                            zs.putNextEntry(zipEntry);
-                            Files.copy(path, zs);
-                            zs.closeEntry();
-                        } catch (IOException e) {
-                            System.err.println(e);
-                        }
-                    });
-            zs.close();
-            packed = bos.toByteArray();
+    public static void extractFile(InputStream zipIn, Path filePath, FixityCounter.DigestState digestState) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(filePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            byte[] bytesIn = new byte[BUFFER_SIZE];
+            ByteBuffer buffer = ByteBuffer.wrap(bytesIn);
+            int read;
+            while ((read = zipIn.read(bytesIn)) != -1) {
+                buffer.clear().limit(read);
+                if (digestState != null) {
+                    digestState.update(buffer);
+                    buffer.rewind();
+                }
+                while (buffer.hasRemaining()) {
+                    fileChannel.write(buffer);
+                }
+            }
         }
-        return packed;
     }
 
-    public static void zipFile(File fileToZip, String fileName, ZipOutputStream zipOut) throws IOException {
-        if (fileToZip.isDirectory()) {
-            if (fileName.endsWith("/")) {
-                zipOut.putNextEntry(new ZipEntry(fileName));
-                zipOut.closeEntry();
-            } else {
-                zipOut.putNextEntry(new ZipEntry(fileName + "/"));
-                zipOut.closeEntry();
+    /**
+     * Zips whole directory and writes the archive to the stream, first entry is the source directory itself.
+     * Content of the files is streamed, so the memory consumption does not depend on the size of the directory.
+     * The stream is not closed.
+     *
+     * @param sourceDirPath    directory to zip
+     * @param out              stream to which the archive is written
+     * @param compressionLevel compression level of deflated entries, see {@link java.util.zip.Deflater}
+     * @param storedExtensions extensions (lowercase, without dot) of files which are stored without compression, typically
+     *                         already compressed media, see {@link #COMPRESSED_MEDIA_EXTENSIONS}
+     */
+    public static void zipDirectory(Path sourceDirPath, OutputStream out, int compressionLevel, Set<String> storedExtensions) throws IOException {
+        BufferedOutputStream bos = new BufferedOutputStream(out, BUFFER_SIZE);
+        ZipOutputStream zs = new ZipOutputStream(bos);
+        zs.setLevel(compressionLevel);
+        String rootPath = sourceDirPath.getFileName().toString() + "/";
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(sourceDirPath)) {
+            paths = walk.collect(Collectors.toList());
+        }
+        for (Path path : paths) {
+            String relativePath = sourceDirPath.relativize(path).toString().replace("\\", "/");
+            if (Files.isDirectory(path)) {
+                zs.putNextEntry(new ZipEntry(relativePath.isEmpty() ? rootPath : rootPath + relativePath + "/"));
+                zs.closeEntry();
+                continue;
             }
-            File[] children = fileToZip.listFiles();
-            for (File childFile : children) {
-                zipFile(childFile, fileName + "/" + childFile.getName(), zipOut);
+            ZipEntry zipEntry = new ZipEntry(rootPath + relativePath);
+            if (storedExtensions.contains(FilenameUtils.getExtension(path.getFileName().toString()).toLowerCase())) {
+                long size = Files.size(path);
+                zipEntry.setMethod(ZipEntry.STORED);
+                zipEntry.setSize(size);
+                zipEntry.setCompressedSize(size);
+                zipEntry.setCrc(computeCrc(path));
             }
-            return;
+            zs.putNextEntry(zipEntry);
+            Files.copy(path, zs);
+            zs.closeEntry();
         }
-        FileInputStream fis = new FileInputStream(fileToZip);
-        ZipEntry zipEntry = new ZipEntry(fileName);
-        zipOut.putNextEntry(zipEntry);
-        byte[] bytes = new byte[1024];
-        int length;
-        while ((length = fis.read(bytes)) >= 0) {
-            zipOut.write(bytes, 0, length);
+        zs.finish();
+        bos.flush();
+    }
+
+    /**
+     * Zips whole directory and writes the archive to the channel, see {@link #zipDirectory(Path, OutputStream, int, Set)}.
+     * The channel is not closed.
+     */
+    public static void zipDirectory(Path sourceDirPath, WritableByteChannel out, int compressionLevel, Set<String> storedExtensions) throws IOException {
+        zipDirectory(sourceDirPath, Channels.newOutputStream(out), compressionLevel, storedExtensions);
+    }
+
+    private static long computeCrc(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
         }
-        fis.close();
+        return crc.getValue();
     }
 }
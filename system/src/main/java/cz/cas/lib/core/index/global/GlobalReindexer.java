@@ -1,51 +1,117 @@
 package cz.cas.lib.core.index.global;
 
+import cz.cas.lib.arclib.domainbase.exception.GeneralException;
 import cz.cas.lib.core.index.solr.IndexedStore;
-import cz.cas.lib.core.store.Transactional;
+import cz.cas.lib.core.index.solr.ReindexProgress;
 import cz.cas.lib.core.util.Utils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class GlobalReindexer {
     private List<IndexedStore> stores;
+    private int threads;
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * progress of the last reindex of every store, keyed by the store class name
+     */
+    private final Map<String, ReindexProgress> progress = new ConcurrentHashMap<>();
 
     /**
      * Reindexes all detected IndexedStores
      */
-    @Transactional
     public void reindex() {
         reindexSubset(true, null);
     }
 
     /**
-     * Reindexes only specified IndexedStores or all if not specified
+     * Reindexes only specified IndexedStores or all if not specified. Up to <i>solr.reindex.threads</i> stores are
+     * reindexed at once.
      *
      * @param dropIndexes  specify if indexes should be dropped prior to reindexing
      * @param storeClasses store classes subset to reindex or null if all
      */
-    @Transactional
     public void reindexSubset(boolean dropIndexes, List<Class<? extends IndexedStore>> storeClasses) {
-        if (dropIndexes) {
-            throw new UnsupportedOperationException();
+        List<IndexedStore> selectedStores = stores.stream()
+                .filter(store -> storeClasses == null || storeClasses.contains(Utils.unwrap(store).getClass()))
+                .collect(Collectors.toList());
+        if (selectedStores.isEmpty())
+            return;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("reindex-");
+        threadFactory.setDaemon(true);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, selectedStores.size()), threadFactory);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (IndexedStore store : selectedStores) {
+                String storeName = Utils.unwrap(store).getClass().getName();
+                ReindexProgress storeProgress = new ReindexProgress(store.getIndexType(), store.getIndexCollection());
+                progress.put(storeName, storeProgress);
+                futures.add(executor.submit(() -> reindexStore(store, storeName, storeProgress, dropIndexes)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeneralException("interrupted during reindex", e);
+        } catch (ExecutionException e) {
+            throw new GeneralException("reindex has failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
         }
+    }
+
+    /**
+     * @return progress of the last reindex of every store which has been reindexed since the start of the application
+     */
+    public Collection<ReindexProgress> getProgress() {
+        return new ArrayList<>(progress.values());
+    }
 
-        stores.stream()
-                .map(Utils::unwrap)
-                .filter(store -> storeClasses == null || storeClasses.contains(store.getClass()))
-                .forEach(store -> {
-                    log.info("Reindexing store {}", store.getClass().getName());
-                    store.reindex();
-                    log.info("Reindexing complete");
-                });
+    private void reindexStore(IndexedStore store, String storeName, ReindexProgress storeProgress, boolean dropIndexes) {
+        log.info("Reindexing store {}", storeName);
+        try {
+            //every page is read and indexed in its own transaction
+            if (dropIndexes)
+                store.dropReindex(storeProgress, transactionTemplate);
+            else
+                store.reindex(storeProgress, transactionTemplate);
+        } catch (RuntimeException e) {
+            storeProgress.fail(e);
+            throw e;
+        }
+        log.info("Reindexing of store {} complete, {} records indexed in {} s", storeName, storeProgress.getIndexed(),
+                storeProgress.getStarted() == null ? 0 : (storeProgress.getFinished().toEpochMilli() - storeProgress.getStarted().toEpochMilli()) / 1000);
     }
 
     @Autowired
     public void setStores(List<IndexedStore> stores) {
         this.stores = stores;
     }
+
+    /**
+     * @param transactionTemplate template creating a new transaction for every page of the reindex
+     */
+    @Autowired
+    public void setTransactionTemplate(TransactionTemplate transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * @param threads number of stores reindexed at once
+     */
+    @Autowired
+    public void setThreads(@Value("${solr.reindex.threads:2}") int threads) {
+        this.threads = Math.max(threads, 1);
+    }
 }
@@ -25,6 +25,7 @@ import static cz.cas.lib.core.util.Utils.toDate;
 public abstract class IndexedDatedStore<T extends DatedObject, Q extends EntityPathBase<T>, U extends IndexedDatedObject>
         extends DatedStore<T, Q> implements IndexedStore<T, U>, DataAdapter<T> {
     protected SolrClient solrClient;
+    private SolrIndexWriter indexWriter;
 
     private Class<U> uType;
 
@@ -84,6 +85,11 @@ public abstract class IndexedDatedStore<T extends DatedObject, Q extends EntityP
         this.solrClient = solrClient;
     }
 
+    @Autowired
+    public void setIndexWriter(SolrIndexWriter indexWriter) {
+        this.indexWriter = indexWriter;
+    }
+
     @Override
     @PostConstruct
     public void init() {
@@ -21,6 +21,7 @@ import java.util.Collection;
 public abstract class IndexedDomainStore<T extends DomainObject, Q extends EntityPathBase<T>, U extends IndexedDomainObject>
         extends DomainStore<T, Q> implements IndexedStore<T, U>, DataAdapter<T> {
     private SolrClient solrClient;
+    private SolrIndexWriter indexWriter;
 
     private Class<U> uType;
 
@@ -55,6 +56,11 @@ public abstract class IndexedDomainStore<T extends DomainObject, Q extends Entit
         this.solrClient = solrClient;
     }
 
+    @Autowired
+    public void setIndexWriter(SolrIndexWriter indexWriter) {
+        this.indexWriter = indexWriter;
+    }
+
     @Override
     public T save(T entity) {
         entity = super.save(entity);
@@ -23,6 +23,7 @@ import static cz.cas.lib.core.util.Utils.toDate;
 public abstract class IndexedNamedStore<T extends NamedObject, Q extends EntityPathBase<T>, U extends IndexedNamedObject>
         extends NamedStore<T, Q> implements IndexedStore<T, U>, DataAdapter<T> {
     private SolrClient solrClient;
+    private SolrIndexWriter indexWriter;
 
     private Class<U> uType;
 
@@ -74,6 +75,11 @@ public abstract class IndexedNamedStore<T extends NamedObject, Q extends EntityP
         this.solrClient = solrClient;
     }
 
+    @Autowired
+    public void setIndexWriter(SolrIndexWriter indexWriter) {
+        this.indexWriter = indexWriter;
+    }
+
     @Override
     @PostConstruct
     public void init() {
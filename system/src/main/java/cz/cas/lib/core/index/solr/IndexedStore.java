@@ -24,6 +24,7 @@ import org.apache.solr.client.solrj.beans.Field;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionOperations;
 
 import java.io.IOException;
 import java.lang.reflect.ParameterizedType;
@@ -56,12 +57,30 @@ import static cz.cas.lib.arclib.index.solr.IndexQueryUtils.*;
 public interface IndexedStore<T extends DomainObject, U extends IndexedDomainObject> {
     Logger indexedStoreLogger = LoggerFactory.getLogger(IndexedStore.class);
 
+    /**
+     * Number of entities read from DB and indexed at once during {@link #reindex()}
+     */
+    int REINDEX_PAGE_SIZE = 1000;
+
     Collection<T> findAll();
 
+    /**
+     * @see cz.cas.lib.arclib.domainbase.store.DomainStore#findAllAfter(String, int)
+     */
+    List<T> findAllAfter(String lastId, int limit);
+
+    long countAll();
+
     List<T> findAllInList(List<String> ids);
 
     SolrClient getSolrClient();
 
+    /**
+     * @return asynchronous writer used for bulk index updates, single entities are written synchronously with its
+     * {@link SolrIndexWriter#getCommitWithinMs()}, if null every request is followed by a hard commit
+     */
+    SolrIndexWriter getIndexWriter();
+
     Class<T> getType();
 
     Class<U> getUType();
@@ -97,34 +116,101 @@ public interface IndexedStore<T extends DomainObject, U extends IndexedDomainObj
      * </p>
      */
     default void reindex() {
+        reindex(new ReindexProgress(getIndexType(), getIndexCollection()));
+    }
+
+    /**
+     * Reindexes all entities from JPA to Solr within the current transaction, see {@link #reindex(ReindexProgress, TransactionOperations)}.
+     *
+     * @param progress progress of the reindex, updated after every page
+     */
+    default void reindex(ReindexProgress progress) {
+        reindex(progress, TransactionOperations.withoutTransaction());
+    }
+
+    /**
+     * Reindexes all entities from JPA to Solr, see {@link #reindex()}.
+     * <p>
+     * Entities are read by pages of {@link #REINDEX_PAGE_SIZE} ordered by id and indexed by batches, the collection
+     * is committed once at the end. Every page is read and indexed in its own transaction, so that neither the
+     * transaction nor the persistence context spans the whole table.
+     * </p>
+     *
+     * @param progress     progress of the reindex, updated after every page
+     * @param transactions executes the count and every page, e.g. a transaction template with a new transaction
+     */
+    default void reindex(ReindexProgress progress, TransactionOperations transactions) {
         String coreLogId = "type: " + this.getIndexType() + ", core: " + getIndexCollection();
         if (isChildStore())
             return;
-        Collection<T> instances = findAll();
-        if (instances.isEmpty()) {
+        progress.start(transactions.execute(t -> countAll()));
+        if (progress.getTotal() == 0) {
             indexedStoreLogger.trace(coreLogId + " - this store has no records to index");
+            progress.finish();
             return;
         }
-        indexedStoreLogger.debug(coreLogId + " - reindexing " + instances.size() + " records");
-        int counter = 0;
-        for (T instance : instances) {
-            index(instance);
-            counter++;
-            if (counter % 20 == 0 || counter == instances.size()) {
-                indexedStoreLogger.debug(coreLogId + " - reindexed " + counter + " records");
-            }
-        }
-        indexedStoreLogger.trace(coreLogId + " - reindexed all " + instances.size() + " records");
-        instances.forEach(this::index);
+        indexedStoreLogger.debug(coreLogId + " - reindexing " + progress.getTotal() + " records");
+        String lastId = null;
+        List<T> page;
+        do {
+            String previousLastId = lastId;
+            page = transactions.execute(t -> {
+                List<T> entities = findAllAfter(previousLastId, REINDEX_PAGE_SIZE);
+                index(entities);
+                return entities;
+            });
+            if (page.isEmpty())
+                break;
+            lastId = page.get(page.size() - 1).getId();
+            long indexed = progress.addIndexed(page.size());
+            indexedStoreLogger.debug(coreLogId + " - reindexed " + indexed + " records");
+        } while (page.size() == REINDEX_PAGE_SIZE);
+        commitIndex();
+        progress.finish();
+        indexedStoreLogger.trace(coreLogId + " - reindexed all " + progress.getIndexed() + " records");
     }
 
     /**
      * Deletes all documents from SOLR and reindexes all records from DB
      */
     default void dropReindex() {
+        dropReindex(new ReindexProgress(getIndexType(), getIndexCollection()));
+    }
+
+    /**
+     * Deletes all documents from SOLR and reindexes all records from DB within the current transaction
+     *
+     * @param progress progress of the reindex
+     */
+    default void dropReindex(ReindexProgress progress) {
+        dropReindex(progress, TransactionOperations.withoutTransaction());
+    }
+
+    /**
+     * Deletes all documents from SOLR and reindexes all records from DB, see {@link #reindex(ReindexProgress, TransactionOperations)}
+     *
+     * @param progress     progress of the reindex
+     * @param transactions executes the count and every page of the reindex
+     */
+    default void dropReindex(ReindexProgress progress, TransactionOperations transactions) {
         indexedStoreLogger.debug("drop-reindexing records of type: {} from core: {}", this.getIndexType(), getIndexCollection());
         removeAllIndexes();
-        reindex();
+        reindex(progress, transactions);
+    }
+
+    /**
+     * Sends all queued index updates to Solr and commits the collection, so that the updates are visible to search.
+     */
+    default void commitIndex() {
+        if (getIndexWriter() != null) {
+            getIndexWriter().flushAndCommit(getIndexCollection());
+            return;
+        }
+        try {
+            getSolrClient().commit(getIndexCollection());
+        } catch (SolrServerException | IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     /**
@@ -261,7 +347,14 @@ public interface IndexedStore<T extends DomainObject, U extends IndexedDomainObj
     }
 
     default void removeIndex(T obj) {
+        SolrIndexWriter writer = getIndexWriter();
         try {
+            if (writer != null) {
+                getSolrClient().deleteById(getIndexCollection(), obj.getId(), writer.getCommitWithinMs());
+                if (isParentStore())
+                    getSolrClient().deleteByQuery(getIndexCollection(), "_root_:" + obj.getId(), writer.getCommitWithinMs());
+                return;
+            }
             getSolrClient().deleteById(getIndexCollection(), obj.getId());
             getSolrClient().commit(getIndexCollection());
             if (isParentStore()) {
@@ -276,10 +369,15 @@ public interface IndexedStore<T extends DomainObject, U extends IndexedDomainObj
 
     default void removeAllIndexes() {
         indexedStoreLogger.trace("removing all records of type: {} from core: {} ", this.getIndexType(), getIndexCollection());
+        SolrIndexWriter writer = getIndexWriter();
         SolrClient client = getSolrClient();
         try {
-            client.deleteByQuery(getIndexCollection(), IndexQueryUtils.TYPE_FIELD + ":" + this.getIndexType());
-            client.commit(getIndexCollection());
+            if (writer != null) {
+                client.deleteByQuery(getIndexCollection(), IndexQueryUtils.TYPE_FIELD + ":" + this.getIndexType(), writer.getCommitWithinMs());
+            } else {
+                client.deleteByQuery(getIndexCollection(), IndexQueryUtils.TYPE_FIELD + ":" + this.getIndexType());
+                client.commit(getIndexCollection());
+            }
         } catch (SolrServerException | IOException e) {
             throw new RuntimeException(e);
         }
@@ -290,6 +388,10 @@ public interface IndexedStore<T extends DomainObject, U extends IndexedDomainObj
         if (isChildStore())
             return obj;
         try {
+            if (getIndexWriter() != null) {
+                getSolrClient().addBean(getIndexCollection(), this.toIndexObject(obj), getIndexWriter().getCommitWithinMs());
+                return obj;
+            }
             getSolrClient().addBean(getIndexCollection(), this.toIndexObject(obj));
             getSolrClient().commit(getIndexCollection());
         } catch (IOException | SolrServerException e) {
@@ -303,7 +405,7 @@ public interface IndexedStore<T extends DomainObject, U extends IndexedDomainObj
         if (objects.isEmpty() || isChildStore()) {
             return objects;
         }
-        //no batch processing
+        //no batch processing, parent stores index children in custom index(T) method
         if (isParentStore()) {
             for (T object : objects) {
                 index(object);
@@ -313,6 +415,12 @@ public interface IndexedStore<T extends DomainObject, U extends IndexedDomainObj
         List<U> indexObjects = objects.stream()
                 .map(this::toIndexObject)
                 .collect(Collectors.toList());
+        if (getIndexWriter() != null) {
+            //the caller waits for the write, so that a failure is reported to it
+            getIndexWriter().addAll(getIndexCollection(), indexObjects);
+            getIndexWriter().flush();
+            return objects;
+        }
         try {
             getSolrClient().addBeans(getIndexCollection(), indexObjects);
             getSolrClient().commit(getIndexCollection());
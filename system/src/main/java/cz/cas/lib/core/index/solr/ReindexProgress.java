@@ -0,0 +1,57 @@
+package cz.cas.lib.core.index.solr;
+
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of reindex of a single {@link IndexedStore}.
+ */
+@Getter
+public class ReindexProgress {
+    private final String indexType;
+    private final String indexCollection;
+    private volatile long total;
+    private final AtomicLong indexed = new AtomicLong();
+    private volatile Instant started;
+    private volatile Instant finished;
+    private volatile String failure;
+
+    public ReindexProgress(String indexType, String indexCollection) {
+        this.indexType = indexType;
+        this.indexCollection = indexCollection;
+    }
+
+    public void start(long total) {
+        this.total = total;
+        this.started = Instant.now();
+    }
+
+    public long addIndexed(int count) {
+        return indexed.addAndGet(count);
+    }
+
+    public void finish() {
+        finished = Instant.now();
+    }
+
+    public void fail(Exception e) {
+        failure = e.toString();
+        finished = Instant.now();
+    }
+
+    public long getIndexed() {
+        return indexed.get();
+    }
+
+    /**
+     * @return number of indexed records per second, since the start until now or until the end of the reindex
+     */
+    public double getRecordsPerSecond() {
+        if (started == null)
+            return 0;
+        long millis = (finished != null ? finished : Instant.now()).toEpochMilli() - started.toEpochMilli();
+        return millis == 0 ? 0 : indexed.get() * 1000.0 / millis;
+    }
+}
@@ -0,0 +1,287 @@
+package cz.cas.lib.core.index.solr;
+
+import cz.cas.lib.arclib.domainbase.exception.GeneralException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Asynchronous writer of Solr documents used by {@link IndexedStore}s for bulk writes, e.g. reindex. Writes of single
+ * entities are sent synchronously by the stores, with {@link #getCommitWithinMs()} instead of a hard commit.
+ * <p>
+ * Operations are put to a bounded queue and sent to Solr by a single background thread in the order in which they
+ * were submitted. Consecutive operations of the same kind on the same collection are coalesced into one request of at
+ * most <i>solr.writer.batchSize</i> documents. No commit is issued, documents become searchable within
+ * <i>solr.writer.commitWithinMs</i>.
+ * </p>
+ * <p>
+ * Callers have to call {@link #flush()} (visible to real-time get) or {@link #flushAndCommit(String)} (visible to
+ * search) before they return, so that a failed write is reported to them.
+ * </p>
+ * <p>
+ * Failures are tracked per calling thread: a flush reports only failures of operations queued by the same thread, so
+ * an error of one caller never fails an unrelated operation of another one. If a coalesced request fails, its
+ * operations are retried one by one, so that a single bad document does not fail the others.
+ * </p>
+ */
+@Slf4j
+@Component
+public class SolrIndexWriter {
+
+    private SolrClient solrClient;
+    private int batchSize;
+    private int queueCapacity;
+    private int commitWithinMs;
+
+    private BlockingQueue<Operation> queue;
+    private Thread worker;
+    private volatile boolean running;
+    /**
+     * first failure of operations queued by the thread since its last flush, reported to that thread by its next flush
+     */
+    private final ThreadLocal<AtomicReference<Exception>> failure = ThreadLocal.withInitial(AtomicReference::new);
+
+    @PostConstruct
+    public void init() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        running = true;
+        worker = new Thread(this::run, "solr-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Sends all queued operations to Solr and stops the writer.
+     */
+    @PreDestroy
+    public void destroy() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("failed to write queued documents to Solr during shutdown", e);
+        }
+        running = false;
+        worker.interrupt();
+    }
+
+    /**
+     * Queues the document to be added to the collection. Blocks if the queue is full.
+     */
+    public void add(String collection, Object bean) {
+        enqueue(new Operation(OperationType.ADD, collection, bean));
+    }
+
+    /**
+     * Queues the documents to be added to the collection. Blocks if the queue is full.
+     */
+    public void addAll(String collection, Collection<?> beans) {
+        for (Object bean : beans) {
+            add(collection, bean);
+        }
+    }
+
+    /**
+     * Queues removal of the document from the collection. Blocks if the queue is full.
+     */
+    public void deleteById(String collection, String id) {
+        enqueue(new Operation(OperationType.DELETE_BY_ID, collection, id));
+    }
+
+    /**
+     * Queues removal of documents matching the query from the collection. Blocks if the queue is full.
+     */
+    public void deleteByQuery(String collection, String query) {
+        enqueue(new Operation(OperationType.DELETE_BY_QUERY, collection, query));
+    }
+
+    /**
+     * Waits until all operations queued before this call are sent to Solr. Sent documents are visible to real-time
+     * get but not necessarily to search.
+     *
+     * @throws GeneralException if some operation queued by the calling thread has failed since its last flush
+     */
+    public void flush() {
+        CompletableFuture<Void> flushed = new CompletableFuture<>();
+        enqueue(new Operation(OperationType.FLUSH, null, flushed));
+        try {
+            flushed.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeneralException("interrupted while waiting for Solr writes", e);
+        } catch (ExecutionException e) {
+            throw new GeneralException("writing of documents to Solr has failed", e.getCause());
+        }
+    }
+
+    /**
+     * Waits until all operations queued before this call are sent to Solr and then opens a new searcher of the
+     * collection, so that the changes are visible to search.
+     *
+     * @param collection collection to commit
+     */
+    public void flushAndCommit(String collection) {
+        flush();
+        try {
+            solrClient.commit(collection, true, true, true);
+        } catch (SolrServerException | IOException e) {
+            throw new GeneralException("soft commit of Solr collection " + collection + " has failed", e);
+        }
+    }
+
+    private void enqueue(Operation operation) {
+        if (!running)
+            throw new IllegalStateException("Solr index writer is not running");
+        operation.owner = failure.get();
+        try {
+            queue.put(operation);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeneralException("interrupted while queueing Solr write", e);
+        }
+    }
+
+    private void run() {
+        List<Operation> batch = new ArrayList<>(batchSize);
+        while (running) {
+            Operation first;
+            try {
+                first = queue.take();
+            } catch (InterruptedException e) {
+                if (!running)
+                    return;
+                continue;
+            }
+            batch.add(first);
+            //coalesce consecutive operations of the same kind which are already waiting in the queue
+            Operation next;
+            while (batch.size() < batchSize && (next = queue.peek()) != null && first.canBatchWith(next)) {
+                batch.add(queue.poll());
+            }
+            try {
+                execute(first.type, first.collection, batch);
+            } catch (Exception e) {
+                if (batch.size() == 1) {
+                    fail(first, e);
+                } else {
+                    log.warn("failed to execute " + batch.size() + " Solr " + first.type + " operations on collection " + first.collection + ", retrying one by one", e);
+                    for (Operation operation : batch) {
+                        try {
+                            execute(operation.type, operation.collection, List.of(operation));
+                        } catch (Exception retryException) {
+                            fail(operation, retryException);
+                        }
+                    }
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void fail(Operation operation, Exception e) {
+        log.error("failed to execute Solr " + operation.type + " operation on collection " + operation.collection, e);
+        operation.owner.compareAndSet(null, e);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void execute(OperationType type, String collection, List<Operation> batch) throws SolrServerException, IOException {
+        switch (type) {
+            case ADD:
+                List<Object> beans = new ArrayList<>(batch.size());
+                batch.forEach(o -> beans.add(o.payload));
+                solrClient.addBeans(collection, beans, commitWithinMs);
+                break;
+            case DELETE_BY_ID:
+                List<String> ids = new ArrayList<>(batch.size());
+                batch.forEach(o -> ids.add((String) o.payload));
+                solrClient.deleteById(collection, ids, commitWithinMs);
+                break;
+            case DELETE_BY_QUERY:
+                solrClient.deleteByQuery(collection, (String) batch.get(0).payload, commitWithinMs);
+                break;
+            case FLUSH:
+                for (Operation operation : batch) {
+                    Exception e = operation.owner.getAndSet(null);
+                    CompletableFuture<Void> flushed = (CompletableFuture<Void>) operation.payload;
+                    if (e == null)
+                        flushed.complete(null);
+                    else
+                        flushed.completeExceptionally(e);
+                }
+                break;
+        }
+    }
+
+    private enum OperationType {
+        ADD, DELETE_BY_ID, DELETE_BY_QUERY, FLUSH
+    }
+
+    private static class Operation {
+        private final OperationType type;
+        private final String collection;
+        private final Object payload;
+        /**
+         * failure holder of the thread which has queued the operation
+         */
+        private AtomicReference<Exception> owner;
+
+        private Operation(OperationType type, String collection, Object payload) {
+            this.type = type;
+            this.collection = collection;
+            this.payload = payload;
+        }
+
+        private boolean canBatchWith(Operation other) {
+            if (type != other.type || type == OperationType.DELETE_BY_QUERY)
+                return false;
+            return type == OperationType.FLUSH || collection.equals(other.collection);
+        }
+    }
+
+    @Autowired
+    public void setSolrClient(SolrClient solrClient) {
+        this.solrClient = solrClient;
+    }
+
+    /**
+     * @param batchSize maximal number of documents sent in one request
+     */
+    @Autowired
+    public void setBatchSize(@Value("${solr.writer.batchSize:500}") int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param queueCapacity maximal number of queued operations, further writes wait until there is space in the queue
+     */
+    @Autowired
+    public void setQueueCapacity(@Value("${solr.writer.queueCapacity:10000}") int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * @return time in ms in which Solr makes the written documents searchable, used also for synchronous writes
+     */
+    public int getCommitWithinMs() {
+        return commitWithinMs;
+    }
+
+    /**
+     * @param commitWithinMs time in ms in which Solr makes the written documents searchable
+     */
+    @Autowired
+    public void setCommitWithinMs(@Value("${solr.writer.commitWithinMs:1000}") int commitWithinMs) {
+        this.commitWithinMs = commitWithinMs;
+    }
+}
@@ -4,79 +4,61 @@ import cz.cas.lib.arclib.domainbase.exception.BadArgument;
 import cz.cas.lib.arclib.domainbase.exception.MissingObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
-
 
 import java.text.DecimalFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static cz.cas.lib.core.util.Utils.notNull;
 
 /**
  * Number sequence generator.
+ * <p>
+ * Numbers are reserved in DB in blocks of {@link Sequence#getBlockSize()} values by a single atomic update of the
+ * {@link Sequence} counter and then handed out from memory without any locking, so that the generator is safe at any
+ * number of nodes of the cluster and the concurrent calls do not wait for each other. Values of the block which are
+ * not handed out before the application stops are skipped, numbers of sequences with block size greater than 1 are
+ * therefore unique and increasing at a single node, but not necessarily continuous. Block size 1 (the default)
+ * reserves every number in DB.
+ * </p>
+ * <p>
+ * Block size and {@link Sequence#getFormat()} are read from DB when a block is reserved, so their changes take
+ * effect once the current block is used up.
+ * </p>
  */
 @Service
 public class Generator {
     private SequenceStore store;
+    private final Map<String, AtomicReference<Block>> blocks = new ConcurrentHashMap<>();
+    private final Map<String, String> formats = new ConcurrentHashMap<>();
 
     /**
      * Generates next non formatted number from {@link Sequence}.
      *
-     * <p>
-     * For this method to be tread-safe and not generate same number for two calls, this method is synchronized
-     * and requires a new transaction explicitly.
-     * </p>
-     *
      * @param id Id of the {@link Sequence}
      * @return Non Formatted number
      * @throws MissingObject If the {@link Sequence} does not exist
      */
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public synchronized long generatePlain(String id) throws MissingObject {
+    public long generatePlain(String id) throws MissingObject {
         notNull(id, () -> new BadArgument("id"));
-
-        Sequence sequence = store.find(id);
-        notNull(sequence, () -> new MissingObject(Sequence.class, id));
-
-        Long counter = sequence.getCounter();
-        if (counter == null) {
-            counter = 1L;
-        }
-
-        sequence.setCounter(counter + 1);
-        store.save(sequence);
-
-        return counter;
+        return next(id);
     }
 
     /**
      * Generates next formatted number from {@link Sequence}.
      *
-     * <p>
-     * For this method to be tread-safe and not generate same number for two calls, this method is synchronized
-     * and requires a new transaction explicitly.
-     * </p>
-     *
      * @param id Id of the {@link Sequence}
      * @return Formatted number
      * @throws MissingObject If the {@link Sequence} does not exist
      */
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public synchronized String generate(String id) throws MissingObject {
+    public String generate(String id) throws MissingObject {
         notNull(id, () -> new BadArgument("id"));
 
-        Sequence sequence = store.find(id);
-        notNull(sequence, () -> new MissingObject(Sequence.class, id));
+        long counter = next(id);
 
-        Long counter = sequence.getCounter();
-        if (counter == null) {
-            counter = 1L;
-        }
-
-        sequence.setCounter(counter + 1);
-        store.save(sequence);
-
-        DecimalFormat format = new DecimalFormat(sequence.getFormat());
+        DecimalFormat format = new DecimalFormat(formats.get(id));
         return format.format(counter);
     }
 
@@ -87,65 +69,61 @@ public class Generator {
      * '{PREFIX}{(MAX_LEADING_ZEROS_NUMBER - numberOfDigits(COUNTER)) * '0'}{COUNTER}'
      * e.g. PREFIX = 'ARCLIB_', maxNumberOfDigits = 6, COUNTER = 23: 'ARCLIB_000023'
      *
-     * <p>
-     * For this method to be tread-safe and not generate same number for two calls, this method is synchronized
-     * and requires a new transaction explicitly.
-     * </p>
-     *
      * @param id                    Id of the {@link Sequence}
      * @param prefix                string placed at the beginning of the output string
      * @param maxLeadingZerosNumber maximal number of '0' placed between the prefix and the counter
      * @return Formatted number
      * @throws MissingObject If the {@link Sequence} does not exist
      */
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public synchronized String generate(String id, String prefix, int maxLeadingZerosNumber) throws MissingObject {
+    public String generate(String id, String prefix, int maxLeadingZerosNumber) throws MissingObject {
         notNull(id, () -> new BadArgument("id"));
 
-        Sequence sequence = store.find(id);
-        notNull(sequence, () -> new MissingObject(Sequence.class, id));
-
-        Long counter = sequence.getCounter();
-        if (counter == null) {
-            counter = 1L;
-        }
-
-        sequence.setCounter(counter + 1);
-        store.save(sequence);
+        long counter = next(id);
 
         return prefix + String.format("%0" + maxLeadingZerosNumber + "d", counter);
     }
 
     /**
-     * Generates next formatted number from {@link Sequence} using the provided input counter.
-     *
-     * <p>
-     * Does not use current counter stored in database to determine next input number. But the specified counter + 1
-     * is saved after generation as the next counter.
-     * </p>
-     * <p>
-     * For this method to be tread-safe and not generate same number for two calls, this method is synchronized
-     * and requires a new transaction explicitly.
-     * </p>
-     *
-     * @param id      Id of the {@link Sequence}
-     * @param counter Provided counter
-     * @return Formatted number
-     * @throws MissingObject If the {@link Sequence} does not exist
+     * Hands out the next number of the block reserved for the sequence, reserves a new block once the current one
+     * is used up. Only the threads which have found the block used up wait for the reservation of the new block.
      */
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public synchronized String generate(String id, Long counter) throws MissingObject {
-        notNull(id, () -> new BadArgument("id"));
-        notNull(counter, () -> new BadArgument("counter"));
+    private long next(String id) {
+        AtomicReference<Block> reference = blocks.computeIfAbsent(id, k -> new AtomicReference<>(new Block(0, 0)));
+        while (true) {
+            Block block = reference.get();
+            long value = block.next.getAndIncrement();
+            if (value < block.end)
+                return value;
+            synchronized (reference) {
+                if (reference.get() == block)
+                    reference.set(reserve(id));
+            }
+        }
+    }
 
+    private Block reserve(String id) {
         Sequence sequence = store.find(id);
         notNull(sequence, () -> new MissingObject(Sequence.class, id));
+        long blockSize = sequence.getBlockSize() == null ? 1 : sequence.getBlockSize();
+        if (blockSize < 1)
+            throw new IllegalArgumentException("block size of sequence " + id + " must be positive, got: " + blockSize);
+        Long start = store.allocate(id, blockSize);
+        notNull(start, () -> new MissingObject(Sequence.class, id));
+        formats.put(id, sequence.getFormat());
+        return new Block(start, start + blockSize);
+    }
 
-        sequence.setCounter(counter + 1);
-        store.save(sequence);
+    /**
+     * Numbers reserved for the sequence, from {@link #next} (inclusive) to {@link #end} (exclusive).
+     */
+    private static final class Block {
+        private final AtomicLong next;
+        private final long end;
 
-        DecimalFormat format = new DecimalFormat(sequence.getFormat());
-        return format.format(counter);
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
     }
 
     @Autowired
@@ -5,6 +5,7 @@ import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.annotations.BatchSize;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Table;
 import java.text.DecimalFormat;
@@ -32,4 +33,12 @@ public class Sequence extends DatedObject {
      * Current value of the counter
      */
     protected Long counter;
+
+    /**
+     * Number of values reserved in DB at once and handed out from memory by {@link Generator}, null means 1. Values
+     * reserved but not handed out before the application stops are skipped, so blocks are suitable only for
+     * sequences of many values which do not have to be continuous.
+     */
+    @Column(name = "block_size")
+    protected Long blockSize;
 }
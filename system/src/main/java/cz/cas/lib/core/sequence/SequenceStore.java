@@ -1,12 +1,42 @@
 package cz.cas.lib.core.sequence;
 
 import cz.cas.lib.arclib.domainbase.store.DatedStore;
+import cz.cas.lib.core.store.TransactionalNew;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public class SequenceStore extends DatedStore<Sequence, QSequence> {
 
     public SequenceStore() {
         super(Sequence.class, QSequence.class);
     }
+
+    /**
+     * Reserves the block of numbers of the sequence by moving its counter in DB.
+     * <p>
+     * The counter is moved by a single UPDATE statement, which locks the row of the sequence until the commit, so that
+     * the counter read afterwards in the same transaction is not affected by any concurrent allocation, either at this
+     * or at other node of the cluster.
+     * </p>
+     *
+     * @param id        id of the sequence
+     * @param blockSize number of values to reserve
+     * @return first value of the reserved block, null if the sequence does not exist
+     */
+    @TransactionalNew
+    public Long allocate(String id, long blockSize) {
+        int updated = entityManager.createNativeQuery("UPDATE uas_sequence SET counter = COALESCE(counter, 1) + :blockSize, " +
+                        "updated = current_timestamp WHERE id = :id")
+                .setParameter("blockSize", blockSize)
+                .setParameter("id", id)
+                .executeUpdate();
+        if (updated == 0)
+            return null;
+        List<?> counter = entityManager.createNativeQuery("SELECT counter FROM uas_sequence WHERE id = :id")
+                .setParameter("id", id)
+                .getResultList();
+        return ((Number) counter.get(0)).longValue() - blockSize;
+    }
 }
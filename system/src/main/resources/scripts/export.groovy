@@ -14,7 +14,7 @@ ExportRoutineService exportRoutineService = spring.getBean(ExportRoutineService.
 TransactionTemplate tt = spring.getBean(TransactionTemplate.class)
 
 ExportRoutine exportRoutine = exportRoutineService.findByAipQueryId(aipQueryId)
-aipQueryService.exportQueryResult(aipQueryId, exportRoutine.getConfig(), false)
+aipQueryService.exportQueryResult(aipQueryId, exportRoutine.getConfig(), false, true)
 Job job = jobService.find(jobId)
 job.setActive(false)
 tt.execute({ t -> jobService.save(job) })
\ No newline at end of file
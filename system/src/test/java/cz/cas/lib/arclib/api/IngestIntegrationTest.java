@@ -26,12 +26,15 @@ import org.springframework.test.context.junit4.SpringRunner;
 
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.Deflater;
 
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static org.hamcrest.Matchers.*;
@@ -105,7 +108,14 @@ public class IngestIntegrationTest extends TransformerFactoryWorkaroundTest impl
         sipHash.setHashType(HashType.MD5);
 
         Files.createDirectories(QUARANTINE);
-        MockMultipartFile sip = new MockMultipartFile("sipContent", "sipContent", "application/zip", ZipUtils.zipToByteArray(SIP_FOLDER));
+        Path sipZip = WS.resolve("sipContent.zip");
+        try (OutputStream out = Files.newOutputStream(sipZip)) {
+            ZipUtils.zipDirectory(SIP_FOLDER, out, Deflater.DEFAULT_COMPRESSION, ZipUtils.COMPRESSED_MEDIA_EXTENSIONS);
+        }
+        MockMultipartFile sip;
+        try (InputStream in = Files.newInputStream(sipZip)) {
+            sip = new MockMultipartFile("sipContent", "sipContent", "application/zip", in);
+        }
         mvc(api).perform(
                 multipart("/api/coordinator/one")
                         .file(sip)
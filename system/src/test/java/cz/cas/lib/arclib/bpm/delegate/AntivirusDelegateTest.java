@@ -13,6 +13,7 @@ import cz.cas.lib.arclib.domain.preservationPlanning.Tool;
 import cz.cas.lib.arclib.exception.bpm.ConfigParserException;
 import cz.cas.lib.arclib.mail.ArclibMailCenter;
 import cz.cas.lib.arclib.service.IngestIssueService;
+import cz.cas.lib.arclib.service.IngestWorkflowArtifactService;
 import cz.cas.lib.arclib.service.IngestWorkflowService;
 import cz.cas.lib.arclib.service.antivirus.Antivirus;
 import cz.cas.lib.arclib.service.antivirus.ClamAntivirus;
@@ -43,6 +44,7 @@ import static cz.cas.lib.core.util.Utils.fileExists;
 import static helper.ThrowableAssertion.assertThrown;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -66,6 +68,8 @@ public class AntivirusDelegateTest extends DelegateTest {
     protected ArclibMailCenter mailCenter;
     @Mock
     protected DelegateExecution delegateExecution;
+    @Mock
+    private IngestWorkflowArtifactService ingestWorkflowArtifactService;
 
     private IngestIssueDefinitionStore ingestIssueDefinitionStore = new IngestIssueDefinitionStore();
     private IngestWorkflowStore ingestWorkflowStore = new IngestWorkflowStore();
@@ -93,10 +97,12 @@ public class AntivirusDelegateTest extends DelegateTest {
         antivirusDelegate.setIngestIssueService(ingestIssueService);
         IngestWorkflowService ingestWorkflowService = new IngestWorkflowService();
         ingestWorkflowService.setStore(ingestWorkflowStore);
+        ingestWorkflowService.setBatchStore(mock(BatchStore.class));
         antivirusDelegate.setIngestWorkflowService(ingestWorkflowService);
         antivirusDelegate.setQuarantinePath(QUARANTINE_PATH.toString());
         antivirusDelegate.setToolService(toolService);
         antivirusDelegate.setIngestIssueDefinitionStore(ingestIssueDefinitionStore);
+        antivirusDelegate.setIngestWorkflowArtifactService(ingestWorkflowArtifactService);
         Mocks.register("antivirusDelegate", antivirusDelegate);
 
         Sequence sequence = new Sequence();
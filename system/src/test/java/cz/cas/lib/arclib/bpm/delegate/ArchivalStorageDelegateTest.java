@@ -157,6 +157,7 @@ public class ArchivalStorageDelegateTest extends DelegateTest {
         archivalStorageDelegate = new ArchivalStorageDelegate();
         IngestWorkflowService ingestWorkflowService = new IngestWorkflowService();
         ingestWorkflowService.setStore(ingestWorkflowStore);
+        ingestWorkflowService.setBatchStore(batchStore);
         archivalStorageDelegate.setIngestWorkflowService(ingestWorkflowService);
         archivalStorageDelegate.setObjectMapper(new ObjectMapper());
         archivalStorageDelegate.setWorkspace(WS.toString());
@@ -22,12 +22,15 @@ import cz.cas.lib.arclib.index.solr.arclibxml.IndexedArclibXmlDocument;
 import cz.cas.lib.arclib.index.solr.arclibxml.SolrArclibXmlStore;
 import cz.cas.lib.arclib.security.user.UserDetailsImpl;
 import cz.cas.lib.arclib.service.IngestIssueService;
+import cz.cas.lib.arclib.service.IngestWorkflowArtifactService;
 import cz.cas.lib.arclib.service.IngestWorkflowService;
+import cz.cas.lib.arclib.service.SipFileIndexService;
 import cz.cas.lib.arclib.service.SipProfileService;
 import cz.cas.lib.arclib.service.UserService;
 import cz.cas.lib.arclib.service.arclibxml.ArclibXmlGenerator;
 import cz.cas.lib.arclib.service.arclibxml.ArclibXmlValidator;
 import cz.cas.lib.arclib.service.arclibxml.ArclibXmlXsltExtractor;
+import cz.cas.lib.arclib.service.arclibxml.SipProfileXslCache;
 import cz.cas.lib.arclib.service.fixity.MetsChecksumType;
 import cz.cas.lib.arclib.service.fixity.Sha512Counter;
 import cz.cas.lib.arclib.service.formatIdentification.FormatIdentificationToolType;
@@ -116,6 +119,8 @@ public class ArclibXmlGeneratorDelegateTest extends DelegateTest {
     private UserService userService;
     @Mock
     private ProducerStore mockedProducerStore;
+    @Mock
+    private IngestWorkflowArtifactService ingestWorkflowArtifactService;
     private IngestIssueDefinitionStore ingestIssueDefinitionStore;
     private IngestIssueService ingestIssueService;
     private ToolService toolService;
@@ -213,6 +218,11 @@ public class ArclibXmlGeneratorDelegateTest extends DelegateTest {
 
         extractor = new ArclibXmlXsltExtractor();
         extractor.setSipProfileService(sipProfileService);
+        SipProfileXslCache sipProfileXslCache = new SipProfileXslCache();
+        extractor.setSipProfileXslCache(sipProfileXslCache);
+        sipProfileService.setSipProfileXslCache(sipProfileXslCache);
+        SipFileIndexService sipFileIndexService = new SipFileIndexService();
+        extractor.setSipFileIndexService(sipFileIndexService);
 
         arclibXmlGenerator = new ArclibXmlGenerator();
         arclibXmlGenerator.setUris("http://www.loc.gov/METS/",
@@ -226,6 +236,8 @@ public class ArclibXmlGeneratorDelegateTest extends DelegateTest {
         arclibXmlGenerator.setArclibVersion("1.0");
         arclibXmlGenerator.setIngestWorkflowStore(ingestWorkflowStore);
         arclibXmlGenerator.setIngestEventStore(ingestEventStore);
+        arclibXmlGenerator.setSipFileIndexService(sipFileIndexService);
+        arclibXmlGenerator.setIngestWorkflowArtifactService(ingestWorkflowArtifactService);
 
         user = new User();
         userDetailsImpl = new UserDetailsImpl(user);
@@ -237,6 +249,7 @@ public class ArclibXmlGeneratorDelegateTest extends DelegateTest {
         arclibXmlExtractorDelegate.setIngestEventStore(ingestEventStore);
         IngestWorkflowService ingestWorkflowService = new IngestWorkflowService();
         ingestWorkflowService.setStore(ingestWorkflowStore);
+        ingestWorkflowService.setBatchStore(batchStore);
         arclibXmlExtractorDelegate.setIngestWorkflowService(ingestWorkflowService);
         arclibXmlExtractorDelegate.setToolService(toolService);
 
@@ -250,6 +263,8 @@ public class ArclibXmlGeneratorDelegateTest extends DelegateTest {
         arclibXmlGeneratorDelegate.setToolService(toolService);
         arclibXmlGeneratorDelegate.setSipStore(sipStore);
         arclibXmlGeneratorDelegate.setValidator(validator);
+        arclibXmlGeneratorDelegate.setSipFileIndexService(sipFileIndexService);
+        arclibXmlGeneratorDelegate.setIngestWorkflowArtifactService(ingestWorkflowArtifactService);
 
         sipProfile = new SipProfile();
         String sipProfileXml = Resources.toString(this.getClass().getResource(
@@ -403,10 +418,7 @@ public class ArclibXmlGeneratorDelegateTest extends DelegateTest {
         formatIdentificationEvent.setIngestWorkflow(ingestWorkflow);
         ingestEventStore.save(formatIdentificationEvent);
 
-        Map<String, TreeMap<String, Pair<String, String>>> mapOfEventIdsToMapsOfFilesToFormats = new HashMap<>();
-        mapOfEventIdsToMapsOfFilesToFormats.put(formatIdentificationEvent.getId(), identifiedFormats);
-
-        variables.put(BpmConstants.FormatIdentification.mapOfEventIdsToMapsOfFilesToFormats, mapOfEventIdsToMapsOfFilesToFormats);
+        when(ingestWorkflowArtifactService.findFileFormats(EXTERNAL_ID, formatIdentificationEvent.getId())).thenReturn(identifiedFormats);
         variables.put(BpmConstants.FormatIdentification.preferredFormatIdentificationEventId, formatIdentificationEvent.getId());
 
         variables.put(BpmConstants.ProcessVariables.sipFolderWorkspacePath, SIP.toAbsolutePath().toString());
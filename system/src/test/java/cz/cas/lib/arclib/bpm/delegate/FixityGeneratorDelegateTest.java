@@ -3,7 +3,9 @@ package cz.cas.lib.arclib.bpm.delegate;
 import cz.cas.lib.arclib.bpm.BpmConstants;
 import cz.cas.lib.arclib.bpm.FixityGeneratorDelegate;
 import cz.cas.lib.arclib.domain.ingestWorkflow.IngestEvent;
+import cz.cas.lib.arclib.service.IngestWorkflowArtifactService;
 import cz.cas.lib.arclib.service.IngestWorkflowService;
+import cz.cas.lib.arclib.service.SipFileIndexService;
 import cz.cas.lib.arclib.service.fixity.MetsChecksumType;
 import cz.cas.lib.arclib.service.preservationPlanning.ToolService;
 import cz.cas.lib.arclib.store.IngestEventStore;
@@ -13,6 +15,8 @@ import org.camunda.bpm.engine.test.Deployment;
 import org.camunda.bpm.engine.test.mock.Mocks;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
@@ -22,6 +26,7 @@ import java.util.Map;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 
 /**
@@ -40,6 +45,10 @@ public class FixityGeneratorDelegateTest extends DelegateTest {
     private IngestWorkflowService ingestWorkflowService;
     @Mock
     private ToolService toolService;
+    @Mock
+    private IngestWorkflowArtifactService ingestWorkflowArtifactService;
+    @Captor
+    private ArgumentCaptor<Map<String, Triple<Long, String, String>>> fixityCaptor;
 
     @Before
     public void before() {
@@ -49,11 +58,14 @@ public class FixityGeneratorDelegateTest extends DelegateTest {
         fixityGeneratorDelegate.setIngestEventStore(ingestEventStore);
         fixityGeneratorDelegate.setIngestWorkflowService(ingestWorkflowService);
         fixityGeneratorDelegate.setToolService(toolService);
+        fixityGeneratorDelegate.setSipFileIndexService(new SipFileIndexService());
+        fixityGeneratorDelegate.setIngestWorkflowArtifactService(ingestWorkflowArtifactService);
         Mocks.register("fixityGeneratorDelegate", fixityGeneratorDelegate);
     }
 
     /**
      * Runs fixity generator bpm process and ensures that correct checksums are computed and stored into process variables
+     * and file checksums into ingest workflow artifacts
      */
     @Test
     public void testFixityGeneratorOnSIP() {
@@ -65,7 +77,6 @@ public class FixityGeneratorDelegateTest extends DelegateTest {
         variables.put(BpmConstants.FixityGeneration.mapOfEventIdsToSipCrc32, new HashMap<>());
         variables.put(BpmConstants.FixityGeneration.mapOfEventIdsToSipSha512, new HashMap<>());
         variables.put(BpmConstants.ProcessVariables.sipFolderWorkspacePath, SIP.toString());
-        variables.put(BpmConstants.FixityGeneration.mapOfEventIdsToSipContentFixityData, new HashMap<String, Map<String, Triple<Long, String, String>>>());
 
         startJob(PROCESS_INSTANCE_KEY, variables);
 
@@ -78,9 +89,8 @@ public class FixityGeneratorDelegateTest extends DelegateTest {
         verify(ingestEventStore).save(any(IngestEvent.class));
 
 
-        Map<String, Map<String, Triple<Long, String, String>>> fileFixites = (Map<String, Map<String, Triple<Long, String, String>>>) rule.getHistoryService().createHistoricVariableInstanceQuery().variableName(BpmConstants.FixityGeneration.mapOfEventIdsToSipContentFixityData).singleResult().getValue();
-        assertThat(fileFixites.keySet(), hasSize(1));
-        Map<String, Triple<Long, String, String>> fixities = fileFixites.entrySet().iterator().next().getValue();
+        verify(ingestWorkflowArtifactService).saveFileFixity(eq(EXTERNAL_ID), eq(sha512Calculations.keySet().iterator().next()), fixityCaptor.capture());
+        Map<String, Triple<Long, String, String>> fixities = fixityCaptor.getValue();
         assertThat(fixities.keySet(), hasSize(33));
         Triple<Long, String, String> fileFixity = fixities.get("txt/txt_7033d800-0935-11e4-beed-5ef3fc9ae867_0006.txt");
         assertThat(fileFixity, notNullValue());
@@ -10,9 +10,11 @@ import cz.cas.lib.arclib.domain.profiles.ProducerProfile;
 import cz.cas.lib.arclib.formatlibrary.domain.Format;
 import cz.cas.lib.arclib.formatlibrary.domain.FormatDefinition;
 import cz.cas.lib.arclib.formatlibrary.service.FormatDefinitionService;
+import cz.cas.lib.arclib.service.IngestWorkflowArtifactService;
 import cz.cas.lib.arclib.service.IngestWorkflowService;
 import cz.cas.lib.arclib.service.ProducerProfileService;
 import cz.cas.lib.arclib.service.preservationPlanning.ToolService;
+import cz.cas.lib.arclib.store.BatchStore;
 import cz.cas.lib.arclib.store.FormatOccurrenceStore;
 import cz.cas.lib.arclib.store.IngestEventStore;
 import cz.cas.lib.arclib.store.IngestWorkflowStore;
@@ -21,17 +23,21 @@ import org.camunda.bpm.engine.test.Deployment;
 import org.camunda.bpm.engine.test.mock.Mocks;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.time.Instant;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -55,6 +61,10 @@ public class FormatIdentificationToolDelegateTest extends DelegateTest {
     private FormatOccurrenceStore formatOccurrenceStore;
     @Mock
     private IngestEventStore ingestEventStore;
+    @Mock
+    private IngestWorkflowArtifactService ingestWorkflowArtifactService;
+    @Captor
+    private ArgumentCaptor<Map<String, Pair<String, String>>> formatsCaptor;
 
     @Before
     public void before() {
@@ -64,12 +74,14 @@ public class FormatIdentificationToolDelegateTest extends DelegateTest {
         formatIdentificationDelegate.setWorkspace(WS.toString());
         IngestWorkflowService ingestWorkflowService = new IngestWorkflowService();
         ingestWorkflowService.setStore(ingestWorkflowStore);
+        ingestWorkflowService.setBatchStore(mock(BatchStore.class));
         formatIdentificationDelegate.setIngestWorkflowService(ingestWorkflowService);
         formatIdentificationDelegate.setToolService(toolService);
         formatIdentificationDelegate.setFormatDefinitionService(formatDefinitionService);
         formatIdentificationDelegate.setFormatOccurrenceStore(formatOccurrenceStore);
         formatIdentificationDelegate.setProducerProfileService(producerProfileService);
         formatIdentificationDelegate.setIngestEventStore(ingestEventStore);
+        formatIdentificationDelegate.setIngestWorkflowArtifactService(ingestWorkflowArtifactService);
         Mocks.register("formatIdentificationDelegate", formatIdentificationDelegate);
 
         IngestWorkflow ingestWorkflow = new IngestWorkflow();
@@ -106,16 +118,9 @@ public class FormatIdentificationToolDelegateTest extends DelegateTest {
         variables.put(BpmConstants.ProcessVariables.sipFileName, ORIGINAL_SIP_FILE_NAME);
         variables.put(BpmConstants.ProcessVariables.sipFolderWorkspacePath, SIP.toAbsolutePath().toString());
         variables.put(BpmConstants.FormatIdentification.preferredFormatIdentificationEventId, 0);
-        variables.put(BpmConstants.FormatIdentification.mapOfEventIdsToMapsOfFilesToFormats, new HashMap<>());
         startJob(PROCESS_INSTANCE_KEY, variables);
 
-        Map<String, Map<String, List<Pair<String, String>>>> mapOfEventIdsToMapsOfFilesToFormats = (Map<String, Map<String, List<Pair<String, String>>>>)
-                rule.getHistoryService()
-                        .createHistoricVariableInstanceQuery()
-                        .variableName(BpmConstants.FormatIdentification.mapOfEventIdsToMapsOfFilesToFormats)
-                        .singleResult()
-                        .getValue();
-        Map<String, List<Pair<String, String>>> mapOfFilesToFormats = mapOfEventIdsToMapsOfFilesToFormats.entrySet().iterator().next().getValue();
-        assertThat(mapOfFilesToFormats.entrySet(), hasSize(33));
+        verify(ingestWorkflowArtifactService).saveFileFormats(eq(EXTERNAL_ID), any(), formatsCaptor.capture());
+        assertThat(formatsCaptor.getValue().entrySet(), hasSize(33));
     }
 }
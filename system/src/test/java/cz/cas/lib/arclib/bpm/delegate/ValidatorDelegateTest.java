@@ -9,8 +9,10 @@ import cz.cas.lib.arclib.domain.preservationPlanning.Tool;
 import cz.cas.lib.arclib.domain.profiles.ValidationProfile;
 import cz.cas.lib.arclib.exception.validation.MissingFile;
 import cz.cas.lib.arclib.service.IngestWorkflowService;
+import cz.cas.lib.arclib.service.SipFileIndexService;
 import cz.cas.lib.arclib.service.preservationPlanning.ToolService;
 import cz.cas.lib.arclib.service.validator.Validator;
+import cz.cas.lib.arclib.store.BatchStore;
 import cz.cas.lib.arclib.store.IngestEventStore;
 import cz.cas.lib.arclib.store.IngestWorkflowStore;
 import cz.cas.lib.arclib.store.ToolStore;
@@ -34,6 +36,7 @@ import java.util.Random;
 
 import static helper.ThrowableAssertion.assertThrown;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 /**
@@ -73,11 +76,13 @@ public class ValidatorDelegateTest extends DelegateTest {
         initializeStores(store, ingestEventStore, ingestWorkflowStore, toolStore);
         validatorDelegate.setService(validator);
         validator.setValidationProfileStore(store);
+        validator.setSipFileIndexService(new SipFileIndexService());
 
         toolService.setToolStore(toolStore);
         validatorDelegate.setIngestEventStore(ingestEventStore);
         IngestWorkflowService ingestWorkflowService = new IngestWorkflowService();
         ingestWorkflowService.setStore(ingestWorkflowStore);
+        ingestWorkflowService.setBatchStore(mock(BatchStore.class));
         validatorDelegate.setIngestWorkflowService(ingestWorkflowService);
         validatorDelegate.setToolService(toolService);
 
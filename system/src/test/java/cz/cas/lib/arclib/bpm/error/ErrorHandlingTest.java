@@ -14,6 +14,7 @@ import cz.cas.lib.arclib.domain.packages.Sip;
 import cz.cas.lib.arclib.service.AipService;
 import cz.cas.lib.arclib.service.BatchService;
 import cz.cas.lib.arclib.service.IngestErrorHandler;
+import cz.cas.lib.arclib.service.IngestWorkflowArtifactService;
 import cz.cas.lib.arclib.service.IngestWorkflowService;
 import cz.cas.lib.arclib.service.archivalStorage.ArchivalStorageException;
 import cz.cas.lib.arclib.service.archivalStorage.ArchivalStorageService;
@@ -89,6 +90,9 @@ public class ErrorHandlingTest extends DbTest {
     @Mock
     private PlatformTransactionManager transactionManager;
 
+    @Mock
+    private IngestWorkflowArtifactService ingestWorkflowArtifactService;
+
 
     @Before
     @Transactional
@@ -133,6 +137,7 @@ public class ErrorHandlingTest extends DbTest {
         ingestErrorHandler.setAipService(aipService);
         ingestErrorHandler.setArchivalStorageService(archivalStorageService);
         ingestErrorHandler.setWorkspace(WS.toString());
+        ingestErrorHandler.setIngestWorkflowArtifactService(ingestWorkflowArtifactService);
     }
 
     @Test
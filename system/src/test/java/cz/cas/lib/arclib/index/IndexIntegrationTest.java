@@ -180,7 +180,7 @@ public class IndexIntegrationTest extends TransformerFactoryWorkaroundTest imple
         Filter filter = savedQuery.getQuery().getFilter().get(0).getFilter().get(0);
         assertThat(filter.getOperation(), is(FilterOperation.NEQ));
         assertThat(filter.getField(), is("id"));
-        assertThat(savedQuery.getResult().getItems(), hasSize(5));
+        assertThat(savedQuery.getResultCount(), is(5L));
     }
 
 
@@ -0,0 +1,150 @@
+package cz.cas.lib.arclib.index;
+
+import cz.cas.lib.arclib.domain.Batch;
+import cz.cas.lib.arclib.domain.Producer;
+import cz.cas.lib.arclib.domain.User;
+import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflow;
+import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflowState;
+import cz.cas.lib.arclib.domain.packages.Sip;
+import cz.cas.lib.arclib.domain.profiles.ProducerProfile;
+import cz.cas.lib.arclib.index.solr.ReindexService;
+import cz.cas.lib.arclib.index.solr.arclibxml.SolrArclibXmlStore;
+import cz.cas.lib.arclib.service.IngestWorkflowService;
+import cz.cas.lib.arclib.service.archivalStorage.ArchivalStorageService;
+import cz.cas.lib.arclib.service.archivalStorage.ObjectState;
+import cz.cas.lib.arclib.store.UserStore;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ReindexServiceTest {
+    private static final Path WS = Paths.get("testWorkspace");
+    private static final Path CHECKPOINT = WS.resolve(ReindexService.ARCLIB_XML_REINDEX_CHECKPOINT);
+
+    private IngestWorkflowService ingestWorkflowService = mock(IngestWorkflowService.class);
+    private UserStore userStore = mock(UserStore.class);
+    private ArchivalStorageService archivalStorageService = mock(ArchivalStorageService.class);
+    private SolrArclibXmlStore indexedArclibXmlStore = mock(SolrArclibXmlStore.class);
+    private ReindexService service = new ReindexService();
+    private List<IngestWorkflow> persisted = new ArrayList<>();
+    /**
+     * external ids of the ingest workflows in the order in which they were indexed
+     */
+    private List<String> indexed = new ArrayList<>();
+
+    @Before
+    public void before() throws Exception {
+        Files.createDirectories(WS);
+        service.setWorkspace(WS.toString());
+        service.setArclibXmlPageSize(2);
+        service.setArclibXmlFetchThreads(2);
+        service.setIngestWorkflowService(ingestWorkflowService);
+        service.setUserStore(userStore);
+        service.setArchivalStorageService(archivalStorageService);
+        service.setIndexedArclibXmlStore(indexedArclibXmlStore);
+
+        User user = new User("user", null, Set.of());
+        user.setUsername("user");
+        ProducerProfile producerProfile = new ProducerProfile();
+        producerProfile.setProducer(new Producer("producer"));
+        Batch batch = new Batch();
+        batch.setProducerProfile(producerProfile);
+        for (int i = 1; i <= 5; i++) {
+            Sip sip = new Sip();
+            sip.setId("sip" + i);
+            IngestWorkflow iw = new IngestWorkflow(String.valueOf(i));
+            iw.setExternalId("iw" + i);
+            iw.setBatch(batch);
+            iw.setSip(sip);
+            iw.setXmlVersionNumber(1);
+            persisted.add(iw);
+            when(archivalStorageService.exportSingleXml(sip.getId(), 1)).then(invocation -> new ByteArrayInputStream(("<xml>" + iw.getExternalId() + "</xml>").getBytes(StandardCharsets.UTF_8)));
+        }
+        when(archivalStorageService.getAipState(anyString())).thenReturn(ObjectState.ARCHIVED);
+        when(ingestWorkflowService.findByStateAfter(eq(IngestWorkflowState.PERSISTED), any(), anyInt())).then(invocation -> {
+            String lastId = invocation.getArgument(1);
+            int limit = invocation.getArgument(2);
+            return persisted.stream().filter(iw -> lastId == null || iw.getId().compareTo(lastId) > 0).limit(limit).collect(Collectors.toList());
+        });
+        when(ingestWorkflowService.getVariableOfEach(anyCollection(), anyString())).then(invocation -> {
+            Collection<String> externalIds = invocation.getArgument(0);
+            return externalIds.stream().collect(Collectors.toMap(id -> id, id -> (Object) user.getId()));
+        });
+        when(userStore.findAllInListEvenDeleted(anyCollection())).thenReturn(List.of(user));
+        when(indexedArclibXmlStore.createIndexes(anyList())).then(invocation -> {
+            List<CreateIndexRecordDto> records = invocation.getArgument(0);
+            records.stream().map(r -> new String(r.getArclibXml(), StandardCharsets.UTF_8).replaceAll("</?xml>", "")).sorted().forEach(indexed::add);
+            return List.of();
+        });
+    }
+
+    @After
+    public void after() throws IOException {
+        FileUtils.deleteDirectory(WS.toFile());
+    }
+
+    @Test
+    public void wholeIndexRecoveredInPages() {
+        service.reindexArclibXml(false);
+        assertThat(indexed, contains("iw1", "iw2", "iw3", "iw4", "iw5"));
+        verify(indexedArclibXmlStore, times(3)).createIndexes(anyList());
+        verify(indexedArclibXmlStore).commitIndex();
+        assertThat(Files.exists(CHECKPOINT), is(false));
+    }
+
+    @Test
+    public void recoveryResumedAfterCheckpoint() throws IOException {
+        Files.writeString(CHECKPOINT, "2");
+        service.reindexArclibXml(true);
+        assertThat(indexed, contains("iw3", "iw4", "iw5"));
+        verify(ingestWorkflowService).findByStateAfter(IngestWorkflowState.PERSISTED, "2", 2);
+        verify(ingestWorkflowService, never()).findByStateAfter(eq(IngestWorkflowState.PERSISTED), isNull(), anyInt());
+        assertThat(Files.exists(CHECKPOINT), is(false));
+    }
+
+    @Test
+    public void checkpointIgnoredByFullRecovery() throws IOException {
+        Files.writeString(CHECKPOINT, "2");
+        service.reindexArclibXml(false);
+        assertThat(indexed, contains("iw1", "iw2", "iw3", "iw4", "iw5"));
+        assertThat(Files.exists(CHECKPOINT), is(false));
+    }
+
+    @Test
+    public void failedRecoveryLeavesCheckpoint() throws IOException {
+        when(indexedArclibXmlStore.createIndexes(anyList())).then(invocation -> {
+            List<CreateIndexRecordDto> records = invocation.getArgument(0);
+            indexed.add(String.valueOf(records.size()));
+            return List.of();
+        }).thenThrow(new IllegalStateException("solr is down"));
+        service.reindexArclibXml(false);
+        verify(indexedArclibXmlStore, never()).commitIndex();
+        assertThat(Files.readString(CHECKPOINT), is("2"));
+
+        reset(indexedArclibXmlStore);
+        indexed.clear();
+        when(indexedArclibXmlStore.createIndexes(anyList())).then(invocation -> {
+            List<CreateIndexRecordDto> records = invocation.getArgument(0);
+            records.forEach(r -> indexed.add(new String(r.getArclibXml(), StandardCharsets.UTF_8).replaceAll("</?xml>", "")));
+            return List.of();
+        });
+        service.reindexArclibXml(true);
+        assertThat(indexed, containsInAnyOrder("iw3", "iw4", "iw5"));
+        assertThat(Files.exists(CHECKPOINT), is(false));
+    }
+}
@@ -0,0 +1,238 @@
+package cz.cas.lib.arclib.index;
+
+import cz.cas.lib.arclib.index.solr.IndexQueryUtils;
+import cz.cas.lib.arclib.index.solr.arclibxml.IndexedAipState;
+import cz.cas.lib.arclib.index.solr.arclibxml.IndexedArclibXmlDocument;
+import cz.cas.lib.arclib.index.solr.arclibxml.SolrArclibXmlStore;
+import cz.cas.lib.core.index.dto.Params;
+import cz.cas.lib.core.index.solr.IndexField;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class SolrArclibXmlStoreTest {
+
+    private static final List<String> IDS = List.of("a", "b", "c", "d", "e");
+    private int originalMaxRows;
+    private CursorSolrClient client;
+    private SolrArclibXmlStore store;
+
+    @Before
+    public void before() {
+        originalMaxRows = IndexQueryUtils.solrMaxRows;
+        IndexQueryUtils.solrMaxRows = 2;
+        client = new CursorSolrClient();
+        store = new SolrArclibXmlStore();
+        store.setCoreName("arclibXmlC");
+        store.setSolrClient(client);
+        store.setUris("http://www.loc.gov/METS/",
+                "http://www.w3.org/2001/XMLSchema-instance",
+                "http://arclib.lib.cas.cz/ARCLIB_XSD",
+                "info:lc/xmlns/premis-v2",
+                "http://www.openarchives.org/OAI/2.0/oai_dc/",
+                "http://purl.org/dc/elements/1.1/",
+                "http://www.w3.org/1999/xlink");
+        store.setArclibXmlIndexConfig(new ClassPathResource("index/arclibXmlIndexConfig.csv"));
+        store.init();
+    }
+
+    @After
+    public void after() {
+        IndexQueryUtils.solrMaxRows = originalMaxRows;
+    }
+
+    @Test
+    public void streamAllFollowsCursor() {
+        List<String> ids;
+        try (Stream<IndexedArclibXmlDocument> docs = store.streamAll(new Params())) {
+            ids = docs.map(IndexedArclibXmlDocument::getId).collect(Collectors.toList());
+        }
+        assertThat(ids, is(IDS));
+        //three pages and one empty page which confirms the end of the result
+        assertThat(client.cursorMarks, contains(CursorMarkParams.CURSOR_MARK_START, "2", "4", "5"));
+        assertThat(client.sorts, everyItem(endsWith("id asc")));
+        assertThat(client.starts, everyItem(is("0")));
+    }
+
+    @Test
+    public void streamIsLazy() {
+        try (Stream<IndexedArclibXmlDocument> docs = store.streamAll(new Params())) {
+            assertThat(docs.findFirst().get().getId(), is("a"));
+        }
+        assertThat(client.cursorMarks, hasSize(1));
+    }
+
+    @Test
+    public void findAllIgnorePagination() {
+        assertThat(store.findAllIgnorePagination(new Params()).getCount(), is(5L));
+    }
+
+    @Test
+    public void findWithChildrenInChunks() {
+        store.setChildrenFetchChunkSize(2);
+        List<String> requested = List.of("e", "x", "a", "c", "b");
+        List<IndexedArclibXmlDocument> docs = store.findWithChildren(requested, null);
+        assertThat(docs.stream().map(IndexedArclibXmlDocument::getId).collect(Collectors.toList()), contains("e", "a", "c", "b"));
+        assertThat(docs.get(0).getChildren().get("child").get(0).get(IndexedArclibXmlDocument.ID), contains("e_child_0"));
+        assertThat(client.termsFilters, containsInAnyOrder("{!terms f=id}e,x", "{!terms f=id}a,c", "{!terms f=id}b"));
+    }
+
+    @Test
+    public void changeAipStateKeepsStoredFieldsAndChildren() {
+        store.changeAipState("a", IndexedAipState.REMOVED);
+
+        assertThat(client.updates, contains("delete [a]", "add", "commit"));
+        SolrInputDocument updated = client.added;
+        assertThat(updated.getFieldNames(), containsInAnyOrder(IndexQueryUtils.TYPE_FIELD, IndexedArclibXmlDocument.ID,
+                IndexedArclibXmlDocument.AIP_STATE, IndexedArclibXmlDocument.LATEST, IndexedArclibXmlDocument.AUTHORIAL_ID));
+        assertThat(updated.getFieldValue(IndexedArclibXmlDocument.AIP_STATE), is(IndexedAipState.REMOVED.toString()));
+        assertThat(updated.getFieldValue(IndexedArclibXmlDocument.LATEST), is(true));
+        assertThat(updated.getFieldValues(IndexedArclibXmlDocument.AUTHORIAL_ID), contains("auth1", "auth2"));
+        assertThat(updated.getChildDocuments(), hasSize(2));
+        for (int i = 0; i < 2; i++) {
+            SolrInputDocument child = updated.getChildDocuments().get(i);
+            assertThat(child.getFieldNames(), containsInAnyOrder(IndexQueryUtils.TYPE_FIELD, IndexedArclibXmlDocument.ID));
+            assertThat(child.getFieldValue(IndexedArclibXmlDocument.ID), is("a_child_" + i));
+        }
+    }
+
+    @Test
+    public void setLatestFlagsRemovesAndAddsFields() {
+        store.setLatestFlags(new SetLatestFlagsDto("a", false, true));
+
+        SolrInputDocument updated = client.added;
+        assertThat(updated.getFieldValues(IndexedArclibXmlDocument.LATEST), contains(false));
+        assertThat(updated.getFieldValues(IndexedArclibXmlDocument.LATEST_DATA), contains(true));
+        assertThat(updated.getFieldValue(IndexedArclibXmlDocument.AIP_STATE), is(IndexedAipState.ARCHIVED.toString()));
+        assertThat(updated.getChildDocuments(), hasSize(2));
+    }
+
+    /**
+     * Returns {@link #IDS} by pages of the requested size, cursor mark is the position of the next page.
+     * Requests filtered by terms query return the requested documents with one child each.
+     * Request for the main document with its children returns the stored document together with internal and copy
+     * fields, updates are recorded.
+     */
+    private static class CursorSolrClient extends SolrClient {
+        private final List<String> cursorMarks = new ArrayList<>();
+        private final List<String> sorts = new ArrayList<>();
+        private final List<String> starts = new ArrayList<>();
+        private final List<String> termsFilters = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> updates = new ArrayList<>();
+        private SolrInputDocument added;
+
+        @Override
+        public NamedList<Object> request(SolrRequest<?> request, String collection) {
+            if (request instanceof UpdateRequest)
+                return update((UpdateRequest) request);
+            SolrParams params = request.getParams();
+            String termsFilter = Arrays.stream(params.getParams("fq")).filter(fq -> fq.startsWith("{!terms")).findFirst().orElse(null);
+            if (termsFilter != null)
+                return findWithChildren(termsFilter);
+            if (params.get("fl") != null)
+                return findMainDocumentWithChildren(params);
+            String cursorMark = params.get(CursorMarkParams.CURSOR_MARK_PARAM);
+            cursorMarks.add(cursorMark);
+            sorts.add(params.get("sort"));
+            starts.add(params.get("start"));
+            int from = cursorMark.equals(CursorMarkParams.CURSOR_MARK_START) ? 0 : Integer.parseInt(cursorMark);
+            int to = Math.min(from + Integer.parseInt(params.get("rows")), IDS.size());
+            SolrDocumentList page = new SolrDocumentList();
+            page.setNumFound(IDS.size());
+            for (String id : IDS.subList(from, to)) {
+                SolrDocument doc = new SolrDocument();
+                doc.addField(IndexedArclibXmlDocument.ID, id);
+                page.add(doc);
+            }
+            NamedList<Object> response = new NamedList<>();
+            response.add("response", page);
+            response.add(CursorMarkParams.CURSOR_MARK_NEXT, page.isEmpty() ? cursorMark : String.valueOf(to));
+            return response;
+        }
+
+        private NamedList<Object> findWithChildren(String termsFilter) {
+            termsFilters.add(termsFilter);
+            SolrDocumentList found = new SolrDocumentList();
+            for (String id : termsFilter.substring(termsFilter.indexOf('}') + 1).split(",")) {
+                if (!IDS.contains(id))
+                    continue;
+                SolrDocument doc = new SolrDocument();
+                doc.addField(IndexedArclibXmlDocument.ID, id);
+                SolrDocument child = new SolrDocument();
+                child.addField(IndexQueryUtils.TYPE_FIELD, "child");
+                child.addField(IndexedArclibXmlDocument.ID, id + "_child_0");
+                doc.addChildDocument(child);
+                found.add(doc);
+            }
+            //documents are not returned in the requested order
+            Collections.reverse(found);
+            NamedList<Object> response = new NamedList<>();
+            response.add("response", found);
+            return response;
+        }
+
+        private NamedList<Object> findMainDocumentWithChildren(SolrParams params) {
+            assertThat(Arrays.asList(params.getParams("fq")), containsInAnyOrder(IndexedArclibXmlDocument.ID + ":a",
+                    IndexQueryUtils.TYPE_FIELD + ":" + IndexedArclibXmlDocument.MAIN_INDEX_TYPE_VALUE));
+            SolrDocument doc = new SolrDocument();
+            doc.addField(IndexQueryUtils.TYPE_FIELD, IndexedArclibXmlDocument.MAIN_INDEX_TYPE_VALUE);
+            doc.addField(IndexedArclibXmlDocument.ID, "a");
+            doc.addField(IndexedArclibXmlDocument.AIP_STATE, IndexedAipState.ARCHIVED.toString());
+            doc.addField(IndexedArclibXmlDocument.LATEST, true);
+            doc.addField(IndexedArclibXmlDocument.AUTHORIAL_ID, "auth1");
+            doc.addField(IndexedArclibXmlDocument.AUTHORIAL_ID, "auth2");
+            doc.addField(IndexedArclibXmlDocument.AUTHORIAL_ID + IndexField.STRING_SUFFIX, "auth1");
+            doc.addField(IndexedArclibXmlDocument.AUTHORIAL_ID + IndexField.SORT_SUFFIX, "auth1");
+            doc.addField("_version_", 1L);
+            doc.addField("_root_", "a");
+            for (int i = 0; i < 2; i++) {
+                SolrDocument child = new SolrDocument();
+                child.addField(IndexQueryUtils.TYPE_FIELD, "child");
+                child.addField(IndexedArclibXmlDocument.ID, "a_child_" + i);
+                child.addField("_root_", "a");
+                doc.addChildDocument(child);
+            }
+            SolrDocumentList found = new SolrDocumentList();
+            found.add(doc);
+            NamedList<Object> response = new NamedList<>();
+            response.add("response", found);
+            return response;
+        }
+
+        private NamedList<Object> update(UpdateRequest request) {
+            if (request.getDeleteById() != null) {
+                updates.add("delete " + request.getDeleteById());
+            } else if (request.getDocuments() != null) {
+                updates.add("add");
+                added = request.getDocuments().get(0);
+            } else {
+                updates.add("commit");
+            }
+            return new NamedList<>();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package cz.cas.lib.arclib.service;
+
+import cz.cas.lib.arclib.domain.Producer;
+import cz.cas.lib.arclib.domain.User;
+import cz.cas.lib.arclib.domain.export.ExportConfig;
+import cz.cas.lib.arclib.domain.export.ExportScope;
+import cz.cas.lib.arclib.index.solr.arclibxml.IndexedAipState;
+import cz.cas.lib.arclib.index.solr.arclibxml.IndexedArclibXmlDocument;
+import cz.cas.lib.arclib.index.solr.arclibxml.SolrArclibXmlStore;
+import cz.cas.lib.arclib.service.archivalStorage.ArchivalStorageException;
+import cz.cas.lib.arclib.service.archivalStorage.ArchivalStorageService;
+import cz.cas.lib.arclib.service.export.ExportJournal;
+import cz.cas.lib.arclib.service.fixity.Sha512Counter;
+import cz.cas.lib.core.index.dto.Result;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class AipExportServiceTest {
+    private static final Path TEST_WORKSPACE = Paths.get("testWorkspace");
+    private static final String EXPORT_KEY = "routine";
+
+    private SolrArclibXmlStore indexedArclibXmlStore = mock(SolrArclibXmlStore.class);
+    private ArchivalStorageService archivalStorageService = mock(ArchivalStorageService.class);
+    private AipExportService service = new AipExportService();
+    private ExportConfig exportConfig = new ExportConfig();
+    private List<String> ids = List.of("a", "b", "c");
+    private User user = new User("user", new Producer("producer"), Set.of());
+
+    @Before
+    public void before() throws IOException {
+        Files.createDirectories(TEST_WORKSPACE);
+        service.setIndexedArclibXmlStore(indexedArclibXmlStore);
+        service.setArchivalStorageService(archivalStorageService);
+        service.setSha512Counter(new Sha512Counter());
+        service.setExportThreads(2);
+        service.init();
+        exportConfig.setScope(List.of(ExportScope.AIP_XML));
+        exportConfig.setExportFolder(TEST_WORKSPACE.toString());
+        when(indexedArclibXmlStore.findAllIgnorePagination(any())).thenReturn(new Result<>(ids.stream().map(id -> new IndexedArclibXmlDocument(Map.of(
+                IndexedArclibXmlDocument.ID, id,
+                IndexedArclibXmlDocument.SIP_ID, id,
+                IndexedArclibXmlDocument.XML_VERSION_NUMBER, 1,
+                IndexedArclibXmlDocument.AIP_STATE, IndexedAipState.ARCHIVED.toString()), Map.of())).toList(), 3L));
+    }
+
+    @After
+    public void after() throws IOException {
+        service.destroy();
+        FileUtils.cleanDirectory(TEST_WORKSPACE.toFile());
+        Files.deleteIfExists(TEST_WORKSPACE);
+    }
+
+    @Test
+    public void interruptedExportResumedWithFailedItems() throws Exception {
+        when(archivalStorageService.exportSingleXml("a", 1)).then(invocation -> xml("a"));
+        when(archivalStorageService.exportSingleXml("b", 1)).thenThrow(new ArchivalStorageException("not available")).then(invocation -> xml("b"));
+        when(archivalStorageService.exportSingleXml("c", 1)).thenThrow(new IllegalStateException("connection reset")).then(invocation -> xml("c"));
+
+        Path exportFolder = null;
+        try {
+            service.initiateExport(ids, exportConfig, false, user, EXPORT_KEY);
+            fail();
+        } catch (RuntimeException e) {
+            try (var folders = Files.list(TEST_WORKSPACE)) {
+                exportFolder = folders.findFirst().orElseThrow();
+            }
+        }
+        assertThat(Files.exists(exportFolder.resolve("export.failed")), is(true));
+        assertThat(Files.exists(exportFolder.resolve("export.done")), is(false));
+        assertThat(Files.readString(exportFolder.resolve(ExportJournal.PROGRESS_FILE_NAME)), allOf(containsString("xml/a/1\tDONE"), containsString("xml/b/1\tFAILED")));
+
+        Path resumedFolder = service.initiateExport(ids, exportConfig, false, user, EXPORT_KEY);
+        assertThat(resumedFolder, is(exportFolder));
+        assertThat(Files.exists(exportFolder.resolve("export.done")), is(true));
+        assertThat(Files.exists(exportFolder.resolve("export.failed")), is(false));
+        verify(archivalStorageService, times(1)).exportSingleXml("a", 1);
+        verify(archivalStorageService, times(2)).exportSingleXml("b", 1);
+        verify(archivalStorageService, times(2)).exportSingleXml("c", 1);
+        assertThat(Files.readAllLines(exportFolder.resolve(ExportJournal.MANIFEST_FILE_NAME)), hasSize(3));
+    }
+
+    @Test
+    public void exportWithFailedItemNotDone() throws Exception {
+        when(archivalStorageService.exportSingleXml("a", 1)).then(invocation -> xml("a"));
+        when(archivalStorageService.exportSingleXml("b", 1)).thenThrow(new ArchivalStorageException("not available")).then(invocation -> xml("b"));
+        when(archivalStorageService.exportSingleXml("c", 1)).then(invocation -> xml("c"));
+
+        Path exportFolder = service.initiateExport(ids, exportConfig, false, user, EXPORT_KEY);
+        assertThat(Files.exists(exportFolder.resolve("export.done")), is(false));
+        assertThat(Files.readString(exportFolder.resolve("export.failed")), containsString("1 items failed"));
+
+        assertThat(service.initiateExport(ids, exportConfig, false, user, EXPORT_KEY), is(exportFolder));
+        assertThat(Files.exists(exportFolder.resolve("export.done")), is(true));
+        verify(archivalStorageService, times(1)).exportSingleXml("a", 1);
+        verify(archivalStorageService, times(2)).exportSingleXml("b", 1);
+        verify(archivalStorageService, times(1)).exportSingleXml("c", 1);
+    }
+
+    private static ByteArrayInputStream xml(String aipId) {
+        return new ByteArrayInputStream(("<xml>" + aipId + "</xml>").getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,102 @@
+package cz.cas.lib.arclib.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import cz.cas.lib.arclib.domain.AipQuery;
+import cz.cas.lib.arclib.domain.AipQueryResult;
+import cz.cas.lib.arclib.index.IndexedArclibXmlStore;
+import cz.cas.lib.arclib.index.solr.arclibxml.IndexedArclibXmlDocument;
+import cz.cas.lib.arclib.store.AipQueryResultStore;
+import cz.cas.lib.arclib.store.AipQueryStore;
+import cz.cas.lib.core.index.dto.Result;
+import cz.cas.lib.core.util.ApplicationContextUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class AipQueryServiceTest {
+    private AipQueryStore store = mock(AipQueryStore.class);
+    private AipQueryResultStore resultStore = mock(AipQueryResultStore.class);
+    private IndexedArclibXmlStore indexArclibXmlStore = mock(IndexedArclibXmlStore.class);
+    private TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private AipQueryService service = new AipQueryService();
+
+    @Before
+    public void before() {
+        ApplicationContext applicationContext = mock(ApplicationContext.class);
+        when(applicationContext.getBean(eq(ObjectMapper.class))).thenReturn(new ObjectMapper());
+        new ApplicationContextUtils().setApplicationContext(applicationContext);
+        doAnswer(invocation -> {
+            invocation.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        service.setStore(store);
+        service.setResultStore(resultStore);
+        service.setIndexArclibXmlStore(indexArclibXmlStore);
+        service.setTransactionTemplate(transactionTemplate);
+    }
+
+    @Test
+    public void legacyResultsConverted() {
+        AipQuery query = new AipQuery();
+        query.setId("q1");
+        when(store.findIdsWithLegacyResult()).thenReturn(List.of("q1", "q2"));
+        when(store.findLegacyResult("q1")).thenReturn(legacyResult("b", "c", "a"));
+        when(store.findLegacyResult("q2")).thenReturn("not a json");
+        when(store.find("q1")).thenReturn(query);
+
+        assertThat(service.convertLegacyResults(), is(1));
+
+        ArgumentCaptor<AipQueryResult> saved = ArgumentCaptor.forClass(AipQueryResult.class);
+        verify(resultStore).save(saved.capture());
+        assertThat(saved.getValue().getId(), is("q1"));
+        assertThat(saved.getValue().getIds(), contains("a", "b", "c"));
+        assertThat(query.getResultCount(), is(3L));
+        verify(store).clearLegacyResult("q1");
+        //query which failed to convert keeps its legacy result
+        verify(store, never()).clearLegacyResult("q2");
+        verify(transactionTemplate, times(2)).executeWithoutResult(any());
+    }
+
+    @Test
+    public void resultReadWithoutWrites() {
+        AipQuery query = new AipQuery();
+        query.setId("q1");
+        when(store.find("q1")).thenReturn(query);
+        when(indexArclibXmlStore.findByIds(anyList())).thenReturn(List.of());
+
+        Result<IndexedArclibXmlDocument> page = service.findResultPage("q1", 0, 10);
+        assertThat(page.getItems(), empty());
+        assertThat(page.getCount(), is(0L));
+
+        when(resultStore.find("q1")).thenReturn(new AipQueryResult("q1", List.of("a", "b", "c")));
+        service.findResultPage("q1", 1, 2);
+        verify(indexArclibXmlStore).findByIds(List.of("c"));
+
+        verify(store, never()).findLegacyResult(anyString());
+        verify(store, never()).clearLegacyResult(anyString());
+        verify(store, never()).save(any(AipQuery.class));
+        verify(resultStore, never()).save(any(AipQueryResult.class));
+        verifyNoInteractions(transactionTemplate);
+    }
+
+    private static String legacyResult(String... ids) {
+        String items = Arrays.stream(ids)
+                .map(id -> "{\"fields\":{\"" + IndexedArclibXmlDocument.ID + "\":\"" + id + "\"},\"children\":{}}")
+                .collect(Collectors.joining(","));
+        return "{\"items\":[" + items + "],\"count\":" + ids.length + "}";
+    }
+}
@@ -63,6 +63,7 @@ public class AuthorialPackageServiceTest extends DbTest {
         batchStore.setSolrClient(solrClient);
         service.setIngestWorkflowService(ingestWorkflowService);
         ingestWorkflowService.setStore(ingestWorkflowStore);
+        ingestWorkflowService.setBatchStore(batchStore);
         ingestWorkflowStore.setGenerator(generator);
         service.setSipStore(sipStore);
         service.setIndexArclibXmlStore(arclibXmlStore);
@@ -0,0 +1,85 @@
+package cz.cas.lib.arclib.service;
+
+import cz.cas.lib.arclib.domain.HashType;
+import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflowArtifact;
+import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflowArtifactType;
+import cz.cas.lib.arclib.dto.SipIntakeDigestsDto;
+import cz.cas.lib.arclib.store.IngestWorkflowArtifactStore;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class IngestWorkflowArtifactServiceTest {
+    private static final String IW = "ARCLIB_000000001";
+    private static final String EVENT = "event";
+
+    private IngestWorkflowArtifactStore store = mock(IngestWorkflowArtifactStore.class);
+    private IngestWorkflowArtifactService service = new IngestWorkflowArtifactService();
+
+    @Before
+    public void before() {
+        service.setStore(store);
+    }
+
+    @Test
+    public void fileFormatsRoundTrip() {
+        TreeMap<String, Pair<String, String>> formats = new TreeMap<>();
+        formats.put("data/file.xml", Pair.of("fmt/101", "Signature"));
+        formats.put("data/tab\tnew\nline\\back.txt", Pair.of("x-fmt/111", null));
+        service.saveFileFormats(IW, EVENT, formats);
+
+        stored(IngestWorkflowArtifactType.FILE_FORMATS, EVENT);
+        assertThat(service.findFileFormats(IW, EVENT), is(formats));
+        assertThat(service.findFileFormats(IW, "other"), nullValue());
+    }
+
+    @Test
+    public void fileFixityRoundTrip() {
+        Map<String, Triple<Long, String, String>> fixity = Map.of(
+                "a.txt", Triple.of(10L, "SHA512", "abc"),
+                "b.txt", Triple.of(5L, "SHA512", "def"));
+        service.saveFileFixity(IW, EVENT, fixity);
+
+        stored(IngestWorkflowArtifactType.FILE_FIXITY, EVENT);
+        when(store.findEventIds(IW, IngestWorkflowArtifactType.FILE_FIXITY)).thenReturn(List.of(EVENT));
+        assertThat(service.findFileFixity(IW, EVENT), is(fixity));
+        assertThat(service.sumFileSizes(IW), is(15L));
+    }
+
+    @Test
+    public void sipIntakeDigestsRoundTrip() {
+        SipIntakeDigestsDto digests = new SipIntakeDigestsDto();
+        digests.setSipZip(new SipIntakeDigestsDto.FileDigests(100, 1, Map.of(HashType.MD5, "aa", HashType.Sha512, "bb")));
+        digests.getSipContent().put("data/file.xml", new SipIntakeDigestsDto.FileDigests(10, 2, Map.of(HashType.Sha512, "cc")));
+        service.saveSipIntakeDigests(IW, digests);
+
+        stored(IngestWorkflowArtifactType.SIP_INTAKE_DIGESTS, null);
+        SipIntakeDigestsDto found = service.findSipIntakeDigests(IW);
+        assertThat(found.getSipZip().getSize(), is(100L));
+        assertThat(found.getSipZip().getDigests(), is(Map.of(HashType.MD5, "aa", HashType.Sha512, "bb")));
+        assertThat(found.getSipContent().keySet(), is(Set.of("data/file.xml")));
+        assertThat(found.getSipContent().get("data/file.xml").getLastModified(), is(2L));
+        assertThat(found.getSipContent().get("data/file.xml").getDigests(), is(Map.of(HashType.Sha512, "cc")));
+    }
+
+    private void stored(IngestWorkflowArtifactType type, String eventId) {
+        ArgumentCaptor<IngestWorkflowArtifact> captor = ArgumentCaptor.forClass(IngestWorkflowArtifact.class);
+        verify(store).save(captor.capture());
+        assertThat(captor.getValue().getType(), is(type));
+        when(store.find(eq(IW), any(), any())).thenReturn(null);
+        when(store.find(IW, type, eventId)).thenReturn(captor.getValue());
+    }
+}
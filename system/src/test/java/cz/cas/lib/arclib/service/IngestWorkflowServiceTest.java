@@ -0,0 +1,63 @@
+package cz.cas.lib.arclib.service;
+
+import cz.cas.lib.arclib.domain.Batch;
+import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflow;
+import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflowState;
+import cz.cas.lib.arclib.store.BatchStore;
+import cz.cas.lib.arclib.store.IngestWorkflowStore;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class IngestWorkflowServiceTest {
+    private IngestWorkflowStore store = mock(IngestWorkflowStore.class);
+    private BatchStore batchStore = mock(BatchStore.class);
+    private IngestWorkflowService service = new IngestWorkflowService();
+    private Batch batch = new Batch();
+    private IngestWorkflow iw = new IngestWorkflow();
+
+    @Before
+    public void before() {
+        service.setStore(store);
+        service.setBatchStore(batchStore);
+        when(store.save(any(IngestWorkflow.class))).then(invocation -> invocation.getArgument(0));
+        iw.setBatch(batch);
+    }
+
+    @Test
+    public void stateChangeMovesIngestWorkflowBetweenCounters() {
+        when(store.findBatchIdAndStateForUpdate(iw.getId())).thenReturn(Pair.of(batch.getId(), IngestWorkflowState.PROCESSING));
+        iw.setProcessingState(IngestWorkflowState.FAILED);
+        service.save(iw);
+        verify(batchStore).addIngestWorkflowCounts(batch.getId(), Map.of(IngestWorkflowState.PROCESSING, -1L, IngestWorkflowState.FAILED, 1L));
+    }
+
+    @Test
+    public void newAndDeletedIngestWorkflowCounted() {
+        iw.setProcessingState(IngestWorkflowState.NEW);
+        service.save(iw);
+        verify(batchStore).addIngestWorkflowCounts(batch.getId(), Map.of(IngestWorkflowState.NEW, 1L));
+
+        when(store.findBatchIdAndStateForUpdate(iw.getId())).thenReturn(Pair.of(batch.getId(), IngestWorkflowState.NEW));
+        service.delete(iw);
+        verify(batchStore).addIngestWorkflowCounts(batch.getId(), Map.of(IngestWorkflowState.NEW, -1L));
+    }
+
+    @Test
+    public void unchangedStateNotCounted() {
+        when(store.findBatchIdAndStateForUpdate(iw.getId())).thenReturn(Pair.of(batch.getId(), IngestWorkflowState.PROCESSING));
+        iw.setProcessingState(IngestWorkflowState.PROCESSING);
+        service.save(iw);
+
+        IngestWorkflow withoutBatch = new IngestWorkflow();
+        withoutBatch.setProcessingState(IngestWorkflowState.PERSISTED);
+        service.save(withoutBatch);
+        verify(batchStore, never()).addIngestWorkflowCounts(anyString(), any());
+    }
+}
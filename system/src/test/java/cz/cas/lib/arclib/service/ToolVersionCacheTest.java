@@ -0,0 +1,72 @@
+package cz.cas.lib.arclib.service;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ToolVersionCacheTest {
+
+    private static final Path WS = Paths.get("testWorkspace");
+    private static final List<String> CMD = List.of("tool", "-v");
+
+    private ToolVersionCache cache;
+    private Path signatures;
+
+    @Before
+    public void before() throws IOException {
+        signatures = Files.createDirectories(WS.resolve("signatures"));
+        Files.writeString(signatures.resolve("main.cvd"), "sig");
+        cache = new ToolVersionCache();
+    }
+
+    @After
+    public void after() throws IOException {
+        FileUtils.deleteDirectory(WS.toFile());
+    }
+
+    @Test
+    public void versionLoadedOnce() {
+        AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            String version = cache.get("tool", CMD, List.of(signatures), () -> "v" + loads.incrementAndGet());
+            assertThat(version, is("v1"));
+        }
+        assertThat(loads.get(), is(1));
+        assertThat(cache.findAll(), hasSize(1));
+    }
+
+    @Test
+    public void versionReloadedWhenSignaturesChange() throws IOException {
+        AtomicInteger loads = new AtomicInteger();
+        assertThat(cache.get("tool", CMD, List.of(signatures), () -> "v" + loads.incrementAndGet()), is("v1"));
+        Files.setLastModifiedTime(signatures.resolve("main.cvd"), FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+        assertThat(cache.get("tool", CMD, List.of(signatures), () -> "v" + loads.incrementAndGet()), is("v2"));
+        assertThat(cache.findAll(), hasSize(1));
+    }
+
+    @Test
+    public void failedRefreshKeepsVersion() {
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("tool", CMD, List.of(signatures), () -> {
+            if (loads.incrementAndGet() > 1)
+                throw new IllegalStateException("tool version CMD has failed");
+            return "v1";
+        });
+        cache.refresh();
+        assertThat(loads.get(), is(2));
+        assertThat(cache.get("tool", CMD, List.of(signatures), () -> "v3"), is("v1"));
+    }
+}
@@ -9,6 +9,7 @@ import cz.cas.lib.arclib.domain.packages.Sip;
 import cz.cas.lib.arclib.domain.preservationPlanning.IngestIssueDefinition;
 import cz.cas.lib.arclib.domain.preservationPlanning.IngestIssueDefinitionCode;
 import cz.cas.lib.arclib.domain.preservationPlanning.Tool;
+import cz.cas.lib.arclib.formatlibrary.service.FormatDefinitionCache;
 import cz.cas.lib.arclib.formatlibrary.service.FormatDefinitionService;
 import cz.cas.lib.arclib.formatlibrary.store.DbFormatDefinitionStore;
 import cz.cas.lib.arclib.service.ExternalProcessRunner;
@@ -77,6 +78,9 @@ public class AntivirusTests extends SrDbTest {
         ingestIssueService.setIngestIssueStore(ingestIssueStore);
         FormatDefinitionService formatDefinitionService = new FormatDefinitionService();
         formatDefinitionService.setStore(formatDefinitionStore);
+        FormatDefinitionCache formatDefinitionCache = new FormatDefinitionCache();
+        formatDefinitionCache.setStore(formatDefinitionStore);
+        formatDefinitionService.setCache(formatDefinitionCache);
         ToolStore toolStore = new ToolStore();
 
 
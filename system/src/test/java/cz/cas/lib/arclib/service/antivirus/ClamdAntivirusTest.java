@@ -0,0 +1,249 @@
+package cz.cas.lib.arclib.service.antivirus;
+
+import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflow;
+import cz.cas.lib.arclib.exception.bpm.CommandLineProcessException;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static helper.ThrowableAssertion.assertThrown;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ClamdAntivirusTest {
+
+    private static final Path WS = Paths.get("testWorkspace");
+    private static final Path SIP = WS.resolve("sip");
+    private static final String VIRUS = "EICAR-STANDARD-ANTIVIRUS-TEST-FILE";
+
+    private FakeClamd fakeClamd;
+    private ClamdClient clamdClient;
+    private List<Path> reportedInfectedFiles;
+
+    @Before
+    public void before() throws IOException {
+        Files.createDirectories(SIP.resolve("data"));
+        for (int i = 0; i < 20; i++) {
+            Files.writeString(SIP.resolve("data").resolve("clean" + i + ".txt"), "clean content " + i);
+        }
+        fakeClamd = new FakeClamd();
+        clamdClient = new ClamdClient();
+        clamdClient.setAddress("localhost:" + fakeClamd.getPort());
+        clamdClient.setPoolSize(3);
+        clamdClient.setTimeout(10);
+        clamdClient.setIdleTimeout(20);
+        clamdClient.setChunkSize(7);
+        clamdClient.init();
+        reportedInfectedFiles = null;
+    }
+
+    @After
+    public void after() throws IOException {
+        clamdClient.destroy();
+        fakeClamd.close();
+        FileUtils.deleteDirectory(WS.toFile());
+    }
+
+    @Test
+    public void cleanSip() throws Exception {
+        antivirus(ClamdScanMode.INSTREAM).scan(SIP, new IngestWorkflow());
+        assertThat(reportedInfectedFiles, nullValue());
+        assertThat(fakeClamd.getScannedStreams().get(), is(20));
+        assertThat(fakeClamd.getConnections().get(), lessThanOrEqualTo(3));
+    }
+
+    @Test
+    public void infectedSipInstream() throws Exception {
+        Path infected = SIP.resolve("data").resolve("infected.com");
+        Files.writeString(infected, "X5O!P%@AP[4\\PZX54(P^)7CC)7}$" + VIRUS + "!$H+H*");
+        antivirus(ClamdScanMode.INSTREAM).scan(SIP, new IngestWorkflow());
+        assertThat(reportedInfectedFiles, contains(infected));
+    }
+
+    @Test
+    public void infectedSipMultiscan() throws Exception {
+        Path infected = SIP.resolve("data").resolve("infected.com");
+        Files.writeString(infected, VIRUS);
+        antivirus(ClamdScanMode.MULTISCAN).scan(SIP, new IngestWorkflow());
+        assertThat(reportedInfectedFiles, contains(infected.toAbsolutePath()));
+    }
+
+    @Test
+    public void scanError() throws IOException {
+        Files.writeString(SIP.resolve("data").resolve("broken.txt"), "BROKEN");
+        assertThrown(() -> antivirus(ClamdScanMode.INSTREAM).scan(SIP, new IngestWorkflow())).isInstanceOf(CommandLineProcessException.class);
+    }
+
+    @Test
+    public void closedSessionIsReplaced() throws Exception {
+        assertThat(clamdClient.instream(SIP.resolve("data").resolve("clean0.txt")), is("stream: OK"));
+        fakeClamd.closeSessions();
+        assertThat(clamdClient.instream(SIP.resolve("data").resolve("clean1.txt")), is("stream: OK"));
+    }
+
+    @Test
+    public void version() {
+        ClamdAntivirus antivirus = antivirus(ClamdScanMode.INSTREAM);
+        assertThat(antivirus.getToolVersion(), is("[ClamAV 1.0.1/26845/Tue Mar 28 07:52:26 2023]"));
+        assertThat(antivirus.getShortToolVersion(), is("ClamAV 1.0.1"));
+    }
+
+    private ClamdAntivirus antivirus(ClamdScanMode scanMode) {
+        return new ClamdAntivirus(clamdClient, scanMode, null) {
+            @Override
+            public void invokeInfectedFilesIssue(List<Path> infectedFiles, IngestWorkflow ingestWorkflow, Path pathToSip) {
+                reportedInfectedFiles = infectedFiles;
+            }
+        };
+    }
+
+    /**
+     * Minimal clamd speaking the null terminated (z prefixed) protocol: IDSESSION, INSTREAM, VERSION, END and MULTISCAN.
+     * Content containing the EICAR test string is reported as infected, content BROKEN as scan error.
+     */
+    private static class FakeClamd implements Closeable {
+        private final ServerSocket serverSocket = new ServerSocket(0);
+        private final List<Socket> sockets = new ArrayList<>();
+        private final AtomicInteger connections = new AtomicInteger();
+        private final AtomicInteger scannedStreams = new AtomicInteger();
+
+        private FakeClamd() throws IOException {
+            Thread acceptor = new Thread(() -> {
+                try {
+                    while (true) {
+                        Socket socket = serverSocket.accept();
+                        connections.incrementAndGet();
+                        synchronized (sockets) {
+                            sockets.add(socket);
+                        }
+                        Thread handler = new Thread(() -> handle(socket));
+                        handler.setDaemon(true);
+                        handler.start();
+                    }
+                } catch (IOException e) {
+                    //closed
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private void handle(Socket socket) {
+            try (socket) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                OutputStream out = socket.getOutputStream();
+                boolean session = false;
+                int commandId = 0;
+                String command;
+                while ((command = readCommand(in)) != null) {
+                    String prefix = session ? ++commandId + ": " : "";
+                    if (command.equals("zIDSESSION")) {
+                        session = true;
+                        continue;
+                    }
+                    if (command.equals("zEND"))
+                        return;
+                    String reply;
+                    if (command.equals("zVERSION")) {
+                        reply = "ClamAV 1.0.1/26845/Tue Mar 28 07:52:26 2023";
+                    } else if (command.equals("zINSTREAM")) {
+                        ByteArrayOutputStream content = new ByteArrayOutputStream();
+                        int length;
+                        while ((length = in.readInt()) != 0) {
+                            content.write(in.readNBytes(length));
+                        }
+                        scannedStreams.incrementAndGet();
+                        reply = "stream: " + verdict(content.toString(StandardCharsets.UTF_8));
+                    } else if (command.startsWith("zMULTISCAN ")) {
+                        Path path = Paths.get(command.substring("zMULTISCAN ".length()));
+                        List<Path> infected;
+                        try (Stream<Path> files = Files.walk(path)) {
+                            infected = files.filter(Files::isRegularFile).filter(f -> readString(f).contains(VIRUS)).collect(Collectors.toList());
+                        }
+                        for (Path file : infected) {
+                            out.write((file + ": Eicar-Test-Signature FOUND\0").getBytes(StandardCharsets.UTF_8));
+                        }
+                        if (infected.isEmpty())
+                            out.write((path + ": OK\0").getBytes(StandardCharsets.UTF_8));
+                        return;
+                    } else {
+                        reply = "UNKNOWN COMMAND";
+                    }
+                    out.write((prefix + reply + "\0").getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    if (!session)
+                        return;
+                }
+            } catch (IOException e) {
+                //connection closed
+            }
+        }
+
+        private static String verdict(String content) {
+            if (content.contains(VIRUS))
+                return "Eicar-Test-Signature FOUND";
+            if (content.equals("BROKEN"))
+                return "Can't scan. ERROR";
+            return "OK";
+        }
+
+        private static String readString(Path file) {
+            try {
+                return Files.readString(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static String readCommand(DataInputStream in) throws IOException {
+            ByteArrayOutputStream command = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != 0) {
+                if (b == -1)
+                    return null;
+                command.write(b);
+            }
+            return command.toString(StandardCharsets.UTF_8);
+        }
+
+        private int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private AtomicInteger getConnections() {
+            return connections;
+        }
+
+        private AtomicInteger getScannedStreams() {
+            return scannedStreams;
+        }
+
+        private void closeSessions() throws IOException {
+            synchronized (sockets) {
+                for (Socket socket : sockets) {
+                    socket.close();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            closeSessions();
+        }
+    }
+}
@@ -1,6 +1,21 @@
 package cz.cas.lib.arclib.service.arclibxml;
 
+import cz.cas.lib.arclib.bpm.BpmConstants;
+import cz.cas.lib.arclib.domain.Batch;
+import cz.cas.lib.arclib.domain.IngestToolFunction;
+import cz.cas.lib.arclib.domain.Producer;
+import cz.cas.lib.arclib.domain.ingestWorkflow.IngestEvent;
 import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflow;
+import cz.cas.lib.arclib.domain.ingestWorkflow.WorkflowDefinition;
+import cz.cas.lib.arclib.domain.packages.FolderStructure;
+import cz.cas.lib.arclib.domain.packages.Sip;
+import cz.cas.lib.arclib.domain.preservationPlanning.Tool;
+import cz.cas.lib.arclib.domain.profiles.ProducerProfile;
+import cz.cas.lib.arclib.service.IngestWorkflowArtifactService;
+import cz.cas.lib.arclib.service.SipFileIndexService;
+import cz.cas.lib.arclib.store.IngestEventStore;
+import cz.cas.lib.arclib.store.IngestWorkflowStore;
+import org.apache.commons.lang3.tuple.Pair;
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
 import org.dom4j.Node;
@@ -11,12 +26,15 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Map;
+import java.time.Instant;
+import java.util.*;
 
-import static org.hamcrest.Matchers.containsString;
-import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 
 public class ArclibXmlGeneratorTest {
@@ -62,4 +80,91 @@ public class ArclibXmlGeneratorTest {
         assertThat(sndGeneratedEvent.asXML(), containsString(sndUser));
         assertThat(sndGeneratedEvent.createXPath(".//premis:eventIdentifierValue").selectSingleNode(sndGeneratedEvent).getText(), endsWith("2"));
     }
+
+    @Test
+    public void aggregatedFormatsReadFromArtifacts() throws IOException, DocumentException {
+        IngestWorkflowStore ingestWorkflowStore = mock(IngestWorkflowStore.class);
+        IngestEventStore ingestEventStore = mock(IngestEventStore.class);
+        IngestWorkflowArtifactService ingestWorkflowArtifactService = mock(IngestWorkflowArtifactService.class);
+        ArclibXmlGenerator generator = new ArclibXmlGenerator();
+        generator.setUris("http://www.loc.gov/METS/",
+                "http://www.w3.org/2001/XMLSchema-instance",
+                "http://arclib.lib.cas.cz/ARCLIB_XSD",
+                "info:lc/xmlns/premis-v2",
+                "http://www.openarchives.org/OAI/2.0/oai_dc/",
+                "http://purl.org/dc/elements/1.1/",
+                "http://www.w3.org/1999/xlink");
+        generator.setIngestWorkflowStore(ingestWorkflowStore);
+        generator.setIngestEventStore(ingestEventStore);
+        generator.setIngestWorkflowArtifactService(ingestWorkflowArtifactService);
+        generator.setSipFileIndexService(new SipFileIndexService());
+
+        Producer producer = new Producer();
+        producer.setName("producer");
+        WorkflowDefinition workflowDefinition = new WorkflowDefinition();
+        workflowDefinition.setExternalId("wd");
+        ProducerProfile producerProfile = new ProducerProfile();
+        producerProfile.setExternalId("pp");
+        producerProfile.setProducer(producer);
+        producerProfile.setWorkflowDefinition(workflowDefinition);
+        Batch batch = new Batch();
+        batch.setProducerProfile(producerProfile);
+        Sip sip = new Sip();
+        sip.setFolderStructure(new FolderStructure(new ArrayList<>(), "sip"));
+        sip.setSizeInBytes(1024L);
+        IngestWorkflow iw = new IngestWorkflow();
+        iw.setExternalId("ARCLIB_000000001");
+        iw.setCreated(Instant.now());
+        iw.setUpdated(Instant.now());
+        iw.setBatch(batch);
+        iw.setSip(sip);
+        iw.setXmlVersionNumber(1);
+        when(ingestWorkflowStore.findByExternalId(iw.getExternalId())).thenReturn(iw);
+
+        Tool droid = new Tool();
+        droid.setName("DROID");
+        droid.setVersion("6.4");
+        droid.setToolFunction(IngestToolFunction.format_identification);
+        IngestEvent formatIdentificationEvent = new IngestEvent();
+        formatIdentificationEvent.setTool(droid);
+        formatIdentificationEvent.setSuccess(true);
+        formatIdentificationEvent.setCreated(Instant.now());
+        formatIdentificationEvent.setUpdated(Instant.now());
+        Tool arclib = new Tool();
+        arclib.setInternal(true);
+        arclib.setToolFunction(IngestToolFunction.metadata_extraction);
+        IngestEvent generationEvent = new IngestEvent();
+        generationEvent.setTool(arclib);
+        generationEvent.setCreated(Instant.now());
+        when(ingestEventStore.findAllOfIngestWorkflow(iw.getExternalId())).thenReturn(new ArrayList<>(List.of(formatIdentificationEvent)));
+        when(ingestEventStore.find(formatIdentificationEvent.getId())).thenReturn(formatIdentificationEvent);
+
+        TreeMap<String, Pair<String, String>> formats = new TreeMap<>();
+        formats.put("a.pdf", Pair.of("fmt/248", "extension"));
+        formats.put("b.pdf", Pair.of("fmt/248", "extension"));
+        formats.put("c.txt", Pair.of("x-fmt/111", "content"));
+        when(ingestWorkflowArtifactService.findFileFormats(iw.getExternalId(), formatIdentificationEvent.getId())).thenReturn(formats);
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put(BpmConstants.ProcessVariables.ingestWorkflowExternalId, iw.getExternalId());
+        variables.put(BpmConstants.ProcessVariables.extractedAuthorialId, "authorialId");
+        variables.put(BpmConstants.MetadataExtraction.usedSipProfile, "sipProfile");
+        variables.put(BpmConstants.FormatIdentification.preferredFormatIdentificationEventId, formatIdentificationEvent.getId());
+        Path sipFolder = Files.createTempDirectory("sip");
+        try {
+            variables.put(BpmConstants.ProcessVariables.sipFolderWorkspacePath, sipFolder.toString());
+            Document doc = generator.generateMetadata("<METS:mets xmlns:METS=\"http://www.loc.gov/METS/\"><METS:metsHdr/></METS:mets>",
+                    variables, generationEvent);
+
+            List<Node> formatNodes = doc.selectNodes("//*[local-name()='format' and namespace-uri()='http://arclib.lib.cas.cz/ARCLIB_XSD']");
+            Map<String, String> fileCounts = new HashMap<>();
+            for (Node formatNode : formatNodes) {
+                fileCounts.put(formatNode.selectSingleNode("*[local-name()='formatRegistryKey']").getText(),
+                        formatNode.selectSingleNode("*[local-name()='fileCount']").getText());
+            }
+            assertThat(fileCounts, is(Map.of("fmt/248", "2", "x-fmt/111", "1")));
+        } finally {
+            Files.delete(sipFolder);
+        }
+    }
 }
@@ -6,6 +6,7 @@ import cz.cas.lib.arclib.bpm.BpmConstants;
 import cz.cas.lib.arclib.domain.Batch;
 import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflow;
 import cz.cas.lib.arclib.domain.profiles.SipProfile;
+import cz.cas.lib.arclib.service.SipFileIndexService;
 import cz.cas.lib.arclib.service.SipProfileService;
 import cz.cas.lib.arclib.store.BatchStore;
 import cz.cas.lib.arclib.store.IngestWorkflowStore;
@@ -120,6 +121,8 @@ public class ArclibXmlXsltExtractorTest extends SrDbTest {
 
         arclibXmlXsltExtractor = new ArclibXmlXsltExtractor();
         arclibXmlXsltExtractor.setSipProfileService(sipProfileService);
+        arclibXmlXsltExtractor.setSipProfileXslCache(new SipProfileXslCache());
+        arclibXmlXsltExtractor.setSipFileIndexService(new SipFileIndexService());
     }
 
     @Test
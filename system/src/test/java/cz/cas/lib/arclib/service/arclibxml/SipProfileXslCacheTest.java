@@ -0,0 +1,44 @@
+package cz.cas.lib.arclib.service.arclibxml;
+
+import cz.cas.lib.arclib.domain.profiles.SipProfile;
+import org.junit.Test;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class SipProfileXslCacheTest {
+    private static final String XSL = "<xsl:stylesheet version=\"2.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">" +
+            "<xsl:template match=\"/\"><result>%s</result></xsl:template></xsl:stylesheet>";
+
+    private SipProfileXslCache cache = new SipProfileXslCache();
+
+    @Test
+    public void templatesRecompiledOnlyWhenXslChanges() throws Exception {
+        SipProfile sipProfile = new SipProfile();
+        sipProfile.setXsl(String.format(XSL, "a"));
+
+        Templates templates = cache.getTemplates(sipProfile);
+        assertThat(cache.getTemplates(sipProfile), sameInstance(templates));
+        assertThat(transform(templates), containsString("<result>a</result>"));
+
+        sipProfile.setXsl(String.format(XSL, "b"));
+        Templates changed = cache.getTemplates(sipProfile);
+        assertThat(changed, not(sameInstance(templates)));
+        assertThat(transform(changed), containsString("<result>b</result>"));
+
+        cache.evict(sipProfile.getId());
+        assertThat(cache.getTemplates(sipProfile), not(sameInstance(changed)));
+    }
+
+    private String transform(Templates templates) throws Exception {
+        StringWriter result = new StringWriter();
+        templates.newTransformer().transform(new StreamSource(new StringReader("<xml/>")), new StreamResult(result));
+        return result.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package cz.cas.lib.arclib.service.export;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+
+public class ExportJournalTest {
+    private static final Path TEST_WORKSPACE = Paths.get("testWorkspace");
+
+    @Before
+    public void before() throws IOException {
+        Files.createDirectories(TEST_WORKSPACE);
+    }
+
+    @After
+    public void after() throws IOException {
+        FileUtils.cleanDirectory(TEST_WORKSPACE.toFile());
+        Files.deleteIfExists(TEST_WORKSPACE);
+    }
+
+    @Test
+    public void resumeSkipsOnlyDoneItems() throws IOException {
+        Path file = TEST_WORKSPACE.resolve("aip").resolve("data.txt");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "data");
+
+        try (ExportJournal journal = new ExportJournal(TEST_WORKSPACE)) {
+            journal.addTotal(2);
+            journal.itemDone("aip", Map.of(file, new byte[]{0x0a, (byte) 0xff}), 10);
+            journal.itemFailed("failedAip", 5);
+        }
+        assertThat(Files.readAllLines(TEST_WORKSPACE.resolve(ExportJournal.MANIFEST_FILE_NAME), StandardCharsets.UTF_8), contains("0aff  aip/data.txt"));
+        assertThat(Files.readString(TEST_WORKSPACE.resolve(ExportJournal.METRICS_FILE_NAME)), containsString("bytes=4"));
+
+        try (ExportJournal journal = new ExportJournal(TEST_WORKSPACE)) {
+            assertThat(journal.isCompleted("aip"), is(true));
+            assertThat(journal.isCompleted("failedAip"), is(false));
+            assertThat(journal.getMetrics(), containsString("skipped=1"));
+        }
+    }
+}
@@ -11,6 +11,8 @@ import cz.cas.lib.arclib.domain.profiles.SipProfile;
 import cz.cas.lib.arclib.exception.bpm.IncidentException;
 import cz.cas.lib.arclib.formatlibrary.service.FormatDefinitionService;
 import cz.cas.lib.arclib.service.IngestIssueService;
+import cz.cas.lib.arclib.service.IngestWorkflowArtifactService;
+import cz.cas.lib.arclib.service.SipFileIndexService;
 import cz.cas.lib.arclib.service.SipProfileService;
 import cz.cas.lib.arclib.service.preservationPlanning.ToolService;
 import cz.cas.lib.arclib.store.IngestIssueDefinitionStore;
@@ -108,6 +110,8 @@ public class FixityCheckerDelegateTest {
     private TreeMap<String, Pair<String, String>> droidResult = new TreeMap<>();
     @Mock
     private IngestIssueStore ingestIssueStore;
+    @Mock
+    private IngestWorkflowArtifactService ingestWorkflowArtifactService;
     @Captor
     ArgumentCaptor<List<IngestIssue>> captor;
 
@@ -182,6 +186,8 @@ public class FixityCheckerDelegateTest {
         fixityCheckerDelegate.setBagitFixityVerifier(bagitPackageFixityVerifier);
         fixityCheckerDelegate.setSipProfileService(sipProfileService);
         fixityCheckerDelegate.setWorkspace(WS.toString());
+        fixityCheckerDelegate.setSipFileIndexService(new SipFileIndexService());
+        fixityCheckerDelegate.setIngestWorkflowArtifactService(ingestWorkflowArtifactService);
         Mocks.register("fixityCheckerDelegate", fixityCheckerDelegate);
     }
 
@@ -1,5 +1,6 @@
 package cz.cas.lib.arclib.service.fixity;
 
+import cz.cas.lib.arclib.domain.HashType;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -7,13 +8,24 @@ import org.junit.Test;
 import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static helper.ThrowableAssertion.assertThrown;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static cz.cas.lib.core.util.Utils.bytesToHexString;
 import static org.junit.Assert.assertThat;
 
 
@@ -22,6 +34,7 @@ public class FixityCounterTests {
     private Md5Counter md5Counter;
     private Crc32Counter crc32Counter;
     private Sha512Counter sha512Counter;
+    private FixityCounterFacade fixityCounterFacade;
 
     private static final String FILE_SHA512 = "28e2bcfb7724d64c3e166ff8a541a20f4005c4e453fdc657237554da443bb0e2550304c4e7f143437a72479d30a517d61f290040220e7eeaeda21ac23caedde9";
     private static final String FILE_MD5 = "6226f7cbe59e99a90b5cef6f94f966fd";
@@ -36,6 +49,9 @@ public class FixityCounterTests {
         md5Counter = new Md5Counter();
         sha512Counter = new Sha512Counter();
         crc32Counter = new Crc32Counter();
+        fixityCounterFacade = new FixityCounterFacade();
+        fixityCounterFacade.setFixityCheckers(List.of(md5Counter, sha512Counter, crc32Counter));
+        fixityCounterFacade.setBufferSize(1);
     }
 
     @After
@@ -53,6 +69,78 @@ public class FixityCounterTests {
         assertThat(sha512Counter.verifyFixity(FILE_PATH, FILE_SHA512), is(true));
     }
 
+    /**
+     * Tests that digests computed in a single pass through a buffer smaller than the file match the real digests of the file.
+     */
+    @Test
+    public void testMultiDigestFileOK() throws IOException {
+        Map<HashType, byte[]> digests = fixityCounterFacade.computeDigests(EnumSet.of(HashType.MD5, HashType.Crc32, HashType.Sha512), FILE_PATH);
+        assertThat(digests.size(), is(3));
+        assertThat(bytesToHexString(digests.get(HashType.MD5)), is(FILE_MD5));
+        assertThat(bytesToHexString(digests.get(HashType.Crc32)), is(FILE_CRC32));
+        assertThat(bytesToHexString(digests.get(HashType.Sha512)), is(FILE_SHA512));
+
+        try (InputStream is = Files.newInputStream(FILE_PATH)) {
+            digests = fixityCounterFacade.computeDigests(EnumSet.of(HashType.Sha512), is);
+        }
+        assertThat(digests.size(), is(1));
+        assertThat(bytesToHexString(digests.get(HashType.Sha512)), is(FILE_SHA512));
+    }
+
+    /**
+     * Tests that digests of more files computed in parallel are the same as the sequentially computed ones and that
+     * the order of the files is preserved.
+     */
+    @Test
+    public void testParallelFilesDigest() throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(Paths.get("src/test/resources/SIP_package"))) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            fixityCounterFacade.setFixityExecutor(executor);
+            Map<Path, byte[]> digests = fixityCounterFacade.computeDigests(HashType.Sha512, files);
+            assertThat(new ArrayList<>(digests.keySet()), is(files));
+            for (Path file : files) {
+                assertThat(sha512Counter.verifyFixity(file, bytesToHexString(digests.get(file))), is(true));
+            }
+            assertThrown(() -> fixityCounterFacade.computeDigests(HashType.MD5, List.of(FILE_PATH, Paths.get("invalidpath"))))
+                    .isInstanceOf(IOException.class);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that file is copied and its digests are computed from the copied data.
+     */
+    @Test
+    public void testCopyAndComputeDigests() throws IOException {
+        Map<HashType, byte[]> digests = fixityCounterFacade.copyAndComputeDigests(EnumSet.of(HashType.MD5, HashType.Crc32), FILE_PATH, TEST_FILE_PATH);
+        assertThat(bytesToHexString(digests.get(HashType.MD5)), is(FILE_MD5));
+        assertThat(bytesToHexString(digests.get(HashType.Crc32)), is(FILE_CRC32));
+        assertThat(Files.readAllBytes(TEST_FILE_PATH), is(Files.readAllBytes(FILE_PATH)));
+        assertThrown(() -> fixityCounterFacade.copyAndComputeDigests(EnumSet.of(HashType.MD5), FILE_PATH, TEST_FILE_PATH))
+                .isInstanceOf(FileAlreadyExistsException.class);
+    }
+
+    /**
+     * Tests that the incomplete copy is deleted when the source can't be read.
+     */
+    @Test
+    public void testFailedCopyDeleted() {
+        assertThrown(() -> fixityCounterFacade.copyAndComputeDigests(EnumSet.of(HashType.MD5), FOLDER_PATH, TEST_FILE_PATH))
+                .isInstanceOf(IOException.class);
+        assertThat(Files.exists(TEST_FILE_PATH), is(false));
+    }
+
+    @Test
+    public void testMultiDigestIllegalArgument() {
+        assertThrown(() -> fixityCounterFacade.computeDigests(EnumSet.of(HashType.MD5), FOLDER_PATH)).isInstanceOf(IllegalArgumentException.class);
+        assertThrown(() -> fixityCounterFacade.computeDigests(EnumSet.of(HashType.Sha256), FILE_PATH)).isInstanceOf(IllegalArgumentException.class);
+    }
+
     /**
      * Tests computed digest does not match defined digest after input change.
      */
@@ -2,21 +2,29 @@ package cz.cas.lib.arclib.service.formatIdentification;
 
 import cz.cas.lib.arclib.service.ExternalProcessRunner;
 import cz.cas.lib.arclib.service.formatIdentification.droid.DroidFormatIdentificationTool;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import static helper.ThrowableAssertion.assertThrown;
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.*;
 import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
 
 public class DroidFormatIdentificationToolTest {
 
@@ -77,4 +85,45 @@ public class DroidFormatIdentificationToolTest {
         String filePath5 = ("userCopy/UC_KPW01169310_0001.JP2");
         assertThat(result.get(filePath5), contains(Pair.of("x-fmt/392", "Signature")));
     }
+
+    /**
+     * Test that the CSV streamed by DROID in the no-profile mode is parsed and filtered like the profile export and
+     * that the latest container signature file is passed to DROID
+     */
+    @Test
+    public void noProfileModeOutputParsed() throws IOException {
+        Path containerSignatures = Files.createTempDirectory("container_sigs");
+        try {
+            Files.createFile(containerSignatures.resolve("container-signature-20200121.xml"));
+            Files.createFile(containerSignatures.resolve("container-signature-20240715.xml"));
+            String sip = SIP_PATH.toAbsolutePath().toString().replace("\\", "/");
+            String output = String.join("\n",
+                    "Starting DROID.",
+                    "\"ID\",\"PARENT_ID\",\"URI\",\"FILE_PATH\",\"NAME\",\"METHOD\",\"STATUS\",\"SIZE\",\"TYPE\",\"EXT\",\"LAST_MODIFIED\",\"EXTENSION_MISMATCH\",\"HASH\",\"FORMAT_COUNT\",\"PUID\",\"MIME_TYPE\",\"FORMAT_NAME\",\"FORMAT_VERSION\"",
+                    "\"1\",\"\",\"file:" + sip + "/TXT/\",\"\",\"TXT\",\"\",\"Done\",\"\",\"Folder\",\"\",\"\",\"false\",\"\",\"\",\"\",\"\",\"\",\"\"",
+                    "\"2\",\"1\",\"file:" + sip + "/TXT/a.TXT\",\"\",\"a.TXT\",\"Extension\",\"Done\",\"1\",\"File\",\"TXT\",\"\",\"false\",\"\",\"1\",\"x-fmt/111\",\"text/plain\",\"Plain Text File\",\"\"",
+                    "\"3\",\"\",\"file:" + sip + "/b.docx\",\"\",\"b.docx\",\"Container\",\"Done\",\"1\",\"Container\",\"docx\",\"\",\"false\",\"\",\"1\",\"fmt/412\",\"\",\"Word\",\"2007\"",
+                    "\"4\",\"\",\"file:" + sip + "/c.bin\",\"\",\"c.bin\",\"\",\"Done\",\"1\",\"File\",\"bin\",\"\",\"false\",\"\",\"0\",\"\",\"\",\"\",\"\"");
+            ExternalProcessRunner runner = mock(ExternalProcessRunner.class);
+            List<String> cmd = new ArrayList<>();
+            doAnswer(invocation -> {
+                for (int i = 1; i < invocation.getArguments().length; i++) {
+                    cmd.add(invocation.getArgument(i));
+                }
+                ExternalProcessRunner.OutputHandler handler = invocation.getArgument(0);
+                handler.handle(new BufferedReader(new StringReader(output)));
+                return null;
+            }).when(runner).executeProcessStreamedResultHandle(any(), any(String[].class));
+
+            Map<String, List<Pair<String, String>>> result = new DroidFormatIdentificationTool(runner, true, containerSignatures).analyze(SIP_PATH);
+
+            assertThat(cmd, hasItems("-Nr", "-Nc", containerSignatures.resolve("container-signature-20240715.xml").toAbsolutePath().toString()));
+            assertThat(result.keySet(), containsInAnyOrder("TXT/a.TXT", "b.docx", "c.bin"));
+            assertThat(result.get("TXT/a.TXT"), contains(Pair.of("x-fmt/111", "Extension")));
+            assertThat(result.get("b.docx"), contains(Pair.of("fmt/412", "Container")));
+            assertThat(result.get("c.bin"), is(nullValue()));
+        } finally {
+            FileUtils.deleteDirectory(containerSignatures.toFile());
+        }
+    }
 }
@@ -10,6 +10,7 @@ import cz.cas.lib.arclib.domain.preservationPlanning.IngestIssueDefinitionCode;
 import cz.cas.lib.arclib.domain.preservationPlanning.Tool;
 import cz.cas.lib.arclib.exception.bpm.ConfigParserException;
 import cz.cas.lib.arclib.exception.bpm.IncidentException;
+import cz.cas.lib.arclib.formatlibrary.service.FormatDefinitionCache;
 import cz.cas.lib.arclib.formatlibrary.service.FormatDefinitionService;
 import cz.cas.lib.arclib.formatlibrary.store.DbFormatDefinitionStore;
 import cz.cas.lib.arclib.mail.ArclibMailCenter;
@@ -18,6 +19,7 @@ import cz.cas.lib.arclib.service.IngestIssueService;
 import cz.cas.lib.arclib.service.IngestWorkflowService;
 import cz.cas.lib.arclib.service.formatIdentification.droid.DroidFormatIdentificationTool;
 import cz.cas.lib.arclib.service.preservationPlanning.ToolService;
+import cz.cas.lib.arclib.store.BatchStore;
 import cz.cas.lib.arclib.store.IngestIssueDefinitionStore;
 import cz.cas.lib.arclib.store.IngestIssueStore;
 import cz.cas.lib.arclib.store.IngestWorkflowStore;
@@ -39,6 +41,7 @@ import static helper.ThrowableAssertion.assertThrown;
 import static java.util.Arrays.asList;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
 
 public class FormatIdentificationToolTest extends SrDbTest {
     private static final String INGEST_CONFIG = "{\"formatIdentification\":{\"0\":{\"type\":\"DROID\",\"pathsAndFormats\":{\"0\":{\"filePath\":\"\", \"format\":\"fmt/101\"}, \"1\":{\"filePath\":\".*/another/filepath\", \"format\":\"format1\"}}}}}";
@@ -78,6 +81,9 @@ public class FormatIdentificationToolTest extends SrDbTest {
         initializeStores(ingestIssueStore, toolStore, ingestWorkflowStore, sequenceStore, formatDefinitionStore, ingestIssueDefinitionStore);
 
         formatDefinitionService.setStore(formatDefinitionStore);
+        FormatDefinitionCache formatDefinitionCache = new FormatDefinitionCache();
+        formatDefinitionCache.setStore(formatDefinitionStore);
+        formatDefinitionService.setCache(formatDefinitionCache);
         ingestIssueService.setIngestIssueStore(ingestIssueStore);
         toolService.setToolStore(toolStore);
         toolService.setArclibMailCenter(arclibMailCenter);
@@ -133,6 +139,7 @@ public class FormatIdentificationToolTest extends SrDbTest {
         formatIdentificationDelegate.setToolService(toolService);
         IngestWorkflowService ingestWorkflowService = new IngestWorkflowService();
         ingestWorkflowService.setStore(ingestWorkflowStore);
+        ingestWorkflowService.setBatchStore(mock(BatchStore.class));
         formatIdentificationDelegate.setIngestWorkflowService(ingestWorkflowService);
         formatIdentificationDelegate.setFormatDefinitionService(formatDefinitionService);
         formatIdentificationDelegate.setIngestIssueDefinitionStore(ingestIssueDefinitionStore);
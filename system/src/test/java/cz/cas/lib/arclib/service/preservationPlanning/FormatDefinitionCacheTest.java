@@ -0,0 +1,63 @@
+package cz.cas.lib.arclib.service.preservationPlanning;
+
+import cz.cas.lib.arclib.formatlibrary.domain.Format;
+import cz.cas.lib.arclib.formatlibrary.domain.FormatDefinition;
+import cz.cas.lib.arclib.formatlibrary.service.FormatDefinitionCache;
+import cz.cas.lib.arclib.formatlibrary.store.FormatDefinitionStore;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+public class FormatDefinitionCacheTest {
+    private FormatDefinitionStore store = mock(FormatDefinitionStore.class);
+    private FormatDefinitionCache cache = new FormatDefinitionCache();
+    private FormatDefinition xml = definition("fmt/101");
+
+    @Before
+    public void before() {
+        cache.setStore(store);
+        when(store.findAllPreferred()).thenReturn(List.of(xml));
+    }
+
+    @Test
+    public void definitionsLoadedOnce() {
+        cache.prewarm();
+        assertThat(cache.findPreferredByPuid("fmt/101"), sameInstance(xml));
+        assertThat(cache.findPreferredByPuid("fmt/101"), sameInstance(xml));
+        assertThat(cache.findPreferredByPuid("x-fmt/111"), nullValue());
+        assertThat(cache.findPreferredByPuid("x-fmt/111"), nullValue());
+
+        verify(store, times(1)).findAllPreferred();
+        verify(store, times(1)).findPreferredByFormatPuid("x-fmt/111");
+        verify(store, never()).findPreferredByFormatPuid("fmt/101");
+        assertThat(cache.getHits(), is(3L));
+        assertThat(cache.getMisses(), is(1L));
+        assertThat(cache.getHitRate(), is(0.75));
+    }
+
+    @Test
+    public void invalidatedCacheReloaded() {
+        cache.findPreferredByPuid("fmt/101");
+        FormatDefinition newXml = definition("fmt/101");
+        when(store.findAllPreferred()).thenReturn(List.of(newXml));
+        assertThat(cache.findPreferredByPuid("fmt/101"), sameInstance(xml));
+
+        cache.invalidateAfterCommit();
+        assertThat(cache.findPreferredByPuid("fmt/101"), sameInstance(newXml));
+        verify(store, times(2)).findAllPreferred();
+    }
+
+    private static FormatDefinition definition(String puid) {
+        Format format = new Format();
+        format.setPuid(puid);
+        FormatDefinition definition = new FormatDefinition();
+        definition.setFormat(format);
+        definition.setPreferred(true);
+        return definition;
+    }
+}
@@ -125,7 +125,11 @@ public class FormatLibraryUpdaterTest extends DbTest {
 
         formatDefinitionService = new FormatDefinitionService();
         formatDefinitionService.setStore(formatDefinitionStore);
+        FormatDefinitionCache formatDefinitionCache = new FormatDefinitionCache();
+        formatDefinitionCache.setStore(formatDefinitionStore);
+        formatDefinitionService.setCache(formatDefinitionCache);
         formatLibraryUpdater.setFormatDefinitionService(formatDefinitionService);
+        formatLibraryUpdater.setFormatDefinitionCache(formatDefinitionCache);
 
         objectMapper = new ObjectMapper();
         objectMapper.findAndRegisterModules();
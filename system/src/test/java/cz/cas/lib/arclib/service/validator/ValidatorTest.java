@@ -7,6 +7,7 @@ import cz.cas.lib.arclib.exception.validation.InvalidSipNodeValue;
 import cz.cas.lib.arclib.exception.validation.MissingFile;
 import cz.cas.lib.arclib.exception.validation.SchemaValidationError;
 import cz.cas.lib.arclib.exception.validation.WrongNodeValue;
+import cz.cas.lib.arclib.service.SipFileIndexService;
 import cz.cas.lib.arclib.store.ValidationProfileStore;
 import cz.cas.lib.core.sequence.Generator;
 import helper.DbTest;
@@ -54,6 +55,7 @@ public class ValidatorTest extends DbTest {
 
         service = new Validator();
         service.setValidationProfileStore(store);
+        service.setSipFileIndexService(new SipFileIndexService());
     }
 
     @Test
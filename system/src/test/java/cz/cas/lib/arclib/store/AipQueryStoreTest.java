@@ -2,8 +2,7 @@ package cz.cas.lib.arclib.store;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import cz.cas.lib.arclib.domain.AipQuery;
-import cz.cas.lib.arclib.index.solr.arclibxml.IndexedAipState;
-import cz.cas.lib.arclib.index.solr.arclibxml.IndexedArclibXmlDocument;
+import cz.cas.lib.arclib.domain.AipQueryResult;
 import cz.cas.lib.core.index.dto.*;
 import cz.cas.lib.core.util.ApplicationContextUtils;
 import helper.DbTest;
@@ -13,7 +12,7 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 
 import static cz.cas.lib.core.util.Utils.asList;
-import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.eq;
@@ -21,13 +20,15 @@ import static org.mockito.ArgumentMatchers.eq;
 public class AipQueryStoreTest extends DbTest {
 
     private AipQueryStore store;
+    private AipQueryResultStore resultStore;
     @Mock
     private ApplicationContextUtils utils;
 
     @Before
     public void setUp() {
         store = new AipQueryStore();
-        initializeStores(store);
+        resultStore = new AipQueryResultStore();
+        initializeStores(store, resultStore);
         org.springframework.context.ApplicationContext applicationContextMock = Mockito.mock(org.springframework.context.ApplicationContext.class);
         Mockito.when(applicationContextMock.getBean(eq(ObjectMapper.class))).thenReturn(new ObjectMapper());
         new ApplicationContextUtils().setApplicationContext(applicationContextMock);
@@ -42,17 +43,12 @@ public class AipQueryStoreTest extends DbTest {
         params.setPageSize(10);
         params.addSorting(new SortSpecification("blah", Order.ASC));
         query.setQuery(params);
-        Result<IndexedArclibXmlDocument> result = new Result<>();
-        IndexedArclibXmlDocument indexedArclibXmlDocument = new IndexedArclibXmlDocument();
-        indexedArclibXmlDocument.getFields().put(IndexedArclibXmlDocument.AIP_STATE, IndexedAipState.ARCHIVED);
-        indexedArclibXmlDocument.getFields().put("key", "value");
-        result.setItems(asList(indexedArclibXmlDocument));
-        result.setCount(5L);
-        query.setResult(result);
+        query.setResultCount(2L);
         store.save(query);
+        resultStore.save(new AipQueryResult(query.getId(), asList("b", "a")));
         AipQuery fromDb = store.find(query.getId());
         assertThat(fromDb, is(query));
-        assertThat(fromDb.getResult().getItems().get(0), instanceOf(IndexedArclibXmlDocument.class));
-        assertThat(fromDb.getResult().getItems().get(0).getFields().get("key"), is("value"));
+        assertThat(fromDb.getResultCount(), is(2L));
+        assertThat(resultStore.find(query.getId()).getIds(), contains("a", "b"));
     }
 }
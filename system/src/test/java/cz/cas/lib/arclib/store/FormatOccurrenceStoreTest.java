@@ -0,0 +1,53 @@
+package cz.cas.lib.arclib.store;
+
+import cz.cas.lib.arclib.domain.preservationPlanning.FormatOccurrence;
+import cz.cas.lib.arclib.domain.profiles.ProducerProfile;
+import cz.cas.lib.arclib.formatlibrary.domain.FormatDefinition;
+import helper.DbTest;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class FormatOccurrenceStoreTest extends DbTest {
+
+    private FormatOccurrenceStore store = new FormatOccurrenceStore();
+    private ProducerProfile producerProfile;
+    private FormatDefinition fd1;
+    private FormatDefinition fd2;
+
+    @Before
+    public void setUp() {
+        initializeStores(store);
+        producerProfile = new ProducerProfile();
+        getEm().persist(producerProfile);
+        fd1 = new FormatDefinition();
+        getEm().persist(fd1);
+        fd2 = new FormatDefinition();
+        getEm().persist(fd2);
+        flushCache();
+    }
+
+    @Test
+    public void addOccurrences() {
+        store.addOccurrences(producerProfile.getId(), Map.of(fd1.getId(), 2L));
+        flushCache();
+        assertThat(occurrences(fd1), is(2L));
+        assertThat(store.findByFormatDefinitionAndProducerProfile(fd2.getId(), producerProfile.getId()), is(nullValue()));
+
+        store.addOccurrences(producerProfile.getId(), Map.of(fd1.getId(), 3L, fd2.getId(), 1L));
+        flushCache();
+        assertThat(occurrences(fd1), is(5L));
+        assertThat(occurrences(fd2), is(1L));
+        assertThat(store.findAll().size(), is(2));
+    }
+
+    private long occurrences(FormatDefinition formatDefinition) {
+        FormatOccurrence occurrence = store.findByFormatDefinitionAndProducerProfile(formatDefinition.getId(), producerProfile.getId());
+        return occurrence.getOccurrences();
+    }
+}
@@ -0,0 +1,54 @@
+package cz.cas.lib.arclib.store;
+
+import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflow;
+import cz.cas.lib.arclib.domain.ingestWorkflow.IngestWorkflowState;
+import helper.DbTest;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertThat;
+
+public class IngestWorkflowStoreTest extends DbTest {
+
+    private IngestWorkflowStore store = new IngestWorkflowStore();
+
+    @Before
+    public void setUp() {
+        initializeStores(store);
+    }
+
+    @Test
+    public void findByStateAfter() {
+        save("1", IngestWorkflowState.PERSISTED, false);
+        save("2", IngestWorkflowState.FAILED, false);
+        save("3", IngestWorkflowState.PERSISTED, true);
+        save("4", IngestWorkflowState.PERSISTED, false);
+        save("5", IngestWorkflowState.PERSISTED, false);
+        save("6", IngestWorkflowState.PERSISTED, false);
+        flushCache();
+
+        assertThat(ids(store.findByStateAfter(IngestWorkflowState.PERSISTED, null, 2)), contains("1", "4"));
+        assertThat(ids(store.findByStateAfter(IngestWorkflowState.PERSISTED, "4", 2)), contains("5", "6"));
+        assertThat(store.findByStateAfter(IngestWorkflowState.PERSISTED, "6", 2), empty());
+        assertThat(ids(store.findByStateAfter(IngestWorkflowState.FAILED, null, 2)), contains("2"));
+    }
+
+    private void save(String id, IngestWorkflowState state, boolean deleted) {
+        IngestWorkflow iw = new IngestWorkflow(id);
+        iw.setExternalId("ARCLIB_" + id);
+        iw.setProcessingState(state);
+        if (deleted)
+            iw.setDeleted(Instant.now());
+        store.save(iw);
+    }
+
+    private static List<String> ids(List<IngestWorkflow> workflows) {
+        return workflows.stream().map(IngestWorkflow::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,57 @@
+package cz.cas.lib.arclib.util;
+
+import cz.cas.lib.arclib.utils.ArclibUtils;
+import cz.cas.lib.arclib.utils.SipFileIndex;
+import cz.cas.lib.core.util.Utils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class SipFileIndexTest {
+    private static final Path SIP = Paths.get("src/test/resources/SIP_package");
+    private static final Path TEST_WORKSPACE = Paths.get("testWorkspace");
+
+    @After
+    public void after() throws IOException {
+        FileUtils.deleteDirectory(TEST_WORKSPACE.toFile());
+    }
+
+    @Test
+    public void sameResultsAsFolderWalk() throws IOException {
+        SipFileIndex index = SipFileIndex.build(SIP);
+
+        for (String glob : new String[]{"**/*.xml", "KPW01169310/METS_*.xml", "*", "**", "nonexistent/**"}) {
+            assertThat(glob, index.listFilesMatchingGlobPattern(glob), containsInAnyOrder(Utils.listFilesMatchingGlobPattern(SIP.toFile(), glob).toArray()));
+        }
+        for (String regex : new String[]{"BAG/bah*git.txt", ".*/METS_\\w+\\.xml", "KPW01169310/.*"}) {
+            assertThat(regex, index.listFilesMatchingRegex(regex, false), contains(Utils.listFilesMatchingRegex(SIP.toFile(), regex, false).toArray()));
+            assertThat(regex, index.listFilesMatchingRegex("SIP_package/" + regex, true), contains(Utils.listFilesMatchingRegex(SIP.toFile(), "SIP_package/" + regex, true).toArray()));
+        }
+        assertThat(index.listFilesMatchingRegex("BAG/bah*git.txt", false), hasSize(1));
+        assertThat(index.listFilePaths(), containsInAnyOrder(ArclibUtils.listFilePaths(SIP).toArray()));
+    }
+
+    @Test
+    public void modifiedFolderDetected() throws IOException {
+        Path subfolder = Files.createDirectories(TEST_WORKSPACE.resolve("sip").resolve("data"));
+        Files.writeString(subfolder.resolve("a.xml"), "<a/>");
+
+        SipFileIndex index = SipFileIndex.build(TEST_WORKSPACE.resolve("sip"));
+        assertThat(index.isUpToDate(), is(true));
+        assertThat(index.listFilesMatchingGlobPattern("**/*.xml"), hasSize(1));
+
+        Files.writeString(subfolder.resolve("b.xml"), "<b/>");
+        //guards against coarse modification time resolution of the file system
+        subfolder.toFile().setLastModified(System.currentTimeMillis() + 10000);
+        assertThat(index.isUpToDate(), is(false));
+        assertThat(SipFileIndex.build(TEST_WORKSPACE.resolve("sip")).listFilesMatchingGlobPattern("**/*.xml"), hasSize(2));
+    }
+}
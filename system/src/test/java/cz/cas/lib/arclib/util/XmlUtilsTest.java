@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import static helper.ThrowableAssertion.assertThrown;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 
@@ -101,4 +102,17 @@ public class XmlUtilsTest {
         assertThrown(() -> XmlUtils.validateWithXMLSchema(IOUtils.toString(new FileInputStream(validationProfilePath)),
                 new InputStream[]{new FileInputStream(xsdPath)}, "")).isInstanceOf(SchemaValidationError.class);
     }
+
+    @Test
+    public void validationSchemaCheckFromStreamWithCachedSchema() throws IOException, SAXException {
+        String xsdPath = getClass().getResource("/xmlSchemas/validationProfile.xsd").getPath();
+
+        String validationProfilePath = getClass().getResource("/validation/validationProfileMixedChecks.xml").getPath();
+
+        try (InputStream xml = new FileInputStream(validationProfilePath)) {
+            XmlUtils.validateWithXMLSchema(xml, new InputStream[]{new FileInputStream(xsdPath)}, "");
+        }
+        assertThat(XmlUtils.getSchema(new InputStream[]{new FileInputStream(xsdPath)}),
+                sameInstance(XmlUtils.getSchema(new InputStream[]{new FileInputStream(xsdPath)})));
+    }
 }
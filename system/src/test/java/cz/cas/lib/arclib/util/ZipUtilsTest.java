@@ -1,6 +1,7 @@
 package cz.cas.lib.arclib.util;
 
 import cz.cas.lib.arclib.domainbase.exception.GeneralException;
+import cz.cas.lib.arclib.service.fixity.Sha512Counter;
 import cz.cas.lib.arclib.utils.ZipUtils;
 import org.apache.commons.io.FileUtils;
 import org.junit.After;
@@ -9,12 +10,20 @@ import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
+import static cz.cas.lib.core.util.Utils.bytesToHexString;
 import static helper.ThrowableAssertion.assertThrown;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
@@ -27,6 +36,7 @@ public class ZipUtilsTest {
     private static final String SIP_FILE_STR = "clean.txt";
     private static final Path SIP_FOLDER = RESOURCES.resolve(SIP_FOLDER_STR);
     private static final Path SIP_ZIP = Paths.get("src/test/resources/testFolder.zip");
+    private static final Path MULTI_FILE_SIP_ZIP = RESOURCES.resolve("SIP_package/zipped_with_hashes/7033d800-0935-11e4-beed-5ef3fc9ae867.zip");
 
     // .zip file created on Windows machine that contains file with diacritics in its name
     private static final String DIACRITICS_WINDOWS_ZIP_NAME = "zipSDiakritikou";
@@ -38,6 +48,7 @@ public class ZipUtilsTest {
     private static final Path LOCAL_DIACRITICS_FOLDER = RESOURCES.resolve(LOCAL_DIACRITICS_FOLDER_NAME);
     private static final Path LOCAL_DIACRITICS_FOLDER_ZIP = TEST_WORKSPACE.resolve(LOCAL_DIACRITICS_FOLDER_NAME + ".zip");
 
+    private ExecutorService unzipExecutor = Executors.newFixedThreadPool(4);
 
     @Before
     public void before() throws IOException {
@@ -46,6 +57,7 @@ public class ZipUtilsTest {
 
     @After
     public void after() throws IOException {
+        unzipExecutor.shutdownNow();
         FileUtils.cleanDirectory(TEST_WORKSPACE.toFile());
         Files.deleteIfExists(TEST_WORKSPACE);
     }
@@ -67,8 +79,7 @@ public class ZipUtilsTest {
 
     @Test
     public void zipAndUnzipDiacriticsFolder() throws IOException {
-        byte[] bytesOfDiacriticsZipFolder = ZipUtils.zipToByteArray(LOCAL_DIACRITICS_FOLDER);
-        Path zippedFolderInTestWorkspace = Files.write(LOCAL_DIACRITICS_FOLDER_ZIP, bytesOfDiacriticsZipFolder);
+        Path zippedFolderInTestWorkspace = zipToFile(LOCAL_DIACRITICS_FOLDER, LOCAL_DIACRITICS_FOLDER_ZIP);
         ZipUtils.unzipSip(zippedFolderInTestWorkspace, TEST_WORKSPACE, "dummyIwId");
 
         assertThat(TEST_WORKSPACE.resolve(LOCAL_DIACRITICS_FOLDER_NAME).toFile().isDirectory(), is(true));
@@ -77,8 +88,7 @@ public class ZipUtilsTest {
 
     @Test
     public void testZipThanUnzip() throws IOException {
-        byte[] bytes = ZipUtils.zipToByteArray(SIP_FOLDER);
-        Path write = Files.write(TEST_WORKSPACE.resolve("zipToByteArrayTest.zip"), bytes);
+        Path write = zipToFile(SIP_FOLDER, TEST_WORKSPACE.resolve("zipDirectoryTest.zip"));
         ZipUtils.unzipSip(write, TEST_WORKSPACE, "dummyIwId");
         assertThat(TEST_WORKSPACE.resolve(SIP_FOLDER_STR).toFile().isDirectory(), is(true));
         assertThat(TEST_WORKSPACE.resolve(SIP_FOLDER_STR).resolve(SIP_FILE_STR).toFile().isFile(), is(true));
@@ -93,6 +103,27 @@ public class ZipUtilsTest {
         assertThat(TEST_WORKSPACE.resolve(SIP_FOLDER_STR).resolve(SIP_FILE_STR).toFile().isFile(), is(true));
     }
 
+    @Test
+    public void testZipStoresCompressedMedia() throws IOException {
+        Path sourceDir = TEST_WORKSPACE.resolve("source");
+        Files.createDirectories(sourceDir.resolve("images"));
+        byte[] content = "test content test content test content".getBytes();
+        Files.write(sourceDir.resolve("images").resolve("picture.JPG"), content);
+        Files.write(sourceDir.resolve("text.txt"), content);
+        Path zip = zipToFile(sourceDir, TEST_WORKSPACE.resolve("mediaTest.zip"));
+
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            assertThat(zipFile.getEntry("source/").isDirectory(), is(true));
+            assertThat(zipFile.getEntry("source/images/").isDirectory(), is(true));
+            assertThat(zipFile.getEntry("source/images/picture.JPG").getMethod(), is(ZipEntry.STORED));
+            assertThat(zipFile.getEntry("source/text.txt").getMethod(), is(ZipEntry.DEFLATED));
+        }
+        Path unzipDir = Files.createDirectories(TEST_WORKSPACE.resolve("unzipped"));
+        ZipUtils.unzipSip(zip, unzipDir, "dummyIwId");
+        assertThat(Files.readAllBytes(unzipDir.resolve("source").resolve("images").resolve("picture.JPG")), is(content));
+        assertThat(Files.readAllBytes(unzipDir.resolve("source").resolve("text.txt")), is(content));
+    }
+
     @Test
     public void testUnZip() throws IOException {
         ZipUtils.unzipSip(SIP_ZIP, TEST_WORKSPACE, "dummyIwId");
@@ -100,6 +131,68 @@ public class ZipUtilsTest {
         assertThat(TEST_WORKSPACE.resolve(SIP_FOLDER_STR).resolve(SIP_FILE_STR).toFile().isFile(), is(true));
     }
 
+    @Test
+    public void testUnZipWithDigests() throws IOException {
+        Sha512Counter sha512Counter = new Sha512Counter();
+        Map<Path, byte[]> digests = new HashMap<>();
+        ZipUtils.unzipSip(SIP_ZIP, TEST_WORKSPACE, "dummyIwId", sha512Counter::newDigestState, digests, null, 1);
+        Path extractedFile = TEST_WORKSPACE.resolve(SIP_FOLDER_STR).resolve(SIP_FILE_STR);
+        assertThat(digests.containsKey(extractedFile), is(true));
+        for (Map.Entry<Path, byte[]> entry : digests.entrySet()) {
+            assertThat(sha512Counter.verifyFixity(entry.getKey(), bytesToHexString(entry.getValue())), is(true));
+        }
+    }
+
+    /**
+     * Tests that files extracted by more threads are the same as files extracted by one thread.
+     */
+    @Test
+    public void testParallelUnZip() throws IOException {
+        Path sequentialDest = TEST_WORKSPACE.resolve("sequential");
+        Path parallelDest = TEST_WORKSPACE.resolve("parallel");
+        Sha512Counter sha512Counter = new Sha512Counter();
+        Map<Path, byte[]> sequentialDigests = new HashMap<>();
+        Map<Path, byte[]> parallelDigests = new HashMap<>();
+        String sequentialRoot = ZipUtils.unzipSip(MULTI_FILE_SIP_ZIP, sequentialDest, "dummyIwId", sha512Counter::newDigestState, sequentialDigests, null, 1);
+        String parallelRoot = ZipUtils.unzipSip(MULTI_FILE_SIP_ZIP, parallelDest, "dummyIwId", sha512Counter::newDigestState, parallelDigests, unzipExecutor, 4);
+        assertThat(parallelRoot, is(sequentialRoot));
+        //shared executor is left running for the next extraction
+        assertThat(unzipExecutor.isShutdown(), is(false));
+        assertThat(parallelDigests.size(), is(sequentialDigests.size()));
+        assertThat(parallelDigests.size() > 4, is(true));
+        for (Map.Entry<Path, byte[]> entry : sequentialDigests.entrySet()) {
+            Path parallelPath = parallelDest.resolve(sequentialDest.relativize(entry.getKey()));
+            assertThat(Files.readAllBytes(parallelPath), is(Files.readAllBytes(entry.getKey())));
+            assertThat(parallelDigests.get(parallelPath), is(entry.getValue()));
+        }
+    }
+
+    /**
+     * Tests that ZIP with more root folders is rejected before anything is extracted.
+     */
+    @Test
+    public void testUnZipMoreRootFoldersNothingExtracted() throws IOException {
+        Path zip = TEST_WORKSPACE.resolve("twoRoots.zip");
+        try (ZipOutputStream zs = new ZipOutputStream(Files.newOutputStream(zip))) {
+            zs.putNextEntry(new ZipEntry("first/a.txt"));
+            zs.write("a".getBytes());
+            zs.closeEntry();
+            zs.putNextEntry(new ZipEntry("second/b.txt"));
+            zs.write("b".getBytes());
+            zs.closeEntry();
+        }
+        Path dest = TEST_WORKSPACE.resolve("twoRoots");
+        assertThrown(() -> ZipUtils.unzipSip(zip, dest, "dummyIwId", null, null, unzipExecutor, 2)).isInstanceOf(GeneralException.class);
+        assertThat(dest.toFile().exists(), is(false));
+    }
+
+    private static Path zipToFile(Path sourceDirPath, Path zipPath) throws IOException {
+        try (OutputStream out = Files.newOutputStream(zipPath)) {
+            ZipUtils.zipDirectory(sourceDirPath, out, Deflater.DEFAULT_COMPRESSION, ZipUtils.COMPRESSED_MEDIA_EXTENSIONS);
+        }
+        return zipPath;
+    }
+
     private static byte[] zipWithoutRootDirEntryToByteArray(Path sourceDirPath) throws IOException {
         byte[] packed;
         try (ByteArrayOutputStream bos = new ByteArrayOutputStream(); ZipOutputStream zs = new ZipOutputStream(bos)) {
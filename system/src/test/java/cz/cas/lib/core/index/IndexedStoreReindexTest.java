@@ -0,0 +1,107 @@
+package cz.cas.lib.core.index;
+
+import cz.cas.lib.core.index.solr.IndexedStore;
+import cz.cas.lib.core.index.solr.ReindexProgress;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+public class IndexedStoreReindexTest {
+    private static final int COUNT = 2 * IndexedStore.REINDEX_PAGE_SIZE + 5;
+
+    @SuppressWarnings("unchecked")
+    private IndexedStore<TestEntity, IndexedTestEntity> store = mock(IndexedStore.class, CALLS_REAL_METHODS);
+    private List<TestEntity> entities = new ArrayList<>();
+    private List<String> indexed = new ArrayList<>();
+    /**
+     * number of open transactions when the pages were read and indexed
+     */
+    private List<Integer> transactionsOfPages = new ArrayList<>();
+    private int openTransactions;
+    private int transactions;
+    private TransactionOperations transactionOperations = new TransactionOperations() {
+        @Override
+        public <R> R execute(TransactionCallback<R> action) {
+            transactions++;
+            openTransactions++;
+            try {
+                return action.doInTransaction(null);
+            } finally {
+                openTransactions--;
+            }
+        }
+    };
+
+    @Before
+    public void before() {
+        for (int i = 0; i < COUNT; i++) {
+            TestEntity entity = new TestEntity();
+            entity.setId(String.format("%05d", i));
+            entities.add(entity);
+        }
+        doReturn("testentity").when(store).getIndexType();
+        doReturn("testC").when(store).getIndexCollection();
+        doReturn(false).when(store).isChildStore();
+        doReturn((long) COUNT).when(store).countAll();
+        doNothing().when(store).commitIndex();
+        doAnswer(invocation -> {
+            String lastId = invocation.getArgument(0);
+            int limit = invocation.getArgument(1);
+            return entities.stream().filter(e -> lastId == null || e.getId().compareTo(lastId) > 0).limit(limit).collect(Collectors.toList());
+        }).when(store).findAllAfter(any(), anyInt());
+        doAnswer(invocation -> {
+            Collection<TestEntity> page = invocation.getArgument(0);
+            page.forEach(e -> indexed.add(e.getId()));
+            transactionsOfPages.add(openTransactions);
+            return page;
+        }).when(store).index(anyCollection());
+    }
+
+    @Test
+    public void reindexInPages() {
+        ReindexProgress progress = new ReindexProgress("testentity", "testC");
+        store.reindex(progress);
+
+        assertThat(indexed, is(entities.stream().map(TestEntity::getId).collect(Collectors.toList())));
+        verify(store, times(3)).index(anyCollection());
+        verify(store, times(1)).commitIndex();
+        assertThat(progress.getTotal(), is((long) COUNT));
+        assertThat(progress.getIndexed(), is((long) COUNT));
+        assertThat(progress.getFinished(), is(notNullValue()));
+    }
+
+    @Test
+    public void everyPageInOwnTransaction() {
+        store.reindex(new ReindexProgress("testentity", "testC"), transactionOperations);
+
+        assertThat(indexed, hasSize(COUNT));
+        //count and three pages
+        assertThat(transactions, is(4));
+        assertThat(transactionsOfPages, contains(1, 1, 1));
+        verify(store, times(1)).commitIndex();
+    }
+
+    @Test
+    public void emptyStore() {
+        doReturn(0L).when(store).countAll();
+        ReindexProgress progress = new ReindexProgress("testentity", "testC");
+        store.reindex(progress, transactionOperations);
+
+        assertThat(indexed, is(empty()));
+        verify(store, never()).findAllAfter(any(), anyInt());
+        assertThat(progress.getFinished(), is(notNullValue()));
+    }
+}
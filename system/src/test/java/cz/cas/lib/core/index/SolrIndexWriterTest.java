@@ -0,0 +1,186 @@
+package cz.cas.lib.core.index;
+
+import cz.cas.lib.arclib.domainbase.exception.GeneralException;
+import cz.cas.lib.core.index.solr.SolrIndexWriter;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.beans.Field;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.util.NamedList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static helper.ThrowableAssertion.assertThrown;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SolrIndexWriterTest {
+
+    private RecordingSolrClient client;
+    private SolrIndexWriter writer;
+
+    @Before
+    public void before() {
+        client = new RecordingSolrClient();
+        writer = new SolrIndexWriter();
+        writer.setSolrClient(client);
+        writer.setBatchSize(5);
+        writer.setQueueCapacity(100);
+        writer.setCommitWithinMs(1000);
+        writer.init();
+    }
+
+    @After
+    public void after() {
+        client.unblock();
+        writer.destroy();
+    }
+
+    @Test
+    public void queuedOperationsAreCoalescedInOrder() throws InterruptedException {
+        client.block();
+        writer.add("c1", new Doc("0"));
+        client.entered.await();
+        for (int i = 1; i <= 7; i++) {
+            writer.add("c1", new Doc(String.valueOf(i)));
+        }
+        writer.add("c2", new Doc("8"));
+        writer.deleteById("c1", "1");
+        writer.deleteById("c1", "2");
+        writer.deleteByQuery("c1", "type:doc");
+        client.unblock();
+        writer.flush();
+
+        //first add is sent before the rest is queued, the rest is coalesced to batches of at most 5 documents
+        assertThat(client.requests, contains(
+                "c1 add [0]", "c1 add [1, 2, 3, 4, 5]", "c1 add [6, 7]", "c2 add [8]", "c1 delete [1, 2]", "c1 deleteQuery [type:doc]"));
+        assertThat(client.commits, is(0));
+    }
+
+    @Test
+    public void flushAndCommit() {
+        writer.add("c1", new Doc("0"));
+        writer.flushAndCommit("c1");
+        assertThat(client.requests, contains("c1 add [0]", "c1 commit"));
+    }
+
+    @Test
+    public void failureReportedByFlush() {
+        client.fail = true;
+        writer.add("c1", new Doc("0"));
+        assertThrown(() -> writer.flush()).isInstanceOf(GeneralException.class);
+        client.fail = false;
+        writer.add("c1", new Doc("1"));
+        writer.flush();
+    }
+
+    @Test
+    public void failureReportedOnlyToItsCaller() throws Exception {
+        client.fail = true;
+        Thread other = new Thread(() -> writer.add("c1", new Doc("0")));
+        other.start();
+        other.join();
+        //failed add of the other thread is not reported to this one
+        writer.flush();
+
+        writer.add("c1", new Doc("1"));
+        AtomicReference<Exception> otherFlush = new AtomicReference<>();
+        other = new Thread(() -> {
+            try {
+                writer.flush();
+            } catch (Exception e) {
+                otherFlush.set(e);
+            }
+        });
+        other.start();
+        other.join();
+        assertThat(otherFlush.get(), is(nullValue()));
+        assertThrown(() -> writer.flush()).isInstanceOf(GeneralException.class);
+    }
+
+    @Test
+    public void failedBatchRetriedOneByOne() throws InterruptedException {
+        client.rejected.add("2");
+        client.block();
+        writer.add("c1", new Doc("0"));
+        client.entered.await();
+        for (int i = 1; i <= 3; i++) {
+            writer.add("c1", new Doc(String.valueOf(i)));
+        }
+        client.unblock();
+        assertThrown(() -> writer.flush()).isInstanceOf(GeneralException.class);
+        //only the rejected document is lost
+        assertThat(client.requests, contains("c1 add [0]", "c1 add [1]", "c1 add [3]"));
+    }
+
+    public static class Doc {
+        @Field
+        private String id;
+
+        public Doc(String id) {
+            this.id = id;
+        }
+    }
+
+    private static class RecordingSolrClient extends SolrClient {
+        private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+        private volatile int commits;
+        private volatile boolean fail;
+        private final Set<Object> rejected = ConcurrentHashMap.newKeySet();
+        private volatile CountDownLatch blocked = new CountDownLatch(0);
+        private final CountDownLatch entered = new CountDownLatch(1);
+
+        private void block() {
+            blocked = new CountDownLatch(1);
+        }
+
+        private void unblock() {
+            blocked.countDown();
+        }
+
+        @Override
+        public NamedList<Object> request(SolrRequest<?> request, String collection) throws SolrServerException, IOException {
+            entered.countDown();
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (fail)
+                throw new SolrServerException("solr is down");
+            UpdateRequest update = (UpdateRequest) request;
+            if (update.getDocuments() != null) {
+                List<Object> ids = new ArrayList<>();
+                update.getDocuments().forEach(d -> ids.add(d.getFieldValue("id")));
+                if (ids.stream().anyMatch(rejected::contains))
+                    throw new SolrServerException("document rejected");
+                requests.add(collection + " add " + ids);
+            } else if (update.getDeleteById() != null) {
+                requests.add(collection + " delete " + update.getDeleteById());
+            } else if (update.getDeleteQuery() != null) {
+                requests.add(collection + " deleteQuery " + update.getDeleteQuery());
+            } else {
+                commits++;
+                requests.add(collection + " commit");
+            }
+            return new NamedList<>();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package cz.cas.lib.core.index.global;
+
+import cz.cas.lib.arclib.domainbase.exception.GeneralException;
+import cz.cas.lib.core.index.IndexedStoreImpl;
+import cz.cas.lib.core.index.nested.ParentEntityStore;
+import cz.cas.lib.core.index.solr.IndexedStore;
+import cz.cas.lib.core.index.solr.ReindexProgress;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static helper.ThrowableAssertion.assertThrown;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class GlobalReindexerTest {
+    private IndexedStore first = mock(IndexedStoreImpl.class);
+    private IndexedStore second = mock(ParentEntityStore.class);
+    private TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private GlobalReindexer reindexer = new GlobalReindexer();
+
+    @Before
+    public void before() {
+        when(first.getIndexType()).thenReturn("first");
+        when(second.getIndexType()).thenReturn("second");
+        doAnswer(invocation -> {
+            ReindexProgress progress = invocation.getArgument(0);
+            progress.start(2);
+            progress.addIndexed(2);
+            progress.finish();
+            return null;
+        }).when(first).reindex(any(ReindexProgress.class), any());
+        reindexer.setStores(List.of(first, second));
+        reindexer.setTransactionTemplate(transactionTemplate);
+        reindexer.setThreads(2);
+    }
+
+    @Test
+    public void storesReindexedWithTransactionPerPage() {
+        reindexer.reindexSubset(false, null);
+
+        verify(first).reindex(any(ReindexProgress.class), eq(transactionTemplate));
+        verify(second).reindex(any(ReindexProgress.class), eq(transactionTemplate));
+        verify(first, never()).dropReindex(any(ReindexProgress.class), any());
+        //pages are executed by the stores, the reindexer itself does not span a transaction over the whole store
+        verifyNoInteractions(transactionTemplate);
+        assertThat(reindexer.getProgress(), hasSize(2));
+        assertThat(reindexer.getProgress(), hasItem(hasProperty("indexed", is(2L))));
+    }
+
+    @Test
+    public void dropReindex() {
+        reindexer.reindex();
+
+        verify(first).dropReindex(any(ReindexProgress.class), eq(transactionTemplate));
+        verify(second).dropReindex(any(ReindexProgress.class), eq(transactionTemplate));
+    }
+
+    @Test
+    public void failureRecordedInProgress() {
+        doThrow(new IllegalStateException("solr is down")).when(second).reindex(any(ReindexProgress.class), any());
+
+        assertThrown(() -> reindexer.reindexSubset(false, null)).isInstanceOf(GeneralException.class);
+        assertThat(reindexer.getProgress(), hasItem(allOf(
+                hasProperty("indexType", is("second")),
+                hasProperty("failure", containsString("solr is down")))));
+        verify(first).reindex(any(ReindexProgress.class), eq(transactionTemplate));
+    }
+}
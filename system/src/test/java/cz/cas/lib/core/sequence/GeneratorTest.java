@@ -0,0 +1,76 @@
+package cz.cas.lib.core.sequence;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class GeneratorTest {
+    private static final String SEQUENCE_ID = "seq";
+
+    private SequenceStore store = mock(SequenceStore.class);
+    private Generator generator = new Generator();
+    private AtomicLong counter = new AtomicLong(1);
+
+    @Before
+    public void before() {
+        Sequence sequence = new Sequence();
+        sequence.setFormat("'#'0000");
+        sequence.setBlockSize(10L);
+        when(store.find(SEQUENCE_ID)).thenReturn(sequence);
+        when(store.allocate(eq(SEQUENCE_ID), anyLong())).then(invocation -> counter.getAndAdd(invocation.getArgument(1)));
+        generator.setStore(store);
+    }
+
+    @Test
+    public void numbersReservedInBlocks() {
+        assertThat(generator.generate(SEQUENCE_ID, "ARCLIB_", 9), is("ARCLIB_000000001"));
+        assertThat(generator.generate(SEQUENCE_ID), is("#0002"));
+        for (int i = 3; i <= 10; i++) {
+            assertThat(generator.generatePlain(SEQUENCE_ID), is((long) i));
+        }
+        verify(store, times(1)).allocate(SEQUENCE_ID, 10);
+
+        assertThat(generator.generatePlain(SEQUENCE_ID), is(11L));
+        verify(store, times(2)).allocate(SEQUENCE_ID, 10);
+    }
+
+    @Test
+    public void everyNumberReservedWithoutBlockSize() {
+        Sequence sequence = new Sequence();
+        sequence.setFormat("0");
+        sequence.setCounter(7L);
+        when(store.find("other")).thenReturn(sequence);
+        when(store.allocate("other", 1)).thenReturn(7L, 8L);
+
+        assertThat(generator.generate("other"), is("7"));
+        assertThat(generator.generate("other"), is("8"));
+        verify(store, times(2)).allocate("other", 1);
+    }
+
+    @Test
+    public void concurrentCallsGenerateUniqueNumbers() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            futures.add(executor.submit(() -> generator.generatePlain(SEQUENCE_ID)));
+        }
+        Set<Long> numbers = new HashSet<>();
+        for (Future<Long> future : futures) {
+            numbers.add(future.get());
+        }
+        executor.shutdown();
+
+        assertThat(numbers, hasSize(1000));
+        assertThat(Collections.max(numbers), is(1000L));
+        verify(store, times(100)).allocate(SEQUENCE_ID, 10);
+    }
+}
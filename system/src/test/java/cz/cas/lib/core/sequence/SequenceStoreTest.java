@@ -0,0 +1,40 @@
+package cz.cas.lib.core.sequence;
+
+import helper.DbTest;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SequenceStoreTest extends DbTest {
+
+    private SequenceStore store = new SequenceStore();
+
+    @Before
+    public void setUp() {
+        initializeStores(store);
+    }
+
+    @Test
+    public void allocate() {
+        Sequence sequence = new Sequence();
+        sequence.setFormat("'#'0000");
+        sequence.setCounter(5L);
+        store.save(sequence);
+        Sequence empty = new Sequence();
+        store.save(empty);
+        flushCache();
+
+        assertThat(store.allocate(sequence.getId(), 10), is(5L));
+        assertThat(store.allocate(sequence.getId(), 1), is(15L));
+        //counter which has not been set yet starts at 1
+        assertThat(store.allocate(empty.getId(), 3), is(1L));
+        assertThat(store.allocate("missing", 10), is(nullValue()));
+        flushCache();
+
+        assertThat(store.find(sequence.getId()).getCounter(), is(16L));
+        assertThat(store.find(empty.getId()).getCounter(), is(4L));
+    }
+}
@@ -10,6 +10,7 @@ import org.junit.Test;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 import static cz.cas.lib.core.util.Utils.asSet;
@@ -274,6 +275,19 @@ public class DomainStoreTest extends DbTest {
         assertThat(all, containsInAnyOrder(entities.get(1), entities.get(2)));
     }
 
+    @Test
+    public void findAllAfterTest() {
+        List<GeneralTestEntity> sorted = asList(new GeneralTestEntity(), new GeneralTestEntity(), new GeneralTestEntity(), new GeneralTestEntity(), new GeneralTestEntity());
+        store.save(sorted);
+        flushCache();
+        sorted.sort(Comparator.comparing(GeneralTestEntity::getId));
+
+        assertThat(store.findAllAfter(null, 2), contains(sorted.get(0), sorted.get(1)));
+        assertThat(store.findAllAfter(sorted.get(1).getId(), 2), contains(sorted.get(2), sorted.get(3)));
+        assertThat(store.findAllAfter(sorted.get(3).getId(), 2), contains(sorted.get(4)));
+        assertThat(store.findAllAfter(sorted.get(4).getId(), 2), is(empty()));
+    }
+
     @Test
     public void getTypeTest() {
         assertThat(store.getType(), Matchers.<Class<GeneralTestEntity>>is(GeneralTestEntity.class));